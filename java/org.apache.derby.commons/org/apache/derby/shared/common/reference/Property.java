@@ -340,6 +340,31 @@ public interface Property {
 	 */
 	int MIN_LOCKS_ESCALATION_THRESHOLD = 100;
 
+	/**
+		derby.locks.escalationThreshold.<I>conglomerate number</I>
+		<BR>
+		The escalation threshold of a single table, overriding
+		derby.locks.escalationThreshold for the heap conglomerate with that
+		number. Set by SYSCS_UTIL.SYSCS_SET_LOCK_ESCALATION_THRESHOLD, and
+		removed when the conglomerate is dropped, which includes compressing
+		or truncating the table. Database only.
+	 */
+	String LOCKS_ESCALATION_THRESHOLD_PREFIX =
+		"derby.locks.escalationThreshold.";
+
+	/**
+		derby.locks.memoryLimit
+		<BR>
+		The amount of memory, in kilobytes, that the locks held by all the
+		transactions in the system may use. Once it is exceeded,
+		transactions holding many row locks on a table escalate them to a
+		table lock before they reach derby.locks.escalationThreshold. 0
+		means no limit. The default is a tenth of the maximum heap size.
+		<BR>
+		Undocumented.
+	 */
+	String LOCKS_MEMORY_LIMIT = "derby.locks.memoryLimit";
+
 	/**
 		Configuration parameter for deadlock timeouts, set in seconds.
 	*/
@@ -355,6 +380,26 @@ public interface Property {
 	*/
 	public static final int WAIT_TIMEOUT_DEFAULT = 60;
 
+	/**
+		derby.locks.deadlockDetectionInterval
+		<BR>
+		How often, in milliseconds, the background deadlock detector looks
+		for deadlocks among the lock requests that have been waiting for at
+		least that long. A deadlock found by the detector is broken without
+		waiting for derby.locks.deadlockTimeout to expire. 0 disables the
+		detector. Default value is 50 milliseconds.
+		<BR>
+		This property takes effect dynamically.
+		<BR>
+		Undocumented.
+	 */
+	String DEADLOCK_DETECTION_INTERVAL = "derby.locks.deadlockDetectionInterval";
+
+	/**
+		Default value for DEADLOCK_DETECTION_INTERVAL (50 milliseconds)
+	*/
+	int DEADLOCK_DETECTION_INTERVAL_DEFAULT = 50;
+
 	/**
 		Turn on lock monitor to help debug deadlocks.  Default value is OFF.
 		With this property turned on, all deadlocks will cause a tracing to be
@@ -461,6 +506,52 @@ public interface Property {
      **/
     public static final String PAGE_SIZE_PARAMETER = "derby.storage.pageSize";
 
+    /**
+     * Tells whether the fields of the rows of new tables should be stored
+     * compressed.  Can be set as a database property, or in the properties
+     * of a single table when it is created.  The default is false.
+     * <p>
+     * Undocumented.
+     **/
+    public static final String COMPRESSED_RECORDS =
+        "derby.storage.compressedRecords";
+
+    /**
+     * How full, in percent, the pages of an index are made when the index
+     * is built from sorted rows, as by CREATE INDEX, import or compress
+     * table.  Space left free on the pages lets later inserts go in without
+     * splitting them.  Valid values are 1 to 100, the default is 100.
+     * <p>
+     * Undocumented.
+     **/
+    public static final String INDEX_FILL_FACTOR =
+        "derby.storage.indexFillFactor";
+
+    /**
+     * The number of threads sorting the merge runs of external sorts.
+     * With more than one, the rows of a sort which does not fit in memory
+     * are sorted into runs by a pool of that many threads, shared by all
+     * the sorts of a database, while the rows keep being inserted.  The
+     * default is 1, which sorts the runs in the inserting thread.
+     * <p>
+     * Undocumented.
+     **/
+    public static final String SORT_THREADS =
+        "derby.storage.sortThreads";
+
+    /**
+     * The number of threads scanning a heap for a scalar aggregate.
+     * With more than one, a query which computes COUNT, SUM, AVG, MIN or
+     * MAX over all the rows of a table has the pages of the table read by
+     * a pool of that many threads, shared by all the queries of a database,
+     * and combines the partial aggregates they compute.  The default is 1,
+     * which scans the table in the thread running the query.
+     * <p>
+     * Undocumented.
+     **/
+    public static final String SCAN_THREADS =
+        "derby.storage.scanThreads";
+
     /**
      * The default page size to use for tables that contain a long column.
      **/
@@ -1052,6 +1143,78 @@ public interface Property {
         Undocumented.
 	 */
 	public static final String LOG_BUFFER_SIZE = "derby.storage.logBufferSize";
+
+	/**
+		Property name for specifying how long, in microseconds, a commit
+		may wait for other transactions to commit before the log is synced,
+		so that a single sync makes all of them durable. The wait only
+		happens when the previous sync served more than one transaction.
+		A value of 0 (the default) disables the wait.
+
+        Undocumented.
+	 */
+	public static final String LOG_GROUP_COMMIT_DELAY =
+        "derby.storage.logGroupCommitDelay";
+
+	/**
+		Property name for specifying how many spare log files to keep
+		ready for log switches. Log files that are no longer needed for
+		recovery are zeroed and kept as spares instead of being deleted, so
+		that a log switch doesn't have to create and extend a new file.
+		A value of 0 (the default) disables the spare files.
+
+        Undocumented.
+	 */
+	public static final String LOG_SPARE_FILES =
+        "derby.storage.logSpareFiles";
+
+	/**
+		Property name for specifying how many threads recovery uses to redo
+		the log after a crash. Log records which change pages are applied
+		by the threads in parallel, each thread taking the records of a
+		subset of the containers. A value of 0 (the default) redoes the log
+		in the booting thread only.
+
+        Undocumented.
+	 */
+	public static final String RECOVERY_REDO_THREADS =
+        "derby.storage.recoveryRedoThreads";
+
+	/**
+		Property name for specifying the size, in bytes, from which the
+		optional data of a log record, such as the row image of an insert
+		or an update, is compressed before it is written to the log. The
+		data is written uncompressed if compression doesn't make it
+		smaller. A value of 0 (the default) disables the compression.
+
+        Undocumented.
+	 */
+	public static final String LOG_COMPRESSION_THRESHOLD =
+        "derby.storage.logCompressionThreshold";
+
+	/**
+		Property name for enabling snapshot reads of heap tables. When
+		set to true, heaps keep the versions of the rows changed by
+		transactions in memory, and read only scans of heaps at the read
+		committed isolation level read a snapshot of the committed rows
+		instead of locking them. The default is false.
+
+        Undocumented.
+	 */
+	public static final String SNAPSHOT_ISOLATION =
+        "derby.storage.snapshotIsolation";
+
+	/**
+		Property name for the most memory, in kilobytes, the versions of
+		the rows kept for snapshot reads may use. A transaction whose
+		versions would take more stops keeping them, and the snapshot
+		reads which could see its changes lock the rows they read instead.
+		The default is a tenth of the maximum heap size.
+
+        Undocumented.
+	 */
+	public static final String SNAPSHOT_MAX_MEMORY =
+        "derby.storage.snapshotMaxMemory";
 	
 	
 	/*
@@ -2816,6 +2816,70 @@ public class SystemProcedures  {
         } catch (StandardException se) { throw PublicAPI.wrapStandardException(se); }
     }
 
+    /**
+     * Set the lock escalation threshold of a table.
+     * <p>
+     * Will be called as SYSCS_UTIL.SYSCS_SET_LOCK_ESCALATION_THRESHOLD.
+     * Overrides derby.locks.escalationThreshold for the table. The override
+     * is kept in the database properties, and applies to the transactions
+     * which start after the caller commits, until the table is dropped,
+     * compressed or truncated.
+     *
+     * @param schemaName    The name of the schema holding the table, null
+     *                      for the current schema.
+     * @param tableName     The name of the table in that schema.
+     * @param threshold     The number of row locks a transaction may hold on
+     *                      the table before they are escalated to a table
+     *                      lock, or 0 to remove the override.
+     *
+     * @exception SQLException if a database error occurs
+     **/
+    public static void SYSCS_SET_LOCK_ESCALATION_THRESHOLD(
+    String  schemaName,
+    String  tableName,
+    int     threshold)
+        throws SQLException
+    {
+        String qualifiedName = basicSchemaTableValidation(schemaName, tableName);
+
+		LanguageConnectionContext lcc = ConnectionUtil.getCurrentLCC();
+		TransactionController     tc  = lcc.getTransactionExecute();
+
+		try {
+            SecurityUtil.authorize( Securable.SET_LOCK_ESCALATION_THRESHOLD );
+
+            Authorizer a = lcc.getAuthorizer();
+            a.authorize((Activation) null, Authorizer.PROPERTY_WRITE_OP);
+
+            if (threshold != 0 &&
+                threshold < Property.MIN_LOCKS_ESCALATION_THRESHOLD)
+            {
+                throw StandardException.newException(
+                    SQLState.LANG_INVALID_FUNCTION_ARGUMENT,
+                    Integer.toString(threshold),
+                    "SYSCS_SET_LOCK_ESCALATION_THRESHOLD");
+            }
+
+            if (schemaName == null)
+                schemaName = lcc.getCurrentSchemaName();
+
+            DataDictionary dd = lcc.getDataDictionary();
+            SchemaDescriptor sd = dd.getSchemaDescriptor(schemaName, tc, false);
+            TableDescriptor td = (sd == null) ?
+                null : dd.getTableDescriptor(tableName, sd, tc);
+
+            if (td == null ||
+                td.getTableType() != TableDescriptor.BASE_TABLE_TYPE)
+            {
+                throw StandardException.newException(
+                    SQLState.LANG_TABLE_NOT_FOUND, qualifiedName);
+            }
+
+            tc.setLockEscalationThreshold(
+                td.getHeapConglomerateId(), threshold);
+		} catch (StandardException se) {throw PublicAPI.wrapStandardException( se ); }
+    }
+
     /**
      * Helper routine which looks up the monitor.
      */
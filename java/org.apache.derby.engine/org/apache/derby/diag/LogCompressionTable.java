@@ -0,0 +1,215 @@
+/*
+
+   Derby - Class org.apache.derby.diag.LogCompressionTable
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.diag;
+
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.iapi.sql.conn.LanguageConnectionContext;
+import org.apache.derby.iapi.sql.conn.ConnectionUtil;
+import org.apache.derby.iapi.store.access.LogCompressionInfo;
+
+import org.apache.derby.vti.VTITemplate;
+import org.apache.derby.vti.VTICosting;
+import org.apache.derby.vti.VTIEnvironment;
+
+import org.apache.derby.iapi.sql.ResultColumnDescriptor;
+import org.apache.derby.impl.jdbc.EmbedResultSetMetaData;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+	LogCompressionTable is a virtual table that shows how much the
+	compression of log records has saved since the database was booted.
+	Log records are compressed when the derby.storage.logCompressionThreshold
+	property is set.
+
+	This virtual table can be invoked by calling it
+	directly
+	<PRE> select * from SYSCS_DIAG.LOG_COMPRESSION </PRE>
+
+	<P>The LogCompressionTable virtual table has one row with the following
+	columns:
+	<UL>
+	<LI>THRESHOLD int - not nullable. The size, in bytes, from which the
+	optional data of a log record, such as a row image, is compressed. 0 if
+	log records are not compressed.</LI>
+	<LI>COMPRESSED_RECORDS bigint - not nullable. The number of log records
+	written with compressed data.</LI>
+	<LI>INCOMPRESSIBLE_RECORDS bigint - not nullable. The number of log
+	records large enough to be compressed, which were written uncompressed
+	because compression didn't make them smaller.</LI>
+	<LI>DATA_BYTES bigint - not nullable. The size of the data of the
+	compressed log records before compression.</LI>
+	<LI>LOGGED_BYTES bigint - not nullable. The size the data of the
+	compressed log records took in the log.</LI>
+	<LI>SAVED_BYTES bigint - not nullable. The number of bytes compression
+	saved, DATA_BYTES - LOGGED_BYTES.</LI>
+	</UL>
+	<P>The table has no rows if the database is read only.
+*/
+public class LogCompressionTable extends VTITemplate implements VTICosting {
+
+	private LogCompressionInfo info;
+	private boolean initialized;
+
+	// the values of the row, read once so that they are consistent
+	private int threshold;
+	private long compressedRecords;
+	private long incompressibleRecords;
+	private long dataBytes;
+	private long loggedBytes;
+
+    public  LogCompressionTable()    throws StandardException
+    {
+        DiagUtil.checkAccess();
+    }
+
+	/**
+		@see java.sql.ResultSet#getMetaData
+	 */
+	public ResultSetMetaData getMetaData()
+	{
+		return metadata;
+	}
+
+	/**
+		@see java.sql.ResultSet#next
+		@exception SQLException if no transaction context can be found
+	 */
+	public boolean next() throws SQLException
+	{
+		if (initialized)
+		{
+			info = null;
+			return false;
+		}
+
+		LanguageConnectionContext lcc = ConnectionUtil.getCurrentLCC();
+		info = lcc.getTransactionExecute().
+			getAccessManager().getLogCompressionInfo();
+		initialized = true;
+
+		if (info == null)
+			return false;
+
+		threshold = info.getCompressionThreshold();
+		// read the byte counts before the record counts, so that the bytes
+		// of a counted record are not missing
+		dataBytes = info.getDataBytes();
+		loggedBytes = info.getLoggedBytes();
+		compressedRecords = info.getCompressedRecords();
+		incompressibleRecords = info.getIncompressibleRecords();
+		return true;
+	}
+
+	/**
+		@see java.sql.ResultSet#close
+	 */
+	public void close()
+	{
+		info = null;
+	}
+
+	/**
+		@see java.sql.ResultSet#getInt
+	 */
+	public int getInt(int columnNumber)
+	{
+		return threshold;
+	}
+
+	/**
+		@see java.sql.ResultSet#getLong
+	 */
+	public long getLong(int columnNumber)
+	{
+		switch (columnNumber)
+		{
+		case 1:
+			return threshold;
+		case 2:
+			return compressedRecords;
+		case 3:
+			return incompressibleRecords;
+		case 4:
+			return dataBytes;
+		case 5:
+			return loggedBytes;
+		case 6:
+			return dataBytes - loggedBytes;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+		All columns are not nullable.
+		@see java.sql.ResultSet#wasNull
+	 */
+	public boolean wasNull()
+	{
+		return false;
+	}
+
+	/**  VTI costing interface */
+
+	/**
+		@see VTICosting#getEstimatedRowCount
+	 */
+	public double getEstimatedRowCount(VTIEnvironment vtiEnvironment)
+	{
+		return 1;
+	}
+
+	/**
+		@see VTICosting#getEstimatedCostPerInstantiation
+	 */
+	public double getEstimatedCostPerInstantiation(VTIEnvironment vtiEnvironment)
+	{
+		return VTICosting.defaultEstimatedCost;
+	}
+
+	/**
+		@return false
+		@see VTICosting#supportsMultipleInstantiations
+	 */
+	public boolean supportsMultipleInstantiations(VTIEnvironment vtiEnvironment)
+	{
+		return false;
+	}
+
+	/*
+	** Metadata
+	*/
+	private static final ResultColumnDescriptor[] columnInfo = {
+		EmbedResultSetMetaData.getResultColumnDescriptor("THRESHOLD",              Types.INTEGER, false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("COMPRESSED_RECORDS",     Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("INCOMPRESSIBLE_RECORDS", Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("DATA_BYTES",             Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("LOGGED_BYTES",           Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("SAVED_BYTES",            Types.BIGINT,  false),
+	};
+
+    private static final ResultSetMetaData metadata =
+        new EmbedResultSetMetaData(columnInfo);
+}
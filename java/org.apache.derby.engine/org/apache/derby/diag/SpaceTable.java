@@ -90,6 +90,11 @@ import org.apache.derby.vti.VTIEnvironment;
 	<LI>ESTIMSPACESAVING bigint - not nullable.  The estimated space which 
     could possibly be saved by compressing the conglomerate, in bytes.</LI>
 	<LI>TABLEID char(36) - not nullable.  The UUID of the table.</LI>
+	<LI>TREEHEIGHT integer - nullable.  The number of levels of an index, 
+    null for a table.</LI>
+	<LI>AVGFANOUT integer - nullable.  The average number of children of the
+    branch pages of an index, null for a table or an index which has no
+    branch pages.</LI>
 	</UL>
 
 
@@ -320,7 +325,21 @@ public class SpaceTable extends VTITemplate implements VTICosting {
     */
     public int getInt(int columnNumber)
 	{
-		return spaceInfo.getPageSize();
+        int intval;
+
+		switch(columnNumber)
+		{
+    		case 9:
+			    intval = spaceInfo.getTreeHeight();
+                break;
+    		case 10:
+			    intval = spaceInfo.getAverageFanout();
+                break;
+		    default:
+			    intval = spaceInfo.getPageSize();
+		}
+		wasNull = (intval < 0);
+		return wasNull ? 0 : intval;
     }
 
 
@@ -373,6 +392,8 @@ public class SpaceTable extends VTITemplate implements VTICosting {
 		EmbedResultSetMetaData.getResultColumnDescriptor("PAGESIZE",          Types.INTEGER, false),
 		EmbedResultSetMetaData.getResultColumnDescriptor("ESTIMSPACESAVING",  Types.BIGINT, false),
 		EmbedResultSetMetaData.getResultColumnDescriptor("TABLEID",  Types.CHAR, false, 36),
+		EmbedResultSetMetaData.getResultColumnDescriptor("TREEHEIGHT",        Types.INTEGER, true),
+		EmbedResultSetMetaData.getResultColumnDescriptor("AVGFANOUT",         Types.INTEGER, true),
 	};
 	
     private static final ResultSetMetaData metadata =
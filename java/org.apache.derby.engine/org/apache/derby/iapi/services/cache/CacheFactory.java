@@ -25,6 +25,19 @@ package org.apache.derby.iapi.services.cache;
 	A factory for handing out caches.
 */
 public interface CacheFactory {
+
+	/**
+		Name of the default replacement policy, which uses the clock
+		algorithm.
+	*/
+	public static final String CLOCK_POLICY = "CLOCK";
+
+	/**
+		Name of a replacement policy which protects frequently used objects
+		from being evicted by large scans. It is modelled after the 2Q
+		algorithm.
+	*/
+	public static final String SCAN_RESISTANT_POLICY = "2Q";
 	
 	/**
 		Create a cache that uses the class represented by holderClass as
@@ -39,5 +52,29 @@ public interface CacheFactory {
 	
 	public CacheManager newCacheManager(CacheableFactory holderFactory, String name,
 										int initialSize, int maximumSize);
+
+	/**
+		Create a cache that uses the specified replacement policy to decide
+		which objects to evict when the cache is full. The replacement
+		policy may be split into a number of partitions that each manage
+		their share of the cache independently, so that threads that
+		insert objects into different partitions don't contend with each
+		other.
+
+		@param holderFactory The factory for the objects that are to be cached.
+		@param name			The name of the cache
+		@param initialSize	The initial capacity of the cache
+		@param maximumSize  The maximum number of objects the cache will hold
+		@param replacementPolicy The name of the replacement policy, for
+			example CLOCK_POLICY or SCAN_RESISTANT_POLICY
+		@param partitions	The requested number of partitions. The cache
+			may use fewer partitions if it is small.
+        @return a cache manager
+	*/
+
+	public CacheManager newCacheManager(CacheableFactory holderFactory, String name,
+										int initialSize, int maximumSize,
+										String replacementPolicy,
+										int partitions);
 }
 
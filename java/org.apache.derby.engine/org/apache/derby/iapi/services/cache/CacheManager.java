@@ -100,6 +100,28 @@ public interface CacheManager {
 	*/
 	public Cacheable findCached(Object key) throws StandardException;
 
+	/**
+        Read an object into the cache in anticipation of a future find().
+        <p>
+		If no object matching the key is in the cache, one is added in the
+		same way as by find(), and then released again right away, so the
+		caller does not have to call release(). If a matching object is
+		already in the cache, or is being added to it by another thread,
+		nothing is done.
+		<BR>
+		This is used for reading pages ahead of a scan. The cache keeps
+		track of whether a prefetched object is later used or evicted
+		without having been used.
+
+        @param key The object key
+		@return true if the object was added to the cache, false otherwise
+
+		@exception StandardException Standard Derby error policy.
+
+		@see Cacheable#setIdentity
+	*/
+	public boolean prefetch(Object key) throws StandardException;
+
 	/**
 		Create an object in the cache. The resulting object will match the key provided using the equals()
 		method, i.e. the return Cacheable will have getIdentifier.equals(key) true.
@@ -207,6 +229,21 @@ public interface CacheManager {
 	*/
 	public void clean(Matchable partialKey) throws StandardException;
 
+	/**
+		Clean the object with the given identity, if it is in the cache and
+		dirty. Unlike clean(Matchable) this does not look at the other
+		objects in the cache, so it is cheap enough to be called for many
+		single objects, for instance by a background writer that writes out
+		dirty pages in a particular order. Finding the object this way does
+		not count as a use of it.
+
+        @param key The object key
+		@exception StandardException Standard Derby error policy.
+
+		@see Cacheable#clean
+	*/
+	public void cleanCached(Object key) throws StandardException;
+
 	/**
 		Age as many objects as possible out of the cache.
 		This call is guaranteed not to block.
@@ -224,6 +224,14 @@ public class DynamicByteArrayOutputStream extends OutputStream {
 		used -= amountToShrinkBy;
 	}
 
+	/**
+		Throw away the bytes after the current position of the stream.
+	*/
+	public void discardRight() {
+
+		used = position;
+	}
+
 	/**
 		Expand the buffer by at least the number of bytes requested in minExtension.
 
@@ -1465,6 +1465,9 @@ public interface StoredFormatIds {
 
     public static final int ACCESS_B2I_V5_ID = 
             (MIN_ID_2 + 470);
+
+    public static final int ACCESS_B2I_V6_ID = 
+            (MIN_ID_2 + 478);
     /******************************************************************
     **
     ** PropertyConglomerate
@@ -1683,7 +1686,7 @@ public interface StoredFormatIds {
      * Make sure this is updated when a new module is added
      */
     public static final int MAX_ID_2 =
-            (MIN_ID_2 + 477);
+            (MIN_ID_2 + 478);
 
     // DO NOT USE 4 BYTE IDS ANYMORE
     static public final int MAX_ID_4 =
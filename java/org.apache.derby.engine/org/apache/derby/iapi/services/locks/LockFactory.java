@@ -235,7 +235,12 @@ public interface LockFactory extends PropertySetCallback {
 		550.
 		<BR>
 		Only one limit may be in place for a group at any time.
+		<BR>
+		The callback may also be called before the group size reaches the
+		limit, when the locks of all the compatibility spaces use more memory
+		than allowed by the lock memory limit.
 		@see Limit
+		@see #isLockMemoryExhausted
 
         @param compatibilitySpace A lock space
         @param group A group
@@ -253,6 +258,32 @@ public interface LockFactory extends PropertySetCallback {
 	*/
 	public void clearLimit(CompatibilitySpace compatibilitySpace, Object group);
 
+	/**
+		Check if the locks held in all the compatibility spaces use more
+		memory than allowed by the lock memory limit
+		(derby.locks.memoryLimit).
+
+        @return true if the lock memory limit is exceeded
+	*/
+	public boolean isLockMemoryExhausted();
+
+	/**
+		Register an MBean that allows users to monitor the lock manager and
+		the deadlocks it detects. The MBean is deregistered when the lock
+		factory is stopped, or by calling {@link #deregisterMBean()}.
+
+        @param dbName the unique name of the database the lock factory
+        belongs to
+		@exception StandardException if the MBean could not be registered
+	*/
+	public void registerMBean(String dbName) throws StandardException;
+
+	/**
+		Deregister the MBean that monitors the lock manager. If there is no
+		MBean, this is a no-op.
+	*/
+	public void deregisterMBean();
+
 	/**
 		Make a virtual lock table for diagnostics.
 
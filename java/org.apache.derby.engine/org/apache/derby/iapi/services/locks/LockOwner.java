@@ -72,4 +72,17 @@ public interface LockOwner {
      */
     public boolean nestsUnder( LockOwner other );
 
+    /**
+     * <p>
+     * Return an estimate of the work that would be lost if the owner was
+     * chosen as the victim of a deadlock. When a deadlock is found, the
+     * owner with the lowest cost in the deadlock cycle is picked as the
+     * victim. For a transaction, this is the number of bytes of log it has
+     * written, since they must be undone when it is aborted.
+     * </p>
+     *
+     * @return the cost of aborting the owner
+     */
+    public long getAbortCost();
+
 }
@@ -104,6 +104,23 @@ public interface NoPutResultSet extends ResultSet, RowLocationRetRowSource
 	 */
 	public ExecRow	getNextRowCore() throws StandardException;
 
+	/**
+	 * Return a batch of the next rows, as getNextRowCore() would return
+	 * them one at a time.  The rows are put in the array from position 0,
+	 * at most as many as the array holds, and may be fewer even if more
+	 * rows follow.  The rows stay valid until the next call to this
+	 * method or to getNextRowCore(), and are distinct objects within a
+	 * batch.  When the batch is returned, the current row of this result
+	 * set is its last row.
+	 *
+	 * @param batch	the array to put the rows in
+	 *
+	 * @exception StandardException thrown on failure.
+	 *
+	 * @return the number of rows in the batch, 0 when there are no more
+	 */
+	public int getNextRowBatchCore(ExecRow[] batch) throws StandardException;
+
 	/**
 	 * Return the point of attachment for this subquery.
 	 * (Only meaningful for Any and Once ResultSets, which can and will only
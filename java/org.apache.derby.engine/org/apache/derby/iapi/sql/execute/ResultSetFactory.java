@@ -508,6 +508,8 @@ public interface ResultSetFactory {
 											optimizer
 		@param optimizerEstimatedCost		Estimated total cost by optimizer
 		@param isRollup true if this is a GROUP BY ROLLUP()
+		@param useHashTable true if the groups are to be collected in a
+			hash table before they are sorted
 		@return the scalar aggregation operation as a result set.
 		@exception StandardException thrown when unable to create the
 			result set
@@ -521,7 +523,8 @@ public interface ResultSetFactory {
 		int resultSetNumber, 
 		double optimizerEstimatedRowCount,
 		double optimizerEstimatedCost,
-		boolean isRollup) 
+		boolean isRollup,
+		boolean useHashTable) 
 			throws StandardException;
 
 	/**
@@ -728,6 +731,12 @@ public interface ResultSetFactory {
 		@param loadFactor		The loadFactor for the HashTable.
 		@param maxCapacity		The maximum size for the HashTable.
 		@param hashKeyColumn	The 0-based column # for the hash key.
+		@param probeResultSetNumber	The resultSetNumber of the scan on the
+								outer side of the join which reads the probe
+								keys, -1 if there is none.
+		@param probeColumnsItem	A saved item for the 1-based columns of the
+								rows of that scan which hold the probe keys.
+								-1 if there is no such scan.
 		@param tableName		The full name of the table 
 		@param userSuppliedOptimizerOverrides		Overrides specified by the user on the sql
 		@param indexName		The name of the index, if one used to access table.
@@ -765,6 +774,8 @@ public interface ResultSetFactory {
 								float loadFactor,
 								int maxCapacity,
 								int hashKeyColumn,
+								int probeResultSetNumber,
+								int probeColumnsItem,
 								String tableName,
 								String userSuppliedOptimizerOverrides,
 								String indexName,
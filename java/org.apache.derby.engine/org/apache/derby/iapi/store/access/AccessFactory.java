@@ -182,6 +182,14 @@ public interface AccessFactory
      **/
 	public TransactionInfo[] getTransactionInfo();
 
+    /**
+     * Return statistics about the compression of log records.
+     *
+     * @return the statistics, or null if the database doesn't write a
+     *         log.
+     **/
+	public LogCompressionInfo getLogCompressionInfo();
+
 	/**
      * Start a global transaction.
      * <p>
@@ -37,6 +37,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties; 
 import java.util.NoSuchElementException;
 
@@ -128,6 +129,15 @@ a LocatedRow becomes a DataValueDescriptor[], where the last cell contains
 the RowLocation.
 </p>
 
+<p>
+The keys are divided into NUM_PARTITIONS partitions by their hash code.
+When the rows do not fit in memory any more, whole partitions are moved to
+disk, the biggest first, until the new row fits. The rows of a partition
+are then either all in memory or all on disk, so a key whose partition is
+still in memory is looked up without going to disk, even if it is not in
+the hash table at all.
+</p>
+
 **/
 
 public class BackingStoreHashtable
@@ -161,6 +171,23 @@ public class BackingStoreHashtable
     
     private DiskHashtable diskHashtable;
 
+    /**
+     * The number of partitions of the keys.
+     */
+    private final static int PARTITION_BITS = 4;
+    private final static int NUM_PARTITIONS = 1 << PARTITION_BITS;
+
+    /**
+     * The number of rows in memory of each partition, once rows have
+     * started to spill to disk.
+     */
+    private int[] partitionRowCounts;
+
+    /**
+     * The partitions whose rows are on disk.
+     */
+    private boolean[] spilledPartitions;
+
     /**************************************************************************
      * Constructors for This class:
      **************************************************************************
@@ -485,7 +512,7 @@ public class BackingStoreHashtable
 
         if (duplicate_value == null)
         {
-            doSpaceAccounting( hashValue, false );
+            doSpaceAccounting( key, hashValue, false );
         }
         else
         {
@@ -496,7 +523,7 @@ public class BackingStoreHashtable
                 // inserted a duplicate
                 if (duplicate_value instanceof RowList)
                 {
-                    doSpaceAccounting( hashValue, false );
+                    doSpaceAccounting( key, hashValue, false );
                     row_vec = (RowList) duplicate_value;
                 }
                 else
@@ -506,7 +533,7 @@ public class BackingStoreHashtable
 
                     // insert original row into vector
                     row_vec.add( duplicate_value );
-                    doSpaceAccounting( hashValue, true );
+                    doSpaceAccounting( key, hashValue, true );
                 }
 
                 // insert new row into list
@@ -520,10 +547,15 @@ public class BackingStoreHashtable
         }
     }
 
-    private void doSpaceAccounting(Object hashValue,
+    private void doSpaceAccounting(Object key,
+                                    Object hashValue,
                                     boolean firstDuplicate)
     {
         inmemory_rowcnt++;
+        if ( partitionRowCounts != null)
+        {
+            partitionRowCounts[ partitionOf( key) ]++;
+        }
         if ( max_inmemory_rowcnt <= 0)
         {
             max_inmemory_size -= getEstimatedMemUsage( hashValue );
@@ -536,6 +568,10 @@ public class BackingStoreHashtable
 
     /**
      * Determine whether a new row should be spilled to disk and, if so, do it.
+     * <p>
+     * A row goes to disk if its partition is on disk. Otherwise partitions
+     * are moved to disk, the biggest first, until the row fits in memory
+     * or its own partition has been moved.
      *
      * @param columnValues  Actual columns from source row.
      * @param rowLocation       Optional row location.
@@ -551,75 +587,180 @@ public class BackingStoreHashtable
          )
         throws StandardException
     {
-        // Once we have started spilling all new rows will go to disk, even if we have freed up some
-        // memory by moving duplicates to disk. This simplifies handling of duplicates and accounting.
+        Object key = null;
 
-        DataValueDescriptor[]   diskRow = null;
-        
-        if ( diskHashtable == null)
+        if ( diskHashtable != null)
         {
-            if ( max_inmemory_rowcnt > 0)
+            key = KeyHasher.buildHashKey( columnValues, key_column_numbers );
+            if ( spilledPartitions[ partitionOf( key) ])
             {
-                if ( inmemory_rowcnt < max_inmemory_rowcnt)
-                {
-                    return false; // Do not spill
-                }
+                diskHashtable.put( key, makeDiskRow( columnValues, rowLocation ) );
+                return true;
             }
-            else if
-                (
-                 max_inmemory_size >
-                 getEstimatedMemUsage
-                 (
-                  !includeRowLocations() ?
-                  columnValues : new LocatedRow( columnValues, rowLocation )
-                 )
-                )
+        }
+
+        while ( !fitsInMemory( columnValues, rowLocation ))
+        {
+            if ( diskHashtable == null)
             {
-                return false;
+                // Want to start spilling
+                diskHashtable = 
+                    new DiskHashtable(
+                           tc,
+                           makeDiskRow( columnValues, rowLocation ),
+                           (int[]) null, //TODO-COLLATION, set non default collation if necessary.
+                           key_column_numbers,
+                           remove_duplicates,
+                           keepAfterCommit);
+                countPartitions();
+                key = KeyHasher.buildHashKey( columnValues, key_column_numbers );
+            }
+
+            int partition = biggestPartitionInMemory();
+            spillPartition( partition );
+
+            if ( partition == partitionOf( key))
+            {
+                diskHashtable.put( key, makeDiskRow( columnValues, rowLocation ) );
+                return true;
             }
-            
-            // Want to start spilling
-            diskRow = makeDiskRow( columnValues, rowLocation );
- 
-            diskHashtable = 
-                new DiskHashtable(
-                       tc,
-                       diskRow,
-                       (int[]) null, //TODO-COLLATION, set non default collation if necessary.
-                       key_column_numbers,
-                       remove_duplicates,
-                       keepAfterCommit);
         }
-        Object key = KeyHasher.buildHashKey( columnValues, key_column_numbers );
-        Object duplicateValue = hash_table.get( key);
-        if ( duplicateValue != null)
+
+        return false;
+    } // end of spillToDisk
+
+    /**
+     * Check whether there is room in memory for a new row.
+     */
+    private boolean fitsInMemory
+        (
+         DataValueDescriptor[] columnValues,
+         RowLocation rowLocation
+         )
+    {
+        if ( max_inmemory_rowcnt > 0)
         {
-            if ( remove_duplicates)
-                return true; // a degenerate case of spilling
-            // If we are keeping duplicates then move all the duplicates from memory to disk
-            // This simplifies finding duplicates: they are either all in memory or all on disk.
-            if (duplicateValue instanceof List)
+            return inmemory_rowcnt < max_inmemory_rowcnt;
+        }
+
+        return max_inmemory_size >
+            getEstimatedMemUsage
+            (
+             !includeRowLocations() ?
+             columnValues : new LocatedRow( columnValues, rowLocation )
+            );
+    }
+
+    /**
+     * Get the partition of a key.
+     */
+    private static int partitionOf( Object key)
+    {
+        // mix all the bits of the hash code into the top ones, which the
+        // in-memory HashMap does not use for its buckets.
+        return ( key.hashCode() * 0x9E3779B9) >>> ( 32 - PARTITION_BITS);
+    }
+
+    /**
+     * Count the rows in memory of each partition, when rows start to spill.
+     */
+    private void countPartitions()
+    {
+        partitionRowCounts = new int[ NUM_PARTITIONS ];
+        spilledPartitions = new boolean[ NUM_PARTITIONS ];
+
+        for ( Map.Entry<Object,Object> entry : hash_table.entrySet())
+        {
+            Object value = entry.getValue();
+            partitionRowCounts[ partitionOf( entry.getKey()) ] +=
+                ( value instanceof List) ? ( (List) value).size() : 1;
+        }
+    }
+
+    /**
+     * Get the partition in memory with the most rows in memory.
+     */
+    private int biggestPartitionInMemory()
+    {
+        int biggest = -1;
+
+        for ( int i = 0; i < NUM_PARTITIONS; i++)
+        {
+            if ( !spilledPartitions[ i ] &&
+                 ( biggest < 0 ||
+                   partitionRowCounts[ i ] > partitionRowCounts[ biggest ]))
+            {
+                biggest = i;
+            }
+        }
+
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT( biggest >= 0, "no partition in memory");
+        }
+
+        return biggest;
+    }
+
+    /**
+     * Move the rows of a partition from memory to disk, and give back the
+     * memory they took.
+     *
+     * @exception  StandardException  Standard exception policy.
+     */
+    private void spillPartition( int partition)
+        throws StandardException
+    {
+        spilledPartitions[ partition ] = true;
+
+        Iterator<Map.Entry<Object,Object>> entries =
+            hash_table.entrySet().iterator();
+        while ( entries.hasNext())
+        {
+            Map.Entry<Object,Object> entry = entries.next();
+            Object key = entry.getKey();
+            if ( partitionOf( key) != partition)
+            {
+                continue;
+            }
+
+            Object value = entry.getValue();
+            if ( value instanceof List)
             {
-                List duplicateVec = (List) duplicateValue;
-                for( int i = duplicateVec.size() - 1; i >= 0; i--)
+                List rows = (List) value;
+                for ( int i = 0; i < rows.size(); i++)
+                {
+                    diskHashtable.put( key, makeDiskRow( rows.get( i ) ));
+                    freeSpace( rows.get( i ) );
+                }
+                if ( max_inmemory_rowcnt <= 0)
                 {
-                    diskHashtable.put
-                        ( key, makeDiskRow( duplicateVec.get( i ) ));
+                    max_inmemory_size += ARRAY_LIST_SIZE;
                 }
             }
             else
             {
-                diskHashtable.put( key, makeDiskRow( duplicateValue ) );
+                diskHashtable.put( key, makeDiskRow( value ));
+                freeSpace( value );
             }
-            hash_table.remove( key);
+            entries.remove();
         }
 
-        if ( diskRow == null )
-        { diskRow = makeDiskRow( columnValues, rowLocation ); }
-        
-        diskHashtable.put( key, diskRow );
-        return true;
-    } // end of spillToDisk
+        partitionRowCounts[ partition ] = 0;
+    }
+
+    /**
+     * Give back the space of a row which has been moved to disk. This is
+     * the inverse of doSpaceAccounting().
+     */
+    private void freeSpace( Object hashValue)
+    {
+        inmemory_rowcnt--;
+        if ( max_inmemory_rowcnt <= 0)
+        {
+            max_inmemory_size += getEstimatedMemUsage( hashValue );
+        }
+    }
 
     /**
      * <p>
@@ -914,7 +1055,8 @@ public class BackingStoreHashtable
 		throws StandardException
     {
         Object obj = hash_table.get(key);
-        if ( diskHashtable == null || obj != null)
+        if ( diskHashtable == null || obj != null ||
+             !spilledPartitions[ partitionOf( key) ])
         {
             return obj;
         }
@@ -966,7 +1108,8 @@ public class BackingStoreHashtable
 		throws StandardException
     {
         Object obj = hash_table.remove(key);
-        if ( obj != null || diskHashtable == null)
+        if ( obj != null || diskHashtable == null ||
+             !spilledPartitions[ partitionOf( key) ])
         {
             return obj;
         }
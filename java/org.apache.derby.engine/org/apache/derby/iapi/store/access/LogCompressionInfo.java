@@ -0,0 +1,47 @@
+/*
+
+   Derby - Class org.apache.derby.iapi.store.access.LogCompressionInfo
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.iapi.store.access;
+
+/**
+ * Statistics about the compression of log records since the database was
+ * booted, see the derby.storage.logCompressionThreshold property.
+ */
+public interface LogCompressionInfo
+{
+	/** Size from which the optional data of log records is compressed. */
+	int getCompressionThreshold();
+
+	/** Number of log records written with compressed optional data. */
+	long getCompressedRecords();
+
+	/**
+	 * Number of log records large enough to be compressed, which were
+	 * written uncompressed because compression didn't make them smaller.
+	 */
+	long getIncompressibleRecords();
+
+	/** Size of the optional data of the compressed records. */
+	long getDataBytes();
+
+	/** Size the optional data of the compressed records took in the log. */
+	long getLoggedBytes();
+}
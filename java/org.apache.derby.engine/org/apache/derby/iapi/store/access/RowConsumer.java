@@ -0,0 +1,51 @@
+/*
+
+   Derby - Class org.apache.derby.iapi.store.access.RowConsumer
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.iapi.store.access;
+
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+/**
+ * Takes the rows of a scan which runs in parallel, see
+ * TransactionController.scanHeapInParallel().
+ * <p>
+ * MT - each consumer is called by one thread at a time, but that is not
+ * the thread which started the scan, and does not have its contexts.
+ *
+ * @see TransactionController
+ */
+public interface RowConsumer
+{
+    /**
+     * Take the next row of the scan.
+     * <p>
+     * The row array, and the columns in it, are reused for the next row,
+     * so a consumer which keeps a value must clone it.
+     *
+     * @param row   The row, in the shape described by the template and
+     *              scan column list the scan was started with.
+     *
+     * @throws  StandardException  Standard exception policy.
+     */
+    public void consume(DataValueDescriptor[] row)
+        throws StandardException;
+}
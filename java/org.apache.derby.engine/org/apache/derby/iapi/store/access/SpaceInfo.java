@@ -53,4 +53,16 @@ public interface SpaceInfo
      **/
     public int getPageSize();
 
+    /**
+     * Get the number of levels of the tree, or -1 if the conglomerate is
+     * not a tree
+     **/
+    public int getTreeHeight();
+
+    /**
+     * Get the average number of children of the branch pages of the tree,
+     * or -1 if the conglomerate is not a tree or has no branch pages
+     **/
+    public int getAverageFanout();
+
 }
@@ -1359,6 +1359,24 @@ public interface TransactionController
 	void compressConglomerate(long conglomId)
 			throws StandardException;
 
+    /**
+     * Set the lock escalation threshold of a conglomerate.
+     * <p>
+     * Overrides derby.locks.escalationThreshold for the conglomerate: once
+     * a transaction holds this many row locks on it, they are escalated to
+     * a table lock. The override is stored in the database properties. Once
+     * this transaction commits, it applies to the transactions which start
+     * in the database, until the conglomerate is dropped.
+     * <p>
+     *
+     * @param conglomId Id of the conglomerate.
+     * @param threshold The new threshold, or 0 to remove the override.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	void setLockEscalationThreshold(long conglomId, int threshold)
+			throws StandardException;
+
 
     /**
      * Retrieve the maximum value row in an ordered conglomerate.
@@ -1421,6 +1439,65 @@ public interface TransactionController
 		DataValueDescriptor[]   fetchRow)
 			throws StandardException;
 
+    /**
+     * Return the number of threads which scanHeapInParallel() spreads a
+     * scan over, 1 if it is not supported.
+     * <p>
+     * The number is set by the derby.storage.scanThreads property.
+     *
+	 * @return The number of threads scanning a heap in parallel.
+     **/
+    int getParallelScanThreads();
+
+    /**
+     * Scan all the rows of a heap in parallel.
+     * <p>
+     * The pages of the heap are shared out among the threads of the
+     * store, which each give the rows they read to one of the consumers.
+     * The rows are given to the consumers in no particular order, and
+     * every consumer gets its rows from one thread at a time.  The call
+     * returns once all the rows have been given to the consumers.
+     * <p>
+     * The heap is locked in shared table mode while it is scanned, so
+     * that the threads can read the rows without locking them.  If that
+     * lock cannot be granted without waiting, the heap is not scanned and
+     * false is returned, so that the caller can scan it in the usual way.
+     * The table lock is released before returning from this call.  At
+     * ISOLATION_REPEATABLE_READ and ISOLATION_SERIALIZABLE the rows read
+     * would have to stay locked to the end of the transaction, so the heap
+     * is not scanned in parallel and false is returned.  Temporary
+     * conglomerates are not scanned in parallel either.
+     *
+	 * @param conglomId       The identifier of the heap to scan.
+     *
+     * @param isolation_level The isolation level to lock the heap at.
+     *
+	 * @param scanColumnList  A description of which columns to return from
+     *                        every row of the scan.  template, and
+     *                        scanColumnList work together to describe the
+     *                        row given to the consumers.
+     *
+     * @param template        A row of the right shape for the heap, which
+     *                        each thread makes its own rows from.
+     *
+     * @param consumers       The consumers to give the rows to, at most
+     *                        one for each thread.
+     *
+	 * @return true if the rows were scanned, false if the heap could not
+     *         be scanned in parallel.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     *
+     * @see RowConsumer
+     **/
+    boolean scanHeapInParallel(
+    long                    conglomId,
+    int                     isolation_level,
+    FormatableBitSet        scanColumnList,
+    DataValueDescriptor[]   template,
+    RowConsumer[]           consumers)
+        throws StandardException;
+
 
     /**
      * Return an open StoreCostController for the given conglomid.
@@ -25,6 +25,7 @@ import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.iapi.store.access.ConglomerateController;
 import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
 import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowConsumer;
 import org.apache.derby.iapi.store.access.RowLocationRetRowSource;
 import org.apache.derby.iapi.store.access.StoreCostController;
 import org.apache.derby.iapi.store.access.StaticCompiledOpenConglomInfo;
@@ -36,6 +37,7 @@ import org.apache.derby.iapi.store.raw.Transaction;
 
 import org.apache.derby.iapi.types.DataValueDescriptor;
 
+import org.apache.derby.iapi.services.daemon.DaemonService;
 import org.apache.derby.iapi.services.io.Storable;
 import org.apache.derby.iapi.services.io.FormatableBitSet;
 
@@ -155,6 +157,41 @@ public interface Conglomerate extends Storable, DataValueDescriptor
     DataValueDescriptor[]   fetchRow)
         throws StandardException;
 
+    /**
+     * Scan all the rows of the conglomerate in parallel.
+     * <p>
+     * The pages of the conglomerate are shared out among the daemons, which
+     * each give the rows they read to one of the consumers.  The rows are
+     * read without locks, so the caller must hold a lock which keeps
+     * writers out of the conglomerate until the call returns.
+     * <p>
+     * Note that all Conglomerates may not implement scanInParallel(),
+     * currently only the Heap conglomerate implements it.
+     *
+	 * @param xact_manager    The TransactionController under which this 
+     *                        operation takes place.
+     *
+     * @param daemons         The daemons to scan the conglomerate with.
+     *
+	 * @param scanColumnList  A description of which columns to return from 
+     *                        every row of the scan.
+     *
+     * @param template        A row of the right shape for the conglomerate.
+     *
+     * @param consumers       The consumers to give the rows to.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     *
+     * @see TransactionController#scanHeapInParallel
+     **/
+    void scanInParallel(
+    TransactionManager      xact_manager,
+    DaemonService[]         daemons,
+    FormatableBitSet        scanColumnList,
+    DataValueDescriptor[]   template,
+    RowConsumer[]           consumers)
+        throws StandardException;
+
 
     /**
      * Get the containerid of conglomerate.
@@ -436,6 +436,34 @@ public interface ContainerHandle
 	*/
 	public Page getNextPage(long prevNum) throws StandardException;
 
+	/**
+		Ask for pages of the container to be read into the page cache in the
+		background, because the caller expects to need them soon. This is
+		only a hint; the pages may or may not be read, and no page is
+		latched. Page numbers beyond the end of the container are ignored.
+
+		@param firstPageNumber the first page to read
+		@param count the number of pages to read, starting with
+		firstPageNumber
+
+		@return the number of pages that were accepted for reading, 0 if
+		prefetching is not enabled or the prefetcher is busy
+
+		@exception StandardException	Standard Derby error policy
+	*/
+	public int prefetchPages(long firstPageNumber, int count)
+		throws StandardException;
+
+	/**
+		Get the maximum number of pages a caller should ask to have
+		prefetched ahead of the page it is reading.
+
+		@return the maximum number of pages, 0 if prefetching is not enabled
+
+		@see ContainerHandle#prefetchPages
+	*/
+	public int getMaxPrefetchPages();
+
 
 	/**
 		Get a page for insert.  If RawStore thinks it knows where a potentially
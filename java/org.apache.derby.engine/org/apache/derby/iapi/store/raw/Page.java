@@ -1008,6 +1008,16 @@ public interface Page
 
 	public int nonDeletedRecordCount() throws StandardException;
 
+	/**
+		Return how full this page is, as the percentage of the space for 
+		records on the page which is in use.
+
+		<BR>
+		MT - latched
+	*/
+
+	public int getFillPercentage();
+
     /**
      * Is this page/deleted row a candidate for immediate reclaim space.
      * <p>
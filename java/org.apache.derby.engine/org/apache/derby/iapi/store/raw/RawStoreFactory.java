@@ -28,6 +28,7 @@ import org.apache.derby.iapi.services.locks.LockFactory;
 
 import org.apache.derby.iapi.services.property.PersistentSet;
 
+import org.apache.derby.iapi.store.access.LogCompressionInfo;
 import org.apache.derby.iapi.store.access.TransactionInfo;
 import org.apache.derby.iapi.store.raw.xact.TransactionFactory;
 import org.apache.derby.shared.common.error.StandardException;
@@ -111,6 +112,9 @@ public interface RawStoreFactory extends Corruptable {
     /** Derby Store Minor Version (10) **/
     public static final int DERBY_STORE_MINOR_VERSION_10   = 10;
 
+    /** Derby Store Minor Version (17) **/
+    public static final int DERBY_STORE_MINOR_VERSION_17   = 17;
+
     /** Derby 10 Store Major version */
     public static final int DERBY_STORE_MAJOR_VERSION_10   = 10;
 
@@ -149,6 +153,119 @@ public interface RawStoreFactory extends Corruptable {
     */
     public static final int PAGE_CACHE_SIZE_MAXIMUM = Integer.MAX_VALUE;
 
+    /** Property name for the replacement policy used by the page cache.
+        The value <code>CLOCK</code> (the default) selects the clock
+        algorithm. The value <code>2Q</code> selects a scan-resistant
+        policy which keeps large table scans from evicting frequently
+        used pages.
+    Equal to 'derby.storage.pageCacheReplacementPolicy'
+    */
+    public static final String PAGE_CACHE_REPLACEMENT_POLICY_PARAMETER =
+        "derby.storage.pageCacheReplacementPolicy";
+
+    /** Property name for the number of partitions in the page cache's
+        replacement policy. Each partition has its own clock and its own
+        share of the cache, so that many threads missing in the cache at
+        the same time don't all contend for a single clock.
+    Equal to 'derby.storage.pageCachePartitions'
+    */
+    public static final String PAGE_CACHE_PARTITIONS_PARAMETER =
+        "derby.storage.pageCachePartitions";
+
+    /**
+        Default value for PAGE_CACHE_PARTITIONS_PARAMETER (1).
+    */
+    public static final int PAGE_CACHE_PARTITIONS_DEFAULT = 1;
+
+    /**
+        Minimum number of page cache partitions (1).
+    */
+    public static final int PAGE_CACHE_PARTITIONS_MINIMUM = 1;
+
+    /**
+        Maximum number of page cache partitions (1024).
+    */
+    public static final int PAGE_CACHE_PARTITIONS_MAXIMUM = 1024;
+
+    /** Property name for the number of bytes of off-heap memory used to
+        hold clean pages evicted from the page cache. Pages are kept in
+        direct buffers outside the Java heap, so a large amount of memory
+        can be used for caching pages without making garbage collection
+        slower. A value of 0 (the default) disables the off-heap cache.
+    Equal to 'derby.storage.pageCacheOffHeapBytes'
+    */
+    public static final String PAGE_CACHE_OFF_HEAP_BYTES_PARAMETER =
+        "derby.storage.pageCacheOffHeapBytes";
+
+    /**
+        Default value for PAGE_CACHE_OFF_HEAP_BYTES_PARAMETER (0).
+    */
+    public static final long PAGE_CACHE_OFF_HEAP_BYTES_DEFAULT = 0L;
+
+    /** Property name for enabling memory-mapped reads of container files.
+        When set to <code>true</code>, container files are mapped into
+        memory in large chunks, and pages are copied out of the mappings
+        instead of being read with a system call each. This may speed up
+        read-mostly workloads that miss in the page cache often. Note that
+        some platforms don't allow a file to be deleted while it is mapped.
+    Equal to 'derby.storage.memoryMappedReads'
+    */
+    public static final String MEMORY_MAPPED_READS_PARAMETER =
+        "derby.storage.memoryMappedReads";
+
+    /** Property name for the maximum number of pages a sequential scan may
+        ask to have read into the page cache ahead of it. The pages are
+        read by a background thread, so that the scan doesn't have to wait
+        for each read. The number of pages read ahead starts small and
+        grows as long as the scan keeps reading pages in order. A value of
+        0 (the default) disables read-ahead.
+    Equal to 'derby.storage.prefetchMaxPages'
+    */
+    public static final String PREFETCH_MAX_PAGES_PARAMETER =
+        "derby.storage.prefetchMaxPages";
+
+    /**
+        Default value for PREFETCH_MAX_PAGES_PARAMETER (0).
+    */
+    public static final int PREFETCH_MAX_PAGES_DEFAULT = 0;
+
+    /**
+        Minimum value for PREFETCH_MAX_PAGES_PARAMETER (0).
+    */
+    public static final int PREFETCH_MAX_PAGES_MINIMUM = 0;
+
+    /**
+        Maximum value for PREFETCH_MAX_PAGES_PARAMETER (1024).
+    */
+    public static final int PREFETCH_MAX_PAGES_MAXIMUM = 1024;
+
+    /** Property name for the number of background threads which write
+        dirty pages in the page cache to disk between checkpoints, oldest
+        change first. When this is greater than 0, the checkpoints that are
+        started because enough log has been written are incremental: they
+        don't write out the whole page cache, the redo low water mark is
+        instead the oldest change that has not been written yet. A value of
+        0 (the default) disables the background writers.
+    Equal to 'derby.storage.pageWriterThreads'
+    */
+    public static final String PAGE_WRITER_THREADS_PARAMETER =
+        "derby.storage.pageWriterThreads";
+
+    /**
+        Default value for PAGE_WRITER_THREADS_PARAMETER (0).
+    */
+    public static final int PAGE_WRITER_THREADS_DEFAULT = 0;
+
+    /**
+        Minimum value for PAGE_WRITER_THREADS_PARAMETER (0).
+    */
+    public static final int PAGE_WRITER_THREADS_MINIMUM = 0;
+
+    /**
+        Maximum value for PAGE_WRITER_THREADS_PARAMETER (16).
+    */
+    public static final int PAGE_WRITER_THREADS_MAXIMUM = 16;
+
 
     /** Property name for the number of open files to maintain associated with
         the page cache.  Internally this is referred to as the "ContainerCache".
@@ -771,6 +888,25 @@ public interface RawStoreFactory extends Corruptable {
      */
     public TransactionInfo[] getTransactionInfo();
 
+    /**
+     * Set the number of row locks a transaction may hold on a container
+     * before they are escalated to a container lock, overriding
+     * derby.locks.escalationThreshold for that container. The override
+     * applies to the transactions of all the users of the raw store, from
+     * their next transaction on, until it is shut down. The access layer
+     * keeps the overrides in the database properties, and sets them again
+     * when it boots.
+     *
+     * @param containerId   the id of the container
+     * @param threshold     the new threshold, or 0 to remove the override
+     */
+    public void setLockEscalationThreshold(long containerId, int threshold);
+
+    /**
+      @see org.apache.derby.iapi.store.access.AccessFactory#getLogCompressionInfo
+     */
+    public LogCompressionInfo getLogCompressionInfo();
+
     /**
      * Start the replication master role for this database
      * @param dbmaster The master database that is being replicated.
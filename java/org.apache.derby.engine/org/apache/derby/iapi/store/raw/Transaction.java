@@ -24,6 +24,7 @@ package org.apache.derby.iapi.store.raw;
 import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.iapi.services.daemon.Serviceable;
 import org.apache.derby.iapi.services.locks.CompatibilitySpace;
+import org.apache.derby.iapi.services.monitor.DerbyObserver;
 import org.apache.derby.iapi.store.raw.log.LogInstant;
 import org.apache.derby.iapi.store.access.FileResource;
 import org.apache.derby.iapi.store.access.RowSource;
@@ -507,6 +508,29 @@ public interface Transaction {
 	*/
 	public void addPostTerminationWork(Serviceable work);
 
+	/**
+		Add an observer which is notified just before this transaction
+		commits or aborts, while it still holds its locks, and when it rolls
+		back to a savepoint. The argument passed to the update() method of
+		the observer is one of the values defined in RawTransaction, such
+		as RawTransaction.COMMIT.
+		<P>
+		An observer must remove itself with deleteObserver() when it is
+		notified of the commit or abort of the transaction.
+
+		@param observer the observer to add
+
+		@see org.apache.derby.iapi.store.raw.xact.RawTransaction
+	*/
+	public void addObserver(DerbyObserver observer);
+
+	/**
+		Remove an observer added by addObserver().
+
+		@param observer the observer to remove
+	*/
+	public void deleteObserver(DerbyObserver observer);
+
     /**
      * Reveals whether the transaction has ever read or written data.
      *
@@ -187,6 +187,39 @@ public interface DataFactory extends Corruptable {
 
 	public void checkpoint() throws StandardException;
 
+	/**
+		Tell whether background page writers keep the page cache clean, so
+		that checkpoints may be incremental.
+
+		@return true if incrementalCheckpoint() may be used instead of
+		checkpoint()
+
+		@see #incrementalCheckpoint
+	*/
+	public boolean isIncrementalCheckpointEnabled();
+
+	/**
+		Make the pages written so far durable without writing out all the
+		dirty pages in the page cache. Pages whose changes are not known to
+		be redoable from the log are written. All the containers are synced.
+
+		@return the oldest log instant that may be needed to redo the changes
+		to pages which are still dirty, or null if there are none
+
+		@exception StandardException Standard Derby Error policy
+	*/
+	public LogInstant incrementalCheckpoint() throws StandardException;
+
+	/**
+		Ask the background page writers to write out the dirty pages which
+		were changed before the given log instant. The pages are written
+		asynchronously.
+
+		@param olderThan write the pages whose oldest unwritten change is
+		older than this instant
+	*/
+	public void writeDirtyPages(LogInstant olderThan);
+
 	public void idle() throws StandardException;
 
 	/**
@@ -31,6 +31,7 @@ import org.apache.derby.iapi.store.raw.ScanHandle;
 import org.apache.derby.iapi.store.raw.xact.TransactionFactory;
 import org.apache.derby.io.StorageFile;
 import org.apache.derby.iapi.store.access.DatabaseInstant;
+import org.apache.derby.iapi.store.access.LogCompressionInfo;
 import org.apache.derby.shared.common.reference.Property;
 import java.io.File;
 
@@ -412,5 +413,13 @@ public interface LogFactory extends Corruptable {
      */
     public void stopReplicationMasterRole();
 
+    /**
+     * Get statistics about the compression of log records.
+     *
+     * @return the statistics, or null if this log factory doesn't write
+     *         log records
+     */
+    public LogCompressionInfo getLogCompressionInfo();
+
 }
 
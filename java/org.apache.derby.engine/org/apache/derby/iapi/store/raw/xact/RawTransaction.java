@@ -174,6 +174,13 @@ public abstract class RawTransaction extends DerbyObservable implements Transact
 	*/
 	abstract public LogInstant getLastLogInstant();
 
+	/**
+		Account for a log record written by this transaction.
+
+		@param length the length of the log record, in bytes
+	*/
+	abstract public void addLogBytes(int length);
+
 
 	/**
 		Check to see if a logical operation is allowed by this transaction, 
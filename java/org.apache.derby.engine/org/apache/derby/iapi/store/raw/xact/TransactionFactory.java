@@ -210,6 +210,22 @@ public interface TransactionFactory extends Corruptable {
 	*/
 	public RawTransaction startInternalTransaction(RawStoreFactory rsf, ContextManager contextMgr) throws StandardException;
 
+	/**
+		Start a new transaction for a thread which helps recovery redo, see
+		RawTransaction#recoveryTransaction. This method will push a
+		transaction context onto the given context manager, which must be the
+		current context manager.
+		<P>
+		The transaction is not added to the transaction table, and its id
+		is never used by a transaction in the log, so that recovery cannot
+		mistake it for a transaction found in the log. It must only be used
+		to redo log records of other transactions, and must be committed
+		(it never writes any log) and closed when redo ends.
+
+		@exception StandardException Standard Derby error policy.
+	*/
+	public RawTransaction startRedoTransaction(RawStoreFactory rsf, ContextManager contextMgr) throws StandardException;
+
 
 	/**
 		Find a transaction using a transactionId and make the passed in
@@ -321,6 +337,11 @@ public interface TransactionFactory extends Corruptable {
 	 */
 	public TransactionInfo[] getTransactionInfo();
 
+	/**
+	  @see RawStoreFactory#setLockEscalationThreshold
+	 */
+	public void setLockEscalationThreshold(long containerId, int threshold);
+
 
 	/**
 	 * Checks if there any backup blocking operations are in progress and 
@@ -0,0 +1,120 @@
+/*
+
+   Derby - Class org.apache.derby.iapi.types.NormalizedKey
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.iapi.types;
+
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.iapi.services.io.StoredFormatIds;
+
+/**
+	Normalized keys of data values, used by the sorter to order rows
+	on primitive longs and only compare the values themselves when
+	the keys are equal.
+	<P>
+	The normalized key of a value is a long such that if one value
+	compares less than another, its key is less than or equal to the
+	key of the other value.  Keys which differ order the values they
+	were made from, equal keys say nothing.  Numbers, dates and times
+	have a key which is their value, a TIMESTAMP leaves its nanoseconds
+	out, and a CHAR or VARCHAR under UCS_BASIC uses its first four
+	characters, padded with blanks the way strings are compared.
+	<P>
+	Only non-null values have a key, the caller decides where nulls go.
+ */
+public final class NormalizedKey
+{
+	/** The number of characters in the key of a string. */
+	private static final int KEY_CHARS = 4;
+
+	private NormalizedKey()
+	{
+	}
+
+	/**
+		Return whether the values of the type of a template have
+		normalized keys.  Strings under a territory based collation
+		do not, nor do the long and large object types.
+	 */
+	public static boolean isNormalizable(DataValueDescriptor template)
+	{
+		Class<?> c = template.getClass();
+
+		return c == SQLSmallint.class ||
+			c == SQLInteger.class ||
+			c == SQLLongint.class ||
+			c == SQLDate.class ||
+			c == SQLTime.class ||
+			c == SQLTimestamp.class ||
+			c == SQLChar.class ||
+			c == SQLVarchar.class;
+	}
+
+	/**
+		Return the normalized key of a non-null value of a type for
+		which isNormalizable() is true.
+
+		@exception StandardException thrown on error
+	 */
+	public static long normalize(DataValueDescriptor value)
+		throws StandardException
+	{
+		switch (value.getTypeFormatId())
+		{
+		case StoredFormatIds.SQL_SMALLINT_ID:
+		case StoredFormatIds.SQL_INTEGER_ID:
+		case StoredFormatIds.SQL_LONGINT_ID:
+			return value.getLong();
+
+		case StoredFormatIds.SQL_DATE_ID:
+			return ((SQLDate) value).getEncodedDate();
+
+		case StoredFormatIds.SQL_TIME_ID:
+			return ((SQLTime) value).getEncodedTime();
+
+		case StoredFormatIds.SQL_TIMESTAMP_ID:
+			// The date in the high half, the time as an unsigned
+			// number that orders like the signed one in the low half.
+			SQLTimestamp ts = (SQLTimestamp) value;
+			return ((long) ts.getEncodedDate() << 32) |
+				((ts.getEncodedTime() ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+
+		default:
+			return normalizeString((SQLChar) value);
+		}
+	}
+
+	/**
+		The first characters of a string as an unsigned number, with
+		the sign bit flipped so that it orders as a signed long.
+	 */
+	private static long normalizeString(SQLChar value)
+		throws StandardException
+	{
+		char[] chars = value.getCharArray();
+		int length = value.getLength();
+
+		long key = 0;
+		for (int i = 0; i < KEY_CHARS; i++)
+			key = (key << 16) | (i < length ? chars[i] : ' ');
+
+		return key ^ Long.MIN_VALUE;
+	}
+}
@@ -175,6 +175,16 @@ public final class SQLTimestamp extends DataType
 		return 12;
 	}
 
+    int getEncodedDate()
+    {
+        return encodedDate;
+    }
+
+    int getEncodedTime()
+    {
+        return encodedTime;
+    }
+
 	/* this is for DataType's error generator */
 	public String getTypeName()
 	{
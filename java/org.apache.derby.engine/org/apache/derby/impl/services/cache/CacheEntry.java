@@ -107,6 +107,12 @@ final class CacheEntry {
      */
     private ReplacementPolicy.Callback callback;
 
+    /**
+     * Tells whether the cached object was read into the cache by {@code
+     * ConcurrentCache.prefetch()} and has not been accessed since.
+     */
+    private boolean prefetched;
+
     /**
      * Block until the current thread is granted exclusive access to the entry.
      */
@@ -293,4 +299,32 @@ final class CacheEntry {
         }
         cacheable = null;
     }
+
+    /**
+     * Mark whether the cached object was read into the cache ahead of use
+     * and has not been accessed yet.
+     *
+     * @param prefetched {@code true} if the object was prefetched and has
+     * not been accessed
+     */
+    void setPrefetched(boolean prefetched) {
+        if (SanityManager.DEBUG) {
+            SanityManager.ASSERT(mutex.isHeldByCurrentThread());
+        }
+        this.prefetched = prefetched;
+    }
+
+    /**
+     * Check whether the cached object was read into the cache ahead of use
+     * and has not been accessed yet.
+     *
+     * @return {@code true} if the object was prefetched and has not been
+     * accessed
+     */
+    boolean isPrefetched() {
+        if (SanityManager.DEBUG) {
+            SanityManager.ASSERT(mutex.isHeldByCurrentThread());
+        }
+        return prefetched;
+    }
 }
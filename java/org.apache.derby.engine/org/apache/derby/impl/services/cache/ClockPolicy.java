@@ -24,6 +24,7 @@ package org.apache.derby.impl.services.cache;
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.iapi.services.cache.Cacheable;
 import org.apache.derby.shared.common.sanity.SanityManager;
@@ -67,6 +68,27 @@ import org.apache.derby.shared.common.sanity.SanityManager;
  * clock structure or on a <code>Holder</code> object. The threads are however
  * allowed to obtain synchronization locks on the clock structure or on a
  * holder while they are locking one or more <code>CacheEntry</code> objects.
+ *
+ * <p>
+ *
+ * The policy can optionally run in a <em>scan-resistant</em> mode, inspired
+ * by the 2Q algorithm. In that mode the entries are divided into two
+ * segments: a probation segment and a protected segment. New entries are
+ * placed in the probation segment, unless a {@link FrequencySketch} that
+ * tracks recent insertions says that the same object has recently been
+ * brought into the cache before, in which case the entry goes directly into
+ * the protected segment. Entries in the probation segment are evicted when
+ * the clock hand reaches them, unless they have been accessed since they
+ * were inserted. An accessed entry is kept on probation for one more turn
+ * of the clock, and moves to the protected segment if it is accessed again
+ * during that turn. Accesses that follow right after the insertion, like
+ * a scan reading several rows from the same page, therefore don't protect
+ * an entry, and a large scan will only replace other probation entries.
+ * Entries in the protected segment are handled like in the normal
+ * clock algorithm, except that they are never evicted by a clock rotation.
+ * Instead, protected entries that have not been used recently are moved back
+ * to the probation segment when the protected segment grows beyond its
+ * share of the cache.
  */
 final class ClockPolicy implements ReplacementPolicy {
 
@@ -88,6 +110,24 @@ final class ClockPolicy implements ReplacementPolicy {
      */
     private static final float PART_OF_CLOCK_FOR_SHRINK = 0.1f;
 
+    /**
+     * How large part of the cache the protected segment is allowed to fill
+     * when running in scan-resistant mode.
+     */
+    private static final float PROTECTED_SHARE = 0.75f;
+
+    /**
+     * How many times an object must have been inserted into the cache
+     * recently before it is admitted directly into the protected segment.
+     */
+    private static final int PROTECTED_ADMISSION_FREQUENCY = 2;
+
+    /** Segment number for the probation segment (or the only segment). */
+    private static final int PROBATION = 0;
+
+    /** Segment number for the protected segment. */
+    private static final int PROTECTED = 1;
+
     /** The cache manager for which this replacement policy is used. */
     private final ConcurrentCache cacheManager;
 
@@ -121,17 +161,54 @@ final class ClockPolicy implements ReplacementPolicy {
      */
     private final AtomicBoolean isShrinking = new AtomicBoolean();
 
+    /**
+     * Sketch that tracks how often objects have recently been inserted into
+     * the cache. It is {@code null} unless the policy runs in scan-resistant
+     * mode.
+     */
+    private final FrequencySketch sketch;
+
+    /**
+     * The maximum number of entries in the protected segment before the
+     * clock starts moving entries back to the probation segment.
+     */
+    private final int maxProtected;
+
+    /** The number of entries currently in the protected segment. */
+    private final AtomicInteger protectedEntries = new AtomicInteger();
+
+    /**
+     * The number of cache hits in each segment. Only updated when the cache
+     * manager collects access counts.
+     */
+    private final AtomicLong[] segmentHits;
+
     /**
      * Create a new <code>ClockPolicy</code> instance.
      *
      * @param cacheManager the cache manager that requests this policy
      * @param initialSize the initial capacity of the cache
      * @param maxSize the maximum size of the cache
+     * @param scanResistant whether the policy should divide the cache into
+     * a probation segment and a protected segment to prevent large scans
+     * from flushing out frequently used objects
      */
-    ClockPolicy(ConcurrentCache cacheManager, int initialSize, int maxSize) {
+    ClockPolicy(ConcurrentCache cacheManager, int initialSize, int maxSize,
+                boolean scanResistant) {
         this.cacheManager = cacheManager;
         this.maxSize = maxSize;
         clock = new ArrayList<Holder>(initialSize);
+        if (scanResistant) {
+            sketch = new FrequencySketch(maxSize);
+            maxProtected = (int) (maxSize * PROTECTED_SHARE);
+            segmentHits = new AtomicLong[] {
+                new AtomicLong(), new AtomicLong()
+            };
+        } else {
+            sketch = null;
+            maxProtected = 0;
+            segmentHits = new AtomicLong[] { new AtomicLong() };
+        }
     }
 
     @Override
@@ -141,15 +218,45 @@ final class ClockPolicy implements ReplacementPolicy {
         }
     }
 
+    @Override
+    public long[] getSegmentHitCounts() {
+        long[] counts = new long[segmentHits.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = segmentHits[i].get();
+        }
+        return counts;
+    }
+
+    /**
+     * Decide which segment a new entry should be placed in. In scan-resistant
+     * mode, an object goes to the protected segment if it has recently been
+     * inserted into the cache a number of times, otherwise to the probation
+     * segment. When not in scan-resistant mode, all entries are unprotected.
+     *
+     * @param key the identity of the object being inserted
+     * @return {@code true} if the entry should be protected
+     */
+    private boolean admitAsProtected(Object key) {
+        if (sketch == null) {
+            return false;
+        }
+        sketch.increment(key);
+        return sketch.frequency(key) >= PROTECTED_ADMISSION_FREQUENCY;
+    }
+
     /**
      * Insert an entry into the cache. If the maximum size is exceeded, evict a
      * <em>not recently used</em> object from the cache. If there are no
      * entries available for reuse, increase the size of the cache.
      *
+     * @param key the identity of the object being inserted
      * @param entry the entry to insert (must be locked)
      * @exception StandardException if an error occurs when inserting the entry
      */
-    public void insertEntry(CacheEntry entry) throws StandardException {
+    public void insertEntry(Object key, CacheEntry entry)
+            throws StandardException {
+
+        final boolean isProtected = admitAsProtected(key);
 
         final int size;
         synchronized (clock) {
@@ -158,7 +265,9 @@ final class ClockPolicy implements ReplacementPolicy {
                 if (freeEntries.get() == 0) {
                     // We have not reached the maximum size yet, and there's no
                     // free entry to reuse. Make room by growing.
-                    clock.add(new Holder(entry));
+                    Holder h = new Holder(entry);
+                    clock.add(h);
+                    h.admit(isProtected);
                     return;
                 }
             }
@@ -184,10 +293,13 @@ final class ClockPolicy implements ReplacementPolicy {
 
         if (h == null) {
             // didn't find a victim, so we need to grow
+            h = new Holder(entry);
             synchronized (clock) {
-                clock.add(new Holder(entry));
+                clock.add(h);
             }
         }
+
+        h.admit(isProtected);
     }
 
     /**
@@ -206,6 +318,31 @@ final class ClockPolicy implements ReplacementPolicy {
          */
         boolean recentlyUsed;
 
+        /**
+         * Flag indicating whether this entry is in the protected segment.
+         * Always {@code false} unless the policy is scan-resistant. Should
+         * only be accessed/modified when the current thread has locked the
+         * <code>CacheEntry</code> object stored in the <code>entry</code>
+         * field.
+         */
+        boolean isProtected;
+
+        /**
+         * Flag indicating that this entry is on probation and that the clock
+         * hand has passed it once without evicting it, either because it had
+         * been accessed or because it was moved out of the protected segment.
+         * An access to such an entry moves it to the protected segment. Same
+         * locking rules as for {@code isProtected}.
+         */
+        private boolean secondChance;
+
+        /**
+         * Flag indicating that the entry has just been inserted and that the
+         * next call to {@code access()} comes from the insertion rather than
+         * from a cache hit. Same locking rules as for {@code recentlyUsed}.
+         */
+        private boolean fresh;
+
         /**
          * Reference to the <code>CacheEntry</code> object held by this
          * object. The reference should only be accessed when the thread owns
@@ -237,12 +374,71 @@ final class ClockPolicy implements ReplacementPolicy {
             e.setCallback(this);
         }
 
+        /**
+         * Place a newly inserted entry in one of the segments. Caller must
+         * have locked the entry that was associated with this holder.
+         *
+         * @param prot whether the entry should go into the protected segment
+         */
+        void admit(boolean prot) {
+            if (SanityManager.DEBUG) {
+                SanityManager.ASSERT(!isProtected,
+                                     "Reused holder is still protected");
+            }
+            if (prot) {
+                protectedEntries.incrementAndGet();
+            }
+            isProtected = prot;
+            secondChance = false;
+            fresh = true;
+        }
+
+        /**
+         * Move this entry out of the protected segment. Caller must have
+         * locked <code>entry</code>.
+         */
+        void unprotect() {
+            if (isProtected) {
+                isProtected = false;
+                secondChance = true;
+                protectedEntries.decrementAndGet();
+            }
+        }
+
+        /**
+         * Keep this probation entry for one more turn of the clock. Caller
+         * must have locked <code>entry</code>.
+         */
+        void giveSecondChance() {
+            recentlyUsed = false;
+            secondChance = true;
+        }
+
         /**
          * Mark this entry as recently used. Caller must have locked
          * <code>entry</code>.
          */
         public void access() {
+            if (fresh) {
+                // This is the access made when the entry was inserted, so
+                // it's not a hit. In scan-resistant mode, only protected
+                // entries start out as recently used.
+                fresh = false;
+                recentlyUsed = (sketch == null) || isProtected;
+                return;
+            }
+            if (cacheManager.getCollectAccessCounts()) {
+                segmentHits[isProtected ? PROTECTED : PROBATION]
+                        .getAndIncrement();
+            }
             recentlyUsed = true;
+            if (secondChance) {
+                // Accessed again after the clock hand has passed it, so
+                // the entry is not just part of a scan.
+                secondChance = false;
+                isProtected = true;
+                protectedEntries.incrementAndGet();
+            }
         }
 
         /**
@@ -253,6 +449,7 @@ final class ClockPolicy implements ReplacementPolicy {
             freedCacheable = entry.getCacheable();
             entry = null;
             recentlyUsed = false;
+            unprotect();
             // let others know that a free entry is available
             int free = freeEntries.incrementAndGet();
             if (SanityManager.DEBUG) {
@@ -308,6 +505,7 @@ final class ClockPolicy implements ReplacementPolicy {
          * @param e the entry to associate this holder with
          */
         synchronized void switchEntry(CacheEntry e) {
+            unprotect();
             e.setCallback(this);
             e.setCacheable(entry.getCacheable());
             entry = e;
@@ -342,6 +540,7 @@ final class ClockPolicy implements ReplacementPolicy {
             if (SanityManager.DEBUG) {
                 SanityManager.ASSERT(!evicted, "Already evicted");
             }
+            unprotect();
             evicted = true;
             entry = null;
         }
@@ -535,6 +734,20 @@ final class ClockPolicy implements ReplacementPolicy {
             SanityManager.ASSERT(!h.isEvicted(), "Holder is evicted");
         }
 
+        if (sketch != null && !h.isProtected) {
+            // In scan-resistant mode, an entry on probation that has been
+            // used since it was inserted is kept for one more turn, and is
+            // protected if it is used again before the hand comes back.
+            // Other entries on probation can be evicted.
+            if (h.recentlyUsed) {
+                if (clearRecentlyUsedFlag) {
+                    h.giveSecondChance();
+                }
+                return false;
+            }
+            return true;
+        }
+
         if (h.recentlyUsed) {
             // The object has been used recently, so it cannot be evicted.
             if (clearRecentlyUsedFlag) {
@@ -543,6 +756,17 @@ final class ClockPolicy implements ReplacementPolicy {
             return false;
         }
 
+        if (h.isProtected && clearRecentlyUsedFlag) {
+            // A protected entry is not evicted by the clock rotation, but if
+            // the protected segment has grown too large, an entry that
+            // hasn't been used since the last time the hand passed is put
+            // back on probation so that it can be evicted next time.
+            if (protectedEntries.get() > maxProtected) {
+                h.unprotect();
+            }
+            return false;
+        }
+
         return true;
     }
 
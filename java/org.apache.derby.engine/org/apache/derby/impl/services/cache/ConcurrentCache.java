@@ -30,6 +30,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.shared.common.reference.Module;
 import org.apache.derby.shared.common.reference.SQLState;
+import org.apache.derby.iapi.services.cache.CacheFactory;
 import org.apache.derby.iapi.services.cache.CacheManager;
 import org.apache.derby.iapi.services.cache.Cacheable;
 import org.apache.derby.iapi.services.cache.CacheableFactory;
@@ -68,6 +69,10 @@ final class ConcurrentCache implements CacheManager {
     private final int maxSize;
     /** Replacement policy to be used for this cache. */
     private final ReplacementPolicy replacementPolicy;
+    /** The name of the replacement policy used by this cache. */
+    private final String replacementPolicyName;
+    /** The number of partitions in the replacement policy. */
+    private final int partitionCount;
 
     // Fields used by the MBean that monitors this instance.
 
@@ -81,6 +86,12 @@ final class ConcurrentCache implements CacheManager {
     private final AtomicLong misses = new AtomicLong();
     /** The number of evictions from the cache. */
     private final AtomicLong evictions = new AtomicLong();
+    /** The number of objects read into the cache by {@code prefetch()}. */
+    private final AtomicLong prefetches = new AtomicLong();
+    /** The number of prefetched objects that were accessed. */
+    private final AtomicLong prefetchHits = new AtomicLong();
+    /** The number of prefetched objects removed without being accessed. */
+    private final AtomicLong prefetchWaste = new AtomicLong();
 
     /**
      * Flag that indicates whether this cache instance has been shut down. When
@@ -104,11 +115,28 @@ final class ConcurrentCache implements CacheManager {
      * @param name the name of the cache
      * @param initialSize the initial capacity of the cache
      * @param maxSize maximum number of elements in the cache
+     * @param policyName the name of the replacement policy, one of
+     * {@code CacheFactory.CLOCK_POLICY} and
+     * {@code CacheFactory.SCAN_RESISTANT_POLICY}
+     * @param partitions the number of independent partitions to divide the
+     * replacement policy into (may be reduced for small caches)
      */
     ConcurrentCache(CacheableFactory holderFactory, String name,
-                    int initialSize, int maxSize) {
+                    int initialSize, int maxSize, String policyName,
+                    int partitions) {
         cache = new ConcurrentHashMap<Object, CacheEntry>(initialSize);
-        replacementPolicy = new ClockPolicy(this, initialSize, maxSize);
+        boolean scanResistant =
+                CacheFactory.SCAN_RESISTANT_POLICY.equals(policyName);
+        partitionCount =
+                PartitionedClockPolicy.partitionsFor(partitions, maxSize);
+        if (partitionCount > 1) {
+            replacementPolicy = new PartitionedClockPolicy(
+                    this, initialSize, maxSize, scanResistant, partitionCount);
+        } else {
+            replacementPolicy = new ClockPolicy(
+                    this, initialSize, maxSize, scanResistant);
+        }
+        replacementPolicyName = policyName;
         this.holderFactory = holderFactory;
         this.name = name;
         this.maxSize = maxSize;
@@ -180,6 +208,7 @@ final class ConcurrentCache implements CacheManager {
      */
     private void removeEntry(Object key) {
         CacheEntry entry = cache.remove(key);
+        countPrefetchWaste(entry);
         Cacheable c = entry.getCacheable();
         if (c != null && c.getIdentity() != null) {
             // The cacheable should not have an identity when it has been
@@ -205,6 +234,7 @@ final class ConcurrentCache implements CacheManager {
      */
     void evictEntry(Object key) {
         CacheEntry entry = cache.remove(key);
+        countPrefetchWaste(entry);
         entry.getCacheable().clearIdentity();
         entry.setCacheable(null);
         countEviction();
@@ -226,7 +256,7 @@ final class ConcurrentCache implements CacheManager {
             throws StandardException {
 
         try {
-            replacementPolicy.insertEntry(entry);
+            replacementPolicy.insertEntry(key, entry);
         } catch (StandardException se) {
             // Failed to insert the entry into the replacement policy. Make
             // sure that it's also removed from the hash table.
@@ -299,6 +329,7 @@ final class ConcurrentCache implements CacheManager {
                 // return it.
                 entry.keep(true);
                 countHit();
+                countPrefetchHit(entry);
                 return item;
             } else {
                 // The object is not cached. Insert the entry into a free
@@ -362,6 +393,7 @@ final class ConcurrentCache implements CacheManager {
             Cacheable item = entry.getCacheable();
             if (item != null) {
                 countHit();
+                countPrefetchHit(entry);
                 entry.keep(true);
             } else {
                 countMiss();
@@ -372,6 +404,60 @@ final class ConcurrentCache implements CacheManager {
         }
     }
 
+    /**
+     * Read an object into the cache if it is not already there, without
+     * keeping it. The entry is marked as prefetched until it is accessed
+     * with <code>find()</code> or <code>findCached()</code>, so that we can
+     * count how many of the prefetched objects were actually used.
+     *
+     * @param key identity of the object to read
+     * @return <code>true</code> if the object was added to the cache,
+     * <code>false</code> if it was already there or the cache is stopped
+     */
+    public boolean prefetch(Object key) throws StandardException {
+
+        // Don't do anything if the object is already cached, or if another
+        // thread is about to add it. Also, don't wait for that thread.
+        if (stopped || cache.containsKey(key)) {
+            return false;
+        }
+
+        CacheEntry entry = getEntry(key);
+
+        Cacheable item;
+        try {
+            if (entry.getCacheable() != null) {
+                // Another thread added the object after we checked.
+                return false;
+            }
+            item = insertIntoFreeSlot(key, entry);
+            // Mark the entry before anyone else can see it, so that a
+            // thread waiting for the identity to be set counts a hit.
+            entry.setPrefetched(true);
+        } finally {
+            entry.unlock();
+        }
+
+        // Set the identity without holding the lock on the entry, like
+        // find() does.
+        Cacheable itemWithIdentity = null;
+        try {
+            itemWithIdentity = item.setIdentity(key);
+        } finally {
+            settingIdentityComplete(key, entry, itemWithIdentity);
+        }
+
+        if (itemWithIdentity == null) {
+            return false;
+        }
+
+        release(itemWithIdentity);
+        if (collectAccessCounts) {
+            prefetches.getAndIncrement();
+        }
+        return true;
+    }
+
     /**
      * Create an object in the cache. The object is kept until
      * <code>release()</code> is called.
@@ -497,6 +583,41 @@ final class ConcurrentCache implements CacheManager {
         cleanCache(partialKey);
     }
 
+    /**
+     * Clean the object with the given identity if it is in the cache and
+     * dirty. The entry is not marked as recently used.
+     *
+     * @param key the identity of the object to clean
+     */
+    public void cleanCached(Object key) throws StandardException {
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            return;
+        }
+
+        final Cacheable dirtyObject;
+        entry.lock();
+        try {
+            if (!entry.isValid()) {
+                // not in the cache (anymore), or still being read
+                return;
+            }
+            Cacheable c = entry.getCacheable();
+            if (!c.isDirty()) {
+                return;
+            }
+
+            // Keep the entry so that it isn't removed while it's cleaned,
+            // see cleanCache().
+            entry.keep(false);
+            dirtyObject = c;
+        } finally {
+            entry.unlock();
+        }
+
+        cleanAndUnkeepEntry(entry, dirtyObject);
+    }
+
     /**
      * Clean all dirty objects matching a partial key. If no key is specified,
      * clean all dirty objects in the cache.
@@ -762,6 +883,32 @@ final class ConcurrentCache implements CacheManager {
         }
     }
 
+    /**
+     * Count a hit on a prefetched object the first time it is accessed. The
+     * entry must be locked by the caller.
+     */
+    private void countPrefetchHit(CacheEntry entry) {
+        if (entry.isPrefetched()) {
+            entry.setPrefetched(false);
+            if (collectAccessCounts) {
+                prefetchHits.getAndIncrement();
+            }
+        }
+    }
+
+    /**
+     * Count a prefetched object being removed from the cache without having
+     * been accessed. The entry must be locked by the caller.
+     */
+    private void countPrefetchWaste(CacheEntry entry) {
+        if (entry.isPrefetched()) {
+            entry.setPrefetched(false);
+            if (collectAccessCounts) {
+                prefetchWaste.getAndIncrement();
+            }
+        }
+    }
+
     /** Enable or disable collection of hit/miss/eviction counts. */
     void setCollectAccessCounts(boolean collect) {
         collectAccessCounts = collect;
@@ -787,6 +934,21 @@ final class ConcurrentCache implements CacheManager {
         return evictions.get();
     }
 
+    /** Get the number of objects read into the cache by prefetch(). */
+    long getPrefetchCount() {
+        return prefetches.get();
+    }
+
+    /** Get the number of prefetched objects that were accessed. */
+    long getPrefetchHitCount() {
+        return prefetchHits.get();
+    }
+
+    /** Get the number of prefetched objects removed without being used. */
+    long getPrefetchWasteCount() {
+        return prefetchWaste.get();
+    }
+
     /** Get the maximum number of entries in the cache. */
     long getMaxEntries() {
         return maxSize;
@@ -801,6 +963,33 @@ final class ConcurrentCache implements CacheManager {
     long getUsedEntries() {
         return cache.size();
     }
+
+    /** Get the name of the replacement policy used by this cache. */
+    String getReplacementPolicyName() {
+        return replacementPolicyName;
+    }
+
+    /** Get the number of partitions in the replacement policy. */
+    int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Get the hit ratio of each segment in the replacement policy, that is,
+     * the number of hits in the segment divided by the total number of
+     * cache accesses.
+     */
+    double[] getSegmentHitRatios() {
+        long[] segmentHits = replacementPolicy.getSegmentHitCounts();
+        long accesses = hits.get() + misses.get();
+        double[] ratios = new double[segmentHits.length];
+        if (accesses > 0) {
+            for (int i = 0; i < ratios.length; i++) {
+                ratios[i] = (double) segmentHits[i] / accesses;
+            }
+        }
+        return ratios;
+    }
     
     /**
      * Privileged module lookup. Must be private so that user code
@@ -42,7 +42,37 @@ public class ConcurrentCacheFactory implements CacheFactory {
     public CacheManager newCacheManager(CacheableFactory holderFactory,
                                         String name,
                                         int initialSize, int maximumSize) {
+        return newCacheManager(holderFactory, name, initialSize, maximumSize,
+                               CLOCK_POLICY, 1);
+    }
+
+    /**
+     * Create a new <code>ConcurrentCache</code> instance that uses the
+     * specified replacement policy. Unknown policy names give a cache that
+     * uses the default clock policy. If more than one partition is
+     * requested, the replacement policy is split into independent
+     * partitions, each with its own clock, as long as the cache is large
+     * enough to give every partition a reasonable number of entries.
+     *
+     * @param holderFactory factory which creates <code>Cacheable</code>s
+     * @param name name of the cache
+     * @param initialSize initial capacity of the cache (number of objects)
+     * @param maximumSize maximum size of the cache (number of objects)
+     * @param replacementPolicy the name of the replacement policy
+     * @param partitions the number of partitions in the replacement policy
+     * @return a <code>ConcurrentCache</code> instance
+     */
+    public CacheManager newCacheManager(CacheableFactory holderFactory,
+                                        String name,
+                                        int initialSize, int maximumSize,
+                                        String replacementPolicy,
+                                        int partitions) {
+        String policy = CLOCK_POLICY;
+        if (SCAN_RESISTANT_POLICY.equalsIgnoreCase(replacementPolicy)) {
+            policy = SCAN_RESISTANT_POLICY;
+        }
         return new ConcurrentCache(holderFactory, name,
-                                   initialSize, maximumSize);
+                                   initialSize, maximumSize, policy,
+                                   partitions);
     }
 }
@@ -68,6 +68,24 @@ final class ConcurrentCacheMBeanImpl implements CacheManagerMBean {
         return cache.getEvictionCount();
     }
 
+    @Override
+    public long getPrefetchCount() {
+        checkPermission();
+        return cache.getPrefetchCount();
+    }
+
+    @Override
+    public long getPrefetchHitCount() {
+        checkPermission();
+        return cache.getPrefetchHitCount();
+    }
+
+    @Override
+    public long getPrefetchWasteCount() {
+        checkPermission();
+        return cache.getPrefetchWasteCount();
+    }
+
     @Override
     public long getMaxEntries() {
         checkPermission();
@@ -86,6 +104,24 @@ final class ConcurrentCacheMBeanImpl implements CacheManagerMBean {
         return cache.getUsedEntries();
     }
 
+    @Override
+    public String getReplacementPolicy() {
+        checkPermission();
+        return cache.getReplacementPolicyName();
+    }
+
+    @Override
+    public long getPartitionCount() {
+        checkPermission();
+        return cache.getPartitionCount();
+    }
+
+    @Override
+    public double[] getSegmentHitRatios() {
+        checkPermission();
+        return cache.getSegmentHitRatios();
+    }
+
     private static void checkPermission() {
         if (System.getSecurityManager() != null) {
             try {
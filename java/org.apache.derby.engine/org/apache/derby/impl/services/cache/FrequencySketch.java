@@ -0,0 +1,164 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.cache.FrequencySketch
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.cache;
+
+/**
+ * A compact, approximate frequency counter for cache keys. The sketch is a
+ * count-min sketch with four 4-bit counters per key, packed sixteen to a
+ * {@code long}. The counters are periodically halved so that the sketch
+ * reflects recent history rather than all accesses since the cache was
+ * created.
+ *
+ * <p>
+ *
+ * The sketch is not synchronized. Concurrent updates may occasionally be
+ * lost, which is acceptable since the counts are only used as a hint by the
+ * replacement policy.
+ */
+final class FrequencySketch {
+
+    /** The largest value a 4-bit counter can hold. */
+    private static final int MAX_COUNT = 15;
+
+    /** Seeds used to derive the four counter positions from a hash code. */
+    private static final int[] SEEDS = {
+        0x97cb3127, 0xb3816f6d, 0xc2b2ae35, 0x27d4eb2f
+    };
+
+    /**
+     * The maximum number of words in the table, so that a very large
+     * configured cache size doesn't make the sketch itself huge.
+     */
+    private static final int MAX_TABLE_SIZE = 1 << 22;
+
+    /** Mask that clears the top bit of every 4-bit counter in a word. */
+    private static final long HALVE_MASK = 0x7777777777777777L;
+
+    /** The packed counters. */
+    private final long[] table;
+
+    /** Mask used to map a hash value to an index in {@code table}. */
+    private final int tableMask;
+
+    /**
+     * The number of increments after which all counters are halved.
+     */
+    private final int sampleSize;
+
+    /** The number of increments since the counters were last halved. */
+    private int additions;
+
+    /**
+     * Create a sketch suitable for tracking the keys of a cache.
+     *
+     * @param maxSize the maximum number of objects in the cache
+     */
+    FrequencySketch(int maxSize) {
+        // The sketch sees up to sampleSize distinct keys between each time
+        // the counters are halved, many more than the cache can hold. Use
+        // four words per cache entry (rounded up to a power of two) to keep
+        // the overestimation caused by hash collisions low.
+        int size = MAX_TABLE_SIZE;
+        if (maxSize < MAX_TABLE_SIZE / 4) {
+            size = Integer.highestOneBit(Math.max(maxSize, 16) - 1) << 3;
+        }
+        table = new long[size];
+        tableMask = size - 1;
+        sampleSize = (maxSize > Integer.MAX_VALUE / 10) ?
+                Integer.MAX_VALUE : Math.max(maxSize, 16) * 10;
+    }
+
+    /**
+     * Record an occurrence of a key.
+     *
+     * @param key the key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(indexOf(hash, i), offsetOf(hash, i));
+        }
+        if (added && ++additions >= sampleSize) {
+            halve();
+        }
+    }
+
+    /**
+     * Get the estimated number of recent occurrences of a key.
+     *
+     * @param key the key
+     * @return the estimated frequency (between 0 and 15)
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long word = table[indexOf(hash, i)];
+            int count = (int) ((word >>> offsetOf(hash, i)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increment the 4-bit counter at the given position unless it has
+     * reached its maximum value.
+     *
+     * @return {@code true} if the counter was incremented
+     */
+    private boolean incrementAt(int index, int offset) {
+        long mask = 0xfL << offset;
+        long word = table[index];
+        if ((word & mask) != mask) {
+            table[index] = word + (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    /** Halve all the counters so that old occurrences fade away. */
+    private void halve() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALVE_MASK;
+        }
+        additions /= 2;
+    }
+
+    /** Get the index of the word holding the i'th counter for a hash. */
+    private int indexOf(int hash, int i) {
+        int h = (hash ^ SEEDS[i]) * SEEDS[i];
+        return (h ^ (h >>> 17)) & tableMask;
+    }
+
+    /** Get the bit offset within the word of the i'th counter for a hash. */
+    private static int offsetOf(int hash, int i) {
+        return (((hash >>> (i << 3)) & 3) << 2) + (i << 4);
+    }
+
+    /** Spread the bits of a hash code to protect against poor hashes. */
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.cache.PartitionedClockPolicy
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.cache;
+
+import org.apache.derby.shared.common.error.StandardException;
+
+/**
+ * Replacement policy which divides the cache into a number of independent
+ * partitions, each managed by its own {@code ClockPolicy} with its own clock
+ * hand and its own share of the maximum cache size. An entry is always
+ * placed in the partition selected by the hash code of its key.
+ *
+ * <p>
+ *
+ * With a single clock, all threads that insert entries into the cache
+ * synchronize on the same clock structure. When many threads miss in the
+ * cache at the same time, that synchronization becomes a bottleneck.
+ * Partitioning the clock lets inserts for keys in different partitions
+ * proceed in parallel, at the cost of the replacement decisions being made
+ * locally within each partition rather than for the cache as a whole.
+ */
+final class PartitionedClockPolicy implements ReplacementPolicy {
+
+    /**
+     * The smallest number of entries a partition may hold. If the maximum
+     * size of the cache is too small to give each partition at least this
+     * many entries, fewer partitions are used.
+     */
+    static final int MIN_PARTITION_SIZE = 64;
+
+    /** The clock policies managing each partition. */
+    private final ClockPolicy[] partitions;
+
+    /**
+     * Create a new {@code PartitionedClockPolicy} instance.
+     *
+     * @param cacheManager the cache manager that requests this policy
+     * @param initialSize the initial capacity of the cache
+     * @param maxSize the maximum size of the cache
+     * @param scanResistant whether each partition should use the
+     * scan-resistant variant of the clock policy
+     * @param partitionCount the number of partitions (must be at least 1)
+     */
+    PartitionedClockPolicy(ConcurrentCache cacheManager,
+                           int initialSize, int maxSize,
+                           boolean scanResistant, int partitionCount) {
+        partitions = new ClockPolicy[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            // Spread the remainder over the first partitions so that the
+            // sizes add up to the size of the whole cache.
+            int max = maxSize / partitionCount +
+                    (i < maxSize % partitionCount ? 1 : 0);
+            int initial = initialSize / partitionCount +
+                    (i < initialSize % partitionCount ? 1 : 0);
+            partitions[i] = new ClockPolicy(
+                    cacheManager, initial, max, scanResistant);
+        }
+    }
+
+    /**
+     * Get the number of partitions to use for a cache so that each
+     * partition gets at least {@link #MIN_PARTITION_SIZE} entries.
+     *
+     * @param requested the requested number of partitions
+     * @param maxSize the maximum size of the cache
+     * @return the number of partitions to use (at least 1)
+     */
+    static int partitionsFor(int requested, int maxSize) {
+        return Math.max(1, Math.min(requested, maxSize / MIN_PARTITION_SIZE));
+    }
+
+    /**
+     * Get the partition that holds the entry for the specified key.
+     *
+     * @param key the identity of a cached object
+     * @return the clock policy managing the key's partition
+     */
+    private ClockPolicy partitionFor(Object key) {
+        int h = key.hashCode();
+        // Mix the bits so that keys whose hash codes only differ in the
+        // high-order bits are spread over the partitions too.
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return partitions[(h & Integer.MAX_VALUE) % partitions.length];
+    }
+
+    @Override
+    public void insertEntry(Object key, CacheEntry entry)
+            throws StandardException {
+        partitionFor(key).insertEntry(key, entry);
+    }
+
+    @Override
+    public void doShrink() {
+        for (ClockPolicy partition : partitions) {
+            partition.doShrink();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (ClockPolicy partition : partitions) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     *
+     * The returned array holds the segments of the first partition,
+     * followed by the segments of the second partition, and so on.
+     */
+    @Override
+    public long[] getSegmentHitCounts() {
+        long[] first = partitions[0].getSegmentHitCounts();
+        long[] counts = new long[first.length * partitions.length];
+        System.arraycopy(first, 0, counts, 0, first.length);
+        for (int i = 1; i < partitions.length; i++) {
+            long[] c = partitions[i].getSegmentHitCounts();
+            System.arraycopy(c, 0, counts, i * first.length, c.length);
+        }
+        return counts;
+    }
+
+    /**
+     * Get the number of partitions.
+     *
+     * @return the number of partitions
+     */
+    int getPartitionCount() {
+        return partitions.length;
+    }
+}
@@ -41,13 +41,14 @@ interface ReplacementPolicy {
      * use to communicate back to the replacement policy events (for instance,
      * that it has been accessed or become invalid).
      *
+     * @param key the identity of the object that is being inserted
      * @param entry the entry to insert
      * @exception StandardException if an error occurs while inserting the
      * entry
      *
      * @see CacheEntry#setCallback(ReplacementPolicy.Callback)
      */
-    void insertEntry(CacheEntry entry) throws StandardException;
+    void insertEntry(Object key, CacheEntry entry) throws StandardException;
 
     /**
      * Try to shrink the cache if it has exceeded its maximum size. It is not
@@ -65,6 +66,16 @@ interface ReplacementPolicy {
      */
     int size();
 
+    /**
+     * Get the number of cache hits in each of the segments that the
+     * replacement policy divides the cache into. A policy that treats all
+     * entries alike has a single segment. Hits are only counted while
+     * collection of access counts is enabled in the cache manager.
+     *
+     * @return an array with one hit count per segment
+     */
+    long[] getSegmentHitCounts();
+
     /**
      * The interface for the callback objects that <code>ConcurrentCache</code>
      * uses to notify the replacement algorithm about events such as look-ups
@@ -37,8 +37,17 @@ import org.apache.derby.iapi.util.Matchable;
 import org.apache.derby.shared.common.reference.Property;
 
 import java.io.Serializable;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.derby.iapi.services.jmx.ManagementService;
+import org.apache.derby.iapi.services.monitor.ModuleControl;
+import org.apache.derby.iapi.services.monitor.Monitor;
+import org.apache.derby.mbeans.LockManagerMBean;
+import org.apache.derby.shared.common.reference.Module;
 import org.apache.derby.shared.common.reference.SQLState;
 import org.apache.derby.iapi.services.locks.LockOwner;
 
@@ -51,7 +60,7 @@ import org.apache.derby.iapi.services.locks.LockOwner;
  *
  * <BR> MT - Mutable - Container Object : Thread Aware
  */
-abstract class AbstractPool implements LockFactory
+abstract class AbstractPool implements LockFactory, ModuleControl
 {
 	/**
 		The complete set of locks in the system
@@ -61,6 +70,29 @@ abstract class AbstractPool implements LockFactory
 	*/
 	protected final LockTable lockTable;
 
+	/**
+		The memory used by the locks of all the compatibility spaces.
+
+		<BR>
+		MT - immutable - content dynamic : LockMemory is ThreadSafe
+	*/
+	private final LockMemory lockMemory;
+
+	/**
+		The background thread which looks for deadlocks among the waiters
+		in the lock table.
+
+		<BR>
+		MT - immutable - content dynamic : DeadlockDetector is ThreadSafe
+	*/
+	final DeadlockDetector deadlockDetector;
+
+	/** The number of deadlocks broken by aborting a victim. */
+	private final AtomicLong deadlocks = new AtomicLong();
+
+	/** The MBean which monitors the lock manager, if registered. */
+	private Object mbean;
+
 	/**
 		True if all deadlocks errors should be logged.
 	*/
@@ -68,6 +100,41 @@ abstract class AbstractPool implements LockFactory
 
 	protected AbstractPool() {
 		lockTable = createLockTable();
+		lockMemory = new LockMemory(getLockMemoryLimit());
+		deadlockDetector = new DeadlockDetector(lockTable);
+	}
+
+	/**
+	 * Get the amount of memory the locks of all the compatibility spaces
+	 * may use, from the derby.locks.memoryLimit property.
+	 *
+	 * @return the limit in bytes, or 0 if there is no limit
+	 */
+	private static long getLockMemoryLimit() {
+		int kb = PropertyUtil.getSystemInt(
+			Property.LOCKS_MEMORY_LIMIT, 0, Integer.MAX_VALUE, -1);
+		if (kb >= 0) {
+			return kb * 1024L;
+		}
+
+		// by default, a tenth of the heap
+		long maxMemory = Runtime.getRuntime().maxMemory();
+		return (maxMemory == Long.MAX_VALUE) ? 0 : maxMemory / 10;
+	}
+
+	/*
+	** Methods of ModuleControl
+	*/
+
+	public void boot(boolean create, Properties properties) {
+	}
+
+	/**
+	 * Stop the deadlock detector and deregister the MBean.
+	 */
+	public void stop() {
+		deadlockDetector.stop();
+		deregisterMBean();
 	}
 
 	/**
@@ -156,7 +223,7 @@ abstract class AbstractPool implements LockFactory
 	 * @return an object which represents a compatibility space
 	 */
 	public CompatibilitySpace createCompatibilitySpace(LockOwner owner) {
-		return new LockSpace(owner);
+		return new LockSpace(owner, lockMemory);
 	}
 
 	/**
@@ -342,6 +409,66 @@ abstract class AbstractPool implements LockFactory
 		((LockSpace) compatibilitySpace).clearLimit(group);
 	}
 
+	/**
+	 * Register an MBean which monitors the lock manager.
+	 *
+	 * @see LockFactory#registerMBean
+	 */
+	public synchronized void registerMBean(String dbName)
+		throws StandardException {
+		if (SanityManager.DEBUG) {
+			SanityManager.ASSERT(mbean == null, "registerMBean() called twice");
+		}
+
+		ManagementService managementService =
+			(ManagementService) getSystemModule(Module.JMX);
+
+		if (managementService != null) {
+			mbean = managementService.registerMBean(
+				new LockManagerMBeanImpl(this),
+				LockManagerMBean.class,
+				"type=LockManager,db=" +
+				managementService.quotePropertyValue(dbName));
+		}
+	}
+
+	/**
+	 * Deregister the MBean which monitors the lock manager, if registered.
+	 *
+	 * @see LockFactory#deregisterMBean
+	 */
+	public synchronized void deregisterMBean() {
+		if (mbean != null) {
+			ManagementService managementService =
+				(ManagementService) getSystemModule(Module.JMX);
+			if (managementService != null) {
+				managementService.unregisterMBean(mbean);
+			}
+			mbean = null;
+		}
+	}
+
+	/**
+	 * Count a deadlock broken by aborting a victim.
+	 */
+	void countDeadlock() {
+		deadlocks.incrementAndGet();
+	}
+
+	/**
+	 * Get the number of deadlocks broken by aborting a victim.
+	 */
+	long getDeadlockCount() {
+		return deadlocks.get();
+	}
+
+	/**
+		@see LockFactory#isLockMemoryExhausted
+	*/
+	public boolean isLockMemoryExhausted() {
+		return lockMemory.isExhausted();
+	}
+
     /**
      * Check if we should not wait for locks, given the specified timeout and
      * compatibility space. If the timeout is {@code C_LockFactory.NO_WAIT} or
@@ -387,6 +514,7 @@ abstract class AbstractPool implements LockFactory
 		getAndApply(dbOnly, p, Property.DEADLOCK_TIMEOUT);
 		getAndApply(dbOnly, p, Property.LOCKWAIT_TIMEOUT);
 		getAndApply(dbOnly, p, Property.DEADLOCK_MONITOR);
+		getAndApply(dbOnly, p, Property.DEADLOCK_DETECTION_INTERVAL);
 //EXCLUDE-START-lockdiag- 
         getAndApply(dbOnly, p, Property.DEADLOCK_TRACE);
 //EXCLUDE-END-lockdiag- 
@@ -421,6 +549,8 @@ abstract class AbstractPool implements LockFactory
 				getWaitValue((String) value,  Property.WAIT_TIMEOUT_DEFAULT);
 			else if (key.equals(Property.DEADLOCK_MONITOR))
 				PropertyUtil.booleanProperty(Property.DEADLOCK_MONITOR, value, false);
+			else if (key.equals(Property.DEADLOCK_DETECTION_INTERVAL))
+				getDetectionInterval((String) value);
             else if (key.equals(Property.DEADLOCK_TRACE))
                 PropertyUtil.booleanProperty(Property.DEADLOCK_TRACE, value, false);
 		}
@@ -444,6 +574,8 @@ abstract class AbstractPool implements LockFactory
 		else if (key.equals(Property.LOCKWAIT_TIMEOUT))
 			lockTable.setWaitTimeout(
 				getWaitValue(svalue,  Property.WAIT_TIMEOUT_DEFAULT));
+		else if (key.equals(Property.DEADLOCK_DETECTION_INTERVAL))
+			deadlockDetector.setInterval(getDetectionInterval(svalue));
 		else if (key.equals(Property.DEADLOCK_MONITOR)) {
 			deadlockMonitor = PropertyUtil.booleanProperty(Property.DEADLOCK_MONITOR, svalue, false) ?
 				StandardException.REPORT_ALWAYS : StandardException.REPORT_DEFAULT;
@@ -477,4 +609,29 @@ abstract class AbstractPool implements LockFactory
 
 		return wait;
 	}
+
+	private static int getDetectionInterval(String value) {
+
+		// the interval is defined in milliseconds, 0 disables the detector
+		return PropertyUtil.handleInt(value, 0, Integer.MAX_VALUE,
+			Property.DEADLOCK_DETECTION_INTERVAL_DEFAULT);
+	}
+
+    /**
+     * Privileged module lookup. Must be private so that user code
+     * can't call this entry point.
+     */
+    private static  Object getSystemModule( final String factoryInterface )
+    {
+        return AccessController.doPrivileged
+            (
+             new PrivilegedAction<Object>()
+             {
+                 public Object run()
+                 {
+                     return Monitor.getSystemModule( factoryInterface );
+                 }
+             }
+             );
+    }
 }
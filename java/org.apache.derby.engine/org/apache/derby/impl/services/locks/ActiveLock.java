@@ -57,6 +57,14 @@ public final class ActiveLock extends Lock {
 	*/
 	protected boolean canSkip;
 
+	/**
+		The time the request started waiting, in milliseconds. Set before
+		the request is queued for the deadlock detector.
+
+		MT - single thread required
+	*/
+	long waitStartTime;
+
 	/**
 		Initialize the lock, should be seen as part of the constructor. A future
 		version of this class may become mutable - mutable identity.
@@ -35,12 +35,16 @@ import org.apache.derby.shared.common.reference.Property;
 import org.apache.derby.shared.common.reference.SQLState;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.ArrayList;
+import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
 
 
@@ -65,6 +69,16 @@ import java.util.Map;
     Lockable controlled by the LockControl, thus providing the
     single threading that LockControl required.
 
+	<P>
+    A Lockable which is locked by a single request is held by a fast entry,
+    which contains the granted Lock and no ReentrantLock. The fast entry is
+    inserted in the lock table and removed again on unlock without taking
+    any mutex. The first other request on the Lockable inflates the entry
+    into a regular one with a mutex, by a compare-and-set of the entry
+    state, and from then on the entry is handled as before. A fast entry
+    never has waiters, so deadlock detection only has to look at inflated
+    entries.
+
 	Methods of Lockables are only called by this class or LockControl, and 
     always while holding the corresponding ReentrantLock, thus providing the
     single threading that Lockable requires.
@@ -125,6 +139,39 @@ final class ConcurrentLockSet implements LockTable {
      * Class representing an entry in the lock table.
      */
     private static final class Entry {
+        /**
+         * State of an entry which holds a single granted lock and has no
+         * mutex. Only the thread which releases the lock, or a thread which
+         * inflates the entry, changes the state of a fast entry.
+         */
+        private static final int FAST = 0;
+        /**
+         * State of a fast entry while its lock is being granted or
+         * released, or while a thread is inflating it.
+         */
+        private static final int CHANGING = 1;
+        /**
+         * State of an inflated entry. The entry and its control are only
+         * accessed while holding the mutex.
+         */
+        private static final int INFLATED = 2;
+        /**
+         * State of a fast entry whose lock has been released. The entry is
+         * about to be removed from the lock table and must not be used.
+         */
+        private static final int RELEASED = 3;
+
+        /** Updater used to compare-and-set the state of entries. */
+        private static final AtomicIntegerFieldUpdater<Entry> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        /** The state of the entry. */
+        private volatile int state;
+        /**
+         * The lock held by the entry when it was inserted in the lock table
+         * as a fast entry.
+         */
+        private final Lock fastLock;
         /** The lock control. */
         Control control;
         /**
@@ -134,9 +181,11 @@ final class ConcurrentLockSet implements LockTable {
          * performs deadlock detection. During deadlock detection, a thread
          * might hold several mutexes, but it is not allowed to hold any mutex
          * when entering the deadlock detection. Only one thread is allowed to
-         * perform deadlock detection at a time.
+         * perform deadlock detection at a time. Created when the entry is
+         * inflated, and only read after reading the state
+         * <code>INFLATED</code>.
          */
-        private final ReentrantLock mutex = new ReentrantLock();
+        private ReentrantLock mutex;
         /**
          * Condition variable which prevents calls to <code>lock()</code> from
          * locking the entry. If it is not <code>null</code>, only the thread
@@ -145,16 +194,102 @@ final class ConcurrentLockSet implements LockTable {
          */
         private Condition deadlockDetection;
 
+        /**
+         * Create a fast entry holding a granted lock.
+         *
+         * @param lock the granted lock
+         */
+        Entry(Lock lock) {
+            fastLock = lock;
+            control = lock;
+            state = CHANGING;
+        }
+
+        /**
+         * Grant the lock of a new fast entry, once the entry has been
+         * inserted in the lock table.
+         */
+        void grantFast() {
+            fastLock.grant();
+            state = FAST;
+        }
+
+        /**
+         * Check whether the entry has been inflated.
+         */
+        boolean isInflated() {
+            return state == INFLATED;
+        }
+
+        /**
+         * Inflate a fast entry, so that it can be locked by its mutex.
+         *
+         * @return <code>false</code> if the lock of the fast entry has been
+         * released and the entry can no longer be used, <code>true</code>
+         * otherwise
+         */
+        private boolean inflate() {
+            for (;;) {
+                int s = state;
+                if (s == INFLATED) {
+                    return true;
+                }
+                if (s == RELEASED) {
+                    return false;
+                }
+                if (s == FAST && STATE.compareAndSet(this, FAST, CHANGING)) {
+                    mutex = new ReentrantLock();
+                    state = INFLATED;
+                    return true;
+                }
+                // another thread is granting or releasing the lock of the
+                // entry, or inflating it
+                Thread.yield();
+            }
+        }
+
+        /**
+         * Release the lock of a fast entry. Only the owner of the lock may
+         * call this method.
+         *
+         * @param item the lock to release
+         * @return <code>true</code> if the lock was released, in which case
+         * the caller must remove the entry from the lock table, or
+         * <code>false</code> if the entry has been inflated and the lock
+         * must be released while holding the mutex
+         */
+        boolean releaseFast(Latch item) {
+            if (state != FAST || item != fastLock ||
+                    !STATE.compareAndSet(this, FAST, CHANGING)) {
+                return false;
+            }
+            if (SanityManager.DEBUG) {
+                SanityManager.ASSERT(fastLock.getCount() == 1);
+            }
+            // release the lock before other threads may insert a new entry
+            // for the Lockable, so that its lock events are single threaded
+            fastLock.unlock(1);
+            state = RELEASED;
+            return true;
+        }
+
         /**
          * Lock the entry, ensuring exclusive access to the contained
-         * <code>Control</code> object. The call will block until the entry can
+         * <code>Control</code> object. A fast entry is inflated first. The
+         * call will block until the entry can
          * be locked. If the entry is unlocked and
          * <code>deadlockDetection</code> is not <code>null</code>, the entry
          * belongs to a thread which waits for deadlock detection to be
          * initiated, and the call will block until that thread has finished
          * its deadlock detection.
+         *
+         * @return <code>false</code> if the entry could not be locked because
+         * the lock of the fast entry has been released
          */
-        void lock() {
+        boolean lock() {
+            if (!inflate()) {
+                return false;
+            }
             if (SanityManager.DEBUG) {
                 SanityManager.ASSERT(!mutex.isHeldByCurrentThread());
             }
@@ -162,6 +297,7 @@ final class ConcurrentLockSet implements LockTable {
             while (deadlockDetection != null) {
                 deadlockDetection.awaitUninterruptibly();
             }
+            return true;
         }
 
         /**
@@ -172,17 +308,26 @@ final class ConcurrentLockSet implements LockTable {
             mutex.unlock();
         }
 
+        /**
+         * Check whether the current thread holds the mutex of the entry.
+         */
+        boolean isHeldByCurrentThread() {
+            return isInflated() && mutex.isHeldByCurrentThread();
+        }
+
         /**
          * Lock the entry while performing deadlock detection. This method will
          * lock the entry even when <code>deadlockDetection</code> is not
          * <code>null</code>. If <code>deadlockDetection</code> is not
          * <code>null</code>, we know the entry and its <code>Control</code>
          * will not be accessed by others until we have finished the deadlock
-         * detection, so it's OK for us to access it.
+         * detection, so it's OK for us to access it. The entry must be
+         * inflated.
          *
          */
         void lockForDeadlockDetection() {
             if (SanityManager.DEBUG) {
+                SanityManager.ASSERT(isInflated());
                 SanityManager.ASSERT(!mutex.isHeldByCurrentThread());
             }
             mutex.lock();
@@ -216,40 +361,31 @@ final class ConcurrentLockSet implements LockTable {
     }
 
     /**
-     * Get an entry from the lock table. If no entry exists for the
-     * <code>Lockable</code>, insert an entry. The returned entry will be
-     * locked and is guaranteed to still be present in the table.
+     * Get an entry from the lock table and lock it. If no entry exists for
+     * the <code>Lockable</code>, return <code>null</code>. The returned
+     * entry is guaranteed to still be present in the table.
      *
      * @param ref the <code>Lockable</code> whose entry to return
      * @return the entry for the <code>Lockable</code>, locked for exclusive
-     * access
+     * access, or <code>null</code> if there is no entry
      */
     private Entry getEntry(Lockable ref) {
-        Entry e = locks.get(ref);
-        while (true) {
-            if (e != null) {
-                e.lock();
+        for (;;) {
+            Entry e = locks.get(ref);
+            if (e == null) {
+                return null;
+            }
+            if (e.lock()) {
                 if (e.control != null) {
                     // entry is found and in use, return it
                     return e;
                 }
-                // entry is empty, hence it was removed from the table after we
-                // retrieved it. Try to reuse it later.
-            } else {
-                // no entry found, create a new one
-                e = new Entry();
-                e.lock();
+                e.unlock();
             }
-            // reinsert empty entry, or insert the new entry
-            Entry current = locks.putIfAbsent(ref, e);
-            if (current == null) {
-                // successfully (re-)inserted entry, return it
-                return e;
-            }
-            // someone beat us, unlock the old entry and retry with the entry
-            // they inserted
-            e.unlock();
-            e = current;
+            // the entry was removed from the table after we retrieved it,
+            // or the fast lock held by it was released and it is about to
+            // be removed. Remove it (if it isn't removed yet) and try again.
+            locks.remove(ref, e);
         }
     }
 
@@ -285,6 +421,39 @@ final class ConcurrentLockSet implements LockTable {
         }
     }
 
+    /**
+     * Look for deadlocks on behalf of the background deadlock detector, and
+     * wake up the victim of each deadlock found. All the waiters are
+     * searched from with the same snapshot of the wait graph, and a victim
+     * is only woken up once.
+     *
+     * @param waitingLocks the waiting lock requests to start searching from
+     * @return the number of deadlocks found
+     */
+    public int detectDeadlocks(List<ActiveLock> waitingLocks) {
+        int found = 0;
+        synchronized (Deadlock.class) {
+            try {
+                Dictionary waiters = Deadlock.getWaiters(this);
+                HashSet<ActiveLock> victims = new HashSet<ActiveLock>();
+                for (ActiveLock lock : waitingLocks) {
+                    ActiveLock victim = Deadlock.findVictim(waiters, lock);
+                    if (victim != null && victims.add(victim)) {
+                        victim.wakeUp(Constants.WAITING_LOCK_DEADLOCK);
+                        found++;
+                    }
+                }
+            } finally {
+                // unlock all entries we visited
+                for (Entry e : seenByDeadlockDetection) {
+                    e.unlock();
+                }
+                seenByDeadlockDetection = null;
+            }
+        }
+        return found;
+    }
+
 	/*
 	** Public Methods
 	*/
@@ -321,22 +490,25 @@ final class ConcurrentLockSet implements LockTable {
         String  lockDebug = null;
         boolean blockedByParent = false;
 
-        Entry entry = getEntry(ref);
-        try {
-
-            Control gc = entry.control;
+        Entry entry;
+        while ((entry = getEntry(ref)) == null) {
 
-			if (gc == null) {
+            // object is not locked, can be granted by inserting a fast
+            // entry, without taking any mutex
+            Lock gl = new Lock(compatibilitySpace, ref, qualifier);
+            Entry fast = new Entry(gl);
 
-				// object is not locked, can be granted
-				Lock gl = new Lock(compatibilitySpace, ref, qualifier);
+            if (locks.putIfAbsent(ref, fast) == null) {
+                fast.grantFast();
+                return gl;
+            }
 
-				gl.grant();
+            // someone else locked the object first, try again
+        }
 
-				entry.control = gl;
+        try {
 
-				return gl;
-			}
+            Control gc = entry.control;
 
 			control = gc.getLockControl();
 			if (control != gc) {
@@ -473,6 +645,12 @@ final class ConcurrentLockSet implements LockTable {
         ActiveLock waitingLock = (ActiveLock) lockItem;
         lockItem = null;
 
+        if (deadlockWait) {
+            // let the background detector find a deadlock before the
+            // deadlock timeout expires
+            factory.deadlockDetector.waiting(waitingLock);
+        }
+
         int earlyWakeupCount = 0;
         long startWaitTime = 0;
 
@@ -689,7 +867,12 @@ forever:	for (;;) {
 	*/
 	public void unlock(Latch item, int unlockCount) {
         // assume LockEntry is there
-        Entry entry = locks.get(item.getLockable());
+        Lockable ref = item.getLockable();
+        Entry entry = locks.get(ref);
+        if (entry.releaseFast(item)) {
+            locks.remove(ref, entry);
+            return;
+        }
         entry.lock();
         try {
             unlock(entry, item, unlockCount);
@@ -709,7 +892,7 @@ forever:	for (;;) {
      */
     private void unlock(Entry entry, Latch item, int unlockCount) {
 		if (SanityManager.DEBUG) {
-            SanityManager.ASSERT(entry.mutex.isHeldByCurrentThread());
+            SanityManager.ASSERT(entry.isHeldByCurrentThread());
 			if (SanityManager.DEBUG_ON(Constants.LOCK_TRACE)) {
 				/*
 				** I don't like checking the trace flag twice, but SanityManager
@@ -801,7 +984,34 @@ forever:	for (;;) {
             return null;
         }
 
-        entry.lock();
+        if (!entry.isInflated()) {
+            // If the lock of a fast entry is ours, no other thread can
+            // release it, so it can be released without locking the entry
+            // unless another request inflates the entry meanwhile.
+            Lock setLock = entry.fastLock.getLock(space, qualifier);
+            if (setLock != null) {
+                Lock lockInGroup = (Lock) group.remove(setLock);
+                if (lockInGroup == null) {
+                    return null;
+                }
+                if (entry.releaseFast(setLock)) {
+                    locks.remove(ref, entry);
+                } else {
+                    entry.lock();
+                    try {
+                        unlock(entry, lockInGroup, 1);
+                    } finally {
+                        entry.unlock();
+                    }
+                }
+                return lockInGroup;
+            }
+        }
+
+        if (!entry.lock()) {
+            // the lock of the fast entry was released
+            return null;
+        }
         try {
             Control control = entry.control;
             if (control == null) {
@@ -859,11 +1069,11 @@ forever:	for (;;) {
         // release the lock method.
 
         Entry entry = locks.get(ref);
-        if (entry == null) {
+        if (entry == null || !entry.lock()) {
+            // not locked, or the lock of the fast entry was released
             return true;
         }
 
-        entry.lock();
         try {
             Control control = entry.control;
             if (control == null) {
@@ -946,7 +1156,9 @@ forever:	for (;;) {
             int i = 0;
             for (Entry entry : locks.values())
             {
-                entry.lock();
+                if (!entry.lock()) {
+                    continue;
+                }
                 try {
                     str += "\n  lock[" + i + "]: " +
                         DiagnosticUtil.toDiagString(entry.control);
@@ -969,11 +1181,16 @@ forever:	for (;;) {
      * performing deadlock detection. All entries that are visited in the lock
      * table will be locked when this method returns. The entries that have
      * been seen and locked will be unlocked after the deadlock detection has
-     * finished.
+     * finished. Entries which have not been inflated are skipped, since they
+     * hold a single granted lock and no waiters.
      */
     public void addWaiters(Map<Object,Object> waiters) {
         seenByDeadlockDetection = new ArrayList<Entry>(locks.size());
         for (Entry entry : locks.values()) {
+            if (!entry.isInflated()) {
+                // a fast entry holds a single granted lock, no waiters
+                continue;
+            }
             seenByDeadlockDetection.add(entry);
             entry.lockForDeadlockDetection();
             if (entry.control != null) {
@@ -990,7 +1207,9 @@ forever:	for (;;) {
         HashMap<Lockable, Control> clone = new HashMap<Lockable, Control>();
 
         for (Entry entry : locks.values()) {
-            entry.lock();
+            if (!entry.lock()) {
+                continue;
+            }
             try {
                 Control control = entry.control;
                 if (control != null) {
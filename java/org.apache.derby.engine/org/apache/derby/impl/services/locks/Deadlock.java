@@ -21,6 +21,7 @@
 
 package org.apache.derby.impl.services.locks;
 
+import org.apache.derby.iapi.services.locks.LockOwner;
 import org.apache.derby.iapi.services.locks.VirtualLockTable;
 
 import org.apache.derby.shared.common.error.StandardException;
@@ -71,10 +72,11 @@ import java.util.List;
  * The search is performed as a depth-first search starting from the lock
  * request of a waiter that has been awoken for deadlock detection (either
  * because {@code derby.locks.deadlockTimeout} has expired or because some
- * other waiter had picked it as a victim in order to break a deadlock).
- * From this lock request, the wait graph is traversed by checking which
- * transactions have already been granted a lock on the object, and who they
- * are waiting for.
+ * other waiter had picked it as a victim in order to break a deadlock), or
+ * from a lock request that has been waiting for a while, on behalf of the
+ * background {@link DeadlockDetector}. From this lock request, the wait
+ * graph is traversed by checking which transactions have already been
+ * granted a lock on the object, and who they are waiting for.
  * </p>
  *
  * <p>
@@ -89,7 +91,9 @@ import java.util.List;
  * </p>
  *
  * <p>
- * When a deadlock is found, one of the waiters in the deadlock cycle is awoken
+ * When a deadlock is found, one of the waiters in the deadlock cycle is picked
+ * as the victim, preferring the transaction that has written the least log,
+ * since it is the cheapest one to roll back. The victim is awoken
  * and it will terminate itself, unless it finds that the deadlock has been
  * broken in the meantime, for example because one of the involved waiters
  * has timed out.
@@ -160,6 +164,81 @@ class Deadlock  {
 
 		Stack<Object> chain = new Stack<Object>();
 
+		int start = search(chain, waiters, control, startingLock);
+		if (start == -1) {
+			return null;
+		}
+
+		return Deadlock.handle(factory, chain, start, waiters, deadlockWake);
+	}
+
+	/**
+	 * <p>
+	 * Look for a deadlock on behalf of the background deadlock detector,
+	 * starting from a lock request which has been waiting for a while. If
+	 * a deadlock is found, the victim is picked the same way as when a
+	 * waiter looks for a deadlock itself, but it is left to the caller to
+	 * wake it up, even if it is the starting lock request.
+	 * </p>
+	 *
+	 * <p>
+	 * MT - the caller must follow the rules of {@link #look} for the
+	 * <code>ConcurrentLockSet</code> the waiters were obtained from, and
+	 * must hold the entries of the lock table locked until it has woken up
+	 * the victim.
+	 * </p>
+	 *
+	 * @param waiters all the waiters in the lock table, as returned by
+	 * {@link #getWaiters}
+	 * @param startingLock the waiting lock request to start from
+	 * @return the lock request the victim is waiting for, or {@code null}
+	 * if the request is no longer waiting or there is no deadlock
+	 */
+	static ActiveLock findVictim(Dictionary waiters, ActiveLock startingLock) {
+
+		Object checker = startingLock.getCompatabilitySpace();
+		if (waiters.get(checker) != startingLock) {
+			// granted, or given up, since it was queued for detection
+			return null;
+		}
+
+		// find the lock control at the head of the queue of waiters
+		Object control = waiters.get(startingLock);
+		while (control instanceof ActiveLock) {
+			control = waiters.get(control);
+		}
+
+		Stack<Object> chain = new Stack<Object>();
+
+		int start = search(chain, waiters, (LockControl) control,
+						   startingLock);
+		if (start == -1) {
+			return null;
+		}
+
+		Object victim = Deadlock.pickVictim(chain, start,
+											Constants.WAITING_LOCK_IN_WAIT);
+
+		return (ActiveLock) waiters.get(victim);
+	}
+
+	/**
+	 * Search the wait graph for a cycle, starting from a waiting lock
+	 * request.
+	 *
+	 * @param chain an empty stack, which is left holding the state of the
+	 * search (compatibility spaces and lists of granted locks) when a cycle
+	 * is found
+	 * @param waiters all the waiters in the lock table
+	 * @param control the lock control of the object the starting lock
+	 * request is waiting for
+	 * @param startingLock the waiting lock request to start from
+	 * @return the position in {@code chain} where the cycle starts, or -1
+	 * if there is no deadlock
+	 */
+	private static int search(Stack<Object> chain, Dictionary waiters,
+							  LockControl control, ActiveLock startingLock) {
+
 		chain.push(startingLock.getCompatabilitySpace());
 		chain.push(control.getGrants());
 outer:	for (;;) {
@@ -250,8 +329,8 @@ inner:		for (;;) {
 						}
 					}
 
-                    // So it wasn't an illusion after all. Pick a victim.
-					return Deadlock.handle(factory, chain, index, waiters, deadlockWake);
+                    // So it wasn't an illusion after all.
+					return index;
 				}
 
                 // Otherwise... The space hasn't been examined yet, so put it
@@ -334,7 +413,7 @@ inner:		for (;;) {
             }
 		}
 
-		return null;
+		return -1;
 	}
 
     /**
@@ -368,7 +447,7 @@ inner:		for (;;) {
      * @return all waiters in the lock table
      * @see LockControl#addWaiters(java.util.Map)
      */
-	private static Hashtable getWaiters(LockTable set) {
+	static Hashtable getWaiters(LockTable set) {
 		Hashtable<Object,Object> waiters = new Hashtable<Object,Object>();
 		set.addWaiters(waiters);
 		return waiters;
@@ -386,11 +465,46 @@ inner:		for (;;) {
 	private static Object[] handle(AbstractPool factory, Stack chain, int start,
 								   Dictionary waiters, byte deadlockWake) {
 
+		Object checker = chain.elementAt(0);
+
+		Object victim = pickVictim(chain, start, deadlockWake);
+
+		// See if the vitim is the one doing the checking
+		if (checker.equals(victim)) {
+			Object[] data = new Object[2];
+			data[0] = chain;
+			data[1] = waiters;
+			return data;
+		}
+
+		ActiveLock victimLock = (ActiveLock) waiters.get(victim);
+
+		victimLock.wakeUp(Constants.WAITING_LOCK_DEADLOCK);
+
+		return null;
+
+	}
+
+    /**
+     * Pick the victim of a deadlock among the waiters in the cycle. The
+     * victim is the waiter whose owner has the lowest abort cost, that is,
+     * the transaction that has written the least log. Ties are broken by
+     * picking the waiter that holds the fewest locks.
+     *
+     * @param chain the stack representing the state of the search
+     * @param start the position in {@code chain} where the cycle starts
+     * @param deadlockWake the reason the checker was woken up
+     * @return the compatibility space of the victim
+     */
+	private static Object pickVictim(Stack chain, int start,
+									 byte deadlockWake) {
+
 		// If start is zero then the space that started looking for the
 		// deadlock is activly involved in the deadlock.
 
 		Object checker = chain.elementAt(0);
 
+		long minCost = Long.MAX_VALUE;
 		int minLockCount = Integer.MAX_VALUE;
 		Object victim = null;
 		for (int i = start; i < chain.size(); i++) {
@@ -407,28 +521,27 @@ inner:		for (;;) {
 			}
 
 			LockSpace ls = (LockSpace) space;
+			LockOwner owner = ls.getOwner();
+			long cost = (owner == null) ? 0 : owner.getAbortCost();
+
+			if (cost > minCost) {
+				continue;
+			}
+
+			if (cost < minCost) {
+				minLockCount = Integer.MAX_VALUE;
+			}
+
 			int spaceCount = ls.deadlockCount(minLockCount);
 
 			if (spaceCount <= minLockCount) {
 				victim = space;
+				minCost = cost;
 				minLockCount = spaceCount;
 			}
 		}
 
-		// See if the vitim is the one doing the checking
-		if (checker.equals(victim)) {
-			Object[] data = new Object[2];
-			data[0] = chain;
-			data[1] = waiters;
-			return data;
-		}
-
-		ActiveLock victimLock = (ActiveLock) waiters.get(victim);
-
-		victimLock.wakeUp(Constants.WAITING_LOCK_DEADLOCK);
-
-		return null;
-
+		return victim;
 	}
 
     /**
@@ -554,6 +667,8 @@ inner:		for (;;) {
 			attributes.clear();
 		}
 
+		factory.countDeadlock();
+
 		StandardException se = StandardException.newException(SQLState.DEADLOCK, sb.toString(), victimXID);
 		se.setReport(factory.deadlockMonitor);
 		return se;
@@ -0,0 +1,268 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.locks.DeadlockDetector
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.locks;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.derby.iapi.services.monitor.ModuleFactory;
+import org.apache.derby.iapi.services.monitor.Monitor;
+import org.apache.derby.shared.common.reference.Property;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * <p>
+ * A background thread which looks for deadlocks among the lock requests
+ * that have been waiting for at least
+ * {@code derby.locks.deadlockDetectionInterval} milliseconds, so that a
+ * deadlock is broken without waiting for
+ * {@code derby.locks.deadlockTimeout} to expire.
+ * </p>
+ *
+ * <p>
+ * The detection is incremental. A lock request is queued when it starts
+ * waiting, and every interval the thread takes the requests that have been
+ * waiting for at least an interval off the queue and searches the wait
+ * graph for a cycle starting from each of them, once. A deadlock can only
+ * be created by a lock request which starts waiting, and that request is
+ * the newest in the cycle, so searching from every waiter once finds all
+ * deadlocks. All the requests taken off the queue at a time are searched
+ * with a single snapshot of the wait graph, so that the lock table is only
+ * locked once per interval. Requests which are granted quickly are
+ * skipped without looking at the lock table at all.
+ * </p>
+ *
+ * <p>
+ * The victim of a deadlock is picked by {@link Deadlock#findVictim} and
+ * woken up. It then looks for the deadlock itself, just like a waiter
+ * whose deadlock timeout has expired, and aborts with a deadlock error if
+ * the deadlock is still there. The deadlock timeout remains as a fallback,
+ * for instance when the detector is disabled.
+ * </p>
+ *
+ * <p>
+ * The thread is started when the first lock request is queued, and waits
+ * for more requests when the queue is empty.
+ * </p>
+ *
+ * <BR> MT - Thread safe
+ */
+final class DeadlockDetector implements Runnable {
+
+    /** The lock table in which to look for deadlocks. */
+    private final LockTable lockTable;
+
+    /**
+     * The lock requests that have started waiting and have not been
+     * searched from yet, oldest first.
+     *
+     * <BR> MT - java synchronized(this)
+     */
+    private final ArrayDeque<ActiveLock> newWaiters =
+        new ArrayDeque<ActiveLock>();
+
+    /**
+     * How long a lock request must wait before it is searched from, in
+     * milliseconds, or 0 if the detector is disabled.
+     */
+    private volatile int interval =
+        Property.DEADLOCK_DETECTION_INTERVAL_DEFAULT;
+
+    /** The detector thread, {@code null} until it is started. */
+    private Thread thread;
+
+    /** Set when the detector has been stopped. */
+    private boolean stopped;
+
+    /** The number of times the wait graph has been searched. */
+    private final AtomicLong detections = new AtomicLong();
+
+    /** The number of deadlocks found by the detector. */
+    private final AtomicLong deadlocks = new AtomicLong();
+
+    /** The total time spent looking for deadlocks, in nanoseconds. */
+    private final AtomicLong detectionTime = new AtomicLong();
+
+    DeadlockDetector(LockTable lockTable) {
+        this.lockTable = lockTable;
+    }
+
+    /**
+     * Set how long a lock request must wait before the detector looks for
+     * a deadlock involving it.
+     *
+     * @param interval the interval in milliseconds, or 0 to disable the
+     * detector
+     */
+    void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    /** Get the deadlock detection interval in milliseconds. */
+    int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Queue a lock request which is about to wait, so that the detector
+     * looks for a deadlock involving it if it is still waiting after an
+     * interval.
+     *
+     * @param lock the waiting lock request
+     */
+    void waiting(ActiveLock lock) {
+        if (interval <= 0) {
+            return;
+        }
+
+        lock.waitStartTime = System.currentTimeMillis();
+
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            if (thread == null) {
+                thread = getMonitor().getDaemonThread(
+                        this, "deadlock-detector", false);
+                thread.start();
+            }
+            newWaiters.add(lock);
+            if (newWaiters.size() == 1) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stop the detector thread and wait for it to finish.
+     */
+    void stop() {
+        Thread t;
+        synchronized (this) {
+            stopped = true;
+            newWaiters.clear();
+            notifyAll();
+            t = thread;
+        }
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Get the number of times the wait graph has been searched. */
+    long getDetectionCount() {
+        return detections.get();
+    }
+
+    /** Get the number of deadlocks found by the detector. */
+    long getDeadlockCount() {
+        return deadlocks.get();
+    }
+
+    /** Get the total time spent looking for deadlocks, in milliseconds. */
+    long getDetectionTime() {
+        return detectionTime.get() / 1000000;
+    }
+
+    public void run() {
+        List<ActiveLock> due = new ArrayList<ActiveLock>();
+        for (;;) {
+            synchronized (this) {
+                try {
+                    for (;;) {
+                        if (stopped) {
+                            return;
+                        }
+                        ActiveLock first = newWaiters.peek();
+                        if (first == null) {
+                            wait();
+                            continue;
+                        }
+                        long now = System.currentTimeMillis();
+                        long delay = first.waitStartTime + interval - now;
+                        if (delay > 0) {
+                            wait(delay);
+                            continue;
+                        }
+                        // take all the requests that have waited an interval
+                        do {
+                            newWaiters.poll();
+                            if (first.getCount() == 0) {
+                                // skip requests that have been granted
+                                due.add(first);
+                            }
+                            first = newWaiters.peek();
+                        } while (first != null &&
+                                 first.waitStartTime + interval <= now);
+                        if (!due.isEmpty()) {
+                            break;
+                        }
+                    }
+                } catch (InterruptedException ie) {
+                    // the thread is only interrupted on shutdown
+                    stopped = true;
+                    return;
+                }
+            }
+
+            try {
+                if (lockTable.anyoneBlocked()) {
+                    long start = System.nanoTime();
+                    int found = lockTable.detectDeadlocks(due);
+                    detectionTime.addAndGet(System.nanoTime() - start);
+                    detections.incrementAndGet();
+                    deadlocks.addAndGet(found);
+                }
+            } catch (RuntimeException re) {
+                // Report the error and keep the thread running, otherwise
+                // no deadlocks would be detected after this. The waiters
+                // will still time out.
+                if (SanityManager.DEBUG) {
+                    SanityManager.showTrace(re);
+                }
+                Monitor.logThrowable(re);
+            } finally {
+                due.clear();
+            }
+        }
+    }
+
+    /**
+     * Privileged Monitor lookup. Must be private so that user code
+     * can't call this entry point.
+     */
+    private static ModuleFactory getMonitor() {
+        return AccessController.doPrivileged(
+            new PrivilegedAction<ModuleFactory>() {
+                public ModuleFactory run() {
+                    return Monitor.getMonitor();
+                }
+            });
+    }
+}
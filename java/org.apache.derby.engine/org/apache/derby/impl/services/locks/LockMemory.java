@@ -0,0 +1,82 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.locks.LockMemory
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.locks;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.derby.iapi.services.cache.ClassSize;
+
+/**
+ * Accounting of the memory used by the locks held in all the compatibility
+ * spaces of a lock factory. The memory is estimated from the number of
+ * locks in the groups of the spaces, which is kept in a {@code LongAdder}
+ * so that spaces adding and releasing locks concurrently don't contend on
+ * a single counter. The total is only summed up when a space checks if
+ * the limit has been exceeded.
+ *
+ * <BR> MT - Thread safe
+ */
+final class LockMemory {
+
+    /**
+     * Estimate of the memory used by a lock held in a group, in bytes: the
+     * lock in the group and the granted lock in the lock table, and their
+     * hash table entries.
+     */
+    private static final int LOCK_MEMORY_USAGE =
+        2 * (ClassSize.estimateBaseFromCatalog(Lock.class) +
+             ClassSize.estimateHashEntrySize());
+
+    /** The number of locks held in all the compatibility spaces. */
+    private final LongAdder locks = new LongAdder();
+
+    /** The maximum number of locks, 0 if there is no limit. */
+    private final long maxLocks;
+
+    /**
+     * Create an object which accounts for the memory used by locks.
+     *
+     * @param limit the maximum amount of memory the locks may use, in
+     * bytes, or 0 if there is no limit
+     */
+    LockMemory(long limit) {
+        maxLocks = (limit <= 0) ? 0 : Math.max(1, limit / LOCK_MEMORY_USAGE);
+    }
+
+    /**
+     * Account for locks added to or removed from a group.
+     *
+     * @param count the number of locks added, negative if they were removed
+     */
+    void add(int count) {
+        locks.add(count);
+    }
+
+    /**
+     * Check if the locks held in all the compatibility spaces use more
+     * memory than the limit.
+     *
+     * @return {@code true} if the limit is exceeded
+     */
+    boolean isExhausted() {
+        return maxLocks != 0 && locks.sum() > maxLocks;
+    }
+}
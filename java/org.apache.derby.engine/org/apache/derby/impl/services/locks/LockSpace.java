@@ -49,6 +49,12 @@ import org.apache.derby.iapi.services.locks.LockOwner;
     use the owner as a group object which guarantees that the lock is released
     on a commit or an abort. The owner has no special meaning to the lock
     manager and can be any object, including <code>null</code>. </p>
+
+    <p> The number of locks in the groups is accounted for in a
+    <code>LockMemory</code> shared by all the spaces of the lock factory.
+    When the locks of all the spaces use more memory than allowed, the limit
+    callback of a space is called before its group reaches the limit, so that
+    the spaces holding many locks can escalate them. </p>
 */
 final class LockSpace implements CompatibilitySpace {
 
@@ -56,6 +62,8 @@ final class LockSpace implements CompatibilitySpace {
     private final HashMap<Object, HashMap<Lock, Lock>> groups;
 	/** Reference to the owner of this compatibility space. */
 	private final LockOwner owner;
+	/** Accounting of the memory used by the locks of all the spaces. */
+	private final LockMemory memory;
 
     /** The maximum number of elements to cache in {@link #spareGroups}. */
     private static final int MAX_CACHED_GROUPS = 3;
@@ -70,14 +78,22 @@ final class LockSpace implements CompatibilitySpace {
 	private int    nextLimitCall;
 	private Limit  callback;
 
+	/**
+		The number of locks in the callback group at which the memory used
+		by the locks of all the spaces is checked next.
+	*/
+	private int    nextMemoryCheck;
+
 	/**
 	 * Creates a new <code>LockSpace</code> instance.
 	 *
 	 * @param owner an object representing the owner of the compatibility space
+	 * @param memory the accounting of the memory used by locks
 	 */
-	LockSpace(LockOwner owner) {
+	LockSpace(LockOwner owner, LockMemory memory) {
         groups = new HashMap<Object, HashMap<Lock, Lock>>();
 		this.owner = owner;
+		this.memory = memory;
 	}
 
 	/**
@@ -107,6 +123,7 @@ final class LockSpace implements CompatibilitySpace {
 		if (lockInGroup == null) {
 			lockInGroup = lock.copy();
 			dl.put(lockInGroup, lockInGroup);
+			memory.add(1);
 		}
 		lockInGroup.count++;
 
@@ -117,8 +134,16 @@ final class LockSpace implements CompatibilitySpace {
 			return;
 
 		int groupSize = dl.size();
-		
-		if (groupSize > nextLimitCall) {
+
+		boolean reached = groupSize > nextLimitCall;
+		if (!reached && groupSize > nextMemoryCheck) {
+			// summing up the locks of all the spaces is not free, so
+			// only check the memory now and then
+			nextMemoryCheck = groupSize + MEMORY_CHECK_INTERVAL;
+			reached = memory.isExhausted();
+		}
+
+		if (reached) {
 
 			inLimit = true;
 			callback.reached(this, group, limit,
@@ -136,10 +161,21 @@ final class LockSpace implements CompatibilitySpace {
 			else
 				nextLimitCall += limit;
 
+			// back off the memory checks, so that a callback which cannot
+			// release the locks is not called over and over again
+			nextMemoryCheck =
+				newGroupSize + Math.max(MEMORY_CHECK_INTERVAL, newGroupSize);
 		}
 	}
 	
 	private boolean inLimit;
+
+	/**
+		The number of locks added to the callback group between checks of
+		the memory used by the locks of all the spaces.
+	*/
+	private static final int MEMORY_CHECK_INTERVAL = 100;
+
 	/**
 		Unlock all the locks in a group and then remove the group.
 	*/
@@ -152,9 +188,10 @@ final class LockSpace implements CompatibilitySpace {
         for (Lock lock : dl.keySet()) {
             lset.unlock(lock, 0);
 		}
+		memory.add(-dl.size());
 
 		if ((callbackGroup != null) && group.equals(callbackGroup)) {
-			nextLimitCall = limit;
+			resetLimitCalls();
 		}
 
 		saveGroup(dl);
@@ -194,13 +231,14 @@ final class LockSpace implements CompatibilitySpace {
 			}
 			lset.unlock(lock, 0);
 			e.remove();
+			memory.add(-1);
 		}
 
 		if (allUnlocked) {
 			groups.remove(group);
 			saveGroup(dl);
 			if ((callbackGroup != null) && group.equals(callbackGroup)) {
-				nextLimitCall = limit;
+				resetLimitCalls();
 			}
 		}
 	}
@@ -252,6 +290,7 @@ final class LockSpace implements CompatibilitySpace {
                 Lock intoL = lockI;
 
 				intoL.count += fromL.getCount();
+				memory.add(-1);
 			}
 		}
 
@@ -272,11 +311,12 @@ final class LockSpace implements CompatibilitySpace {
 
 		if (lockInGroup.getCount() == 1) {
 
+			memory.add(-1);
 			if (dl.isEmpty()) {
 				groups.remove(group);
 				saveGroup(dl);
 				if ((callbackGroup != null) && group.equals(callbackGroup)) {
-					nextLimitCall = limit;
+					resetLimitCalls();
 				}
 			}
 
@@ -316,8 +356,18 @@ final class LockSpace implements CompatibilitySpace {
 
 	synchronized void setLimit(Object group, int limit, Limit callback) {
 		callbackGroup = group;
-		this.nextLimitCall = this.limit = limit;
+		this.limit = limit;
 		this.callback = callback;
+		resetLimitCalls();
+	}
+
+	/**
+		Reset the points at which the limit callback is called, after the
+		callback group has been emptied.
+	*/
+	private void resetLimitCalls() {
+		nextLimitCall = limit;
+		nextMemoryCheck = MEMORY_CHECK_INTERVAL;
 	}
 
 	/**
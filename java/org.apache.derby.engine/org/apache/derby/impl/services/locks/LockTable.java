@@ -21,6 +21,7 @@
 
 package org.apache.derby.impl.services.locks;
 
+import java.util.List;
 import java.util.Map;
 import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.iapi.services.locks.CompatibilitySpace;
@@ -155,4 +156,15 @@ interface LockTable {
      * @see LockControl#addWaiters
      */
     void addWaiters(Map<Object,Object> waiters);
+
+    /**
+     * Look for deadlocks involving lock requests that are waiting, and wake
+     * up the victim of each deadlock found. Called by the background
+     * deadlock detector.
+     *
+     * @param waitingLocks the waiting lock requests to start searching from
+     * @return the number of deadlocks found
+     * @see DeadlockDetector
+     */
+    int detectDeadlocks(List<ActiveLock> waitingLocks);
 }
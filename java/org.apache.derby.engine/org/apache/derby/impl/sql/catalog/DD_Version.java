@@ -158,6 +158,8 @@ public	class DD_Version implements	Formatable
 			return "10.15";
 		case DataDictionary.DD_VERSION_DERBY_10_16:
 			return "10.16";
+		case DataDictionary.DD_VERSION_DERBY_10_17:
+			return "10.17";
 		default:
 			return null;
 		}
@@ -558,6 +560,13 @@ public	class DD_Version implements	Formatable
 			bootingDictionary.upgrade_SYSCOLUMNS_AUTOINCCYCLE(tc);
 		}
 
+        if (fromMajorVersionNumber <= DataDictionary.DD_VERSION_DERBY_10_16)
+        {
+            // On upgrade from versions before 10.17, create system procedures
+            // added in 10.17.
+            bootingDictionary.create_10_17_system_procedures( tc, newlyCreatedRoutines );
+        }
+
         // Grant PUBLIC access to some system routines
         bootingDictionary.grantPublicAccessToSystemRoutines(newlyCreatedRoutines, tc, aid);
 	}
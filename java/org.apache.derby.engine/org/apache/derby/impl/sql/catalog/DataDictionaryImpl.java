@@ -517,7 +517,7 @@ public final class	DataDictionaryImpl
 	public void boot(boolean create, Properties startParams) 
 			throws StandardException
 	{
-		softwareVersion = new DD_Version(this, DataDictionary.DD_VERSION_DERBY_10_16);
+		softwareVersion = new DD_Version(this, DataDictionary.DD_VERSION_DERBY_10_17);
 
 		startupParameters = startParams;
 
@@ -11456,6 +11456,8 @@ public final class	DataDictionaryImpl
         create_10_12_system_procedures( tc, newlyCreatedRoutines );
         // add 10.13 specific system procedures
         create_10_13_system_procedures( tc, newlyCreatedRoutines );
+        // add 10.17 specific system procedures
+        create_10_17_system_procedures( tc, newlyCreatedRoutines );
     }
 
     /**
@@ -13554,6 +13556,50 @@ public final class	DataDictionaryImpl
 
 	
 
+    }
+
+    /**
+     * <p>
+     * Create system procedures that are part of the SYSCS_UTIL schema, added in version 10.17.
+     * </p>
+     *
+     * @param tc an instance of the Transaction Controller.
+     * @param newlyCreatedRoutines set of routines we are creating (used to add permissions later on)
+     **/
+    void create_10_17_system_procedures( TransactionController   tc, HashSet<String> newlyCreatedRoutines )
+        throws StandardException
+    {
+        UUID  sysUtilUUID = getSystemUtilSchemaDescriptor().getUUID();
+
+        // void SYSCS_UTIL.SYSCS_SET_LOCK_ESCALATION_THRESHOLD(
+        //     IN SCHEMANAME VARCHAR(128), IN TABLENAME VARCHAR(128),
+        //     IN THRESHOLD INTEGER)
+        {
+            // procedure argument names
+            String[] arg_names = { "schemaName", "tableName", "threshold" };
+
+            // procedure argument types
+            TypeDescriptor[] arg_types =
+                {
+                    CATALOG_TYPE_SYSTEM_IDENTIFIER,
+                    CATALOG_TYPE_SYSTEM_IDENTIFIER,
+                    TypeDescriptor.INTEGER
+                };
+
+            createSystemProcedureOrFunction(
+                "SYSCS_SET_LOCK_ESCALATION_THRESHOLD",
+                sysUtilUUID,
+                arg_names,
+                arg_types,
+				0,
+				0,
+                RoutineAliasInfo.MODIFIES_SQL_DATA,
+                false,
+                false,
+                (TypeDescriptor) null,
+                newlyCreatedRoutines,
+                tc);
+        }
     }
 
 
@@ -14019,6 +14065,7 @@ public final class	DataDictionaryImpl
 			{"STATEMENT_CACHE", "org.apache.derby.diag.StatementCache"},
 			{"TRANSACTION_TABLE", "org.apache.derby.diag.TransactionTable"},
 			{"ERROR_MESSAGES", "org.apache.derby.diag.ErrorMessages"},
+			{"LOG_COMPRESSION", "org.apache.derby.diag.LogCompressionTable"},
 	};
 	
 	private String[][] DIAG_VTI_TABLE_FUNCTION_CLASSES =
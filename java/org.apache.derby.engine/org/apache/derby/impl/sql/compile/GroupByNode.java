@@ -72,6 +72,13 @@ import org.apache.derby.impl.sql.execute.AggregatorInfoList;
  */
 class GroupByNode extends SingleChildResultSetNode
 {
+	/**
+	 * The number of distinct values a grouping column is guessed to
+	 * have when choosing how to group, in line with the selectivity
+	 * of 0.1 that an equality predicate gets without statistics.
+	 */
+	private static final int DISTINCT_VALUES_PER_COLUMN = 10;
+
 	/**
 	 * The GROUP BY list
 	 */
@@ -1066,6 +1073,37 @@ class GroupByNode extends SingleChildResultSetNode
 		}
 	}
 
+	/**
+	 * Choose whether the grouped aggregates are computed in a hash table
+	 * of the groups, which is then sorted, rather than by sorting all the
+	 * input rows. That is only done where the sorter would otherwise
+	 * compute the aggregates, that is when the input is not in order and
+	 * there is no ROLLUP and no distinct aggregate. And it is only worth
+	 * it when there are expected to be fewer groups than input rows, and
+	 * the groups are expected to fit in the memory allowed for a table.
+	 *
+	 * @param inputRows	the estimated number of input rows
+	 *
+	 * @return true if the groups are to be collected in a hash table
+	 */
+	private boolean chooseHashTable(double inputRows)
+	{
+		if (isInSortedOrder || addDistinctAggregate || groupingList.isRollup())
+		{
+			return false;
+		}
+
+		double groups =
+			Math.pow(DISTINCT_VALUES_PER_COLUMN, groupingList.size());
+		if (groups >= inputRows)
+		{
+			return false;
+		}
+
+		return groups * getResultColumns().getTotalColumnSize() <=
+			getOptimizerFactory().getMaxMemoryPerTable();
+	}
+
 	/**
 	 * Generate the code to evaluate scalar aggregates.
 	 *
@@ -1114,6 +1152,7 @@ class GroupByNode extends SingleChildResultSetNode
 		 *  arg7: row size
 		 *  arg8: resultSetNumber
 		 *  arg9: isRollup
+		 *  arg10: useHashTable - only for GroupedAggregateResultSet
 		 */
 		String resultSet = (addDistinctAggregate) ? "getDistinctGroupedAggregateResultSet" : "getGroupedAggregateResultSet";
     
@@ -1121,8 +1160,17 @@ class GroupByNode extends SingleChildResultSetNode
 		mb.push(getCostEstimate().getEstimatedCost());
 		mb.push(groupingList.isRollup());
 
-		mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, resultSet,
-                ClassName.NoPutResultSet, 10);
+		if (addDistinctAggregate)
+		{
+			mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, resultSet,
+					ClassName.NoPutResultSet, 10);
+		}
+		else
+		{
+			mb.push(chooseHashTable(getCostEstimate().rowCount()));
+			mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, resultSet,
+					ClassName.NoPutResultSet, 11);
+		}
 
 	}
 
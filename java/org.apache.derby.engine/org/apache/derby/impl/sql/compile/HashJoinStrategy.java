@@ -383,6 +383,24 @@ class HashJoinStrategy extends BaseJoinStrategy {
 		int hashKeyItem = acb.addItem(hashKeyHolder);
 		mb.push(hashKeyItem);
 
+		/* Tell the hash scan which scan on the outer side of the join reads
+		 * the probe keys, so that the join can filter that scan.
+		 */
+		int[] probeColumns = new int[hashKeyColumns.length];
+		int probeResultSetNumber = findProbeScan(innerTable,
+												 nonStoreRestrictionList,
+												 probeColumns);
+		mb.push(probeResultSetNumber);
+		if (probeResultSetNumber == -1)
+		{
+			mb.push(-1);
+		}
+		else
+		{
+			mb.push(acb.addItem(new FormatableArrayHolder(
+				FormatableIntHolder.getFormatableIntHolders(probeColumns))));
+		}
+
 		fillInScanArgs2(mb,
 						innerTable,
 						bulkFetch,
@@ -392,7 +410,7 @@ class HashJoinStrategy extends BaseJoinStrategy {
 						tableLocked,
 						isolationLevel);
 
-		return 28;
+		return 30;
 	}
 
 	/**
@@ -663,6 +681,92 @@ class HashJoinStrategy extends BaseJoinStrategy {
         return keyCols;
 	}
 
+	/**
+	 * Find the scan which reads the outer side of the equijoins on the hash
+	 * key columns.  The hash join can only filter the rows of that scan by
+	 * the keys in the hash table when the outer side of each equijoin is a
+	 * column of the same base table, passed up unchanged to the join.
+	 * <p>
+	 * When the base table is read through an index, the columns in the
+	 * index come from the scan of the index, and the others from the
+	 * lookup of the base rows.  So with all the keys in the index the
+	 * scan of the index is filtered, and the base rows of the index rows
+	 * dropped are not fetched.
+	 *
+	 * @param innerTable	The inner table of the join
+	 * @param probeList		The predicates applied when probing the hash
+	 *						table, the equijoins on the key columns first
+	 * @param probeColumns	Filled in with the 1-based columns of the rows
+	 *						of the scan which hold the probe keys
+	 *
+	 * @return	the result set number of the scan, or -1 if there is none
+	 */
+	private static int findProbeScan(Optimizable innerTable,
+									 OptimizablePredicateList probeList,
+									 int[] probeColumns)
+	{
+		int scanNumber = -1;
+
+		for (int index = 0; index < probeColumns.length; index++)
+		{
+			if (index >= probeList.size())
+				return -1;
+
+			RelationalOperator relop =
+				((Predicate) probeList.getOptPredicate(index)).getRelop();
+			if (!(relop instanceof BinaryRelationalOperatorNode) ||
+				relop.getOperator() != RelationalOperator.EQUALS_RELOP)
+			{
+				return -1;
+			}
+
+			BinaryRelationalOperatorNode equijoin =
+				(BinaryRelationalOperatorNode) relop;
+			ColumnReference innerColumn =
+				equijoin.getColumnOperand(innerTable);
+			if (innerColumn == null)
+				return -1;
+
+			ValueNode outer = (equijoin.getLeftOperand() == innerColumn) ?
+									equijoin.getRightOperand() :
+									equijoin.getLeftOperand();
+
+			/* Walk down the result columns which pass the value up until
+			 * the column of the base table.
+			 */
+			ResultColumn rc = null;
+			while (!(outer instanceof BaseColumnNode))
+			{
+				if (outer instanceof ColumnReference)
+				{
+					rc = ((ColumnReference) outer).getSource();
+				}
+				else if (outer instanceof VirtualColumnNode)
+				{
+					rc = ((VirtualColumnNode) outer).getSourceColumn();
+				}
+				else
+				{
+					return -1;
+				}
+
+				if (rc == null)
+					return -1;
+				outer = rc.getExpression();
+			}
+
+			if (rc == null || rc.getResultSetNumber() < 0 ||
+				(scanNumber != -1 && rc.getResultSetNumber() != scanNumber))
+			{
+				return -1;
+			}
+			scanNumber = rc.getResultSetNumber();
+			probeColumns[index] = rc.getVirtualColumnId();
+		}
+
+		return scanNumber;
+	}
+
     @Override
 	public String toString() {
 		return getName();
@@ -0,0 +1,210 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.AggregateHashTable
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.execute;
+
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.iapi.sql.execute.ExecRow;
+import org.apache.derby.iapi.store.access.ColumnOrdering;
+import org.apache.derby.iapi.store.access.SortController;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+/**
+ * An open addressing hash table of the groups of a grouped aggregate,
+ * keyed on the grouping columns.  Each group is a row whose aggregator
+ * columns hold the aggregation of the input rows of the group so far,
+ * just like the rows an AggregateSortObserver keeps in the sorter.
+ * <p>
+ * The table probes linearly and doubles when it is half full.  It keeps
+ * an estimate of the memory its rows take, so that the caller can empty
+ * it into the sorter, which merges the groups, when it grows too big.
+ */
+
+final class AggregateHashTable
+{
+	/** The initial number of slots, a power of two. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** Rough size of the row wrapper and the slot of a group, in bytes. */
+	private static final int ROW_OVERHEAD = 64;
+
+	// the 1-based columns of the grouping keys
+	private final int[] keyColumns;
+
+	private ExecRow[] rows;
+	private int[] hashCodes;
+	private int size;
+	private long memoryUsage;
+
+	/**
+	 * @param order		the ordering of the sort, whose first numKeys
+	 *					columns are the grouping columns
+	 * @param numKeys	the number of grouping columns
+	 */
+	AggregateHashTable(ColumnOrdering[] order, int numKeys)
+	{
+		keyColumns = new int[numKeys];
+		for (int i = 0; i < numKeys; i++)
+		{
+			keyColumns[i] = order[i].getColumnId() + 1;
+		}
+		rows = new ExecRow[INITIAL_CAPACITY];
+		hashCodes = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Get the hash code of the grouping columns of a row.
+	 */
+	int hash(ExecRow row) throws StandardException
+	{
+		int hash = 0;
+		for (int i = 0; i < keyColumns.length; i++)
+		{
+			hash = 31 * hash + row.getColumn(keyColumns[i]).hashCode();
+		}
+		// the slot is taken from the low bits, so spread the high ones
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Get the group of a row.
+	 *
+	 * @param row	the row
+	 * @param hash	the hash code of the row
+	 *
+	 * @return the group with the same grouping columns, or null if none
+	 *
+	 * @exception StandardException on error
+	 */
+	ExecRow get(ExecRow row, int hash) throws StandardException
+	{
+		int mask = rows.length - 1;
+		for (int slot = hash & mask; rows[slot] != null; slot = (slot + 1) & mask)
+		{
+			if (hashCodes[slot] == hash && sameKeys(rows[slot], row))
+			{
+				return rows[slot];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Add a group which is not in the table.
+	 *
+	 * @param group	the group, which the table keeps
+	 * @param hash	the hash code of the group
+	 */
+	void put(ExecRow group, int hash)
+	{
+		if (2 * (size + 1) > rows.length)
+		{
+			grow();
+		}
+		insert(group, hash);
+		size++;
+
+		memoryUsage += ROW_OVERHEAD;
+		DataValueDescriptor[] columns = group.getRowArray();
+		for (int i = 0; i < columns.length; i++)
+		{
+			if (columns[i] != null)
+			{
+				memoryUsage += columns[i].estimateMemoryUsage();
+			}
+		}
+	}
+
+	/** Get the number of groups in the table. */
+	int size()
+	{
+		return size;
+	}
+
+	/** Get an estimate of the number of bytes the groups take. */
+	long estimateMemoryUsage()
+	{
+		return memoryUsage;
+	}
+
+	/**
+	 * Insert all the groups into a sorter, and empty the table.
+	 *
+	 * @exception StandardException on error
+	 */
+	void spill(SortController sorter) throws StandardException
+	{
+		for (int slot = 0; slot < rows.length; slot++)
+		{
+			if (rows[slot] != null)
+			{
+				sorter.insert(rows[slot].getRowArray());
+				rows[slot] = null;
+			}
+		}
+		size = 0;
+		memoryUsage = 0;
+	}
+
+	private boolean sameKeys(ExecRow group, ExecRow row)
+		throws StandardException
+	{
+		for (int i = 0; i < keyColumns.length; i++)
+		{
+			// nulls are in the same group, as in the sort
+			if (!group.getColumn(keyColumns[i]).compare(
+					DataValueDescriptor.ORDER_OP_EQUALS,
+					row.getColumn(keyColumns[i]), true, true))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void grow()
+	{
+		ExecRow[] oldRows = rows;
+		int[] oldHashCodes = hashCodes;
+
+		rows = new ExecRow[oldRows.length * 2];
+		hashCodes = new int[oldRows.length * 2];
+		for (int slot = 0; slot < oldRows.length; slot++)
+		{
+			if (oldRows[slot] != null)
+			{
+				insert(oldRows[slot], oldHashCodes[slot]);
+			}
+		}
+	}
+
+	private void insert(ExecRow group, int hash)
+	{
+		int mask = rows.length - 1;
+		int slot = hash & mask;
+		while (rows[slot] != null)
+		{
+			slot = (slot + 1) & mask;
+		}
+		rows[slot] = group;
+		hashCodes[slot] = hash;
+	}
+}
@@ -178,6 +178,23 @@ implements NoPutResultSet
 	 */
 	public abstract ExecRow	getNextRowCore() throws StandardException;
 
+	/**
+	 * Return a batch of one row.  Result sets which can hand out
+	 * several rows at a time override this.
+	 *
+	 * @see NoPutResultSet#getNextRowBatchCore
+	 * @exception StandardException thrown on failure.
+	 */
+	public int getNextRowBatchCore(ExecRow[] batch) throws StandardException
+	{
+		ExecRow row = getNextRowCore();
+		if (row == null)
+			return 0;
+
+		batch[0] = row;
+		return 1;
+	}
+
 	/**
 	 * @see NoPutResultSet#getPointOfAttachment
 	 */
@@ -73,6 +73,9 @@ class BulkTableScanResultSet extends TableScanResultSet
     private RowLocation[]   rowLocations;
 	private int curRowPosition;
 	private int numRowsInArray;
+	// The compact rows handed out by getNextRowBatchCore(), one
+	// for each row of rowArray.
+	private ExecRow[] batchRows;
     private int         baseColumnCount;
     private int         resultColumnCount;
 
@@ -391,6 +394,12 @@ outer:		for (;;)
 						continue;
 					}
 
+					if (joinFilter != null && !joinFilter.mightMatch(currentRow))
+					{
+						rowsFiltered++;
+						continue;
+					}
+
 					result = currentRow;
                     if ( fetchRowLocations )
                     {
@@ -413,6 +422,98 @@ outer:		for (;;)
 	    return result;
 	}
 
+	/**
+	 * Return the rows left in rowArray, reloading it when it is empty,
+	 * as a batch.  Each row of the batch is a compact row of its own
+	 * over a row of rowArray, so the batch stays valid until rowArray
+	 * is reloaded by the next call.  Scans which return row locations
+	 * return one row at a time.
+	 *
+	 * @see NoPutResultSet#getNextRowBatchCore
+	 * @exception StandardException thrown on failure to get next rows
+	 */
+	public int getNextRowBatchCore(ExecRow[] batch) throws StandardException
+	{
+		if (fetchRowLocations)
+			return super.getNextRowBatchCore(batch);
+
+		if( isXplainOnlyMode() )
+			return 0;
+
+		int numRows = 0;
+
+		checkCancellationFlag();
+
+		beginTime = getCurrentTimeMillis();
+		if (isOpen && scanControllerOpened)
+		{
+			if (currentRow == null)
+			{
+				currentRow =
+					getCompactRow(candidate,
+									accessedCols,
+									isKeyed);
+			}
+
+			if (batchRows == null)
+			{
+				batchRows = new ExecRow[rowArray.length];
+			}
+
+			while (numRows == 0)
+			{
+				if (curRowPosition >= numRowsInArray - 1)
+				{
+					if (reloadArray() == OUT_OF_ROWS)
+					{
+						clearCurrentRow();
+						setRowCountIfPossible(rowsThisScan);
+						nextTime += getElapsedMillis(beginTime);
+						return 0;
+					}
+				}
+
+				while (numRows < batch.length &&
+					   ++curRowPosition < numRowsInArray)
+				{
+					candidate.setRowArray(rowArray[curRowPosition]);
+					rowsSeen++;
+					rowsThisScan++;
+
+					// See getNextRowCore()
+					if (skipRow(candidate))
+					{
+						rowsFiltered++;
+						continue;
+					}
+
+					ExecRow row = batchRows[curRowPosition];
+					if (row == null)
+					{
+						int numCols = currentRow.nColumns();
+						row = isKeyed ?
+							getExecutionFactory().getIndexableRow(numCols) :
+							getExecutionFactory().getValueRow(numCols);
+						batchRows[curRowPosition] = row;
+					}
+					setCompatRow(row, rowArray[curRowPosition]);
+
+					if (joinFilter != null && !joinFilter.mightMatch(row))
+					{
+						rowsFiltered++;
+						continue;
+					}
+					batch[numRows++] = row;
+				}
+			}
+
+			setCurrentRow(batch[numRows - 1]);
+		}
+
+		nextTime += getElapsedMillis(beginTime);
+		return numRows;
+	}
+
 	/*
 	** Load up rowArray with a batch of
 	** rows.
@@ -446,6 +547,7 @@ outer:		for (;;)
 		curRowPosition = -1;
 		rowArray = null;
         rowLocations = null;
+		batchRows = null;
 	}
 
 	/**
@@ -71,7 +71,8 @@ class DistinctGroupedAggregateResultSet extends GroupedAggregateResultSet
 					boolean isRollup) throws StandardException 
 	{
 		super(s, isInSortedOrder, aggregateItem, orderingItem,
-			  a, ra, maxRowSize, resultSetNumber, optimizerEstimatedRowCount, optimizerEstimatedCost, isRollup);
+			  a, ra, maxRowSize, resultSetNumber, optimizerEstimatedRowCount, optimizerEstimatedCost, isRollup,
+			  false);
     }
 
 
@@ -132,6 +132,7 @@ class DistinctScalarAggregateResultSet extends ScalarAggregateResultSet
         sourceExecIndexRow = (ExecIndexRow) getRowTemplate().getClone();
 
         source.openCore();
+		resetSourceBatch();
 
 		try {
 			/*
@@ -249,6 +250,7 @@ class DistinctScalarAggregateResultSet extends ScalarAggregateResultSet
 		}
 
 		source.reopenCore();
+		resetSourceBatch();
 
 		/*
 		** Load up the sorter because we have something to sort.
@@ -379,7 +381,7 @@ class DistinctScalarAggregateResultSet extends ScalarAggregateResultSet
 		sorter = tc.openSort(sortId);
 		dropDistinctAggSort = true;
 				
-		while ((sourceRow = source.getNextRowCore())!=null) 
+		while ((sourceRow = getNextSourceRow())!=null) 
 		{
 			sorter.insert(sourceRow.getRowArray());
 			rowsInput++;
@@ -75,7 +75,9 @@ class DistinctScanResultSet extends HashScanResultSet
 			  (Qualifier[][]) null,	  // scanQualifiers
 			  (Qualifier[][]) null,	  // nextQualifiers
 			  DEFAULT_INITIAL_CAPACITY, DEFAULT_LOADFACTOR, DEFAULT_MAX_CAPACITY,
-			  hashKeyItem, tableName, userSuppliedOptimizerOverrides, indexName, isConstraint, 
+			  hashKeyItem,
+			  -1, -1,				  // no probe scan to filter
+			  tableName, userSuppliedOptimizerOverrides, indexName, isConstraint, 
 			  false,				  // forUpdate
 			  colRefItem, lockMode, tableLocked, isolationLevel,
 			  false,
@@ -21,6 +21,7 @@
 
 package org.apache.derby.impl.sql.execute;
 
+import java.util.Arrays;
 import java.util.Vector;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -34,6 +35,7 @@ import org.apache.derby.iapi.sql.Activation;
 import org.apache.derby.iapi.sql.conn.LanguageConnectionContext;
 import org.apache.derby.iapi.sql.execute.ExecIndexRow;
 import org.apache.derby.iapi.sql.execute.ExecPreparedStatement;
+import org.apache.derby.iapi.sql.execute.ExecRow;
 import org.apache.derby.iapi.sql.execute.ExecRowBuilder;
 import org.apache.derby.iapi.sql.execute.ExecutionFactory;
 import org.apache.derby.iapi.sql.execute.NoPutResultSet;
@@ -50,6 +52,15 @@ abstract class GenericAggregateResultSet extends NoPutResultSetImpl
 	protected	NoPutResultSet	originalSource; // used for run time stats only
     private final ExecIndexRow rowTemplate;
 
+	/** The most rows read from the source at a time. */
+	private static final int SOURCE_BATCH_SIZE = 64;
+
+	// The batch of source rows being aggregated, and the
+	// position of the next row in it.
+	private ExecRow[] sourceBatch;
+	private int sourceBatchSize;
+	private int sourceBatchPosition;
+
 	/**
 	 * Constructor
 	 *
@@ -99,6 +110,49 @@ abstract class GenericAggregateResultSet extends NoPutResultSetImpl
         return rowTemplate;
     }
 
+	/**
+	 * Get the next row of the source.  The source is read a batch of
+	 * rows at a time, so that a scan and the restrictions above it hand
+	 * over many rows in one call.  A row is valid until the next call.
+	 *
+	 * @return the next source row, or null if there are no more
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	protected final ExecRow getNextSourceRow() throws StandardException
+	{
+		if (sourceBatchPosition == sourceBatchSize)
+		{
+			if (sourceBatch == null)
+			{
+				sourceBatch = new ExecRow[SOURCE_BATCH_SIZE];
+			}
+
+			sourceBatchPosition = 0;
+			sourceBatchSize = source.getNextRowBatchCore(sourceBatch);
+			if (sourceBatchSize == 0)
+			{
+				return null;
+			}
+		}
+
+		return sourceBatch[sourceBatchPosition++];
+	}
+
+	/**
+	 * Forget the rows of the batch being read from the source, when the
+	 * source is opened again.
+	 */
+	protected final void resetSourceBatch()
+	{
+		if (sourceBatch != null)
+		{
+			Arrays.fill(sourceBatch, null);
+		}
+		sourceBatchSize = 0;
+		sourceBatchPosition = 0;
+	}
+
 	/**
 	 * For each AggregatorInfo in the list, generate a
 	 * GenericAggregator and stick it in an array of
@@ -351,6 +351,14 @@ class GenericAggregator
 	    return row.getColumn(inputColumnId + 1);
 	}
 
+	/**
+	 * Return the column id of the input column
+	 */
+	int getInputColumnId()
+	{
+		return inputColumnId;
+	}
+
 	/**
 	 * Merge two partial aggregations.  This is how the
 	 * sorter merges partial aggregates.
@@ -389,6 +397,33 @@ class GenericAggregator
 		uaOut.merge(uaIn);
 	}
 
+	/**
+	 * Merge a partial aggregation, which was accumulated apart from the
+	 * rows, into the aggregator of a row.
+	 *
+	 * @param	partial	the partial aggregation
+	 * @param	row		the row with the aggregator
+	 *
+	 * @exception StandardException on error
+	 */
+	void mergePartial(ExecAggregator partial, ExecRow row)
+		throws StandardException
+	{
+		DataValueDescriptor aggregatorColumn = row.getColumn(aggregatorColumnId + 1);
+		ExecAggregator ua = (ExecAggregator) aggregatorColumn.getObject();
+
+		ua.merge(partial);
+
+		/*
+		** merge() does not carry over whether the partial aggregation
+		** eliminated nulls, so accumulate a null for it.
+		*/
+		if (partial.didEliminateNulls())
+		{
+			ua.accumulate(null, this);
+		}
+	}
+
 	//////////////////////////////////////////////////////
 	//
 	// MISC
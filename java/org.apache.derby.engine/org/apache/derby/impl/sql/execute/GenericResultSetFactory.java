@@ -382,13 +382,14 @@ public class GenericResultSetFactory implements ResultSetFactory
 		int resultSetNumber, 
 		double optimizerEstimatedRowCount,
 		double optimizerEstimatedCost,
-		boolean isRollup) 
+		boolean isRollup,
+		boolean useHashTable) 
 			throws StandardException
 	{
 		return new GroupedAggregateResultSet(
 						source, isInSortedOrder, aggregateItem, orderItem, source.getActivation(),
 						rowAllocator, maxRowSize, resultSetNumber, optimizerEstimatedRowCount,
-						optimizerEstimatedCost, isRollup);
+						optimizerEstimatedCost, isRollup, useHashTable);
 	}
 
 	/**
@@ -534,6 +535,8 @@ public class GenericResultSetFactory implements ResultSetFactory
 									float loadFactor,
 									int maxCapacity,
 									int hashKeyColumn,
+									int probeResultSetNumber,
+									int probeColumnsItem,
 									String tableName,
 									String userSuppliedOptimizerOverrides,
 									String indexName,
@@ -568,6 +571,8 @@ public class GenericResultSetFactory implements ResultSetFactory
 								loadFactor,
 								maxCapacity,
 								hashKeyColumn,
+								probeResultSetNumber,
+								probeColumnsItem,
 								tableName,
 								userSuppliedOptimizerOverrides,
 								indexName,
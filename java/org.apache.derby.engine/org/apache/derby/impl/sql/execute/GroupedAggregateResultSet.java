@@ -64,6 +64,11 @@ import org.apache.derby.iapi.types.RowLocation;
  * - Otherwise, the data are sorted, and a SortObserver is used to compute
  *   the aggregations inside the sort, and the results are read back directly
  *   from the sorter.
+ * - In that last case, if the optimizer expects few groups, the rows are
+ *   first aggregated in an AggregateHashTable, and only the groups are
+ *   sorted. Whenever the table grows past derby.language.maxMemoryPerTable
+ *   its groups are spilled into the sorter, which merges them with the
+ *   groups of the same keys spilled before.
  *
  * Note that, as of the introduction of the ROLLUP support, we no longer
  * ALWAYS compute the aggregates using a SortObserver, which is an
@@ -125,6 +130,7 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 
 	private boolean rollup;
 	private boolean usingAggregateObserver = false;
+	private boolean useHashTable;
 
 	private long genericSortId;
 	private TransactionController tc;
@@ -147,6 +153,9 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 	 * @param	ra				saved object that builds an empty output row
 	 * @param	maxRowSize		approx row size, passed to sorter
 	 * @param	resultSetNumber	The resultSetNumber for this result set
+	 * @param	isRollup		true if this is a GROUP BY ROLLUP()
+	 * @param	useHashTable	true if the groups are to be collected in
+	 *							a hash table before they are sorted
 	 *
 	 * @exception StandardException Thrown on error
 	 */
@@ -160,7 +169,8 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 					int resultSetNumber,
 				    double optimizerEstimatedRowCount,
 					double optimizerEstimatedCost,
-					boolean isRollup) throws StandardException 
+					boolean isRollup,
+					boolean useHashTable) throws StandardException 
 	{
 		super(s, aggregateItem, a, ra, resultSetNumber, optimizerEstimatedRowCount, optimizerEstimatedCost);
 		this.isInSortedOrder = isInSortedOrder;
@@ -183,6 +193,7 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 			!isInSortedOrder &&
 			!rollup &&
 			!hasDistinctAggregate;
+		this.useHashTable = useHashTable && usingAggregateObserver;
 
 		recordConstructorTime();
     }
@@ -213,6 +224,7 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
         sourceExecIndexRow = (ExecIndexRow) getRowTemplate().getClone();
 
         source.openCore();
+		resetSourceBatch();
 
 		try {
 		/* If this is an in-order group by then we do not need the sorter.
@@ -309,9 +321,16 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 		sorter = tc.openSort(genericSortId);
 	
 		/* The sorter is responsible for doing the cloning */
-		while ((inputRow = getNextRowFromRS()) != null) 
+		if (useHashTable)
 		{
-			sorter.insert(inputRow.getRowArray());
+			loadSorterFromHashTable(sorter);
+		}
+		else
+		{
+			while ((inputRow = getNextRowFromRS()) != null) 
+			{
+				sorter.insert(inputRow.getRowArray());
+			}
 		}
 		source.close();
 		sorter.completedInserts();
@@ -338,6 +357,67 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 			activation.getResultSetHoldability());
 	}
 
+	/**
+	 * Aggregate the source rows into groups in a hash table, and insert
+	 * the groups into the sorter. The groups are spilled into the sorter
+	 * each time the table grows past the memory allowed for a table. If
+	 * the rows of a full table were mostly in groups of their own, the
+	 * rest of the rows are inserted into the sorter directly.
+	 *
+	 * @exception StandardException thrown on failure.
+	 */
+	private void loadSorterFromHashTable(SortController sorter)
+		throws StandardException
+	{
+		long maxMemory = getLanguageConnectionContext().
+			getOptimizerFactory().getMaxMemoryPerTable();
+		AggregateHashTable groups = new AggregateHashTable(order, numGCols());
+		int rowsHashed = 0;
+		ExecRow inputRow;
+
+		while ((inputRow = getNextRowFromRS()) != null)
+		{
+			if (groups == null)
+			{
+				sorter.insert(inputRow.getRowArray());
+				continue;
+			}
+
+			rowsHashed++;
+			int hash = groups.hash(inputRow);
+			ExecRow group = groups.get(inputRow, hash);
+			if (group != null)
+			{
+				for (int i = 0; i < aggregates.length; i++)
+				{
+					aggregates[i].accumulate(inputRow, group);
+				}
+				continue;
+			}
+
+			/* The source row is reused, so the table keeps a clone */
+			group = inputRow.getClone();
+			initializeVectorAggregation(group);
+			groups.put(group, hash);
+
+			if (groups.estimateMemoryUsage() > maxMemory)
+			{
+				boolean fewDuplicates = (rowsHashed < 2 * groups.size());
+				groups.spill(sorter);
+				rowsHashed = 0;
+				if (fewDuplicates)
+				{
+					groups = null;
+				}
+			}
+		}
+
+		if (groups != null)
+		{
+			groups.spill(sorter);
+		}
+	}
+
 	/**
 	 * Return the number of grouping columns.
 	 *
@@ -630,7 +710,7 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 		ExecRow					sourceRow;
 		ExecIndexRow			inputRow = null;	
 
-		if ((sourceRow = source.getNextRowCore()) != null)
+		if ((sourceRow = getNextSourceRow()) != null)
 		{
 			rowsInput++;
 			sourceExecIndexRow.execRowToExecIndexRow(sourceRow);
@@ -21,6 +21,7 @@
 
 package org.apache.derby.impl.sql.execute;
 
+import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.iapi.services.loader.GeneratedMethod;
 import org.apache.derby.iapi.sql.Activation;
 import org.apache.derby.iapi.sql.execute.NoPutResultSet;
@@ -30,9 +31,27 @@ import org.apache.derby.iapi.sql.execute.NoPutResultSet;
  * Hash join of 2 arbitrary result sets.
  * Simple subclass of nested loop, differentiated
  * to ease RunTimeStatistics output generation.
+ * <p>
+ * When the keys probed come straight from a scan on the left side, the
+ * scan gets a Bloom filter on the keys of the hash table once the hash
+ * table is built, on the first row from the left side.  The scan then
+ * drops the rows which cannot join before they are projected, and before
+ * they reach the join.  Only joins which drop the left rows without a
+ * match can do that, so not NOT EXISTS joins, and only scans whose rows
+ * all go to this join are filtered.
  */
 class HashJoinResultSet extends NestedLoopJoinResultSet
 {
+	// The scan on the left side which reads the probe keys, a
+	// TableScanResultSet or an IndexRowToBaseRowResultSet, and whether
+	// it has been looked for.
+	private NoPutResultSet probeScan;
+	private boolean probeScanFound;
+
+	// Whether this join set the filter of the scan, which is only done
+	// while the hash table is built.
+	private boolean filterSet;
+
     HashJoinResultSet(NoPutResultSet leftResultSet,
 								   int leftNumCols,
 								   NoPutResultSet rightResultSet,
@@ -51,4 +70,155 @@ class HashJoinResultSet extends NestedLoopJoinResultSet
 			  oneRowRightSide, notExistsRightSide, optimizerEstimatedRowCount, 
 			  optimizerEstimatedCost, userSuppliedOptimizerOverrides);
     }
+
+	/**
+	 * Open the right side, which builds the hash table the first time, and
+	 * filter the scan which reads the probe keys on the keys of the hash
+	 * table.  The join only opens the right side once it has a row from the
+	 * left side, so the hash table is not built when the left side is empty.
+	 *
+	 * @see JoinResultSet#openRight
+	 * @exception StandardException thrown on error
+	 */
+	protected void openRight() throws StandardException
+	{
+		super.openRight();
+
+		if (! filterSet && getProbeScan() != null)
+		{
+			setProbeFilter();
+		}
+	}
+
+	/**
+	 * Close the right side, which drops the hash table, so stop filtering
+	 * the scan.
+	 *
+	 * @see JoinResultSet#closeRight
+	 */
+	protected void closeRight() throws StandardException
+	{
+		if (filterSet)
+		{
+			setFilter(probeScan, null);
+			filterSet = false;
+		}
+
+		super.closeRight();
+	}
+
+	/**
+	 * Find the scan on the left side to filter, if any.
+	 *
+	 * @return the scan, or null if there is none
+	 */
+	private NoPutResultSet getProbeScan()
+	{
+		if (! probeScanFound)
+		{
+			probeScanFound = true;
+
+			if (! notExistsRightSide &&
+				rightResultSet instanceof HashScanResultSet)
+			{
+				int probeResultSetNumber = ((HashScanResultSet)
+					rightResultSet).probeResultSetNumber;
+				if (probeResultSetNumber != -1)
+				{
+					probeScan =
+						findScan(leftResultSet, probeResultSetNumber);
+				}
+			}
+		}
+		return probeScan;
+	}
+
+	/**
+	 * Find a scan in a result set tree.  Only the result sets which make
+	 * each of their rows from at most one row of the scan, with the same
+	 * keys, are looked below: restrictions, index to base row lookups,
+	 * inner joins and the left side of outer joins.  Dropping a row of the
+	 * scan then only drops rows that this join would drop.
+	 *
+	 * @param rs				the top of the tree
+	 * @param resultSetNumber	the result set number of the scan
+	 *
+	 * @return the scan, or null if it is not found
+	 */
+	private static NoPutResultSet findScan(NoPutResultSet rs,
+										   int resultSetNumber)
+	{
+		if (rs instanceof TableScanResultSet ||
+			rs instanceof IndexRowToBaseRowResultSet)
+		{
+			if (rs.resultSetNumber() == resultSetNumber)
+			{
+				return rs;
+			}
+		}
+
+		if (rs instanceof IndexRowToBaseRowResultSet)
+		{
+			return findScan(((IndexRowToBaseRowResultSet) rs).source,
+							resultSetNumber);
+		}
+		else if (rs instanceof ProjectRestrictResultSet)
+		{
+			return findScan(((ProjectRestrictResultSet) rs).source,
+							resultSetNumber);
+		}
+		else if (rs instanceof NestedLoopLeftOuterJoinResultSet)
+		{
+			// Dropping a row on the right side could make the outer join
+			// return the left row with nulls instead.
+			return findScan(((JoinResultSet) rs).leftResultSet,
+							resultSetNumber);
+		}
+		else if (rs instanceof NestedLoopJoinResultSet)
+		{
+			JoinResultSet join = (JoinResultSet) rs;
+			NoPutResultSet scan = findScan(join.leftResultSet, resultSetNumber);
+			if (scan == null && ! join.oneRowRightSide &&
+				! join.notExistsRightSide)
+			{
+				scan = findScan(join.rightResultSet, resultSetNumber);
+			}
+			return scan;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Filter the scan on the keys of the hash table just built, unless
+	 * another join filters it already.
+	 */
+	private void setProbeFilter() throws StandardException
+	{
+		if (getFilter(probeScan) == null)
+		{
+			setFilter(probeScan,
+				((HashScanResultSet) rightResultSet).buildProbeFilter());
+			filterSet = true;
+		}
+	}
+
+	private static JoinFilter getFilter(NoPutResultSet scan)
+	{
+		return (scan instanceof TableScanResultSet) ?
+			((TableScanResultSet) scan).joinFilter :
+			((IndexRowToBaseRowResultSet) scan).getJoinFilter();
+	}
+
+	private static void setFilter(NoPutResultSet scan, JoinFilter filter)
+	{
+		if (scan instanceof TableScanResultSet)
+		{
+			((TableScanResultSet) scan).setJoinFilter(filter);
+		}
+		else
+		{
+			((IndexRowToBaseRowResultSet) scan).setJoinFilter(filter);
+		}
+	}
 }
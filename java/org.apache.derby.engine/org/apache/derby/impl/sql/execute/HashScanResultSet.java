@@ -21,6 +21,7 @@
 
 package org.apache.derby.impl.sql.execute;
 
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Properties;
 
@@ -86,6 +87,11 @@ public class HashScanResultSet extends ScanResultSet
 	public boolean forUpdate;
 	private boolean runTimeStatisticsOn;
 	public int[] keyColumns;
+
+	// The scan on the outer side of a hash join which reads the probe keys,
+	// and the 1-based columns of its rows which hold them, if any.
+	final int probeResultSetNumber;
+	private int[] probeColumns;
 	private boolean sameStartStopPosition;
 	private boolean skipNullKeyColumns;
 	private boolean keepAfterCommit;
@@ -121,6 +127,8 @@ public class HashScanResultSet extends ScanResultSet
 		float loadFactor,
 		int maxCapacity,
 		int hashKeyItem,
+		int probeResultSetNumber,
+		int probeColumnsItem,
 		String tableName,
 		String userSuppliedOptimizerOverrides,
 		String indexName,
@@ -184,6 +192,20 @@ public class HashScanResultSet extends ScanResultSet
 			keyColumns[index] = fihArray[index].getInt();
 		}
 
+		this.probeResultSetNumber = probeResultSetNumber;
+		if (probeColumnsItem != -1)
+		{
+			fah = (FormatableArrayHolder)
+				(activation.getPreparedStatement().
+					getSavedObject(probeColumnsItem));
+			fihArray = fah.getArray(FormatableIntHolder[].class);
+			probeColumns = new int[fihArray.length];
+			for (int index = 0; index < fihArray.length; index++)
+			{
+				probeColumns[index] = fihArray[index].getInt();
+			}
+		}
+
 		runTimeStatisticsOn = 
             getLanguageConnectionContext().getRunTimeStatisticsMode();
 
@@ -343,6 +365,43 @@ public class HashScanResultSet extends ScanResultSet
 		openTime += getElapsedMillis(beginTime);
 	}
 
+	/**
+	 * Make a filter on the keys of the hash table for the scan on the outer
+	 * side of the join which reads the probe keys.  Must be called after
+	 * the hash table has been built.
+	 *
+	 * @return the filter, or null if there is no scan to filter
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	JoinFilter buildProbeFilter() throws StandardException
+	{
+		if (probeColumns == null)
+		{
+			return null;
+		}
+
+		// With no hash table, no row can match and the filter stays empty.
+		JoinFilter filter = new JoinFilter(probeColumns,
+			hashtableBuilt ? hashtable.size() : 0);
+		if (hashtableBuilt)
+		{
+			for (Enumeration<Object> e = hashtable.elements();
+				 e.hasMoreElements(); )
+			{
+				Object entry = e.nextElement();
+
+				// The rows of a list all have the same key.
+				if (entry instanceof List)
+				{
+					entry = ((List) entry).get(0);
+				}
+				filter.add(unpackHashValue(entry), keyColumns);
+			}
+		}
+		return filter;
+	}
+
 	private void resetProbeVariables() throws StandardException
 	{
 		firstNext = true;
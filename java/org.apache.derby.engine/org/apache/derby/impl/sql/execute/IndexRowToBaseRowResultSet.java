@@ -76,6 +76,15 @@ class IndexRowToBaseRowResultSet extends NoPutResultSetImpl
 	 */
 	boolean copiedFromSource;
 
+	/* Set by a hash join above this result set, to drop the rows whose
+	 * keys are not in the hash table of the join.  The keys are checked
+	 * here after the base row is fetched, so the join only filters this
+	 * result set when some key is not in the index.  When the keys are
+	 * all in the index, the compiler has the join filter the scan of the
+	 * index instead, which drops the rows before their fetch.
+	 */
+	private JoinFilter joinFilter;
+
 	/* Run time statistics variables */
 	public long restrictionTime;
 
@@ -395,17 +404,25 @@ class IndexRowToBaseRowResultSet extends NoPutResultSetImpl
 
                     setCurrentRow(compactRow);
 
-                    restrictBoolean = (DataValueDescriptor) 
-                        ((restriction == null) ? 
-                             null : restriction.invoke(activation));
-
-                    restrictionTime += getElapsedMillis(beginRT);
-
-                    // if the result is null, we make it false --
-                    // so the row won't be returned.
-                    restrict = (restrictBoolean == null) ||
-                                ((! restrictBoolean.isNull()) &&
-                                    restrictBoolean.getBoolean());
+                    if (joinFilter != null &&
+                        !joinFilter.mightMatch(compactRow))
+                    {
+                        restrict = false;
+                    }
+                    else
+                    {
+                        restrictBoolean = (DataValueDescriptor)
+                            ((restriction == null) ?
+                                 null : restriction.invoke(activation));
+
+                        restrictionTime += getElapsedMillis(beginRT);
+
+                        // if the result is null, we make it false --
+                        // so the row won't be returned.
+                        restrict = (restrictBoolean == null) ||
+                                    ((! restrictBoolean.isNull()) &&
+                                        restrictBoolean.getBoolean());
+                    }
                 }
 
 				if (! restrict || ! row_exists)
@@ -442,6 +459,24 @@ class IndexRowToBaseRowResultSet extends NoPutResultSetImpl
     	return retval;
 	}
 
+	/** Get the filter set by setJoinFilter(), or null. */
+	JoinFilter getJoinFilter()
+	{
+		return joinFilter;
+	}
+
+	/**
+	 * Drop the rows whose keys cannot be in the hash table of a hash join
+	 * above this result set.
+	 *
+	 * @param filter	the filter on the keys of the hash table, or null to
+	 *					return all the rows
+	 */
+	void setJoinFilter(JoinFilter filter)
+	{
+		joinFilter = filter;
+	}
+
 	/**
 	 * If the result set has been opened,
 	 * close the open scan.
@@ -0,0 +1,141 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.JoinFilter
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.execute;
+
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.iapi.sql.execute.ExecRow;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+/**
+ * A Bloom filter on the keys of the hash table of a hash join, which a
+ * scan on the outer side of the join uses to drop the rows whose keys
+ * cannot be in the hash table before they go any further.
+ * <p>
+ * The filter may say that a key is in the hash table when it is not, but
+ * never the other way around, so the join still has to probe the hash
+ * table with the rows which pass.  A null key never matches, as the hash
+ * table has no rows with null keys and null does not equal anything.
+ * <p>
+ * The key columns must hash the same on both sides of the join, which the
+ * hash table relies on as well.
+ */
+
+final class JoinFilter
+{
+	/** The number of bits per key, which gives about 1% false matches. */
+	private static final int BITS_PER_KEY = 10;
+
+	/** The number of bits set for a key. */
+	private static final int NUM_HASHES = 5;
+
+	/** The most bits a filter takes, 8 megabytes. */
+	private static final int MAX_BITS = 1 << 26;
+
+	private final long[] bits;
+	private final int mask;
+
+	// the 1-based columns of the keys in the rows filtered
+	private final int[] columns;
+
+	/**
+	 * @param columns	the 1-based columns of the keys in the rows to filter
+	 * @param numKeys	the expected number of keys in the filter
+	 */
+	JoinFilter(int[] columns, int numKeys)
+	{
+		long wanted = Math.max(64L, (long) numKeys * BITS_PER_KEY);
+		int numBits = (wanted >= MAX_BITS) ?
+			MAX_BITS : Integer.highestOneBit((int) wanted - 1) << 1;
+
+		this.bits = new long[numBits >>> 6];
+		this.mask = numBits - 1;
+		this.columns = columns;
+	}
+
+	/**
+	 * Add the key of a row of the hash table.
+	 *
+	 * @param row			the row
+	 * @param keyColumns	the 0-based columns of the key in the row
+	 *
+	 * @exception StandardException on error
+	 */
+	void add(DataValueDescriptor[] row, int[] keyColumns)
+		throws StandardException
+	{
+		int hash = 0;
+		for (int i = 0; i < keyColumns.length; i++)
+		{
+			DataValueDescriptor key = row[keyColumns[i]];
+			if (key.isNull())
+			{
+				return;
+			}
+			hash = 31 * hash + key.hashCode();
+		}
+
+		long h = hash * 0x9E3779B97F4A7C15L;
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < NUM_HASHES; i++)
+		{
+			int bit = (h1 + i * h2) & mask;
+			bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Tell whether the key of a row may be in the hash table.
+	 *
+	 * @param row	the row, with the key in the columns of the filter
+	 *
+	 * @return false if the key is not in the hash table, true if it may be
+	 *
+	 * @exception StandardException on error
+	 */
+	boolean mightMatch(ExecRow row) throws StandardException
+	{
+		int hash = 0;
+		for (int i = 0; i < columns.length; i++)
+		{
+			DataValueDescriptor key = row.getColumn(columns[i]);
+			if (key.isNull())
+			{
+				return false;
+			}
+			hash = 31 * hash + key.hashCode();
+		}
+
+		long h = hash * 0x9E3779B97F4A7C15L;
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < NUM_HASHES; i++)
+		{
+			int bit = (h1 + i * h2) & mask;
+			if ((bits[bit >>> 6] & (1L << bit)) == 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -72,6 +72,9 @@ class ProjectRestrictResultSet extends NoPutResultSetImpl
 	private boolean shortCircuitOpen;
 
 	private ExecRow projRow;
+	// The result rows handed out by getNextRowBatchCore(), one for
+	// each position of the batch.
+	private ExecRow[] batchResultRows;
     private final boolean validatingCheckConstraint;
     private final UUID validatingBaseTableUUID;
     Enumeration<Object> rowLocations;
@@ -349,6 +352,151 @@ class ProjectRestrictResultSet extends NoPutResultSetImpl
     	return result;
 	}
 
+	/**
+	 * Return a batch of the rows of a batch of the source for which the
+	 * restriction evaluates to true.  The restriction and the projection
+	 * are evaluated for each row, with the row as the current row of both
+	 * this result set and the source, and each row is projected into a
+	 * result row of its own.  Reused results, check constraint validation
+	 * and run time statistics go through getNextRowCore() a row at a time.
+	 *
+	 * @see NoPutResultSet#getNextRowBatchCore
+	 * @exception StandardException thrown on failure.
+	 */
+	public int getNextRowBatchCore(ExecRow[] batch) throws StandardException
+	{
+		if (reuseResult || validatingCheckConstraint || runTimeStatsOn)
+		{
+			return super.getNextRowBatchCore(batch);
+		}
+
+		if( isXplainOnlyMode() )
+			return 0;
+
+		/* Return no rows if open was short circuited by false constant expression */
+		if (shortCircuitOpen)
+		{
+			return 0;
+		}
+
+		if (batchResultRows == null || batchResultRows.length < batch.length)
+		{
+			batchResultRows = new ExecRow[batch.length];
+		}
+
+		int numRows = 0;
+		int numSourceRows;
+		do
+		{
+			numSourceRows = source.getNextRowBatchCore(batch);
+
+			// The qualifying rows are moved down over the source rows,
+			// which have been looked at by then.
+			for (int i = 0; i < numSourceRows; i++)
+			{
+				ExecRow candidateRow = batch[i];
+				rowsSeen++;
+
+				if (restriction != null || projection != null)
+				{
+					source.setCurrentRow(candidateRow);
+					setCurrentRow(candidateRow);
+				}
+
+				if (restriction != null)
+				{
+					DataValueDescriptor restrictBoolean =
+						(DataValueDescriptor) restriction.invoke(activation);
+
+					// if the result is null, we make it false --
+					// so the row won't be returned.
+					if (restrictBoolean.isNull() ||
+						! restrictBoolean.getBoolean())
+					{
+						rowsFiltered++;
+						continue;
+					}
+				}
+
+				batch[numRows] = projectIntoBatch(candidateRow, numRows);
+				numRows++;
+			}
+		} while (numRows == 0 && numSourceRows > 0);
+
+		if (numRows == 0)
+		{
+			clearCurrentRow();
+		}
+		else
+		{
+			setCurrentRow(batch[numRows - 1]);
+		}
+
+		return numRows;
+	}
+
+	/**
+	 * Do the projection against a source row into the result row for a
+	 * position of a batch.  The generated projection reuses its result
+	 * row and the values in it, so the values it computes are copied.
+	 *
+	 * @param sourceRow		The source row.
+	 * @param position		The position of the row in the batch.
+	 *
+	 * @return		The result row
+	 *
+	 * @exception StandardException thrown on failure.
+	 */
+	private ExecRow projectIntoBatch(ExecRow sourceRow, int position)
+		throws StandardException
+	{
+		ExecRow projected = (projection == null) ?
+			null : (ExecRow) projection.invoke(activation);
+
+		ExecRow result = batchResultRows[position];
+		if (result == null)
+		{
+			result = activation.getExecutionFactory().getValueRow(
+											projectMapping.length);
+			batchResultRows[position] = result;
+		}
+
+		for (int index = 0; index < projectMapping.length; index++)
+		{
+			if (projectMapping[index] != -1)
+			{
+				DataValueDescriptor dvd =
+						sourceRow.getColumn(projectMapping[index]);
+
+				// See doProjection()
+				if (cloneMap[index] && dvd.hasStream()) {
+					dvd = dvd.cloneValue(false);
+				}
+
+				result.setColumn(index + 1, dvd);
+			}
+			else if (projected != null)
+			{
+				// Copy the value into the holder of this position, or
+				// into a holder of its own the first time.
+				DataValueDescriptor dvd = projected.getColumn(index + 1);
+				DataValueDescriptor holder = result.getColumn(index + 1);
+
+				if (holder == null || dvd.hasStream() ||
+					holder.getClass() != dvd.getClass())
+				{
+					result.setColumn(index + 1, dvd.cloneValue(false));
+				}
+				else
+				{
+					holder.setValue(dvd);
+				}
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * Return the total amount of time spent in this ResultSet
 	 *
@@ -398,6 +546,7 @@ class ProjectRestrictResultSet extends NoPutResultSetImpl
 			// REVISIT: does this need to be in a finally
 			// block, to ensure that it is executed?
 	    	clearCurrentRow();
+			batchResultRows = null;
 
 	        source.close();
 
@@ -613,6 +762,32 @@ class ProjectRestrictResultSet extends NoPutResultSetImpl
 		return result;
 	} 
 	
+	/**
+	 * Tell whether every row of the source is a row of this result set,
+	 * because there is no restriction to evaluate.
+	 *
+	 * @return true if no source rows are filtered out
+	 */
+	boolean passesAllSourceRows()
+	{
+		return restriction == null && constantRestriction == null &&
+			!validatingCheckConstraint;
+	}
+
+	/**
+	 * Get the column of the source rows that a column of the rows of this
+	 * result set is copied from.
+	 *
+	 * @param column	the column of the rows of this result set, from 1
+	 *
+	 * @return the column of the source rows, from 1, or -1 if the column
+	 *		is computed by the projection
+	 */
+	int getSourceColumn(int column)
+	{
+		return projectMapping[column - 1];
+	}
+
 	/**
 	 * Is this ResultSet or it's source result set for update
 	 * 
@@ -25,9 +25,12 @@ import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.shared.common.sanity.SanityManager;
 import org.apache.derby.iapi.sql.Activation;
 import org.apache.derby.iapi.sql.execute.CursorResultSet;
+import org.apache.derby.iapi.sql.execute.ExecAggregator;
 import org.apache.derby.iapi.sql.execute.ExecIndexRow;
 import org.apache.derby.iapi.sql.execute.ExecRow;
 import org.apache.derby.iapi.sql.execute.NoPutResultSet;
+import org.apache.derby.iapi.store.access.RowConsumer;
+import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.RowLocation;
 
 /**
@@ -127,6 +130,7 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 		sourceExecIndexRow = (ExecIndexRow) getRowTemplate().getClone();
 
         source.openCore();
+		resetSourceBatch();
 
 	    isOpen = true;
 		numOpens++;
@@ -169,13 +173,21 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 		beginTime = getCurrentTimeMillis();
 	    if (isOpen)
 	    {
+			/*
+			** Have the store scan the table with many threads,
+			** if it can, and combine what they aggregate.
+			*/
+			aggResult = aggregateInParallel();
+			boolean aggregatedInParallel = (aggResult != null);
+
 			/*
 			** We are dealing with a scalar aggregate.
 			** Zip through each row and accumulate.
 			** Accumulate into the first row.  Only
 			** the first row is cloned.
 			*/
-	        while ((execIndexRow = getRowFromResultSet(false)) != null)
+	        while (!aggregatedInParallel &&
+				   (execIndexRow = getRowFromResultSet(false)) != null)
 	        {
 				/*
 				** Use a clone of the first row as our result.  
@@ -351,7 +363,7 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 		ExecRow					sourceRow;
 		ExecIndexRow			inputRow = null;	
 
-		if ((sourceRow = source.getNextRowCore()) != null)
+		if ((sourceRow = getNextSourceRow()) != null)
 		{
 			rowsInput++;
 			sourceExecIndexRow.execRowToExecIndexRow(
@@ -376,6 +388,7 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 	    	SanityManager.ASSERT(isOpen, "NormalizeResultSet already open");
 
 		source.reopenCore();
+		resetSourceBatch();
 		numOpens++;
         countOfRows = 0;
 		nextSatisfied = false;
@@ -437,6 +450,116 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 		}
 	}
 
+	/**
+	 * Compute the aggregates from partial aggregations of the rows of the
+	 * table, scanned in parallel by the store.  That is only done for
+	 * non-distinct COUNT, SUM, AVG, MIN and MAX of columns of a whole
+	 * heap, read through a projection without restrictions, and when
+	 * the store has threads to scan with.  Runtime statistics are not
+	 * collected for the scan, so it is not done when they are on.
+	 *
+	 * @return the row with the aggregators, or null if the rows of the
+	 *		source have to be aggregated here
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	private ExecIndexRow aggregateInParallel()
+		throws StandardException
+	{
+		int threads =
+			activation.getTransactionController().getParallelScanThreads();
+
+		if (threads <= 1 || singleInputRow ||
+				getLanguageConnectionContext().getRunTimeStatisticsMode() ||
+				!(source instanceof ProjectRestrictResultSet))
+		{
+			return null;
+		}
+
+		ProjectRestrictResultSet prrs = (ProjectRestrictResultSet) source;
+		if (!prrs.passesAllSourceRows() ||
+				!(prrs.source instanceof TableScanResultSet))
+		{
+			return null;
+		}
+		TableScanResultSet scan = (TableScanResultSet) prrs.source;
+
+		/*
+		** Each thread accumulates into aggregators of its own.  Find
+		** the column of the heap rows each aggregate takes, -1 for
+		** COUNT(*).
+		*/
+		int size = aggregates.length;
+		int[] columns = new int[size];
+		PartialAggregation[] partials = new PartialAggregation[threads];
+		for (int t = 0; t < threads; t++)
+		{
+			partials[t] = new PartialAggregation(new ExecAggregator[size], columns);
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			GenericAggregator currAggregate = aggregates[i];
+			if (currAggregate.getAggregatorInfo().isDistinct())
+			{
+				return null;
+			}
+
+			ExecAggregator ua = currAggregate.getAggregatorInstance();
+			if (ua instanceof CountAggregator &&
+					((CountAggregator) ua).isCountStar())
+			{
+				columns[i] = -1;
+			}
+			else if (ua instanceof CountAggregator ||
+					ua instanceof SumAggregator ||
+					ua instanceof MaxMinAggregator)
+			{
+				int column = prrs.getSourceColumn(
+						currAggregate.getInputColumnId() + 1);
+				columns[i] = (column == -1) ? -1 : scan.getBaseColumn(column);
+				if (columns[i] == -1)
+				{
+					return null;
+				}
+			}
+			else
+			{
+				return null;
+			}
+
+			partials[0].aggregators[i] = ua;
+			for (int t = 1; t < threads; t++)
+			{
+				partials[t].aggregators[i] =
+					currAggregate.getAggregatorInstance();
+			}
+		}
+
+		if (!scan.scanHeapInParallel(partials))
+		{
+			return null;
+		}
+
+		ExecIndexRow row = (ExecIndexRow) getRowTemplate().getClone();
+		for (int i = 0; i < size; i++)
+		{
+			GenericAggregator currAggregate = aggregates[i];
+			currAggregate.initialize(row);
+			for (int t = 0; t < threads; t++)
+			{
+				currAggregate.mergePartial(partials[t].aggregators[i], row);
+			}
+		}
+
+		for (int t = 0; t < threads; t++)
+		{
+			rowsInput += partials[t].rowsInput;
+		}
+
+		return row;
+	}
+
 	///////////////////////////////////////////////////////////////////////////////
 	//
 	// CLASS SPECIFIC
@@ -471,4 +594,35 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 			currAggregate.accumulate(row, row);
 		}
 	}
+
+	/**
+	 * The aggregation of the rows which one thread of a parallel scan
+	 * gives it.
+	 */
+	private static final class PartialAggregation implements RowConsumer
+	{
+		// one aggregator for each aggregate of the result set
+		final ExecAggregator[] aggregators;
+		// the column of the heap rows each aggregator takes, -1 if none
+		private final int[] columns;
+		int rowsInput;
+
+		PartialAggregation(ExecAggregator[] aggregators, int[] columns)
+		{
+			this.aggregators = aggregators;
+			this.columns = columns;
+		}
+
+		public void consume(DataValueDescriptor[] row)
+			throws StandardException
+		{
+			for (int i = 0; i < aggregators.length; i++)
+			{
+				int column = columns[i];
+				aggregators[i].accumulate(
+						(column == -1) ? null : row[column], null);
+			}
+			rowsInput++;
+		}
+	}
 }
@@ -37,6 +37,7 @@ import org.apache.derby.iapi.store.access.BackingStoreHashtable;
 import org.apache.derby.iapi.store.access.ConglomerateController;
 import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
 import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowConsumer;
 import org.apache.derby.iapi.store.access.ScanController;
 import org.apache.derby.iapi.store.access.StaticCompiledOpenConglomInfo;
 import org.apache.derby.iapi.store.access.TransactionController;
@@ -117,6 +118,10 @@ class TableScanResultSet extends ScanResultSet
 	// row, or it is accessing a row for the first time.
     protected boolean scanRepositioned;
 
+	// Set by a hash join above this scan, to drop the rows whose keys are
+	// not in the hash table of the join.
+	JoinFilter joinFilter;
+
     //
     // class interface
     //
@@ -509,6 +514,12 @@ class TableScanResultSet extends ScanResultSet
 						continue;
 					}
 
+					if (joinFilter != null && !joinFilter.mightMatch(currentRow))
+					{
+						rowsFiltered++;
+						continue;
+					}
+
 					/* beetle 3865, updateable cursor use index. If we have a hash table that
 					 * holds updated records, and we hit it again, skip it, and remove it from
 					 * hash since we can't hit it again, and we have a space in hash, so can
@@ -1258,6 +1269,71 @@ class TableScanResultSet extends ScanResultSet
 		return forUpdate;
 	}
 
+	/**
+	 * Get the column of the conglomerate rows that a column of the rows
+	 * of this result set is fetched from.
+	 *
+	 * @param column	the column of the rows of this result set, from 1
+	 *
+	 * @return the column of the conglomerate rows, from 0
+	 */
+	int getBaseColumn(int column)
+	{
+		if (accessedCols == null)
+			return column - 1;
+
+		for (int i = accessedCols.anySetBit();
+				i != -1;
+				i = accessedCols.anySetBit(i))
+		{
+			if (--column == 0)
+				return i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Drop the rows whose keys cannot be in the hash table of a hash join
+	 * above this scan.
+	 *
+	 * @param filter	the filter on the keys of the hash table, or null to
+	 *					return all the rows
+	 */
+	void setJoinFilter(JoinFilter filter)
+	{
+		joinFilter = filter;
+	}
+
+	/**
+	 * Give all the rows of the heap to the consumers, scanned in parallel
+	 * by the store, instead of returning them from this result set.  That
+	 * is only done for an open scan of a whole heap, before it has
+	 * returned any rows.  The rows given have the shape of the candidate
+	 * row, with the columns this result set fetches.
+	 *
+	 * @param consumers	the consumers to give the rows to
+	 *
+	 * @return false if the rows were not given, and have to be read from
+	 *		this result set
+	 *
+	 * @exception StandardException thrown on failure
+	 */
+	boolean scanHeapInParallel(RowConsumer[] consumers)
+		throws StandardException
+	{
+		if (!isOpen || !scanControllerOpened || isKeyed || forUpdate ||
+				qualifiers != null || joinFilter != null ||
+				startKeyGetter != null || stopKeyGetter != null)
+		{
+			return false;
+		}
+
+		return activation.getTransactionController().scanHeapInParallel(
+				conglomId, isolationLevel, accessedCols,
+				candidate.getRowArray(), consumers);
+	}
+
 	/**
 	 * Shallow clone this result set.  Used in trigger reference.
 	 * beetle 4373.
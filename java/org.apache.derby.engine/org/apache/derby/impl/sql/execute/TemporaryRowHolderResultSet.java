@@ -678,6 +678,23 @@ class TemporaryRowHolderResultSet implements CursorResultSet, NoPutResultSet, Cl
 		return TEMPORARY_RESULT_SET_NUMBER;
 	}
 
+	/**
+	 * Return a batch of one row.
+	 *
+	 * @see NoPutResultSet#getNextRowBatchCore
+	 * @exception StandardException on error
+	 */
+	public int getNextRowBatchCore(ExecRow[] batch)
+		throws StandardException
+	{
+		ExecRow row = getNextRowCore();
+		if (row == null)
+			return 0;
+
+		batch[0] = row;
+		return 1;
+	}
+
 	/**
 	 * Set the current row to the row passed in.
 	 *
@@ -141,6 +141,10 @@ class PropertyConglomerate
                 RawStoreFactory.PAGE_RESERVED_SPACE_PARAMETER, 
                 RawStoreFactory.PAGE_RESERVED_ZERO_SPACE_STRING);
 
+            // the database properties cannot be looked up before this
+            // conglomerate exists, so do not let the heap look for them.
+			conglomProperties.put(Property.COMPRESSED_RECORDS, "false");
+
 			propertiesConglomId = 
                 tc.createConglomerate(
                     AccessFactoryGlobals.HEAP,
@@ -32,6 +32,8 @@ import org.apache.derby.iapi.services.cache.CacheManager;
 import org.apache.derby.iapi.services.context.ContextManager;
 import org.apache.derby.iapi.services.context.Context;
 import org.apache.derby.iapi.services.context.ContextService;
+import org.apache.derby.iapi.services.daemon.DaemonFactory;
+import org.apache.derby.iapi.services.daemon.DaemonService;
 import org.apache.derby.iapi.services.daemon.Serviceable;
 import org.apache.derby.iapi.services.locks.LockFactory;
 import org.apache.derby.iapi.services.monitor.ModuleControl;
@@ -54,6 +56,7 @@ import org.apache.derby.iapi.services.property.PropertyFactory;
 
 import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
 import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.store.access.LogCompressionInfo;
 import org.apache.derby.iapi.store.access.TransactionInfo;
 
 import org.apache.derby.iapi.store.raw.ContainerHandle;
@@ -67,6 +70,7 @@ import org.apache.derby.catalog.UUID;
 
 import org.apache.derby.shared.common.reference.SQLState;
 import org.apache.derby.shared.common.reference.Attribute;
+import org.apache.derby.shared.common.reference.Property;
 
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
@@ -159,6 +163,12 @@ public abstract class RAMAccessManager
      **/
     private CacheManager    conglom_cache;
 
+    /**
+     * The daemons which scan heaps in parallel, null if
+     * derby.storage.scanThreads is not more than 1.
+     **/
+    private DaemonService[] scanDaemons;
+
     /**************************************************************************
      * Constructors for This class:
      **************************************************************************
@@ -193,6 +203,15 @@ public abstract class RAMAccessManager
         return rawstore;
     }
 
+    /**
+     * Return the daemons which scan heaps in parallel, or null if heaps
+     * are only scanned by the thread using them.
+     **/
+    DaemonService[] getScanDaemons()
+    {
+        return scanDaemons;
+    }
+
 
 	PropertyConglomerate getTransactionalProperties()
     {
@@ -900,6 +919,11 @@ public abstract class RAMAccessManager
 		return rawstore.getTransactionInfo();
 	}
 
+	public LogCompressionInfo getLogCompressionInfo()
+	{
+		return rawstore.getLogCompressionInfo();
+	}
+
     /**
      * Start the replication master role for this database.
      * @param dbmaster The master database that is being replicated.
@@ -1208,6 +1232,20 @@ public abstract class RAMAccessManager
         tc.destroy();
         tc = null;
 
+        // Start the daemons which scan heaps in parallel, if asked to.
+        int scanThreads = PropertyUtil.getSystemInt(Property.SCAN_THREADS,
+                                1, Integer.MAX_VALUE, 1);
+        if (scanThreads > 1)
+        {
+            DaemonFactory daemonFactory =
+                (DaemonFactory) startSystemModule(
+                    org.apache.derby.shared.common.reference.Module.DaemonFactory);
+
+            scanDaemons = new DaemonService[scanThreads];
+            for (int i = 0; i < scanThreads; i++)
+                scanDaemons[i] = daemonFactory.createNewDaemon("scanDaemon");
+        }
+
         if (SanityManager.DEBUG)
         {
             // RESOLVE - (mikem) currently these constants need to be the
@@ -1234,15 +1272,43 @@ public abstract class RAMAccessManager
 
     public void stop()
     {
+        if (scanDaemons != null)
+        {
+            for (int i = 0; i < scanDaemons.length; i++)
+                scanDaemons[i].stop();
+            scanDaemons = null;
+        }
     }
 
     /* Methods of the PropertySetCallback interface */
 
     // This interface is implemented to ensure the user cannot change the
-    // encryption provider or algorithm.
+    // encryption provider or algorithm, and to pass the lock escalation
+    // thresholds of single conglomerates to the raw store.
 
 	public void init(boolean dbOnly, Dictionary p)
     {
+        for (Enumeration e = p.keys(); e.hasMoreElements(); )
+        {
+            Object key = e.nextElement();
+
+            if (key instanceof String)
+            {
+                long containerId = getThresholdContainerId((String) key);
+
+                if (containerId >= 0)
+                {
+                    Object value = p.get(key);
+
+                    rawstore.setLockEscalationThreshold(
+                        containerId,
+                        PropertyUtil.handleInt(
+                            (value instanceof String) ? (String) value : null,
+                            Property.MIN_LOCKS_ESCALATION_THRESHOLD,
+                            Integer.MAX_VALUE, 0));
+                }
+            }
+        }
     }
 
     public boolean validate(String key, Serializable value, Dictionary p)
@@ -1256,13 +1322,87 @@ public abstract class RAMAccessManager
         {
             throw StandardException.newException(SQLState.ENCRYPTION_NOCHANGE_PROVIDER);
 		}
+        if (getThresholdContainerId(key) >= 0)
+        {
+            PropertyUtil.intPropertyValue(
+                key, value,
+                Property.MIN_LOCKS_ESCALATION_THRESHOLD, Integer.MAX_VALUE, 0);
+        }
         return true;
     }
 
     public Serviceable apply(String key, Serializable value, Dictionary p)
 		 throws StandardException
     {
-        return null;
+        long containerId = getThresholdContainerId(key);
+
+        if (containerId < 0)
+            return null;
+
+        // only pass the threshold on once the transaction setting it commits
+        return new SetLockEscalationThreshold(
+            containerId,
+            PropertyUtil.intPropertyValue(
+                key, value,
+                Property.MIN_LOCKS_ESCALATION_THRESHOLD, Integer.MAX_VALUE, 0));
+    }
+
+    /**
+     * Get the container id from the key of the lock escalation threshold of
+     * a single conglomerate. The number of a permanent conglomerate is also
+     * the id of its container.
+     *
+     * @param key   a property key
+     *
+     * @return the container id, or -1 if the key is not the threshold of a
+     *         conglomerate
+     */
+    private static long getThresholdContainerId(String key)
+    {
+        if (!key.startsWith(Property.LOCKS_ESCALATION_THRESHOLD_PREFIX))
+            return -1;
+
+        try
+        {
+            return Long.parseLong(key.substring(
+                Property.LOCKS_ESCALATION_THRESHOLD_PREFIX.length()));
+        }
+        catch (NumberFormatException nfe)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Post commit work setting the lock escalation threshold of a container
+     * in the raw store, done by the committing thread.
+     */
+    private final class SetLockEscalationThreshold implements Serviceable
+    {
+        private final long  containerId;
+        private final int   threshold;
+
+        SetLockEscalationThreshold(long containerId, int threshold)
+        {
+            this.containerId = containerId;
+            this.threshold   = threshold;
+        }
+
+        public int performWork(ContextManager context)
+        {
+            rawstore.setLockEscalationThreshold(containerId, threshold);
+            return Serviceable.DONE;
+        }
+
+        public boolean serviceASAP()
+        {
+            return true;
+        }
+
+        public boolean serviceImmediately()
+        {
+            return true;
+        }
     }
 
     public Serializable map(String key, Serializable value, Dictionary p)
@@ -26,12 +26,14 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Properties;
 
+import org.apache.derby.shared.common.reference.Property;
 import org.apache.derby.shared.common.reference.SQLState;
 
 import org.apache.derby.iapi.services.context.ContextManager;
 
 import org.apache.derby.iapi.services.io.Storable;
 
+import org.apache.derby.iapi.services.daemon.DaemonService;
 import org.apache.derby.iapi.services.daemon.Serviceable;
 import org.apache.derby.iapi.services.locks.CompatibilitySpace;
 import org.apache.derby.shared.common.sanity.SanityManager;
@@ -52,6 +54,7 @@ import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
 import org.apache.derby.iapi.store.access.FileResource;
 import org.apache.derby.iapi.store.access.GroupFetchScanController;
 import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowConsumer;
 import org.apache.derby.iapi.store.access.RowLocationRetRowSource;
 import org.apache.derby.iapi.store.access.ScanController;
 import org.apache.derby.iapi.store.access.SortController;
@@ -999,6 +1002,12 @@ public class RAMTransaction
 		else
         {
 			accessmanager.conglomCacheRemoveEntry(conglomId);
+
+            // drop the lock escalation threshold of the conglomerate, if set
+            String thresholdKey =
+                Property.LOCKS_ESCALATION_THRESHOLD_PREFIX + conglomId;
+            if (getProperty(thresholdKey) != null)
+                setProperty(thresholdKey, null, true);
         }
 	}
 
@@ -1066,6 +1075,77 @@ public class RAMTransaction
                 fetchRow));
     }
 
+    public int getParallelScanThreads()
+    {
+        DaemonService[] daemons = accessmanager.getScanDaemons();
+
+        return(daemons == null ? 1 : daemons.length);
+    }
+
+    /**
+     * Scan all the rows of a heap in parallel.
+     * <p>
+     * See TransactionController.scanHeapInParallel().
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public boolean scanHeapInParallel(
+    long                    conglomId,
+    int                     isolation_level,
+    FormatableBitSet        scanColumnList,
+    DataValueDescriptor[]   template,
+    RowConsumer[]           consumers)
+        throws StandardException
+    {
+        DaemonService[] daemons = accessmanager.getScanDaemons();
+
+        if (daemons == null || conglomId < 0)
+            return(false);
+
+        // At repeatable read and serializable the rows read stay locked to
+        // the end of the transaction.  Doing that with a table lock would
+        // keep all writers out of the table, so leave the scan to the
+        // caller, which locks just the rows it reads.
+        if (isolation_level == ISOLATION_REPEATABLE_READ ||
+            isolation_level == ISOLATION_SERIALIZABLE)
+        {
+            return(false);
+        }
+
+		// Find the conglomerate.
+		Conglomerate conglom = findExistingConglomerate(conglomId);
+
+        // Lock the table shared, so that no rows change while the scan
+        // daemons read them without locks.  Rather than wait for writers,
+        // leave the scan to the caller.  The lock is taken at read
+        // committed, so that it is released when the scan is done.
+        ConglomerateController cc;
+        try
+        {
+            cc = openConglomerate(
+                    conglomId, false, OPENMODE_LOCK_NOWAIT, MODE_TABLE,
+                    ISOLATION_READ_COMMITTED);
+        }
+        catch (StandardException se)
+        {
+            if (se.isLockTimeout())
+                return(false);
+            throw se;
+        }
+
+        try
+        {
+            conglom.scanInParallel(
+                this, daemons, scanColumnList, template, consumers);
+        }
+        finally
+        {
+            cc.close();
+        }
+
+        return(true);
+    }
+
 
     /**
      * A superset of properties that "users" can specify.
@@ -1457,6 +1537,28 @@ public class RAMTransaction
 		return;
     }
 
+    /**
+     * Set the lock escalation threshold of a conglomerate.
+     *
+     * @see TransactionController#setLockEscalationThreshold
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public void setLockEscalationThreshold(
+    long    conglomId,
+    int     threshold)
+        throws StandardException
+    {
+        findExistingConglomerate(conglomId);
+
+        // the property is applied to the raw store when the transaction
+        // commits, and set again in the raw store at boot.
+        setProperty(
+            Property.LOCKS_ESCALATION_THRESHOLD_PREFIX + conglomId,
+            (threshold == 0) ? null : Integer.toString(threshold),
+            true);
+    }
+
     /**
      * Compress table in place.
      * <p>
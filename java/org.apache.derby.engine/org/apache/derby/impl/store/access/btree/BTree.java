@@ -21,6 +21,7 @@
 
 package org.apache.derby.impl.store.access.btree;
 
+import org.apache.derby.shared.common.reference.Property;
 import org.apache.derby.shared.common.reference.SQLState;
 
 import org.apache.derby.iapi.services.io.FormatableBitSet;
@@ -342,6 +343,21 @@ public abstract class BTree extends GenericConglomerate
         return uniqueWithDuplicateNulls;
     }
 
+    /**
+     * Returns if the keys of the index are stored compressed.
+     * <p>
+     * If true, the fields of the rows on the leaf and branch pages are
+     * stored compressed, and the separators promoted to the branch pages
+     * on a leaf split are truncated to the shortest key which still
+     * separates the two leaves.
+     *
+     * @return true if the keys of the index are stored compressed.
+     */
+    public boolean hasCompressedKeys()
+    {
+        return(false);
+    }
+
     /**************************************************************************
      * Public Methods of Conglomerate Interface:
      **************************************************************************
@@ -521,6 +537,10 @@ public abstract class BTree extends GenericConglomerate
 		properties.put(RawStoreFactory.PAGE_RESERVED_SPACE_PARAMETER, "0");
 		properties.put(RawStoreFactory.MINIMUM_RECORD_SIZE_PARAMETER, "1");
 		properties.put(RawStoreFactory.PAGE_REUSABLE_RECORD_ID, "true");
+        if (hasCompressedKeys())
+            properties.put(Property.COMPRESSED_RECORDS, "true");
+        else
+            properties.remove(Property.COMPRESSED_RECORDS);
 
 		long containerid = 
             rawtran.addContainer(
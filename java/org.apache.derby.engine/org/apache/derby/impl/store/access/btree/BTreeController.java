@@ -23,6 +23,7 @@ package org.apache.derby.impl.store.access.btree;
 
 import java.util.Properties;
 
+import org.apache.derby.shared.common.reference.Property;
 import org.apache.derby.shared.common.reference.SQLState;
 
 import org.apache.derby.shared.common.sanity.SanityManager;
@@ -50,6 +51,7 @@ import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.RowLocation;
 
 import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.property.PropertyUtil;
 import org.apache.derby.impl.store.access.conglomerate.ConglomerateUtil;
 
 /**
@@ -74,6 +76,17 @@ public class BTreeController extends OpenBTree implements ConglomerateController
      * has already been gotten when the row was inserted into the base table.
      **/
     boolean get_insert_row_lock;
+
+    /**
+     * State of a load(), the page numbers of the rightmost branch page at
+     * each level of the tree being built, indexed by level.
+     **/
+    private transient long[] load_branch_pages;
+
+    /**
+     * How full, in percent, load() fills the pages of the tree.
+     **/
+    private transient int load_fill_factor;
     
     //constants for the status of dupicate checking
     private static final int NO_MATCH = 0;
@@ -1144,69 +1157,207 @@ public class BTreeController extends OpenBTree implements ConglomerateController
 	}
 
     /**
-     * Create room to insert a row to the right of the largest key in table.
+     * Start a new leaf to the right of the rightmost leaf of the btree
+     * being loaded.
+     * <p>
+     * The btree is built bottom up.  The new leaf is linked to the right of
+     * the full leaf, and a branch row pointing at it is appended to the 
+     * rightmost branch page one level up, adding branch pages and levels
+     * as needed.  No rows are moved between leaves and the tree is never
+     * searched from the root.  The first time this is called the root is
+     * still a leaf, its rows are moved to a new leaf and the root becomes
+     * a level 1 branch page.
      * <p>
-     * Perform a split pass on the tree which will move the largest key in
-     * leaf right to a new leaf, splitting parent branch pages as necessary.
+     * On entry the full leaf is latched, on exit it has been released and
+     * the new, empty leaf is returned latched.
+     *
+     * @param rowToInsert   The row which is to go on the new leaf.
+     * @param leaf          The full rightmost leaf.
      *
 	 * @exception  StandardException  Standard exception policy.
      **/
-	private LeafControlRow do_load_split(
+	private LeafControlRow do_load_new_leaf(
     DataValueDescriptor[]   rowToInsert,
     LeafControlRow          leaf)
         throws StandardException
 	{
-		LeafControlRow new_leaf = null;
+        if (leaf.getIsRoot())
+        {
+            // The root must stay on the root page, so move its rows to a new
+            // leaf and make the root a branch page with the new leaf as its
+            // left child.  Constructing the branch control row invalidates
+            // the leaf control row of the root page.
+            LeafControlRow first_leaf = LeafControlRow.allocate(this, leaf);
+
+            leaf.page.copyAndPurge(
+                first_leaf.page, 1, leaf.page.recordCount() - 1, 1);
+
+            BranchControlRow root = 
+                new BranchControlRow(
+                    this, leaf.page, 1, null, true, 
+                    first_leaf.page.getPageNumber());
+
+            root.page.updateAtSlot(
+                0, root.getRow(), (FormatableBitSet) null);
+            root.release();
+
+            load_branch_pages = new long[2];
+            load_branch_pages[1] = BTree.ROOTPAGEID;
+
+            leaf = first_leaf;
+        }
+
+        // The key of the branch row only has to separate the last row of the
+        // full leaf from the row going on the new leaf.
+        BranchRow branchrow;
+
+        if (getConglomerate().hasCompressedKeys())
+        {
+            leaf.page.fetchFromSlot(
+                (RecordHandle) null, leaf.page.recordCount() - 1, 
+                scratch_template, (FetchDescriptor) null, true);
 
-        BranchRow branchrow = 
-            BranchRow.createBranchRowFromOldLeafRow(
-                rowToInsert, leaf.page.getPageNumber());
+            branchrow = BranchRow.createTruncatedBranchRow(
+                scratch_template, rowToInsert, BranchRow.DUMMY_PAGE_NUMBER,
+                getConglomerate());
+        }
+        else
+        {
+            branchrow = BranchRow.createBranchRowFromOldLeafRow(
+                rowToInsert, BranchRow.DUMMY_PAGE_NUMBER);
+        }
 
-        // Release the target page because (a) it may change as a 
-        // result of the split, (b) the latch ordering requires us 
-        // to acquire latches from top to bottom, and (c) this 
-        // loop should be done in a system transaction.
-        long old_leafpage = leaf.page.getPageNumber();
+        LeafControlRow new_leaf = LeafControlRow.allocate(this, null);
+        long new_leaf_pageno = new_leaf.page.getPageNumber();
 
+        new_leaf.linkRight(this, leaf);
+
+        // Adding the branch row may latch the children of branch pages
+        // moving to a new parent, so hold no leaf latches while doing it.
         leaf.release();
-        leaf = null;
-        
-        long new_leaf_pageno = 
-            start_xact_and_dosplit(
-                false /* don't try to reclaim deleted rows */,
-                old_leafpage,
-                scratch_template, 
-                branchrow.getRow(), 
-                (ControlRow.SPLIT_FLAG_LAST_ON_PAGE | 
-                    ControlRow.SPLIT_FLAG_LAST_IN_TABLE));
+        new_leaf.release();
+
+        branchrow.setPageNumber(new_leaf_pageno);
+
+        long parent_pageno = do_load_insert_branch_row(branchrow, new_leaf_pageno, 1);
 
         new_leaf = (LeafControlRow) ControlRow.get(this, new_leaf_pageno);
+        new_leaf.setParent(parent_pageno);
 
-        // The leaf must be the rightmost leaf in the table, the first time
-        // the root grows from leaf to branch it will be a leaf with many
-        // rows which will probably have to be split soon, after that it will
-        // be a leaf with only one row.  The current algorithm requires that
-        // there be at least one row for duplicate checking (the duplicate
-        // checking code does not handle going left to the previous leaf) - 
-        // this is the way the split at rightmost leaf row works currently.
-        if (SanityManager.DEBUG)
+        return(new_leaf);
+	}
+
+    /**
+     * Append a branch row to the rightmost branch page at a level of the 
+     * btree being loaded.
+     * <p>
+     * If the rightmost branch page is full a new one is started to its
+     * right, with the child of the branch row as its left child, and a
+     * branch row for the new page carrying the same key is appended one 
+     * level up.  If the full page is the root the tree first grows a 
+     * level, the rows of the root move to a new branch page and the root 
+     * becomes its parent.  
+     * <p>
+     * No latches are held on entry or exit.  The parent link of the child
+     * of the branch row is left to the caller.
+     *
+     * @param branchrow     The branch row to add.
+     * @param child_pageno  The page number the branch row points at.
+     * @param level         The level of the branch page to add it to.
+     *
+     * @return The page number of the branch page which is now the parent of
+     *         the child of the branch row.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	private long do_load_insert_branch_row(
+    BranchRow   branchrow,
+    long        child_pageno,
+    int         level)
+        throws StandardException
+	{
+        BranchControlRow branch = 
+            (BranchControlRow) ControlRow.get(this, load_branch_pages[level]);
+        int num_rows_on_page = branch.page.recordCount() - 1;
+
+        if (num_rows_on_page < BTree.maxRowsPerPage &&
+            (num_rows_on_page == 0 ||
+             branch.page.getFillPercentage() < load_fill_factor))
         {
-            if (new_leaf.getrightSiblingPageNumber() != 
-                    ContainerHandle.INVALID_PAGE_NUMBER)
+            if (branch.page.insertAtSlot(
+                    branch.page.recordCount(),
+                    branchrow.getRow(),
+                    (FormatableBitSet) null,
+                    (LogicalUndo) null,
+                    Page.INSERT_DEFAULT,
+                    AccessFactoryGlobals.BTREE_OVERFLOW_THRESHOLD) != null)
             {
-                SanityManager.THROWASSERT(
-                    "new_leaf.getrightSiblingPageNumber() = " + 
-                        new_leaf.getrightSiblingPageNumber());
+                long branch_pageno = branch.page.getPageNumber();
+                branch.release();
+
+                return(branch_pageno);
             }
-            if (new_leaf.page.recordCount() <= 1)
+            else if (num_rows_on_page == 0)
             {
-                SanityManager.THROWASSERT(
-                    "new_leaf.page.recordCount() = " + 
-                    new_leaf.page.recordCount());
+                branch.release();
+
+                throw StandardException.newException(
+                        SQLState.BTREE_NO_SPACE_FOR_KEY);
             }
         }
 
-        return(new_leaf);
+        if (branch.getIsRoot())
+        {
+            // Move the rows of the root to a new branch page at the same
+            // level, and move the root up a level with the new branch page
+            // as its left child.
+            BranchControlRow new_branch = 
+                BranchControlRow.allocate(
+                    this, branch.getLeftChildPageno(), level, branch);
+
+            branch.page.copyAndPurge(
+                new_branch.page, 1, branch.page.recordCount() - 1, 1);
+            branch.setLeftChild(new_branch);
+            branch.setLevel(level + 1);
+            branch.release();
+
+            new_branch.fixChildrensParents(this, null);
+
+            long[] branch_pages = new long[level + 2];
+            System.arraycopy(
+                load_branch_pages, 0, branch_pages, 0, 
+                load_branch_pages.length);
+            branch_pages[level]     = new_branch.page.getPageNumber();
+            branch_pages[level + 1] = BTree.ROOTPAGEID;
+            load_branch_pages = branch_pages;
+
+            branch = new_branch;
+        }
+
+        BranchControlRow sibling = 
+            BranchControlRow.allocate(
+                this, child_pageno, level, null);
+        long sibling_pageno = sibling.page.getPageNumber();
+
+        sibling.linkRight(this, branch);
+
+        branch.release();
+        sibling.release();
+
+        load_branch_pages[level] = sibling_pageno;
+
+        // The key separating the child from its left neighbor also separates
+        // the new branch page from the full one.
+        long parent_pageno = 
+            do_load_insert_branch_row(
+                branchrow.createBranchRowFromOldBranchRow(sibling_pageno),
+                sibling_pageno, level + 1);
+
+        sibling = (BranchControlRow) ControlRow.get(this, sibling_pageno);
+        sibling.setParent(parent_pageno);
+        sibling.release();
+
+        return(sibling_pageno);
 	}
 
 
@@ -1471,12 +1622,14 @@ public class BTreeController extends OpenBTree implements ConglomerateController
      * On exit from this routine the conglomerate will be closed (on both
      * error or success).
      * <p>
-     * This routine does an almost bottom up build of a btree.  It assumes
-     * all rows arrive in sorted order, and inserts them directly into the
-     * next (to the right) spot in the current leaf until there is no space.
-     * Then it calls the generic split code to add the next leaf (RESOLVE - 
-     * in the future we could optimize this to split bottom up rather than
-     * top down for create index).
+     * This routine does a bottom up build of a btree.  It assumes all rows
+     * arrive in sorted order, and inserts them directly into the next (to 
+     * the right) spot in the current leaf until the leaf is full, or filled
+     * to the derby.storage.indexFillFactor percentage.  Then it starts a new
+     * leaf to the right and appends a branch row for it to the rightmost
+     * branch page one level up, see do_load_new_leaf().  Only the rightmost
+     * page of each level is ever latched, and no rows are moved once they 
+     * have been placed.
      *
      * @exception StandardException Standard exception policy.  If conglomerate
 	 *                              supports uniqueness checks and has been 
@@ -1507,6 +1660,10 @@ public class BTreeController extends OpenBTree implements ConglomerateController
             scratch_template = runtime_mem.get_template(getRawTran());
         }
 
+        load_fill_factor = 
+            PropertyUtil.getServiceInt(
+                xact_manager, Property.INDEX_FILL_FACTOR, 1, 100, 100);
+
         LeafControlRow current_leaf = null;
 
         try 
@@ -1538,23 +1695,27 @@ public class BTreeController extends OpenBTree implements ConglomerateController
                         validColumns == null, "Does not support partial row");
                 }
 
-                while (true)
+                // leave the rest of a leaf free once it is filled to the
+                // fill factor, but always put at least one row on a leaf.
+                if (current_insert_slot > 1 &&
+                    current_leaf.page.getFillPercentage() >= load_fill_factor)
                 {
-                    if (do_load_insert(row, current_leaf, current_insert_slot))
-                    {
-                        // row inserted successfully.
-                        break;
-                    }
-                    else
+                    current_leaf = do_load_new_leaf(row, current_leaf);
+                    current_insert_slot = 1;
+                }
+
+                if (!do_load_insert(row, current_leaf, current_insert_slot))
+                {
+                    // the row does not fit, start a new leaf for it.  If it
+                    // does not fit on an empty leaf either, do_load_insert()
+                    // raises the error.
+                    current_leaf = do_load_new_leaf(row, current_leaf);
+                    current_insert_slot = 1;
+
+                    if (!do_load_insert(row, current_leaf, current_insert_slot))
                     {
-                        // if insert fails, do a split pass. There is an edge
-                        // case where multiple split passes are necessary if
-                        // branch splits are necessary, thus the loop.  It is
-                        // most likely that only a single split pass will be
-                        // necessary.
-                        current_leaf = do_load_split(row, current_leaf);
-
-                        current_insert_slot = current_leaf.page.recordCount();
+                        throw StandardException.newException(
+                                SQLState.BTREE_NO_SPACE_FOR_KEY);
                     }
                 }
                 current_insert_slot++;
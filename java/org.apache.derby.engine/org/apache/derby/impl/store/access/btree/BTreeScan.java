@@ -50,6 +50,7 @@ import org.apache.derby.iapi.types.DataValueDescriptor;
 
 import org.apache.derby.iapi.types.RowLocation;
 
+import org.apache.derby.impl.store.access.conglomerate.ReadAheadTracker;
 import org.apache.derby.impl.store.access.conglomerate.TemplateRow;
 
 import org.apache.derby.iapi.services.io.FormatableBitSet;
@@ -109,6 +110,11 @@ public abstract class BTreeScan extends OpenBTree implements ScanManager
 
     BTreeRowPosition                scan_position;
 
+    /**
+     * Decides when to read leaf pages ahead of a forward scan.
+     **/
+    private final ReadAheadTracker  read_ahead = new ReadAheadTracker();
+
 
      /**
       * Whether the scan should requests UPDATE locks which then will be 
@@ -339,6 +345,9 @@ public abstract class BTreeScan extends OpenBTree implements ScanManager
     {
         boolean         exact;
 
+        // forget the pages visited before the scan was repositioned.
+        read_ahead.reset();
+
         // This routine should only be called from first next() call //
         if (SanityManager.DEBUG)
         {
@@ -508,6 +517,17 @@ public abstract class BTreeScan extends OpenBTree implements ScanManager
         // set up for scan to continue at beginning of next page.
         pos.current_slot        = Page.FIRST_SLOT_NUMBER;
         pos.current_rh          = null;
+
+        // ask for the following leaves to be read in the background. Leaves
+        // are often not stored in order, so also give the tracker the right
+        // sibling of the new leaf.
+        if (pos.current_leaf != null)
+        {
+            read_ahead.pageVisited(
+                container,
+                pos.current_leaf.getPage().getPageNumber(),
+                pos.current_leaf.getrightSiblingPageNumber());
+        }
     }
 
     /**
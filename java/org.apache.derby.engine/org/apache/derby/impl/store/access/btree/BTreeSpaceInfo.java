@@ -0,0 +1,97 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.btree.BTreeSpaceInfo
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.btree;
+
+import org.apache.derby.iapi.store.access.SpaceInfo;
+
+/**
+
+  The space information of a btree.  The page counts are those of the
+  container holding the btree, the shape of the tree is added to them by
+  OpenBTree.getSpaceInfo().
+
+**/
+class BTreeSpaceInfo implements SpaceInfo
+{
+    private SpaceInfo   containerInfo;
+    private int         treeHeight;
+    private int         averageFanout;
+
+    /* Constructors for This class: */
+    BTreeSpaceInfo(
+    SpaceInfo   containerInfo,
+    int         treeHeight,
+    int         averageFanout)
+    {
+        this.containerInfo  = containerInfo;
+        this.treeHeight     = treeHeight;
+        this.averageFanout  = averageFanout;
+    }
+
+    /**
+     * @see SpaceInfo#getNumAllocatedPages
+     **/
+    public long getNumAllocatedPages()
+    {
+        return containerInfo.getNumAllocatedPages();
+    }
+
+    /**
+     * @see SpaceInfo#getNumFreePages
+     **/
+    public long getNumFreePages()
+    {
+        return containerInfo.getNumFreePages();
+    }
+
+    /**
+     * @see SpaceInfo#getNumUnfilledPages
+     **/
+    public long getNumUnfilledPages()
+    {
+        return containerInfo.getNumUnfilledPages();
+    }
+
+    /**
+     * @see SpaceInfo#getPageSize
+     **/
+    public int getPageSize()
+    {
+        return containerInfo.getPageSize();
+    }
+
+    /**
+     * @see SpaceInfo#getTreeHeight
+     **/
+    public int getTreeHeight()
+    {
+        return treeHeight;
+    }
+
+    /**
+     * @see SpaceInfo#getAverageFanout
+     **/
+    public int getAverageFanout()
+    {
+        return averageFanout;
+    }
+}
@@ -1258,6 +1258,24 @@ public class BranchControlRow extends ControlRow
     OpenBTree         open_btree,
     ControlRow        leftchild,
     int               level,
+    ControlRow        parent)
+        throws StandardException
+    {
+        return(
+            allocate(
+                open_btree, leftchild.page.getPageNumber(), level, parent));
+    }
+
+    /**
+     * Allocate a new branch page to the conglomerate, given the page number
+     * of its left child.
+     *
+     * @exception StandardException Standard exception policy.
+     */
+    static BranchControlRow allocate(
+    OpenBTree         open_btree,
+    long              leftchild_pageno,
+    int               level,
     ControlRow        parent)
         throws StandardException
     {
@@ -1267,7 +1285,7 @@ public class BranchControlRow extends ControlRow
         BranchControlRow control_row =
             new BranchControlRow(
                 open_btree, page, level,
-                parent, false, leftchild.page.getPageNumber());
+                parent, false, leftchild_pageno);
 
         // Insert the control row on the page.
 		byte insertFlag = Page.INSERT_INITIAL;
@@ -1319,7 +1337,7 @@ public class BranchControlRow extends ControlRow
      ** <P>
      ** This
 	 **/
-	private void fixChildrensParents(
+	void fixChildrensParents(
     OpenBTree       btree,
     ControlRow      leftchild)
         throws StandardException
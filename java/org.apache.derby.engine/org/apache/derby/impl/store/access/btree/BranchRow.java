@@ -33,6 +33,7 @@ import org.apache.derby.iapi.store.raw.Transaction;
 import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.DataValueFactory;
 import org.apache.derby.iapi.types.SQLLongint;
+import org.apache.derby.iapi.types.StringDataValue;
 
 /**
  * Implements row which is stored in the branch pages of a btree.  A non-suffix
@@ -48,6 +49,8 @@ import org.apache.derby.iapi.types.SQLLongint;
  *      creates a new row with reference to an old branch row.
  *   createBranchRowFromOldLeafRow()
  *      creates a new row with reference to an old leaf row.
+ *   createTruncatedBranchRow()
+ *      creates a new row with the shortest key separating two leaf rows.
  */
 
 public class BranchRow
@@ -215,6 +218,126 @@ public class BranchRow
         return(newbranch);
     }
 
+    /**
+     * Create a new branch row separating two adjacent leaf rows.
+     * <p>
+     * Used by LeafControlRow when splitting a leaf of an index whose keys
+     * are stored compressed.  Any key which is greater than the last row
+     * left of the split and less than or equal to the first row right of
+     * the split can be used as the separator on the parent page.  The
+     * first key column in which the two rows differ is shortened to the
+     * shortest prefix which still sorts between the two values, and the
+     * string columns following it are set to empty strings.
+     * If no such shorter key exists the branch row is built from the right
+     * row as in createBranchRowFromOldLeafRow().
+     * <p>
+     * WARNING - this branch row is only valid while the right leaf row is
+     * valid, as it may contain references to the columns of that row.
+     *
+     * @param leftrow       the last leaf row left of the split.
+     * @param rightrow      the first leaf row right of the split.
+     * @param childpageno   the child page number of the new branch row.
+     * @param btree         the btree the rows belong to.
+     *
+	 * @return The new branch row.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     */
+    public static BranchRow createTruncatedBranchRow(
+    DataValueDescriptor[]   leftrow, 
+    DataValueDescriptor[]   rightrow, 
+    long                    childpageno,
+    BTree                   btree)
+        throws StandardException
+    {
+        int ncols = btree.nUniqueColumns;
+
+        // find the first column which tells the two rows apart.
+        int diffcol = 0;
+        while (diffcol < ncols && 
+               leftrow[diffcol].compare(rightrow[diffcol]) == 0)
+        {
+            diffcol++;
+        }
+
+        if (diffcol < ncols)
+        {
+            DataValueDescriptor[] key = 
+                new DataValueDescriptor[rightrow.length];
+            System.arraycopy(rightrow, 0, key, 0, rightrow.length);
+
+            // the columns after the one which tells the rows apart can hold
+            // any value, use the shortest one for the string columns.
+            for (int i = diffcol + 1; i < ncols; i++)
+            {
+                if (rightrow[i] instanceof StringDataValue && 
+                    !rightrow[i].isNull())
+                {
+                    key[i] = rightrow[i].cloneValue(false);
+                    key[i].setValue("");
+                }
+            }
+
+            DataValueDescriptor left  = leftrow[diffcol];
+            DataValueDescriptor right = rightrow[diffcol];
+
+            if (right instanceof StringDataValue && 
+                !left.isNull() && !right.isNull())
+            {
+                String left_str  = left.getString();
+                String right_str = right.getString();
+
+                int prefix = 0;
+                while (prefix < left_str.length() && 
+                       prefix < right_str.length() &&
+                       left_str.charAt(prefix) == right_str.charAt(prefix))
+                {
+                    prefix++;
+                }
+
+                // a prefix sorts before the value it is taken from, so in
+                // a descending column shorten the left value instead.
+                String str = 
+                    btree.ascDescInfo[diffcol] ? right_str : left_str;
+
+                for (int len = prefix + 1; len < str.length(); len++)
+                {
+                    key[diffcol] = right.cloneValue(false);
+                    key[diffcol].setValue(str.substring(0, len));
+
+                    if (separates(leftrow, key, rightrow, btree))
+                        return(createBranchRowFromOldLeafRow(key, childpageno));
+                }
+
+                key[diffcol] = right;
+            }
+
+            if (separates(leftrow, key, rightrow, btree))
+                return(createBranchRowFromOldLeafRow(key, childpageno));
+        }
+
+        return(createBranchRowFromOldLeafRow(rightrow, childpageno));
+    }
+
+    /**
+     * Check that a key sorts after one leaf row and not after another.
+     *
+     * @exception  StandardException  Standard exception policy.
+     */
+    private static boolean separates(
+    DataValueDescriptor[]   leftrow, 
+    DataValueDescriptor[]   key, 
+    DataValueDescriptor[]   rightrow, 
+    BTree                   btree)
+        throws StandardException
+    {
+        return(
+            ControlRow.compareIndexRowToKey(
+                leftrow, key, btree.nUniqueColumns, 0, btree.ascDescInfo) < 0 &&
+            ControlRow.compareIndexRowToKey(
+                key, rightrow, btree.nUniqueColumns, 0, btree.ascDescInfo) <= 0);
+    }
+
     /**
      * Return the branch row.
      * <p>
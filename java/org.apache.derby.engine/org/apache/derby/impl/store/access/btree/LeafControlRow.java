@@ -115,7 +115,7 @@ public class LeafControlRow extends ControlRow
      * 
      * @exception StandardException Standard exception policy.
      */
-    private static LeafControlRow allocate(
+    static LeafControlRow allocate(
     OpenBTree   btree, 
     ControlRow  parent)
         throws StandardException
@@ -606,8 +606,30 @@ public class LeafControlRow extends ControlRow
         // use a fake page number because we don't know the real page 
         // number until the allocate is done, but want to delay the 
         // allocate until we know the insert will succeed.
-        BranchRow branchrow = BranchRow.createBranchRowFromOldLeafRow(
-            split_leaf_row, BranchRow.DUMMY_PAGE_NUMBER);
+        BranchRow branchrow;
+
+        if (open_btree.getConglomerate().hasCompressedKeys() &&
+            splitpoint > ControlRow.CR_SLOT + 1)
+        {
+            // Only a key separating the two halves of the page is needed 
+            // on the parent page, use the shortest one.
+            DataValueDescriptor[] left_leaf_row = 
+                open_btree.getConglomerate().createTemplate(
+                        open_btree.getRawTran());
+
+            this.page.fetchFromSlot(
+                (RecordHandle) null, splitpoint - 1, left_leaf_row, 
+                (FetchDescriptor) null, true); 
+
+            branchrow = BranchRow.createTruncatedBranchRow(
+                left_leaf_row, split_leaf_row, BranchRow.DUMMY_PAGE_NUMBER,
+                open_btree.getConglomerate());
+        }
+        else
+        {
+            branchrow = BranchRow.createBranchRowFromOldLeafRow(
+                split_leaf_row, BranchRow.DUMMY_PAGE_NUMBER);
+        }
 
 
         // At this point we have guaranteed there is space in the parent
@@ -669,10 +669,56 @@ public class OpenBTree
         return(latch_released);
     }
 
+    /**
+     * Get the space information of the btree.
+     * <p>
+     * Besides the page counts of the container, the height of the tree and
+     * the average fanout of its branch pages are reported.  The branch 
+     * levels are walked from left to right, latching one page at a time, so
+     * the numbers are only an estimate if the tree is changed concurrently.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
     public SpaceInfo getSpaceInfo()
         throws StandardException
     {
-        return container.getSpaceInfo();
+        SpaceInfo   containerInfo   = container.getSpaceInfo();
+        ControlRow  page            = ControlRow.get(this, BTree.ROOTPAGEID);
+        int         height          = page.getLevel() + 1;
+        long        branchPages     = 0;
+        long        children        = 0;
+
+        while (page.getLevel() > 0)
+        {
+            long leftmost_child = 
+                ((BranchControlRow) page).getLeftChildPageno();
+
+            // every row of a branch page but the control row points at a
+            // child, and so does the left child pointer in the control row.
+            while (true)
+            {
+                branchPages++;
+                children += page.page.recordCount();
+
+                long next = page.getrightSiblingPageNumber();
+                page.release();
+
+                if (next == ContainerHandle.INVALID_PAGE_NUMBER)
+                    break;
+
+                page = ControlRow.get(this, next);
+            }
+
+            page = ControlRow.get(this, leftmost_child);
+        }
+
+        page.release();
+
+        return(
+            new BTreeSpaceInfo(
+                containerInfo, height,
+                (branchPages == 0) ? 
+                    -1 : (int) ((children + branchPages / 2) / branchPages)));
     }
 
 	// return column Sort order information
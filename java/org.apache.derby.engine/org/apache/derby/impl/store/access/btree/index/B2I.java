@@ -40,6 +40,7 @@ import org.apache.derby.iapi.store.access.ColumnOrdering;
 import org.apache.derby.iapi.store.access.ConglomerateController;
 import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
 import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowConsumer;
 import org.apache.derby.iapi.store.access.RowLocationRetRowSource;
 import org.apache.derby.iapi.store.access.StaticCompiledOpenConglomInfo;
 import org.apache.derby.iapi.store.access.StoreCostController;
@@ -60,6 +61,7 @@ import org.apache.derby.impl.store.access.btree.LeafControlRow;
 import org.apache.derby.impl.store.access.btree.OpenBTree;
 
 import org.apache.derby.iapi.services.cache.ClassSize;
+import org.apache.derby.iapi.services.daemon.DaemonService;
 
 import org.apache.derby.iapi.services.io.FormatableBitSet;
 import org.apache.derby.iapi.services.io.StoredFormatIds;
@@ -202,7 +204,8 @@ import org.apache.derby.iapi.store.access.conglomerate.Conglomerate;
  *            must be able to read all btree format id's.  
  *
  *            This format is the current version id of B2I and has been used 
- *            in versions of Derby after the 10.3 release.
+ *            in versions of Derby after the 10.3 release.  Indexes whose
+ *            keys are stored compressed use ACCESS_B2I_V6_ID instead.
  *
  * @derby.upgrade   This is the current version, no upgrade necessary.
  *
@@ -222,6 +225,24 @@ import org.apache.derby.iapi.store.access.conglomerate.Conglomerate;
  *     isUniqueWithDuplicateNulls(boolean)
  */
 
+/*
+ * @derby.formatId ACCESS_B2I_V6_ID
+ *
+ * @derby.purpose   The tag that describes the on disk representation of the B2I
+ *            conglomerate object for an index whose keys are stored
+ *            compressed.  The fields of the rows on the leaf and branch
+ *            pages are stored compressed, and the separators on the branch
+ *            pages may be truncated prefixes of the first key of the leaf
+ *            they point at.  Such an index is only created in databases 
+ *            created by or hard upgraded to 10.17, when
+ *            derby.storage.compressedRecords is set.
+ *
+ * @derby.upgrade   This is the current version, no upgrade necessary.
+ *
+ * @derby.diskLayout 
+ *     same as ACCESS_B2I_V5_ID.
+ */
+
 /**
  * Implements an instance of a B-Tree secondary index conglomerate.
  * A B2I object has two roles.
@@ -903,6 +924,26 @@ public class B2I extends BTree
             SQLState.BTREE_UNIMPLEMENTED_FEATURE);
 	}
 
+	/**
+	 * Scan the conglomerate in parallel, which is only implemented for
+	 * heaps.
+	 *
+	 * @see Conglomerate#scanInParallel
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public void scanInParallel(
+    TransactionManager              xact_manager,
+    DaemonService[]                 daemons,
+    FormatableBitSet                scanColumnList,
+    DataValueDescriptor[]           template,
+    RowConsumer[]                   consumers)
+			throws StandardException
+	{
+        throw StandardException.newException(
+            SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+	}
+
 	public void purgeConglomerate(
     TransactionManager              xact_manager,
     Transaction                     rawtran)
@@ -1055,9 +1096,31 @@ public class B2I extends BTree
 	*/
 	public int getTypeFormatId() 
     {
+        if (conglom_format_id == StoredFormatIds.ACCESS_B2I_V6_ID)
+            return StoredFormatIds.ACCESS_B2I_V6_ID;
+
 		return StoredFormatIds.ACCESS_B2I_V5_ID;
 	}
 
+    /**
+     * Make a new index store its keys compressed.
+     * <p>
+     * Must be called before the index is created, the index is then
+     * written with the ACCESS_B2I_V6_ID format.
+     */
+    void setCompressedKeys()
+    {
+        conglom_format_id = StoredFormatIds.ACCESS_B2I_V6_ID;
+    }
+
+    /**
+     * @see BTree#hasCompressedKeys
+     */
+    public boolean hasCompressedKeys()
+    {
+        return(conglom_format_id == StoredFormatIds.ACCESS_B2I_V6_ID);
+    }
+
 
     /**
      * Store the stored representation of the column value in the
@@ -1102,7 +1165,8 @@ public class B2I extends BTree
         // First part of ACCESS_B2I_V4_ID format is the ACCESS_B2I_V3_ID format.
         writeExternal_v10_2(out);
 		if (conglom_format_id == StoredFormatIds.ACCESS_B2I_V4_ID
-                || conglom_format_id == StoredFormatIds.ACCESS_B2I_V5_ID)
+                || conglom_format_id == StoredFormatIds.ACCESS_B2I_V5_ID
+                || conglom_format_id == StoredFormatIds.ACCESS_B2I_V6_ID)
         {
             // Now append sparse array of collation ids
             ConglomerateUtil.writeCollationIdArray(collation_ids, out);
@@ -1121,7 +1185,8 @@ public class B2I extends BTree
      **/
     public void writeExternal(ObjectOutput out) throws IOException {
         writeExternal_v10_3 (out);
-        if (conglom_format_id == StoredFormatIds.ACCESS_B2I_V5_ID)
+        if (conglom_format_id == StoredFormatIds.ACCESS_B2I_V5_ID
+                || conglom_format_id == StoredFormatIds.ACCESS_B2I_V6_ID)
             out.writeBoolean (isUniqueWithDuplicateNulls());
     }
 
@@ -1167,7 +1232,8 @@ public class B2I extends BTree
         setUniqueWithDuplicateNulls(false);
 
 		if (conglom_format_id == StoredFormatIds.ACCESS_B2I_V4_ID
-                || conglom_format_id == StoredFormatIds.ACCESS_B2I_V5_ID)
+                || conglom_format_id == StoredFormatIds.ACCESS_B2I_V5_ID
+                || conglom_format_id == StoredFormatIds.ACCESS_B2I_V6_ID)
         {
             // current format id, read collation info from disk
             if (SanityManager.DEBUG)
@@ -1184,7 +1250,7 @@ public class B2I extends BTree
         }
         else if (conglom_format_id != StoredFormatIds.ACCESS_B2I_V3_ID)
         {
-            // Currently only V3, V4 and V5 should be possible in a Derby DB.
+            // Currently only V3, V4, V5 and V6 should be possible in a Derby DB.
             // Actual work for V3 is handled by default code above, so no
             // special work is necessary.
 
@@ -1194,7 +1260,8 @@ public class B2I extends BTree
                     "Unexpected format id: " + conglom_format_id);
             }
         }
-        if (conglom_format_id == StoredFormatIds.ACCESS_B2I_V5_ID) {
+        if (conglom_format_id == StoredFormatIds.ACCESS_B2I_V5_ID
+                || conglom_format_id == StoredFormatIds.ACCESS_B2I_V6_ID) {
             setUniqueWithDuplicateNulls(in.readBoolean());
         }
 	}
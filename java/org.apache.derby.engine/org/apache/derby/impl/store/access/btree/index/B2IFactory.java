@@ -39,6 +39,7 @@ import org.apache.derby.iapi.store.access.AccessFactory;
 import org.apache.derby.iapi.store.access.conglomerate.Conglomerate;
 import org.apache.derby.iapi.store.access.conglomerate.ConglomerateFactory;
 import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
+import org.apache.derby.impl.store.access.conglomerate.ConglomerateUtil;
 import org.apache.derby.iapi.store.access.ColumnOrdering;
 import org.apache.derby.iapi.store.access.TransactionController;
 
@@ -190,6 +191,23 @@ public class B2IFactory implements ConglomerateFactory, ModuleControl
             // throws an exception in read-only databases (DERBY-2354).
             btree = new B2I();
         }
+        else if (xact_mgr.checkVersion(
+                RawStoreFactory.DERBY_STORE_MAJOR_VERSION_10,
+                RawStoreFactory.DERBY_STORE_MINOR_VERSION_17,
+                null)) 
+        {
+            // on disk databases with version higher than 10.16 may store
+            // their keys compressed, which is written as the
+            // ACCESS_B2I_V6_ID format.  This includes new databases or
+            // databases hard upgraded to 10.17.
+            btree = new B2I();
+
+            if (ConglomerateUtil.useCompressedRecords(
+                    xact_mgr, properties, temporaryFlag))
+            {
+                btree.setCompressedKeys();
+            }
+        }
         else if (xact_mgr.checkVersion(
                 RawStoreFactory.DERBY_STORE_MAJOR_VERSION_10,
                 RawStoreFactory.DERBY_STORE_MINOR_VERSION_4,
@@ -199,7 +217,6 @@ public class B2IFactory implements ConglomerateFactory, ModuleControl
             // current disk format B2I.  This includes new databases or
             // hard upgraded databases.
             btree = new B2I();
-            
         }
         else if (xact_mgr.checkVersion(
                 RawStoreFactory.DERBY_STORE_MAJOR_VERSION_10,
@@ -28,7 +28,13 @@ import org.apache.derby.iapi.services.io.CompressedNumber;
 import org.apache.derby.iapi.services.io.Formatable;
 import org.apache.derby.iapi.services.io.FormatIdUtil;
 
+import org.apache.derby.iapi.services.property.PropertyUtil;
+
+import org.apache.derby.shared.common.error.StandardException;
+
 import org.apache.derby.iapi.store.access.RowUtil;
+import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
 
 import org.apache.derby.iapi.store.raw.FetchDescriptor;
 import org.apache.derby.iapi.store.raw.Page;
@@ -56,6 +62,54 @@ public final class ConglomerateUtil
 
     /* Public Methods of This class: (arranged Alphabetically ) */
 
+    /**
+     * Decide whether a new conglomerate stores its records compressed.
+     * <p>
+     * Records are compressed if derby.storage.compressedRecords is set to
+     * true in the properties of the conglomerate or, if it is not set
+     * there, in the database properties.  Temporary conglomerates are never
+     * compressed, and neither are conglomerates of databases which may
+     * still be read by a version of the store that does not know about
+     * compressed records, that is databases which have not been created
+     * by or hard upgraded to 10.17.
+     *
+     * @param xact_mgr      transaction to perform the create in.
+     * @param properties    the properties the conglomerate is created with,
+     *                      may be null.
+     * @param temporaryFlag the temporary flags the conglomerate is created
+     *                      with.
+     *
+	 * @return true if the records of the conglomerate should be compressed.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public static boolean useCompressedRecords(
+    TransactionManager      xact_mgr,
+    Properties              properties,
+    int                     temporaryFlag)
+		throws StandardException
+    {
+        if ((temporaryFlag & TransactionController.IS_TEMPORARY) != 0)
+            return(false);
+
+        String value = 
+            (properties == null) ? 
+                null : properties.getProperty(Property.COMPRESSED_RECORDS);
+
+        if (value == null)
+        {
+            value = PropertyUtil.getServiceProperty(
+                        xact_mgr, Property.COMPRESSED_RECORDS);
+        }
+
+        return(
+            Boolean.parseBoolean(value) &&
+            xact_mgr.checkVersion(
+                RawStoreFactory.DERBY_STORE_MAJOR_VERSION_10,
+                RawStoreFactory.DERBY_STORE_MINOR_VERSION_17,
+                null));
+    }
+
     /**
      * Create a list of all the properties that Access wants to export
      * through the getInternalTablePropertySet() call.
@@ -68,6 +122,7 @@ public final class ConglomerateUtil
      *     derby.storage.pageReservedSpace
      *     derby.storage.pageSize 
 	 *     derby.storage.reusableRecordId
+	 *     derby.storage.compressedRecords
      *     
      * <p>
      *
@@ -81,6 +136,7 @@ public final class ConglomerateUtil
         prop = createUserRawStorePropertySet(prop);
 
         prop.put(RawStoreFactory.PAGE_REUSABLE_RECORD_ID,       "");
+        prop.put(Property.COMPRESSED_RECORDS,                   "");
 
         return(prop);
     }
@@ -75,6 +75,23 @@ abstract class GenericController
                 SQLState.HEAP_UNIMPLEMENTED_FEATURE);
     }
 
+    /**
+     * Called with the page of the row latched, just before the row at the
+     * position is updated or deleted.
+     * <p>
+     * Conglomerates which keep the versions of changed rows override it to
+     * save the row as it is before the change; by default it does nothing.
+     *
+     * @param pos   the position of the row to be changed
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    protected void saveRowVersion(
+    RowPosition pos)
+        throws StandardException
+    {
+    }
+
 
     /**************************************************************************
      * Public Methods of This class:
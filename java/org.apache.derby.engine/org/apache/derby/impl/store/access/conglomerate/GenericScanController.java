@@ -217,6 +217,11 @@ public abstract class GenericScanController
      **/
     protected RowPosition         scan_position;
 
+    /**
+     * Decides when to read pages ahead of the scan.
+     */
+    private final ReadAheadTracker read_ahead = new ReadAheadTracker();
+
     /**
      * Performance counters ...
      */
@@ -438,6 +443,8 @@ public abstract class GenericScanController
             pos.current_page = 
                 open_conglom.getContainer().getFirstPage();
 
+            read_ahead.reset();
+
             if (SanityManager.DEBUG)
             {
                 SanityManager.ASSERT(
@@ -499,6 +506,15 @@ public abstract class GenericScanController
             pos.current_page = 
                 open_conglom.getContainer().getNextPage(pageid);
 
+            // ask for the following pages to be read in the background if
+            // the scan is reading the pages in order.
+            if (pos.current_page != null)
+            {
+                read_ahead.pageVisited(
+                    open_conglom.getContainer(),
+                    pos.current_page.getPageNumber());
+            }
+
             // set up for scan to continue at beginning of this new page.
             pos.current_slot = Page.FIRST_SLOT_NUMBER - 1;
         }
@@ -554,6 +570,34 @@ public abstract class GenericScanController
         return(new RowPosition());
     }
 
+    /**
+     * Fetch the row at the current scan position.
+     * <p>
+     * The page of the current position must be latched.  Designed so that
+     * extending classes can override and fetch a different version of the
+     * row.
+     *
+	 * @return the record handle of the row, or null if the row is deleted
+     *         or does not qualify.
+     *
+     * @param row       the row to fetch into
+     * @param fetchDesc the columns to fetch and the qualifiers to apply
+     *
+     * @exception  StandardException  Standard exception policy.
+     **/
+    protected RecordHandle fetchFromCurrentSlot(
+    DataValueDescriptor[]   row,
+    FetchDescriptor         fetchDesc)
+        throws StandardException
+    {
+        return(scan_position.current_page.fetchFromSlot(
+                    scan_position.current_rh,
+                    scan_position.current_slot,
+                    row,
+                    fetchDesc,
+                    false));
+    }
+
     /**
      * Fetch the next N rows from the table.
      * <p>
@@ -757,12 +801,7 @@ public abstract class GenericScanController
                 // fetchFromSlot returns null if row does not qualify.
 
                 scan_position.current_rh_qualified =
-                    (scan_position.current_page.fetchFromSlot(
-                        scan_position.current_rh, 
-                        scan_position.current_slot, 
-                        fetch_row, 
-                        init_fetchDesc,
-                        false) != null);
+                    (fetchFromCurrentSlot(fetch_row, init_fetchDesc) != null);
 
                 if (scan_position.current_rh_qualified)
                 {
@@ -1119,6 +1158,8 @@ public abstract class GenericScanController
         }
         else
         {
+            saveRowVersion(scan_position);
+
             // Delete the row 
             scan_position.current_page.deleteAtSlot(
                 scan_position.current_slot, true, (LogicalUndo) null);
@@ -1391,6 +1432,7 @@ public abstract class GenericScanController
         if (page.isDeletedAtSlot(slot)) {
             ret_val = false;
         } else {
+            saveRowVersion(scan_position);
             page.updateAtSlot(slot, row, validColumns);
             ret_val = true;
         }
@@ -1441,12 +1483,7 @@ public abstract class GenericScanController
         // or the qualifier evaluates to false.
         
         boolean ret_val = 
-            (scan_position.current_page.fetchFromSlot(
-                scan_position.current_rh, 
-                scan_position.current_slot, 
-                row,
-                init_fetchDesc,
-                false) != null);
+            (fetchFromCurrentSlot(row, init_fetchDesc) != null);
 
         scan_position.unlatch();
 
@@ -1515,12 +1552,7 @@ public abstract class GenericScanController
 
         // RESOLVE (mikem) - should this call apply the qualifiers again?
         RecordHandle rh = 
-            scan_position.current_page.fetchFromSlot(
-                scan_position.current_rh, 
-                scan_position.current_slot, 
-                row, 
-                qualify ? init_fetchDesc : null, 
-                false);
+            fetchFromCurrentSlot(row, qualify ? init_fetchDesc : null);
 
         scan_position.unlatch();
 
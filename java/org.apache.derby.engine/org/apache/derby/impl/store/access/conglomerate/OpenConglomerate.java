@@ -699,6 +699,20 @@ public abstract class OpenConglomerate
         return;
     }
 
+    /**
+     * Change the locking policy used to lock the rows of the conglomerate,
+     * now and when the container is opened again.
+     *
+     * @param locking_policy    the new locking policy
+     **/
+    protected void setLockingPolicy(LockingPolicy locking_policy)
+    {
+        init_locking_policy = locking_policy;
+
+        if (container != null)
+            container.setLockingPolicy(locking_policy);
+    }
+
     /**************************************************************************
      * Public Accessors of This class:
      **************************************************************************
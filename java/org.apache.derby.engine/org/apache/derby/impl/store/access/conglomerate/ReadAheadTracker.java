@@ -0,0 +1,180 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.conglomerate.ReadAheadTracker
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.conglomerate;
+
+import org.apache.derby.shared.common.error.StandardException;
+
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+
+/**
+
+Decides when a scan should ask the raw store to prefetch pages, based on the
+order in which the scan visits pages.
+<p>
+A scan calls pageVisited() each time it moves to a new page. Once the scan
+has visited a few pages in increasing page number order, the tracker asks
+for the pages following the current one to be prefetched. The number of
+pages read ahead (the window) starts small and doubles each time a new batch
+is requested, up to the limit configured for the container, so that short
+scans don't read many pages they will never use. If the prefetcher can't
+accept all the pages of a batch, the window is halved. A new batch is
+requested when the scan has used half of the pages of the previous one.
+<p>
+When the scan jumps to a page which is not close after the previous one,
+the tracker starts over. The caller may then pass the page number of the
+page it expects to visit next, for instance the right sibling of a b-tree
+leaf, and that single page is prefetched.
+<p>
+MT - unsafe, each scan has its own tracker.
+
+**/
+
+public final class ReadAheadTracker
+{
+    /**
+     * Number of sequential page visits needed before pages are read ahead.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 2;
+
+    /** The initial number of pages to read ahead. */
+    private static final int INITIAL_WINDOW = 4;
+
+    /**
+     * The largest gap between two page numbers that still counts as a
+     * sequential visit. Heap scans skip allocation pages and pages that
+     * are free or hold only overflow rows.
+     */
+    private static final int MAX_GAP = 8;
+
+    /** The last page visited, or INVALID_PAGE_NUMBER. */
+    private long lastPage = ContainerHandle.INVALID_PAGE_NUMBER;
+
+    /** The number of sequential page visits in a row. */
+    private int sequential;
+
+    /** The number of pages to keep read ahead of the scan, 0 if none. */
+    private int window;
+
+    /** The last page requested, or INVALID_PAGE_NUMBER. */
+    private long prefetchedUpTo = ContainerHandle.INVALID_PAGE_NUMBER;
+
+    /**
+     * Forget the pages visited so far. Called when a scan is repositioned.
+     */
+    public void reset()
+    {
+        lastPage        = ContainerHandle.INVALID_PAGE_NUMBER;
+        sequential      = 0;
+        window          = 0;
+        prefetchedUpTo  = ContainerHandle.INVALID_PAGE_NUMBER;
+    }
+
+    /**
+     * Tell the tracker that the scan has moved to a new page.
+     *
+     * @param container     the container the scan reads from
+     * @param pageNumber    the page the scan has moved to
+     *
+     * @exception  StandardException  Standard exception policy.
+     */
+    public void pageVisited(ContainerHandle container, long pageNumber)
+        throws StandardException
+    {
+        pageVisited(
+            container, pageNumber, ContainerHandle.INVALID_PAGE_NUMBER);
+    }
+
+    /**
+     * Tell the tracker that the scan has moved to a new page.
+     *
+     * @param container     the container the scan reads from
+     * @param pageNumber    the page the scan has moved to
+     * @param nextPage      the page the scan expects to visit after this
+     *                      one, or INVALID_PAGE_NUMBER if not known
+     *
+     * @exception  StandardException  Standard exception policy.
+     */
+    public void pageVisited(
+    ContainerHandle container,
+    long            pageNumber,
+    long            nextPage)
+        throws StandardException
+    {
+        int maxPages = container.getMaxPrefetchPages();
+
+        if (maxPages == 0)
+            return;
+
+        if (lastPage != ContainerHandle.INVALID_PAGE_NUMBER &&
+            pageNumber > lastPage && pageNumber - lastPage <= MAX_GAP)
+        {
+            sequential++;
+        }
+        else
+        {
+            // not a sequential scan (anymore), start over.
+            sequential      = 0;
+            window          = 0;
+            prefetchedUpTo  = ContainerHandle.INVALID_PAGE_NUMBER;
+        }
+
+        lastPage = pageNumber;
+
+        if (sequential < SEQUENTIAL_THRESHOLD)
+        {
+            if (nextPage != ContainerHandle.INVALID_PAGE_NUMBER &&
+                nextPage != pageNumber + 1)
+            {
+                container.prefetchPages(nextPage, 1);
+            }
+            return;
+        }
+
+        if (window == 0)
+            window = Math.min(INITIAL_WINDOW, maxPages);
+
+        // request more pages once half of the window has been used.
+        long ahead = (prefetchedUpTo == ContainerHandle.INVALID_PAGE_NUMBER) ?
+            0 : prefetchedUpTo - pageNumber;
+
+        if (ahead > window / 2)
+            return;
+
+        long first = pageNumber + Math.max(ahead, 0) + 1;
+        int  count = (int) (pageNumber + window - first + 1);
+        int  accepted = container.prefetchPages(first, count);
+
+        if (accepted > 0)
+            prefetchedUpTo = first + accepted - 1;
+
+        if (accepted < count)
+        {
+            // the prefetcher is falling behind or the end of the container
+            // has been reached.
+            window = Math.max(1, window / 2);
+        }
+        else
+        {
+            window = Math.min(window * 2, maxPages);
+        }
+    }
+}
@@ -49,6 +49,7 @@ import org.apache.derby.iapi.store.access.ColumnOrdering;
 import org.apache.derby.iapi.store.access.ConglomerateController;
 import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
 import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowConsumer;
 import org.apache.derby.iapi.store.access.RowLocationRetRowSource;
 import org.apache.derby.iapi.store.access.RowUtil;
 import org.apache.derby.iapi.store.access.StaticCompiledOpenConglomInfo;
@@ -67,6 +68,7 @@ import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.StringDataValue;
 
 import org.apache.derby.iapi.services.cache.ClassSize;
+import org.apache.derby.iapi.services.daemon.DaemonService;
 
 import org.apache.derby.impl.store.access.conglomerate.ConglomerateUtil;
 import org.apache.derby.impl.store.access.conglomerate.GenericConglomerate;
@@ -848,40 +850,101 @@ public class Heap
                     SQLState.HEAP_UNIMPLEMENTED_FEATURE);
 		}
 
-        OpenConglomerate open_conglom = new OpenHeap();
+        // A read only scan at read committed with row locking reads a
+        // snapshot of the committed rows, if snapshot reads are enabled,
+        // so it does not need to lock the rows it reads.
+        HeapRowVersions versions = getRowVersions(xact_manager);
 
-        if (open_conglom.init(
-                (ContainerHandle) null,
-                this,
-                this.format_ids,
-                this.collation_ids,
-                xact_manager,
-                rawtran,
-                hold,
-                open_mode,
-                lock_level,
-                locking_policy,
-                dynamic_info) == null)
+        boolean snapshot_read =
+            versions != null &&
+            !isTemporary() &&
+            lock_level == TransactionController.MODE_RECORD &&
+            (isolation_level == TransactionController.ISOLATION_READ_COMMITTED ||
+             isolation_level == 
+                TransactionController.ISOLATION_READ_COMMITTED_NOHOLDLOCK) &&
+            (open_mode & TransactionController.OPENMODE_FORUPDATE) == 0;
+
+        // No snapshot is given while a writer which doesn't save versions
+        // is active, the scan then locks the rows as usual.
+        HeapRowVersions.Snapshot snapshot = 
+            (snapshot_read ? versions.openSnapshot(rawtran) : null);
+
+        LockingPolicy row_locking_policy = locking_policy;
+
+        if (snapshot != null)
         {
-            throw StandardException.newException(
-                    SQLState.HEAP_CONTAINER_NOT_FOUND, 
-                    id.getContainerId());
+            locking_policy = 
+                rawtran.newLockingPolicy(
+                    LockingPolicy.MODE_RECORD,
+                    TransactionController.ISOLATION_READ_UNCOMMITTED,
+                    true);
         }
 
+        OpenConglomerate open_conglom = new OpenHeap();
 		HeapScan heapscan = new HeapScan();
 
-        heapscan.init(
-            open_conglom,
-            scanColumnList,
-            startKeyValue,
-            startSearchOperator,
-            qualifier,
-            stopKeyValue,
-            stopSearchOperator);
+        try
+        {
+            if (open_conglom.init(
+                    (ContainerHandle) null,
+                    this,
+                    this.format_ids,
+                    this.collation_ids,
+                    xact_manager,
+                    rawtran,
+                    hold,
+                    open_mode,
+                    lock_level,
+                    locking_policy,
+                    dynamic_info) == null)
+            {
+                throw StandardException.newException(
+                        SQLState.HEAP_CONTAINER_NOT_FOUND, 
+                        id.getContainerId());
+            }
+
+            heapscan.init(
+                open_conglom,
+                scanColumnList,
+                startKeyValue,
+                startSearchOperator,
+                qualifier,
+                stopKeyValue,
+                stopSearchOperator);
+        }
+        catch (StandardException se)
+        {
+            if (snapshot != null)
+            {
+                versions.closeSnapshot(
+                    snapshot, rawtran, xact_manager.getAccessManager());
+            }
+            throw se;
+        }
+
+        if (snapshot != null)
+            heapscan.setSnapshot(versions, snapshot, row_locking_policy);
 
 		return(heapscan);
 	}
 
+    /**
+     * Return the versions of heap rows kept for snapshot reads.
+     *
+	 * @return null if snapshot reads are not enabled.
+     *
+     * @param xact_manager  the access transaction
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static HeapRowVersions getRowVersions(TransactionManager xact_manager)
+        throws StandardException
+    {
+        return(((HeapConglomerateFactory) 
+                xact_manager.getAccessManager().findMethodFactoryByImpl(
+                    AccessFactoryGlobals.HEAP)).getRowVersions());
+    }
+
 	public void purgeConglomerate(
     TransactionManager              xact_manager,
     Transaction                     rawtran)
@@ -1060,6 +1123,29 @@ public class Heap
         return;
     }
 
+    /**
+     * Scan all the rows of the heap in parallel.
+     * <p>
+     *
+     * @see Conglomerate#scanInParallel
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public void scanInParallel(
+    TransactionManager              xact_manager,
+    DaemonService[]                 daemons,
+    FormatableBitSet                scanColumnList,
+    DataValueDescriptor[]           template,
+    RowConsumer[]                   consumers)
+		throws StandardException
+	{
+        ParallelHeapScan scan = 
+            new ParallelHeapScan(
+                xact_manager.getAccessManager(), id, scanColumnList, template);
+
+        scan.scan(daemons, consumers);
+	}
+
     /**
      * Open a heap compress scan.
      * <p>
@@ -21,17 +21,20 @@
 
 package org.apache.derby.impl.store.access.heap;
 
+import org.apache.derby.shared.common.reference.Property;
 import org.apache.derby.shared.common.reference.SQLState;
 
 import org.apache.derby.iapi.services.monitor.ModuleControl;
 import org.apache.derby.iapi.services.monitor.ModuleFactory;
 import org.apache.derby.iapi.services.monitor.ModuleSupportable;
 import org.apache.derby.iapi.services.monitor.Monitor;
+import org.apache.derby.iapi.services.property.PropertyUtil;
 import org.apache.derby.shared.common.sanity.SanityManager;
 import org.apache.derby.shared.common.error.StandardException;
 
 import org.apache.derby.iapi.store.access.conglomerate.Conglomerate;
 import org.apache.derby.iapi.store.access.conglomerate.ConglomerateFactory;
+import org.apache.derby.impl.store.access.conglomerate.ConglomerateUtil;
 import org.apache.derby.impl.store.access.conglomerate.RowPosition;
 import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
 
@@ -76,6 +79,12 @@ public class HeapConglomerateFactory implements ConglomerateFactory, ModuleContr
 	private static final String FORMATUUIDSTRING = "D2976090-D9F5-11d0-B54D-00A024BF8878";
 	private UUID formatUUID;
 
+    /**
+     * The versions of heap rows kept for snapshot reads, null unless
+     * derby.storage.snapshotIsolation is set.
+     **/
+    private HeapRowVersions rowVersions;
+
 	/*
 	 * Methods of MethodFactory (via ConglomerateFactory)
 	 */
@@ -210,6 +219,20 @@ public class HeapConglomerateFactory implements ConglomerateFactory, ModuleContr
             heap = new Heap_v10_2();
         }
 
+        // Tell the raw store whether to compress the fields of the records.
+        if (ConglomerateUtil.useCompressedRecords(
+                xact_mgr, properties, temporaryFlag))
+        {
+            if (properties == null)
+                properties = new Properties();
+
+            properties.put(Property.COMPRESSED_RECORDS, "true");
+        }
+        else if (properties != null)
+        {
+            properties.remove(Property.COMPRESSED_RECORDS);
+        }
+
 		heap.create(
             xact_mgr.getRawStoreXact(), segment, input_containerid, 
             template, columnOrder, collationIds, properties, 
@@ -357,6 +380,19 @@ public class HeapConglomerateFactory implements ConglomerateFactory, ModuleContr
 		
 		// Make a UUID that identifies this conglomerate's format.
 		formatUUID = uuidFactory.recreateUUID(FORMATUUIDSTRING);
+
+        if (PropertyUtil.getSystemBoolean(Property.SNAPSHOT_ISOLATION))
+        {
+            // by default the versions may use a tenth of the heap.
+            int max_memory_kb = 
+                PropertyUtil.getSystemInt(
+                    Property.SNAPSHOT_MAX_MEMORY, 1, Integer.MAX_VALUE,
+                    (int) Math.min(
+                        Runtime.getRuntime().maxMemory() / (10 * 1024),
+                        Integer.MAX_VALUE));
+
+            rowVersions = new HeapRowVersions(1024L * max_memory_kb);
+        }
 	}
 
 	public void	stop()
@@ -370,6 +406,15 @@ public class HeapConglomerateFactory implements ConglomerateFactory, ModuleContr
 	public HeapConglomerateFactory()
 	{
 	}
+
+    /**
+     * Return the versions of heap rows kept for snapshot reads, null if
+     * snapshot reads are not enabled.
+     **/
+    HeapRowVersions getRowVersions()
+    {
+        return(rowVersions);
+    }
     
     /**
      * Privileged Monitor lookup. Must be private so that user code
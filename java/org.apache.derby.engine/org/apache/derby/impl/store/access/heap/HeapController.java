@@ -104,11 +104,53 @@ public class HeapController
                 pos.current_page.getPageKey()));
     }
 
+    protected void saveRowVersion(
+    RowPosition pos)
+        throws StandardException
+    {
+        ((OpenHeap) open_conglom).saveRowVersion(pos);
+    }
+
     /**************************************************************************
      * Private/Protected methods of This class:
      **************************************************************************
      */
 
+    /**
+     * Return the versions of heap rows kept for snapshot reads.
+     *
+	 * @return null if snapshot reads are not enabled.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    HeapRowVersions getRowVersions()
+        throws StandardException
+    {
+        return(((OpenHeap) open_conglom).getRowVersions());
+    }
+
+    /**
+     * Can a committed deleted row be purged?  It can't while snapshots may
+     * still read it; the page is then reclaimed again once they can't.
+     *
+     * @param versions  the versions of heap rows, null if not enabled
+     * @param page      the latched page of the row
+     * @param rh        the row
+     **/
+    static boolean isRowVersionNeeded(
+    HeapRowVersions versions,
+    Page            page,
+    RecordHandle    rh)
+    {
+        if (versions != null && versions.hasVersions(rh))
+        {
+            versions.deferReclaim(page.getPageKey());
+            return(true);
+        }
+
+        return(false);
+    }
+
     /**
      * Check and purge committed deleted rows on a page.
      * <p>
@@ -129,6 +171,8 @@ public class HeapController
     {
         boolean purgingDone = false;
 
+        HeapRowVersions versions = getRowVersions();
+
         // The number records that can be reclaimed is:
         // total recs - recs_not_deleted
         int num_possible_commit_delete = 
@@ -166,6 +210,7 @@ public class HeapController
                             true);
 
                     row_is_committed_delete =
+                        !isRowVersionNeeded(versions, page, rh) &&
                         this.lockRowAtSlotNoWaitExclusive(rh);
 
                     if (row_is_committed_delete)
@@ -256,6 +301,8 @@ public class HeapController
             // for the row.
             rh = page.insert(row, null, insert_mode,
 				AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD);
+            if (rh != null)
+                ((OpenHeap) open_conglom).saveInsertVersion(rh);
             page.unlatch();
             page = null;
 
@@ -289,6 +336,8 @@ public class HeapController
             
             rh = page.insert(row, null, insert_mode,
 				AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD);
+            if (rh != null)
+                ((OpenHeap) open_conglom).saveInsertVersion(rh);
 
             page.unlatch();
             page = null;
@@ -308,6 +357,8 @@ public class HeapController
 
         rh = page.insert(row, null, Page.INSERT_OVERFLOW,
 			AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD);
+        if (rh != null)
+            ((OpenHeap) open_conglom).saveInsertVersion(rh);
         page.unlatch();
         page = null;
 
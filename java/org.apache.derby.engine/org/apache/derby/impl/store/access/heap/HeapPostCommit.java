@@ -129,6 +129,8 @@ class HeapPostCommit implements Serviceable
 
         boolean purgingDone = false;
 
+        HeapRowVersions versions = heap_control.getRowVersions();
+
         if (page != null)
         {
             try
@@ -170,6 +172,8 @@ class HeapPostCommit implements Serviceable
                                     true);
 
                             row_is_committed_delete =
+                                !HeapController.isRowVersionNeeded(
+                                    versions, page, rh) &&
                                 heap_control.lockRowAtSlotNoWaitExclusive(rh);
 
                             if (row_is_committed_delete)
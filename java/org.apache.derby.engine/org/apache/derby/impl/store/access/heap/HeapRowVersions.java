@@ -0,0 +1,926 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.heap.HeapRowVersions
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.heap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.derby.shared.common.error.StandardException;
+
+import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.daemon.Serviceable;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.io.StreamStorable;
+import org.apache.derby.iapi.services.locks.CompatibilitySpace;
+import org.apache.derby.iapi.services.monitor.DerbyObservable;
+import org.apache.derby.iapi.services.monitor.DerbyObserver;
+
+import org.apache.derby.iapi.store.access.AccessFactory;
+import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowUtil;
+
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.PageKey;
+import org.apache.derby.iapi.store.raw.RecordHandle;
+import org.apache.derby.iapi.store.raw.Transaction;
+import org.apache.derby.iapi.store.raw.xact.RawTransaction;
+
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+/**
+
+  The versions of heap rows kept for snapshot reads, when the
+  derby.storage.snapshotIsolation property is set.
+  <p>
+  Before a transaction first changes a heap row, the row as it was before the
+  change is saved here, or a marker that the row didn't exist if the change
+  inserts it.  The versions of a row form a chain, newest first, found by the
+  record handle of the row.  A version is saved and read while holding the
+  latch on the page of the row, so a reader always finds a version for a
+  change it sees on the page.
+  <p>
+  When a transaction that changed rows commits, it gets the next commit
+  sequence number.  This is done by an observer of the transaction, which is
+  notified before the transaction releases its locks.  A snapshot is the
+  last commit sequence number at the time it is taken, and it sees the
+  changes of the transactions which committed with that number or before,
+  and the changes of the transactions sharing its compatibility space.  To
+  read a row, a snapshot starts with the row on the page, and walks the
+  chain of versions until it finds a change it sees, replacing the row by
+  the version saved before each change it doesn't see.  As writers hold
+  exclusive locks on the rows they change until they commit or abort, every
+  version older than a change the snapshot sees belongs to a transaction
+  that also committed before, or to one which aborted and whose changes
+  were undone.
+  <p>
+  Versions are purged by post commit work, on the post commit daemon: a
+  committed transaction's versions, and the older versions of the same
+  rows, are dropped once every active snapshot sees the transaction, and
+  an aborted transaction's versions are dropped after its changes are
+  undone.  Committed deleted rows which a snapshot may still need are not
+  purged from their page; the page is reclaimed again once the versions are
+  gone.
+  <p>
+  Versions are only saved while they may be read, that is by the writers
+  which start changing rows while a transaction which reads snapshots is
+  active.  A snapshot can't be taken while a writer which doesn't save
+  versions is active, the scan then locks the rows it reads instead.
+  <p>
+  The versions are kept in memory only, up to the size given by the
+  derby.storage.snapshotMaxMemory property.  A writer stops saving versions
+  when they would need more memory, or when a row has a long column, which
+  is not read into memory.  The snapshots which could see its later changes
+  are then broken, and their scans lock the rest of the rows they read.
+  The versions are not needed after a restart since no snapshot survives
+  it.
+
+**/
+
+final class HeapRowVersions
+{
+    /**************************************************************************
+     * Fields of the class
+     **************************************************************************
+     */
+
+    /**
+     * The chains of versions, by record handle of the row.
+     **/
+    private final ConcurrentHashMap<RecordHandle, RowVersion> versions =
+        new ConcurrentHashMap<RecordHandle, RowVersion>();
+
+    /**
+     * The writers of the active transactions which changed rows.
+     **/
+    private final ConcurrentHashMap<Transaction, Writer> writers =
+        new ConcurrentHashMap<Transaction, Writer>();
+
+    /**
+     * The number of active writers which don't save versions, guarded by
+     * this.
+     **/
+    private int unversioned_writers;
+
+    /**
+     * The active transactions which read snapshots, guarded by this.
+     **/
+    private final HashMap<Transaction, Reader> readers =
+        new HashMap<Transaction, Reader>();
+
+    /**
+     * The open snapshots, guarded by this.
+     **/
+    private final HashSet<Snapshot> open_snapshots = new HashSet<Snapshot>();
+
+    /**
+     * The memory used by the versions, and the most they may use, in bytes.
+     **/
+    private final AtomicLong    memory = new AtomicLong();
+    private final long          max_memory;
+
+    /**
+     * The last commit sequence number given out, guarded by this.
+     **/
+    private long last_commit_seq;
+
+    /**
+     * The number of active snapshots, by sequence number, guarded by this.
+     **/
+    private final TreeMap<Long, int[]> snapshots = new TreeMap<Long, int[]>();
+
+    /**
+     * The committed writers whose versions may still be needed by a
+     * snapshot, in commit order, guarded by this.
+     **/
+    private final ArrayDeque<Writer> committed = new ArrayDeque<Writer>();
+
+    /**
+     * Pages holding committed deleted rows which were not purged because a
+     * snapshot could still need them.
+     **/
+    private final Set<PageKey> deferred_pages =
+        ConcurrentHashMap.<PageKey>newKeySet();
+
+    /**
+     * The estimated memory a version takes besides the values of its row.
+     **/
+    private static final int VERSION_OVERHEAD = 96;
+
+    /**
+     * Set while a purge requested by a closed snapshot is queued.
+     **/
+    private final AtomicBoolean purge_queued = new AtomicBoolean();
+
+    /**************************************************************************
+     * Constructors for This class:
+     **************************************************************************
+     */
+    /**
+     * @param max_memory    the most memory the versions may use, in bytes
+     **/
+    HeapRowVersions(long max_memory)
+    {
+        this.max_memory = max_memory;
+    }
+
+    /**************************************************************************
+     * Methods used by writers:
+     **************************************************************************
+     */
+
+    /**
+     * Get the writer of a transaction, registering it the first time the
+     * transaction changes a row.  The writer saves versions only if a
+     * transaction which reads snapshots is active, or a snapshot is still
+     * open, read by a scan held over the end of its transaction.
+     *
+     * @param rawtran           the transaction changing rows
+     * @param access_factory    the access factory, used to reclaim space
+     **/
+    Writer getWriter(
+    Transaction     rawtran,
+    AccessFactory   access_factory)
+    {
+        Writer writer = writers.get(rawtran);
+
+        if (writer == null)
+        {
+            synchronized (this)
+            {
+                writer = 
+                    new Writer(
+                        rawtran, access_factory,
+                        !readers.isEmpty() || !open_snapshots.isEmpty());
+
+                if (!writer.versioned)
+                    unversioned_writers++;
+            }
+
+            writers.put(rawtran, writer);
+            rawtran.addObserver(writer);
+        }
+
+        return(writer);
+    }
+
+    /**
+     * Does the newest version of the row belong to the writer?  If it does
+     * the row as it was before the transaction changed it is already saved.
+     **/
+    boolean hasVersion(
+    Writer          writer,
+    RecordHandle    rh)
+    {
+        RowVersion version = versions.get(rh);
+
+        return(version != null && version.writer == writer);
+    }
+
+    /**
+     * Save the row as it is before a change, if the writer saves versions.
+     * If the version has a long column, or would take the memory used by
+     * the versions over the limit, the writer stops saving versions
+     * instead.
+     * <p>
+     * The page of the row must be latched.
+     *
+     * @param writer    the writer of the transaction making the change
+     * @param rh        the record handle of the row
+     * @param row       the row before the change, null if the change
+     *                  inserts the row.
+     **/
+    void addVersion(
+    final Writer            writer,
+    RecordHandle            rh,
+    final DataValueDescriptor[]   row)
+    {
+        if (!writer.versioned)
+            return;
+
+        long size = estimateSize(row);
+
+        if (size < 0 || memory.addAndGet(size) > max_memory)
+        {
+            if (size >= 0)
+                memory.addAndGet(-size);
+
+            stopVersions(writer);
+            return;
+        }
+
+        versions.compute(
+            rh, (key, next) -> new RowVersion(writer, row, next));
+
+        writer.memory += size;
+        writer.changed_rows.add(rh);
+    }
+
+    /**
+     * Are versions of the row kept?  A committed deleted row with versions
+     * must not be purged from its page, as a snapshot may still see it.
+     **/
+    boolean hasVersions(RecordHandle rh)
+    {
+        return(versions.containsKey(rh));
+    }
+
+    /**
+     * Remember a page with committed deleted rows which could not be
+     * purged because of their versions.
+     **/
+    void deferReclaim(PageKey page_key)
+    {
+        deferred_pages.add(page_key);
+    }
+
+    /**************************************************************************
+     * Methods used by snapshot readers:
+     **************************************************************************
+     */
+
+    /**
+     * Take a snapshot of the committed rows.  The transaction of the reader
+     * is registered as reading snapshots, so that the writers which start
+     * while it is active save versions.
+     *
+	 * @return the snapshot, or null if a writer of another transaction
+     *         which doesn't save versions is active.
+     *
+     * @param rawtran   the transaction of the reader
+     **/
+    synchronized Snapshot openSnapshot(Transaction rawtran)
+    {
+        if (!readers.containsKey(rawtran))
+        {
+            Reader reader = new Reader(rawtran);
+            readers.put(rawtran, reader);
+            rawtran.addObserver(reader);
+        }
+
+        CompatibilitySpace space = rawtran.getCompatibilitySpace();
+
+        if (unversioned_writers > 0)
+        {
+            // a snapshot sees the changes of its own transaction, so only
+            // the writers of other transactions matter.
+            int others = unversioned_writers;
+            for (Writer writer : writers.values())
+            {
+                if (!writer.versioned && writer.space == space)
+                    others--;
+            }
+
+            if (others > 0)
+                return(null);
+        }
+
+        Snapshot snapshot = new Snapshot(last_commit_seq, space);
+
+        int[] count = snapshots.get(snapshot.seq);
+        if (count == null)
+            snapshots.put(snapshot.seq, new int[] {1});
+        else
+            count[0]++;
+
+        open_snapshots.add(snapshot);
+
+        return(snapshot);
+    }
+
+    /**
+     * Release a snapshot.  If it was holding back the purge of versions,
+     * queue the purge as post termination work of the transaction.
+     *
+     * @param snapshot          the snapshot to release
+     * @param rawtran           the transaction of the reader
+     * @param access_factory    the access factory, used to reclaim space
+     **/
+    void closeSnapshot(
+    Snapshot        snapshot,
+    Transaction     rawtran,
+    AccessFactory   access_factory)
+    {
+        boolean purge;
+
+        synchronized (this)
+        {
+            int[] count = snapshots.get(snapshot.seq);
+            if (--count[0] == 0)
+                snapshots.remove(snapshot.seq);
+
+            open_snapshots.remove(snapshot);
+
+            Writer oldest = committed.peek();
+            purge = (oldest != null && oldest.commit_seq <= getHorizon());
+        }
+
+        if (purge && purge_queued.compareAndSet(false, true))
+            rawtran.addPostTerminationWork(new PurgeWork(access_factory));
+    }
+
+    /**
+     * Find the version of a row a snapshot sees.
+     * <p>
+     * The page of the row must be latched.
+     *
+	 * @return null if the snapshot sees the row as it is on the page,
+     *         otherwise the version it sees.
+     **/
+    RowVersion findVersion(
+    Snapshot        snapshot,
+    RecordHandle    rh)
+    {
+        RowVersion seen = null;
+
+        for (RowVersion version = versions.get(rh);
+             version != null && !snapshot.sees(version.writer);
+             version = version.next)
+        {
+            seen = version;
+        }
+
+        return(seen);
+    }
+
+    /**
+     * Fetch a version of a row into a row of the reader.
+     *
+	 * @return true if the row existed in the version and qualifies.
+     *
+     * @param version   the version to fetch
+     * @param row       the possibly partial row to fetch into
+     * @param fetchDesc the columns to fetch and the qualifiers to apply,
+     *                  if null all columns are fetched
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static boolean fetchVersion(
+    RowVersion              version,
+    DataValueDescriptor[]   row,
+    FetchDescriptor         fetchDesc)
+        throws StandardException
+    {
+        DataValueDescriptor[] image = version.row;
+
+        if (image == null)
+            return(false);
+
+        FormatableBitSet valid_cols =
+            (fetchDesc == null ? null : fetchDesc.getValidColumns());
+
+        for (int i = 0; i < row.length && i < image.length; i++)
+        {
+            if (row[i] != null &&
+                (valid_cols == null ||
+                 (i < valid_cols.getLength() && valid_cols.isSet(i))))
+            {
+                row[i].setValue(image[i]);
+            }
+        }
+
+        Qualifier[][] qual_list =
+            (fetchDesc == null ? null : fetchDesc.getQualifierList());
+
+        return(qual_list == null || qual_list.length == 0 ||
+               RowUtil.qualifyRow(row, qual_list));
+    }
+
+    /**************************************************************************
+     * Private/Protected methods of This class:
+     **************************************************************************
+     */
+
+    /**
+     * Estimate the memory a version of a row takes.
+     *
+	 * @return the size in bytes, or -1 if the row has a long column which
+     *         would have to be read into memory.
+     **/
+    private static long estimateSize(DataValueDescriptor[] row)
+    {
+        long size = VERSION_OVERHEAD;
+
+        if (row != null)
+        {
+            for (int i = 0; i < row.length; i++)
+            {
+                if (row[i] == null)
+                    continue;
+
+                if (row[i] instanceof StreamStorable &&
+                    ((StreamStorable) row[i]).returnStream() != null)
+                {
+                    return(-1);
+                }
+
+                size += row[i].estimateMemoryUsage();
+            }
+        }
+
+        return(size);
+    }
+
+    /**
+     * Stop saving the versions of the rows a writer changes.  The snapshots
+     * which don't see the writer could see its next changes, so they are
+     * broken, and no snapshot is taken until the writer is done.  The
+     * versions already saved are kept until then.
+     **/
+    private synchronized void stopVersions(Writer writer)
+    {
+        writer.versioned = false;
+        unversioned_writers++;
+
+        for (Snapshot snapshot : open_snapshots)
+        {
+            if (!snapshot.sees(writer))
+                snapshot.broken = true;
+        }
+    }
+
+    /**
+     * A writer which doesn't save versions is done.
+     **/
+    private synchronized void unversionedWriterDone()
+    {
+        unversioned_writers--;
+    }
+
+    /**
+     * The commit sequence number seen by every active snapshot.
+     **/
+    private long getHorizon()
+    {
+        return(snapshots.isEmpty() ? last_commit_seq : snapshots.firstKey());
+    }
+
+    /**
+     * Give the next commit sequence number to a committing writer.
+     **/
+    private synchronized void commitWriter(Writer writer)
+    {
+        writer.commit_seq = ++last_commit_seq;
+        committed.add(writer);
+    }
+
+    /**
+     * Drop the versions of the writers every active snapshot sees, and the
+     * versions older than theirs.  Then try again to reclaim the pages
+     * whose committed deleted rows were kept for a snapshot.
+     *
+     * @param contextMgr        the context manager of the post commit daemon
+     * @param access_factory    the access factory, used to reclaim space
+     * @param dropped           true if versions were already dropped
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void purge(
+    ContextManager  contextMgr,
+    AccessFactory   access_factory,
+    boolean         dropped)
+        throws StandardException
+    {
+        ArrayList<Writer> obsolete = new ArrayList<Writer>();
+
+        synchronized (this)
+        {
+            long horizon = getHorizon();
+
+            while (!committed.isEmpty() &&
+                   committed.peek().commit_seq <= horizon)
+            {
+                obsolete.add(committed.poll());
+            }
+        }
+
+        if (obsolete.isEmpty() && !dropped)
+            return;
+
+        for (final Writer writer : obsolete)
+        {
+            for (RecordHandle rh : writer.changed_rows)
+            {
+                versions.computeIfPresent(
+                    rh, (key, version) -> dropFrom(version, writer));
+            }
+
+            memory.addAndGet(-writer.memory);
+        }
+
+        if (deferred_pages.isEmpty())
+            return;
+
+        PageKey[] pages = deferred_pages.toArray(new PageKey[0]);
+
+        for (PageKey page_key : pages)
+        {
+            deferred_pages.remove(page_key);
+
+            // rows which still have versions are deferred again.
+            if (new HeapPostCommit(access_factory, page_key).performWork(
+                    contextMgr) == Serviceable.REQUEUE)
+            {
+                deferred_pages.add(page_key);
+            }
+        }
+    }
+
+    /**
+     * Drop the versions of an aborted writer.  Its changes have been undone,
+     * so each of its versions is the same as the row after it.
+     **/
+    private void dropAborted(final Writer writer)
+    {
+        for (RecordHandle rh : writer.changed_rows)
+        {
+            versions.computeIfPresent(
+                rh, (key, version) -> drop(version, writer));
+        }
+
+        memory.addAndGet(-writer.memory);
+    }
+
+    /**
+     * Drop the version of a writer and all versions older than it from a
+     * chain.
+     *
+	 * @return the new chain, null if empty.
+     **/
+    private static RowVersion dropFrom(
+    RowVersion  version,
+    Writer      writer)
+    {
+        if (version == null || version.writer == writer)
+            return(null);
+
+        RowVersion next = dropFrom(version.next, writer);
+
+        return(next == version.next ?
+                version : new RowVersion(version.writer, version.row, next));
+    }
+
+    /**
+     * Drop the version of a writer from a chain.
+     *
+	 * @return the new chain, null if empty.
+     **/
+    private static RowVersion drop(
+    RowVersion  version,
+    Writer      writer)
+    {
+        if (version == null)
+            return(null);
+
+        if (version.writer == writer)
+            return(version.next);
+
+        RowVersion next = drop(version.next, writer);
+
+        return(next == version.next ?
+                version : new RowVersion(version.writer, version.row, next));
+    }
+
+    /**************************************************************************
+     * Inner classes:
+     **************************************************************************
+     */
+
+    /**
+     * A version of a row, the row as it was before a change.  Versions are
+     * never changed, a chain is changed by replacing the versions in front
+     * of the changed one.
+     **/
+    static final class RowVersion
+    {
+        /** The writer of the change. */
+        final Writer                writer;
+
+        /** The row before the change, null if the change inserted it. */
+        final DataValueDescriptor[] row;
+
+        /** The next older version of the row. */
+        final RowVersion            next;
+
+        RowVersion(
+        Writer                  writer,
+        DataValueDescriptor[]   row,
+        RowVersion              next)
+        {
+            this.writer = writer;
+            this.row    = row;
+            this.next   = next;
+        }
+    }
+
+    /**
+     * A snapshot of the committed rows, taken by a read only scan.
+     **/
+    static final class Snapshot
+    {
+        /** The last commit sequence number the snapshot sees. */
+        final long                  seq;
+
+        /** The compatibility space of the reader. */
+        final CompatibilitySpace    space;
+
+        /**
+         * Set when a writer the snapshot doesn't see stops saving versions,
+         * the snapshot can't be read any more.
+         **/
+        volatile boolean            broken;
+
+        Snapshot(long seq, CompatibilitySpace space)
+        {
+            this.seq    = seq;
+            this.space  = space;
+        }
+
+        /**
+         * Can the snapshot still be read?
+         **/
+        boolean isBroken()
+        {
+            return(broken);
+        }
+
+        /**
+         * Does the snapshot see the changes of a writer?
+         **/
+        boolean sees(Writer writer)
+        {
+            if (writer.space == space)
+                return(true);
+
+            long commit_seq = writer.commit_seq;
+
+            return(commit_seq != 0 && commit_seq <= seq);
+        }
+    }
+
+    /**
+     * The changes of a transaction.  The writer observes the transaction to
+     * get its commit sequence number, and is queued as post commit or post
+     * abort work to purge versions once the transaction is done.
+     **/
+    final class Writer implements DerbyObserver, Serviceable
+    {
+        private final Transaction           rawtran;
+        private final CompatibilitySpace    space;
+        private final AccessFactory         access_factory;
+
+        /**
+         * The rows changed by the transaction.  Only used by the thread of
+         * the transaction until it is done.
+         **/
+        private final ArrayList<RecordHandle> changed_rows =
+            new ArrayList<RecordHandle>();
+
+        /** The commit sequence number, 0 until the transaction commits. */
+        private volatile long commit_seq;
+
+        /**
+         * Whether the writer saves versions.  Only cleared by the thread of
+         * the transaction, with the lock on the versions held.
+         **/
+        private volatile boolean versioned;
+
+        /**
+         * The memory used by the versions of the writer.  Only used by the
+         * thread of the transaction until it is done.
+         **/
+        private long memory;
+
+        Writer(
+        Transaction     rawtran,
+        AccessFactory   access_factory,
+        boolean         versioned)
+        {
+            this.rawtran        = rawtran;
+            this.space          = rawtran.getCompatibilitySpace();
+            this.access_factory = access_factory;
+            this.versioned      = versioned;
+        }
+
+        /**
+         * Does the writer save versions?
+         **/
+        boolean isVersioned()
+        {
+            return(versioned);
+        }
+
+        /**
+         * Called by the transaction just before it commits or aborts.
+         **/
+        public void update(DerbyObservable obj, Object arg)
+        {
+            if (RawTransaction.COMMIT.equals(arg))
+            {
+                rawtran.deleteObserver(this);
+                writers.remove(rawtran);
+
+                if (!versioned)
+                    unversionedWriterDone();
+
+                if (!changed_rows.isEmpty())
+                {
+                    commitWriter(this);
+                    rawtran.addPostCommitWork(this);
+                }
+            }
+            else if (RawTransaction.ABORT.equals(arg))
+            {
+                // the versions are still needed until the changes are
+                // undone, drop them in post abort work.  Snapshots must not
+                // be taken before then if some changes have no versions.
+                rawtran.deleteObserver(this);
+                writers.remove(rawtran);
+                rawtran.addPostAbortWork(this);
+
+                if (!versioned)
+                    rawtran.addPostAbortWork(new UnversionedWriterDone());
+            }
+        }
+
+        public int performWork(ContextManager contextMgr)
+            throws StandardException
+        {
+            boolean aborted = (commit_seq == 0);
+
+            if (aborted)
+                dropAborted(this);
+
+            purge(contextMgr, access_factory, aborted);
+
+            return(Serviceable.DONE);
+        }
+
+        /**
+         * The memory of the versions is capped, free it soon.
+         **/
+        public boolean serviceASAP()
+        {
+            return(true);
+        }
+
+        public boolean serviceImmediately()
+        {
+            return(false);
+        }
+    }
+
+    /**
+     * A transaction which reads snapshots.  Writers save versions while a
+     * reader is active.
+     **/
+    private final class Reader implements DerbyObserver
+    {
+        private final Transaction rawtran;
+
+        Reader(Transaction rawtran)
+        {
+            this.rawtran = rawtran;
+        }
+
+        /**
+         * Called by the transaction just before it commits or aborts.
+         **/
+        public void update(DerbyObservable obj, Object arg)
+        {
+            if (RawTransaction.COMMIT.equals(arg) ||
+                RawTransaction.ABORT.equals(arg))
+            {
+                rawtran.deleteObserver(this);
+
+                synchronized (HeapRowVersions.this)
+                {
+                    readers.remove(rawtran);
+                }
+            }
+        }
+    }
+
+    /**
+     * A purge requested when a snapshot that held it back is released.
+     **/
+    private final class PurgeWork implements Serviceable
+    {
+        private final AccessFactory access_factory;
+
+        PurgeWork(AccessFactory access_factory)
+        {
+            this.access_factory = access_factory;
+        }
+
+        public int performWork(ContextManager contextMgr)
+            throws StandardException
+        {
+            purge_queued.set(false);
+
+            purge(contextMgr, access_factory, false);
+
+            return(Serviceable.DONE);
+        }
+
+        public boolean serviceASAP()
+        {
+            return(true);
+        }
+
+        public boolean serviceImmediately()
+        {
+            return(false);
+        }
+    }
+
+    /**
+     * Post abort work of a writer which doesn't save versions, done by the
+     * aborting thread once the changes are undone, so that snapshots are
+     * taken again without waiting for the post commit daemon.
+     **/
+    private final class UnversionedWriterDone implements Serviceable
+    {
+        public int performWork(ContextManager contextMgr)
+        {
+            unversionedWriterDone();
+
+            return(Serviceable.DONE);
+        }
+
+        public boolean serviceASAP()
+        {
+            return(true);
+        }
+
+        public boolean serviceImmediately()
+        {
+            return(true);
+        }
+    }
+}
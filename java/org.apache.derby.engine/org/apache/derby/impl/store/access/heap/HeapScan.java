@@ -42,7 +42,10 @@ import org.apache.derby.iapi.store.access.Qualifier;
 import org.apache.derby.iapi.store.access.RowUtil;
 import org.apache.derby.iapi.store.access.ScanInfo;
 
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.LockingPolicy;
 import org.apache.derby.iapi.store.raw.RecordHandle;
+import org.apache.derby.iapi.store.raw.Transaction;
 
 import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.RowLocation;
@@ -71,6 +74,13 @@ class HeapScan
     private DataValueDescriptor[][] fetchNext_one_slot_array = 
         new DataValueDescriptor[1][];
 
+    /**
+     * The versions of heap rows and the snapshot read by the scan, null
+     * unless the scan reads a snapshot of the committed rows.
+     **/
+    private HeapRowVersions             versions;
+    private HeapRowVersions.Snapshot    snapshot;
+
 
     /**************************************************************************
      * Constructors for This class:
@@ -103,10 +113,87 @@ class HeapScan
                 pos.current_page.getPageKey()));
     }
 
+    protected void saveRowVersion(
+    RowPosition pos)
+        throws StandardException
+    {
+        ((OpenHeap) open_conglom).saveRowVersion(pos);
+    }
+
+    /**
+     * Fetch the row at the current scan position, as the snapshot of the
+     * scan sees it if the scan reads a snapshot.
+     *
+     * @see GenericScanController#fetchFromCurrentSlot
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    protected RecordHandle fetchFromCurrentSlot(
+    DataValueDescriptor[]   row,
+    FetchDescriptor         fetchDesc)
+        throws StandardException
+    {
+        // the open heap drops the snapshot when it is broken.
+        HeapRowVersions.Snapshot current = 
+            ((OpenHeap) open_conglom).getSnapshot();
+
+        if (current != null)
+        {
+            HeapRowVersions.RowVersion version = 
+                versions.findVersion(current, scan_position.current_rh);
+
+            if (version != null)
+            {
+                return(HeapRowVersions.fetchVersion(version, row, fetchDesc) ?
+                        scan_position.current_rh : null);
+            }
+        }
+
+        return(super.fetchFromCurrentSlot(row, fetchDesc));
+    }
+
     /**************************************************************************
      * Private/Protected methods of This class:
      **************************************************************************
      */
+
+    /**
+     * Make the scan read a snapshot of the committed rows.  The scan must
+     * have been opened with a locking policy that does not lock rows for
+     * read.
+     *
+     * @param versions          the versions of heap rows
+     * @param snapshot          the snapshot to read, released when the scan
+     *                          closes
+     * @param fallback_policy   the locking policy to lock the rows with if
+     *                          the snapshot is broken
+     **/
+    void setSnapshot(
+    HeapRowVersions             versions,
+    HeapRowVersions.Snapshot    snapshot,
+    LockingPolicy               fallback_policy)
+    {
+        this.versions = versions;
+        this.snapshot = snapshot;
+
+        ((OpenHeap) open_conglom).setSnapshot(snapshot, fallback_policy);
+    }
+
+    /**
+     * Release the snapshot read by the scan, if any.
+     **/
+    private void closeSnapshot(
+    Transaction         rawtran,
+    TransactionManager  xact_mgr)
+    {
+        if (snapshot != null)
+        {
+            versions.closeSnapshot(
+                snapshot, rawtran, xact_mgr.getAccessManager());
+
+            snapshot = null;
+        }
+    }
     protected void setRowLocationArray(
     RowLocation[]   rowloc_array,
     int             index,
@@ -344,6 +431,38 @@ class HeapScan
     }
 
 
+    /**
+	@see org.apache.derby.iapi.store.access.ScanController#close
+	**/
+    public void close()
+        throws StandardException
+    {
+        Transaction         rawtran  = open_conglom.getRawTran();
+        TransactionManager  xact_mgr = open_conglom.getXactMgr();
+
+        super.close();
+
+        closeSnapshot(rawtran, xact_mgr);
+    }
+
+    /**
+	@see ScanManager#closeForEndTransaction
+	**/
+    public boolean closeForEndTransaction(
+    boolean closeHeldScan)
+        throws StandardException
+    {
+        Transaction         rawtran  = open_conglom.getRawTran();
+        TransactionManager  xact_mgr = open_conglom.getXactMgr();
+
+        boolean closed = super.closeForEndTransaction(closeHeldScan);
+
+        if (closed)
+            closeSnapshot(rawtran, xact_mgr);
+
+        return(closed);
+    }
+
     /**
      * Return ScanInfo object which describes performance of scan.
      * <p>
@@ -25,9 +25,14 @@ import org.apache.derby.shared.common.reference.SQLState;
 
 import org.apache.derby.shared.common.error.StandardException;
 
+import org.apache.derby.iapi.store.raw.LockingPolicy;
+import org.apache.derby.iapi.store.raw.RecordHandle;
+
+import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.RowLocation;
 
 import org.apache.derby.impl.store.access.conglomerate.OpenConglomerate;
+import org.apache.derby.impl.store.access.conglomerate.RowPosition;
 
 /**
 
@@ -40,6 +45,21 @@ class OpenHeap extends OpenConglomerate
      **************************************************************************
      */
 
+    /**
+     * The versions of heap rows kept for snapshot reads, looked up the
+     * first time a row is changed.
+     **/
+    private HeapRowVersions row_versions;
+    private boolean         row_versions_found;
+
+    /**
+     * The snapshot read by a scan of the heap, null if the scan locks the
+     * rows it reads, and the locking policy to lock them with if the
+     * snapshot is broken.
+     **/
+    private HeapRowVersions.Snapshot    snapshot;
+    private LockingPolicy               snapshot_fallback_policy;
+
     /**************************************************************************
      * Constructors for This class:
      **************************************************************************
@@ -50,10 +70,141 @@ class OpenHeap extends OpenConglomerate
      **************************************************************************
      */
 
+    /**
+     * Return the versions of heap rows kept for snapshot reads.
+     *
+	 * @return null if snapshot reads are not enabled.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    HeapRowVersions getRowVersions()
+		throws StandardException
+    {
+        if (!row_versions_found)
+        {
+            // rows of temporary heaps are only seen by their transaction.
+            if (!((Heap) getConglomerate()).isTemporary())
+                row_versions = Heap.getRowVersions(getXactMgr());
+
+            row_versions_found = true;
+        }
+
+        return(row_versions);
+    }
+
+    /**
+     * Read a snapshot of the committed rows instead of locking them.  The
+     * heap must have been opened with a locking policy that does not lock
+     * rows for read.
+     *
+     * @param snapshot          the snapshot to read
+     * @param fallback_policy   the locking policy to lock the rows with if
+     *                          the snapshot is broken
+     **/
+    void setSnapshot(
+    HeapRowVersions.Snapshot    snapshot,
+    LockingPolicy               fallback_policy)
+    {
+        this.snapshot                 = snapshot;
+        this.snapshot_fallback_policy = fallback_policy;
+    }
+
+    /**
+     * Return the snapshot read, null if the rows are locked instead.
+     **/
+    HeapRowVersions.Snapshot getSnapshot()
+    {
+        return(snapshot);
+    }
+
+    /**
+     * Save the row at a position as it is before the transaction changes it,
+     * if snapshot reads are enabled.  Only the first change of a row by a
+     * transaction saves a version.
+     *
+     * @param pos   the position of the row, its page must be latched
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    void saveRowVersion(RowPosition pos)
+		throws StandardException
+    {
+        HeapRowVersions versions = getRowVersions();
+
+        if (versions == null)
+            return;
+
+        HeapRowVersions.Writer writer = 
+            versions.getWriter(getRawTran(), getXactMgr().getAccessManager());
+
+        if (!writer.isVersioned() || versions.hasVersion(writer, pos.current_rh))
+            return;
+
+        DataValueDescriptor[] row = 
+            getRuntimeMem().get_row_for_export(getRawTran());
+
+        pos.current_page.fetchFromSlot(
+            pos.current_rh, pos.current_slot, row, null, true);
+
+        versions.addVersion(writer, pos.current_rh, row);
+    }
+
+    /**
+     * Record that the transaction inserted a row, if snapshot reads are
+     * enabled, so snapshots don't see the row until the transaction commits.
+     *
+     * @param rh    the inserted row, its page must still be latched
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    void saveInsertVersion(RecordHandle rh)
+		throws StandardException
+    {
+        HeapRowVersions versions = getRowVersions();
+
+        if (versions == null)
+            return;
+
+        versions.addVersion(
+            versions.getWriter(getRawTran(), getXactMgr().getAccessManager()),
+            rh, 
+            null);
+    }
+
     /**************************************************************************
      * Public Methods of This class:
      **************************************************************************
      */
+
+    /**
+     * Lock the row at the given position for read, if the rows are locked.
+     * <p>
+     * A scan reading a snapshot locks nothing, unless the snapshot is
+     * broken.  It then locks the rows it reads from there on, as it would
+     * if it did not read a snapshot.  The rows read before were committed
+     * when the scan opened, which read committed allows.
+     *
+     * @see OpenConglomerate#lockPositionForRead
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public boolean lockPositionForRead(
+    RowPosition pos,
+    RowPosition aux_pos,
+    boolean     moveForwardIfRowDisappears,
+    boolean     waitForLock)
+        throws StandardException
+    {
+        if (snapshot != null && snapshot.isBroken())
+        {
+            setLockingPolicy(snapshot_fallback_policy);
+            snapshot = null;
+        }
+
+        return(super.lockPositionForRead(
+                    pos, aux_pos, moveForwardIfRowDisappears, waitForLock));
+    }
+
     public int[] getFormatIds()
     {
         return(((Heap) getConglomerate()).format_ids);
@@ -0,0 +1,320 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.heap.ParallelHeapScan
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.heap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.shared.common.reference.SQLState;
+import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.daemon.DaemonService;
+import org.apache.derby.iapi.services.daemon.Serviceable;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
+import org.apache.derby.iapi.store.access.AccessFactory;
+import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
+import org.apache.derby.iapi.store.access.RowConsumer;
+import org.apache.derby.iapi.store.access.RowUtil;
+import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.raw.ContainerKey;
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.LockingPolicy;
+import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.Transaction;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.util.InterruptStatus;
+
+/**
+
+  Scans all the rows of a heap with the scan daemons of the access manager.
+  <P>
+  Each consumer of the rows gets a ScanTask, which a scan daemon runs.
+  The tasks take chunks of PAGES_PER_CHUNK page numbers from a shared
+  counter until there are no more pages, and give the rows on the head
+  pages of their chunks to their consumers.  A task reads the heap in an
+  internal transaction of its daemon, through a container handle which
+  does not lock.  The caller holds the table lock which keeps writers out
+  while the tasks run, see RAMTransaction.scanHeapInParallel().
+  <P>
+  The first error of a task stops the other tasks at their next page, and
+  is thrown to the caller once they have all stopped.
+  <P>
+  MT - the caller waits in scan() until all the tasks are done, under the
+  synchronization of this object.
+
+**/
+
+final class ParallelHeapScan
+{
+	/**
+	The number of pages a task scans before it takes the next ones.
+	**/
+	private static final int PAGES_PER_CHUNK = 16;
+
+	/**
+	Spreads the tasks of all the scans over the scan daemons.
+	**/
+	private static final AtomicInteger nextDaemon = new AtomicInteger();
+
+	private final AccessFactory         access_factory;
+	private final ContainerKey          id;
+	private final FormatableBitSet      scanColumnList;
+	private final DataValueDescriptor[] template;
+
+	/**
+	The first page number of the next chunk to scan.
+	**/
+	private final AtomicLong nextPage =
+		new AtomicLong(ContainerHandle.FIRST_PAGE_NUMBER);
+
+	/**
+	Set when a task failed, so that the others stop.
+	**/
+	private volatile boolean failed;
+
+	/** The number of tasks still running. Guarded by this. */
+	private int running;
+
+	/** What the first task to fail failed with, or null. Guarded by this. */
+	private Throwable error;
+
+	ParallelHeapScan(
+    AccessFactory           access_factory,
+    ContainerKey            id,
+    FormatableBitSet        scanColumnList,
+    DataValueDescriptor[]   template)
+	{
+		this.access_factory = access_factory;
+		this.id = id;
+		this.scanColumnList = scanColumnList;
+		this.template = template;
+	}
+
+	/**
+	Scan the heap with the daemons, giving the rows to the consumers, and
+	wait until all the rows are given.
+
+	@exception StandardException Standard Derby error policy
+	**/
+	void scan(DaemonService[] daemons, RowConsumer[] consumers)
+		throws StandardException
+	{
+		synchronized (this)
+		{
+			running = consumers.length;
+		}
+
+		int first = nextDaemon.getAndAdd(consumers.length) & Integer.MAX_VALUE;
+		for (int i = 0; i < consumers.length; i++)
+		{
+			daemons[(first + i) % daemons.length].enqueue(
+				new ScanTask(consumers[i]), true);
+		}
+
+		waitForTasks();
+	}
+
+	/**
+	Wait until all the tasks are done, and throw the error of the first
+	one to fail.
+	**/
+	private synchronized void waitForTasks()
+		throws StandardException
+	{
+		while (running > 0)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException ie)
+			{
+				InterruptStatus.setInterrupted();
+			}
+		}
+
+		if (error instanceof StandardException)
+			throw (StandardException) error;
+		if (error instanceof RuntimeException)
+			throw (RuntimeException) error;
+		if (error instanceof Error)
+			throw (Error) error;
+		if (error != null)
+			throw StandardException.plainWrapException(error);
+	}
+
+	private synchronized void taskDone(Throwable t)
+	{
+		if (t != null && error == null)
+		{
+			error = t;
+			failed = true;
+		}
+
+		running--;
+		notifyAll();
+	}
+
+	/**
+	Give the rows of the heap, a chunk of pages at a time, to a consumer.
+	**/
+	private void scanChunks(Transaction rawtran, RowConsumer consumer)
+		throws StandardException
+	{
+		ContainerHandle container =
+			rawtran.openContainer(
+				id,
+				rawtran.newLockingPolicy(
+					LockingPolicy.MODE_NONE,
+					TransactionController.ISOLATION_NOLOCK, true),
+				ContainerHandle.MODE_READONLY);
+
+		if (container == null)
+		{
+			throw StandardException.newException(
+					SQLState.HEAP_CONTAINER_NOT_FOUND, id.getContainerId());
+		}
+
+		try
+		{
+			DataValueDescriptor[] row = RowUtil.newRowFromTemplate(template);
+			FetchDescriptor fetchDesc =
+				new FetchDescriptor(row.length, scanColumnList, null);
+
+			while (!failed)
+			{
+				long chunk = nextPage.getAndAdd(PAGES_PER_CHUNK);
+				long end = chunk + PAGES_PER_CHUNK;
+
+				// the first head page at or after the chunk, if none there
+				// are no more pages to scan.
+				Page page = container.getNextPage(chunk - 1);
+				if (page == null)
+					break;
+
+				while (page != null)
+				{
+					long pageNumber = page.getPageNumber();
+
+					if (pageNumber >= end || failed)
+					{
+						// belongs to a later chunk, or another task failed.
+						page.unlatch();
+						break;
+					}
+
+					try
+					{
+						// slot 0 of the first page holds the control row of
+						// the heap.
+						int slots = page.recordCount();
+						int slot =
+							(pageNumber == ContainerHandle.FIRST_PAGE_NUMBER) ?
+								Page.FIRST_SLOT_NUMBER + 1 : Page.FIRST_SLOT_NUMBER;
+						for (; slot < slots; slot++)
+						{
+							// deleted rows are not fetched.
+							if (page.fetchFromSlot(
+									null, slot, row, fetchDesc, false) != null)
+							{
+								consumer.consume(row);
+							}
+						}
+					}
+					finally
+					{
+						page.unlatch();
+					}
+
+					page = container.getNextPage(pageNumber);
+				}
+			}
+		}
+		finally
+		{
+			container.close();
+		}
+	}
+
+	/**
+	The work of a scan daemon, giving rows to one consumer.
+	**/
+	private final class ScanTask implements Serviceable
+	{
+		private final RowConsumer consumer;
+
+		ScanTask(RowConsumer consumer)
+		{
+			this.consumer = consumer;
+		}
+
+		/**
+		Scan chunks of the heap in an internal transaction, in the daemon's
+		thread.
+		**/
+		public int performWork(ContextManager contextMgr)
+		{
+			Throwable t = null;
+
+			try
+			{
+				TransactionManager tc = (TransactionManager)
+					access_factory.getAndNameTransaction(
+						contextMgr, AccessFactoryGlobals.SYS_TRANS_NAME);
+
+				TransactionManager internal_xact = tc.getInternalTransaction();
+
+				try
+				{
+					scanChunks(internal_xact.getRawStoreXact(), consumer);
+				}
+				finally
+				{
+					// nothing has been logged, so this only releases the
+					// resources of the transaction.
+					internal_xact.commitNoSync(Transaction.RELEASE_LOCKS);
+					internal_xact.destroy();
+				}
+			}
+			catch (Throwable th)
+			{
+				t = th;
+			}
+
+			taskDone(t);
+
+			return Serviceable.DONE;
+		}
+
+		public boolean serviceASAP()
+		{
+			return true;
+		}
+
+		public boolean serviceImmediately()
+		{
+			return false;
+		}
+	}
+}
@@ -23,8 +23,12 @@ package org.apache.derby.impl.store.access.sort;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
 import java.util.Properties;
 
+import org.apache.derby.iapi.services.daemon.DaemonFactory;
+import org.apache.derby.iapi.services.daemon.DaemonService;
 import org.apache.derby.iapi.services.monitor.ModuleControl;
 import org.apache.derby.iapi.services.monitor.ModuleFactory;
 import org.apache.derby.iapi.services.monitor.ModuleSupportable;
@@ -33,6 +37,8 @@ import org.apache.derby.iapi.services.property.PropertyUtil;
 import org.apache.derby.shared.common.sanity.SanityManager;
 
 import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.shared.common.reference.Module;
+import org.apache.derby.shared.common.reference.Property;
 
 import org.apache.derby.iapi.store.access.conglomerate.Sort;
 import org.apache.derby.iapi.store.access.conglomerate.SortFactory;
@@ -63,6 +69,10 @@ public class ExternalSortFactory implements
 	private int defaultSortBufferMax; 
 	private int sortBufferMax;
 
+	// the daemons sorting merge runs in parallel, null if
+	// derby.storage.sortThreads is not more than 1.
+	private DaemonService[] runSortDaemons;
+
 	private static final String IMPLEMENTATIONID = "sort external";
 	private static final String FORMATUUIDSTRING = "D2976090-D9F5-11d0-B54D-00A024BF8879";
 	private UUID formatUUID = null;
@@ -230,6 +240,7 @@ public class ExternalSortFactory implements
 		sort.initialize(
             template, columnOrdering, sortObserver, 
             alreadyInOrder, estimatedRows, sortBufferMax);
+		sort.runSortDaemons = runSortDaemons;
 		return sort;
 	}
 
@@ -384,10 +395,28 @@ public class ExternalSortFactory implements
 				defaultSortBufferMax = MINIMUM_SORTBUFFERMAX;
 		}
 
+		// Start the daemons which sort merge runs in parallel, if asked to.
+		int sortThreads = PropertyUtil.getSystemInt(Property.SORT_THREADS,
+								1, Integer.MAX_VALUE, 1);
+		if (sortThreads > 1)
+		{
+			DaemonFactory daemonFactory =
+				(DaemonFactory) startSystemModule(Module.DaemonFactory);
+
+			runSortDaemons = new DaemonService[sortThreads];
+			for (int i = 0; i < sortThreads; i++)
+				runSortDaemons[i] = daemonFactory.createNewDaemon("sortDaemon");
+		}
 	}
 
 	public void	stop()
 	{
+		if (runSortDaemons != null)
+		{
+			for (int i = 0; i < runSortDaemons.length; i++)
+				runSortDaemons[i].stop();
+			runSortDaemons = null;
+		}
 	}
 
     
@@ -409,4 +438,29 @@ public class ExternalSortFactory implements
              );
     }
 
+    /**
+     * Privileged startup. Must be private so that user code
+     * can't call this entry point.
+     */
+    private  static  Object  startSystemModule( final String factoryInterface )
+        throws StandardException
+    {
+        try {
+            return AccessController.doPrivileged
+                (
+                 new PrivilegedExceptionAction<Object>()
+                 {
+                     public Object run()
+                         throws StandardException
+                     {
+                         return Monitor.startSystemModule( factoryInterface );
+                     }
+                 }
+                 );
+        } catch (PrivilegedActionException pae)
+        {
+            throw StandardException.plainWrapException( pae );
+        }
+    }
+
 }
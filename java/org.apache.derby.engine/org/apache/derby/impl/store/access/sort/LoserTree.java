@@ -0,0 +1,174 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.sort.LoserTree
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.sort;
+
+import org.apache.derby.shared.common.sanity.SanityManager;
+import org.apache.derby.shared.common.error.StandardException;
+
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+/**
+
+  A tree of losers, used to merge a number of sorted inputs,
+  see Knuth Vol. 3, Sec. 5.4.1, pp. 252-256.
+  <P>
+  Each input has a current row.  The inputs are the leaves of a
+  complete binary tree, and each internal node remembers the loser
+  of the match played there between the winners of its two subtrees.
+  The overall winner, the input with the lowest current row, is kept
+  apart.  When the winner's current row is replaced, only the matches
+  on the path from its leaf to the root are replayed, so each row
+  merged costs about log2(inputs) compares.
+  <P>
+  An input whose current row is null is exhausted, and loses every
+  match.  Inputs with equal rows are won by the lower input number,
+  which keeps the merge stable.
+
+**/
+
+class LoserTree
+{
+	/**
+	The sort whose rows are being merged.
+	**/
+	private MergeSort sort;
+
+	/**
+	The current row of each input, null if the input is exhausted.
+	**/
+	private DataValueDescriptor[][] rows;
+
+	/**
+	The tree.  Entry 0 is the winner, entries 1 through inputs - 1 the
+	loser of the match at each internal node.  The children of node n
+	are nodes 2n and 2n + 1, and input i is the leaf at node inputs + i.
+	**/
+	private int[] tree;
+
+	/**
+	Construct a tree for a number of inputs.  The current row of each
+	input must be set before the tree is built.
+	**/
+	LoserTree(MergeSort sort, int inputs)
+	{
+		if (SanityManager.DEBUG)
+			SanityManager.ASSERT(inputs > 0);
+
+		this.sort = sort;
+		rows = new DataValueDescriptor[inputs][];
+		tree = new int[inputs];
+	}
+
+	/**
+	Set the first row of an input, before the tree is built.
+	**/
+	void setRow(int input, DataValueDescriptor[] row)
+	{
+		rows[input] = row;
+	}
+
+	/**
+	Play all the matches once the first row of every input is set.
+	**/
+	void build()
+		throws StandardException
+	{
+		tree[0] = play(1);
+	}
+
+	/**
+	Return the input with the lowest current row.
+	**/
+	int winner()
+	{
+		return tree[0];
+	}
+
+	/**
+	Return the current row of an input, null if it is exhausted.
+	**/
+	DataValueDescriptor[] getRow(int input)
+	{
+		return rows[input];
+	}
+
+	/**
+	Replace the current row of the winning input with its next row,
+	null if it has no more rows, and find the new winner.
+	**/
+	void replaceWinner(DataValueDescriptor[] row)
+		throws StandardException
+	{
+		int winner = tree[0];
+		rows[winner] = row;
+
+		for (int node = (winner + rows.length) / 2; node > 0; node /= 2)
+		{
+			if (beats(tree[node], winner))
+			{
+				int loser = winner;
+				winner = tree[node];
+				tree[node] = loser;
+			}
+		}
+
+		tree[0] = winner;
+	}
+
+	/**
+	Play the matches of the subtree under a node, and return its winner.
+	**/
+	private int play(int node)
+		throws StandardException
+	{
+		if (node >= rows.length)
+			return node - rows.length;
+
+		int left  = play(2 * node);
+		int right = play(2 * node + 1);
+
+		if (beats(right, left))
+		{
+			tree[node] = left;
+			return right;
+		}
+
+		tree[node] = right;
+		return left;
+	}
+
+	/**
+	Return whether an input wins a match against another.
+	**/
+	private boolean beats(int input, int other)
+		throws StandardException
+	{
+		if (rows[input] == null)
+			return false;
+		if (rows[other] == null)
+			return true;
+
+		int c = sort.compare(rows[input], rows[other]);
+
+		return (c < 0 || (c == 0 && input < other));
+	}
+}
@@ -58,6 +58,19 @@ final class MergeInserter implements SortController
 	**/
 	private SortBuffer sortBuffer;
 
+	/**
+	Sorts the merge runs in parallel, once the sort has gone external
+	and if the sort factory has sort daemons.  Null otherwise.
+	**/
+	private ParallelRunBuilder runBuilder;
+
+	/**
+	The batch of rows being collected for the next merge run, when the
+	merge runs are sorted in parallel.
+	**/
+	private DataValueDescriptor[][] runRows;
+	private int numRunRows;
+
 	/**
 	Information about memory usage to dynamically tune the
 	in-memory sort buffer size.
@@ -95,6 +108,14 @@ final class MergeInserter implements SortController
 		// Check that the inserted row is of the correct type
 		sort.checkColumnTypes(row);
 
+		if (runBuilder != null)
+		{
+			stat_numRowsInput++;
+			if (insertIntoRun(row))
+				stat_numRowsOutput++;
+			return;
+		}
+
 		// Insert the row into the sort buffer, which will
 		// sort it into the right order with the rest of the
 		// rows and remove any duplicates.
@@ -198,6 +219,26 @@ final class MergeInserter implements SortController
             totalRunSize += runSize;
             stat_mergeRunsSize.addElement(runSize);
 
+			// From now on sort the merge runs in parallel if we can.
+			// A deferrable constraint remembers duplicates as the rows
+			// are compared, that has to happen in this thread.
+			if (sort.runSortDaemons != null &&
+				!sort.sortObserver.deferrable())
+			{
+				// The batches being sorted and the one being filled
+				// together hold as many rows as the sort buffer did.
+				int batchSize = Math.max(
+					sortBuffer.capacity() / (sort.runSortDaemons.length + 1),
+					1);
+
+				runBuilder = new ParallelRunBuilder(sort);
+				runRows = new DataValueDescriptor[batchSize][];
+				numRunRows = 0;
+
+				insertIntoRun(row);
+				return;
+			}
+
 			// Re-insert the row into the sort buffer.
 			// This is guaranteed to work since the sort
 			// buffer has just been emptied.
@@ -205,6 +246,39 @@ final class MergeInserter implements SortController
 		}
 	}
 
+	/**
+	Add a row to the batch of rows for the next merge run.  A full batch
+	is handed to the run builder to be sorted when the next row comes, so
+	that the last batch, which ends up in the sort buffer, is never empty.
+	The row is given to the sort observer here, in the inserting thread,
+	and is checked for duplicates when the merge run is written out.
+	Returns false if the sort observer dropped the row.
+	**/
+	private boolean insertIntoRun(DataValueDescriptor[] row)
+		throws StandardException
+	{
+		row = sort.sortObserver.insertNonDuplicateKey(row);
+		if (row == null)
+			return false;
+
+		if (numRunRows == runRows.length)
+		{
+			runBuilder.addRun(tran, mergeRuns, runRows);
+			runRows = new DataValueDescriptor[runRows.length][];
+			numRunRows = 0;
+
+			stat_numMergeRuns++;
+			// the batch was full before this row
+			runSize = stat_numRowsInput - totalRunSize - 1;
+			totalRunSize += runSize;
+			stat_mergeRunsSize.addElement(runSize);
+		}
+
+		runRows[numRunRows++] = row;
+
+		return true;
+	}
+
 	/**
      * Called when the caller has completed
      * inserting rows into the sorter.
@@ -214,10 +288,16 @@ final class MergeInserter implements SortController
 
 	public void completedInserts()
 	{
+		// The rows of the last batch go into the sort buffer,
+		// to be the last merge run.
+		if (runBuilder != null)
+			runBuilder.setLeftovers(runRows, numRunRows);
+
 		// Tell the sort that we're closed, and hand off
-		// the sort buffer and the vector of merge runs.
+		// the sort buffer, the vector of merge runs and
+		// the merge runs still being sorted.
 		if (sort != null)
-			sort.doneInserting(this, sortBuffer, mergeRuns);
+			sort.doneInserting(this, sortBuffer, mergeRuns, runBuilder);
 
         // if this is an external sort, there will actually
         // be one last merge run with the contents of the
@@ -237,6 +317,8 @@ final class MergeInserter implements SortController
 		tran = null;
 		mergeRuns = null;
 		sortBuffer = null;
+		runBuilder = null;
+		runRows = null;
 	}
 
 	/*
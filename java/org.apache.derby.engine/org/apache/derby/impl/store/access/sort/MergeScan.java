@@ -37,14 +37,15 @@ import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.store.access.conglomerate.ScanManager;
 
 /**
-	A sort scan that is capable of merging as many merge runs
-	as will fit in the passed-in sort buffer.
+	A sort scan that merges a number of merge runs, using a tree
+	of losers over the current rows of the runs.
 **/
 
 public class MergeScan extends SortScan
 {
 	/**
-	The sort buffer we will use.
+	The sort buffer, not used by the merge but handed back to the sort
+	when the scan is closed.
 	**/
 	protected SortBuffer sortBuffer;
 
@@ -60,6 +61,19 @@ public class MergeScan extends SortScan
 	**/
 	protected StreamContainerHandle openScans[];
 
+	/**
+	The tree merging the current rows of the merge runs.  Input i of the
+	tree is the merge run in openScans[i].
+	**/
+	private LoserTree mergeTree;
+
+	/**
+	The next row to return from the merge, null at the end.  Rows of the
+	merge runs which compare equal to it have not been given to the sort
+	observer yet.
+	**/
+	private DataValueDescriptor[] nextRow;
+
 	private SortObserver sortObserver;
 
 	/*
@@ -92,9 +106,7 @@ public class MergeScan extends SortScan
     public boolean next()
 		throws StandardException
 	{
-		current = sortBuffer.removeFirst();
-		if (current != null)
-			mergeARow(sortBuffer.getLastAux());
+		current = mergeNext();
 		return (current != null);
 	}
 
@@ -104,6 +116,9 @@ public class MergeScan extends SortScan
     **/
     public void close()
 	{
+		mergeTree = null;
+		nextRow = null;
+
 		if (openScans != null)
 		{
 			for (int i = 0; i < openScans.length; i++)
@@ -163,17 +178,8 @@ public class MergeScan extends SortScan
 			// merge run.
 			SanityManager.ASSERT(mergeRuns != null);
 			SanityManager.ASSERT(mergeRuns.size() > 0);
-
-			// This sort scan also expects that the
-			// caller has ensured that the sort buffer
-			// capacity will hold a row from all the
-			// merge runs.
-			SanityManager.ASSERT(sortBuffer.capacity() >= mergeRuns.size());
 		}
 
-		// Clear the sort buffer.
-		sortBuffer.reset();
-
 		// Create an array to hold a scan controller
 		// for each merge run.
 		openScans = new StreamContainerHandle[mergeRuns.size()];
@@ -195,52 +201,123 @@ public class MergeScan extends SortScan
 		}
 
 		// Load the initial rows.
+		mergeTree = new LoserTree(sort, openScans.length);
 		for (scanindex = 0; scanindex < openScans.length; scanindex++)
-			mergeARow(scanindex);
+			mergeTree.setRow(scanindex, fetchFromRun(scanindex));
+		mergeTree.build();
+
+		nextRow = removeNonDuplicate();
 
 		// Success!
 		return true;
 	}
 
 	/**
-	Insert rows while we keep getting duplicates 
-	from the merge run whose scan is in the
-	open scan array entry indexed by scanindex.
+	Return the next row of the merge, or null if there are no more.
+	<p>
+	Before the row is returned, the rows following it in the merge
+	runs which compare equal to it are offered to the sort observer
+	as duplicates of it, the way the sort buffer does when they
+	meet there.  Those the observer does not keep are dropped.
 	**/
-	void mergeARow(int scanindex)
+	protected DataValueDescriptor[] mergeNext()
 		throws StandardException
 	{
-		if (SanityManager.DEBUG)
+		DataValueDescriptor[] row = nextRow;
+
+		if (row == null)
+			return null;
+
+		while (true)
 		{
-			// Unless there's a bug, the scan index will refer
-			// to an open scan.  That's because we never put
-			// a scan index for a closed scan into the sort
-			// buffer (via setNextAux).
-			SanityManager.ASSERT(openScans[scanindex] != null);
+			nextRow = removeFirst();
+
+			if (nextRow == null)
+				break;
+
+			if (sort.compare(nextRow, row) != 0)
+			{
+				// not a duplicate, the observer may still drop it.
+				nextRow = sortObserver.insertNonDuplicateKey(nextRow);
+				if (nextRow == null)
+					nextRow = removeNonDuplicate();
+				break;
+			}
+
+			// See if we can use the aggregators to get rid of the
+			// duplicate, otherwise it is returned after row.
+			nextRow = sortObserver.insertDuplicateKey(nextRow, row);
+			if (nextRow != null)
+				break;
 		}
 
+		return row;
+	}
+
+	/**
+	Remove rows from the merge until one the sort observer keeps as
+	a non-duplicate, and return it.  Return null if there are none.
+	**/
+	private DataValueDescriptor[] removeNonDuplicate()
+		throws StandardException
+	{
 		DataValueDescriptor[] row;
 
-		// Read rows from the merge run and stuff them into the
-		// sort buffer for as long as we encounter duplicates.
 		do
 		{
-			row = sortObserver.getArrayClone();
+			row = removeFirst();
+			if (row == null)
+				return null;
+		}
+		while ((row = sortObserver.insertNonDuplicateKey(row)) == null);
 
-			// Fetch the row from the merge run.
-			if (!openScans[scanindex].fetchNext(row))
-			{
-                // If we're out of rows in the merge run, close the scan.
-                
-				openScans[scanindex].close();
-				openScans[scanindex] = null;
-				return;
-			}
+		return row;
+	}
 
-			// Save the index of this merge run with
-			// the row we're putting in the sort buffer.
-			sortBuffer.setNextAux(scanindex);
+	/**
+	Remove the lowest current row of the merge runs, and replace it
+	with the next row of its run.  Returns null once all the merge
+	runs are exhausted.
+	**/
+	private DataValueDescriptor[] removeFirst()
+		throws StandardException
+	{
+		int scanindex = mergeTree.winner();
+		DataValueDescriptor[] row = mergeTree.getRow(scanindex);
+
+		if (row != null)
+			mergeTree.replaceWinner(fetchFromRun(scanindex));
+
+		return row;
+	}
+
+	/**
+	Fetch the next row of the merge run whose scan is in the open scan
+	array entry indexed by scanindex.  If the merge run is out of rows,
+	close its scan and return null.
+	**/
+	private DataValueDescriptor[] fetchFromRun(int scanindex)
+		throws StandardException
+	{
+		if (SanityManager.DEBUG)
+		{
+			// Unless there's a bug, the scan index will refer
+			// to an open scan.  That's because the tree never
+			// picks a merge run whose current row is null.
+			SanityManager.ASSERT(openScans[scanindex] != null);
+		}
+
+		DataValueDescriptor[] row = sortObserver.getArrayClone();
+
+		// Fetch the row from the merge run.
+		if (!openScans[scanindex].fetchNext(row))
+		{
+			// If we're out of rows in the merge run, close the scan.
+			openScans[scanindex].close();
+			openScans[scanindex] = null;
+			return null;
 		}
-		while (sortBuffer.insert(row) == SortBuffer.INSERT_DUPLICATE);
+
+		return row;
 	}
 }
@@ -83,14 +83,7 @@ public class MergeScanRowSource extends MergeScan implements ScanControllerRowSo
     public DataValueDescriptor[] getNextRowFromRowSource() 
         throws StandardException
     {
-		DataValueDescriptor[] row = sortBuffer.removeFirst();
-
-		if (row != null)
-		{
-			mergeARow(sortBuffer.getLastAux());
-		}
-
-		return row;
+		return mergeNext();
 	}
 
 	/**
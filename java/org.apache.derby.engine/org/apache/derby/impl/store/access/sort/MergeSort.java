@@ -26,6 +26,7 @@ import java.util.Properties;
 import java.util.Vector;
 import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.shared.common.reference.SQLState;
+import org.apache.derby.iapi.services.daemon.DaemonService;
 import org.apache.derby.iapi.services.io.FormatableBitSet;
 import org.apache.derby.iapi.store.access.ColumnOrdering;
 import org.apache.derby.iapi.store.access.RowUtil;
@@ -40,6 +41,7 @@ import org.apache.derby.iapi.store.raw.RawStoreFactory;
 import org.apache.derby.iapi.store.raw.StreamContainerHandle;
 import org.apache.derby.iapi.store.raw.Transaction;
 import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.types.NormalizedKey;
 import org.apache.derby.shared.common.sanity.SanityManager;
 
 /**
@@ -118,6 +120,12 @@ class MergeSort implements Sort
 	**/
 	protected boolean columnOrderingNullsLowMap[];
 
+	/**
+	Whether the rows are ordered on the normalized key of their first
+	ordering column before they are compared, see normalizedKey().
+	**/
+	boolean useNormalizedKeys;
+
 	/**
 	The sort observer.  May be null.  Used as a callback.
 	**/
@@ -155,6 +163,20 @@ class MergeSort implements Sort
 	**/
 	private SortBuffer sortBuffer = null;
 
+	/**
+	Sorts the merge runs in parallel once the inserter has gone external,
+	null if it has not or the runs are sorted by the inserting thread.
+	Produced by the MergeInserter.
+	**/
+	private ParallelRunBuilder runBuilder = null;
+
+	/**
+	The daemons which sort merge runs in parallel, see ParallelRunBuilder.
+	Null if merge runs are sorted by the inserting thread.  Set by the
+	sort factory.
+	**/
+	DaemonService[] runSortDaemons;
+
 	/**
 	The maximum number of entries a sort buffer can hold.
 	**/
@@ -224,6 +246,8 @@ class MergeSort implements Sort
 		if (SanityManager.DEBUG)
 			SanityManager.ASSERT(state == STATE_DONE_INSERTING);
 
+		finishMergeRuns(tran);
+
 		if (mergeRuns == null || mergeRuns.size() == 0)
 		{
 			// There were no merge runs so we can just return
@@ -239,12 +263,10 @@ class MergeSort implements Sort
 			long containerId = createMergeRun(tran, sortBuffer);
 			mergeRuns.addElement(containerId);
 
-			// If there are more merge runs than we can sort
-			// at once with our sort buffer, we have to reduce
-			// the number of merge runs
-			if (mergeRuns.size() > ExternalSortFactory.DEFAULT_MAX_MERGE_RUN ||
-				mergeRuns.size() > sortBuffer.capacity())
-					multiStageMerge(tran);
+			// If there are more merge runs than we can merge
+			// at once, we have to reduce the number of merge runs
+			if (mergeRuns.size() > ExternalSortFactory.DEFAULT_MAX_MERGE_RUN)
+				multiStageMerge(tran);
 
 			// There are now few enough merge runs to sort
 			// at once, so create a scan for them.
@@ -280,6 +302,8 @@ class MergeSort implements Sort
 		if (SanityManager.DEBUG)
 			SanityManager.ASSERT(state == STATE_DONE_INSERTING);
 
+		finishMergeRuns(tran);
+
 		ScanControllerRowSource rowSource = null;
 
 		if (mergeRuns == null || mergeRuns.size() == 0)
@@ -298,11 +322,9 @@ class MergeSort implements Sort
 			long containerId = createMergeRun(tran, sortBuffer);
 			mergeRuns.addElement(containerId);
 
-			// If there are more merge runs than we can sort
-			// at once with our sort buffer, we have to reduce
-			// the number of merge runs
-			if (mergeRuns.size() > ExternalSortFactory.DEFAULT_MAX_MERGE_RUN ||
-				mergeRuns.size() > sortBuffer.capacity())	
+			// If there are more merge runs than we can merge
+			// at once, we have to reduce the number of merge runs
+			if (mergeRuns.size() > ExternalSortFactory.DEFAULT_MAX_MERGE_RUN)
 				multiStageMerge(tran);
 
 			// There are now few enough merge runs to sort
@@ -345,6 +367,13 @@ class MergeSort implements Sort
 			inserter.completedInserts();
 		inserter = null;
 
+		// Give up on merge runs still being sorted.
+		if (runBuilder != null)
+		{
+			runBuilder.cancel();
+			runBuilder = null;
+		}
+
 		// Make sure the scan is closed, if there is one.
 		// This will cause the callback to doneScanning().
 		if (scan != null)
@@ -513,6 +542,39 @@ class MergeSort implements Sort
 		return 0;
 	}
 
+	/**
+	Return whether compare() orders rows whose first columns differ the
+	way those columns do, so that the normalized keys of the first column
+	can decide between them.  A compare checking uniqueness of a deferrable
+	constraint treats rows as duplicates once it gets to the last column,
+	whatever the first column is if it is the last one.
+	**/
+	protected boolean firstColumnDecides()
+	{
+		return columnOrdering.length > 1 || !sortObserver.deferrable();
+	}
+
+	/**
+	Return the normalized key of a row, when useNormalizedKeys is set.
+	If the key of one row is less than the key of another, the row
+	compares less than the other row, see NormalizedKey.  Rows with
+	the same key have to be compared.
+	**/
+	long normalizedKey(DataValueDescriptor[] row)
+		throws StandardException
+	{
+		DataValueDescriptor col = row[columnOrderingMap[0]];
+		long key;
+
+		if (col.isNull())
+			key = columnOrderingNullsLowMap[0] ? Long.MIN_VALUE : Long.MAX_VALUE;
+		else
+			key = NormalizedKey.normalize(col);
+
+		// Descending order reverses the order of the keys.
+		return columnOrderingAscendingMap[0] ? key : ~key;
+	}
+
 	/**
 	Go from the CLOSED to the INITIALIZED state.
 	**/
@@ -551,6 +613,12 @@ class MergeSort implements Sort
             columnOrderingNullsLowMap[i] = columnOrdering[i].getIsNullsOrderedLow();
         }
 
+        // Order the rows on normalized keys if the first column has them.
+        useNormalizedKeys =
+            columnOrdering.length > 0 &&
+            firstColumnDecides() &&
+            NormalizedKey.isNormalizable(template[columnOrderingMap[0]]);
+
 		// No inserter or scan yet.
 		this.inserter = null;
 		this.scan = null;
@@ -577,7 +645,8 @@ class MergeSort implements Sort
 	An inserter is closing.
 	**/
 	void doneInserting(MergeInserter inserter,
-		SortBuffer sortBuffer, Vector<Long> mergeRuns)
+		SortBuffer sortBuffer, Vector<Long> mergeRuns,
+		ParallelRunBuilder runBuilder)
 	{
         if (SanityManager.DEBUG)
         {
@@ -586,6 +655,7 @@ class MergeSort implements Sort
 
 		this.sortBuffer = sortBuffer;
 		this.mergeRuns = mergeRuns;
+		this.runBuilder = runBuilder;
 		this.inserter = null;
 
 		this.state = STATE_DONE_INSERTING;
@@ -670,15 +740,26 @@ class MergeSort implements Sort
 	}
 	*/
 
+	/**
+	Write out the merge runs still being sorted in parallel, if any,
+	leaving the last rows inserted in the sort buffer.
+	**/
+	private void finishMergeRuns(TransactionManager tran)
+		throws StandardException
+	{
+		if (runBuilder != null)
+		{
+			runBuilder.finish(tran, mergeRuns, sortBuffer);
+			runBuilder = null;
+		}
+	}
+
 	private void multiStageMerge(TransactionManager tran)
 		throws StandardException
 	{
 		Enumeration<Long> e;
 		//int iterations = 0; // DEBUG (nat)
-		int maxMergeRuns = sortBuffer.capacity();
-
-		if (maxMergeRuns > ExternalSortFactory.DEFAULT_MAX_MERGE_RUN)
-			maxMergeRuns = ExternalSortFactory.DEFAULT_MAX_MERGE_RUN;
+		int maxMergeRuns = ExternalSortFactory.DEFAULT_MAX_MERGE_RUN;
 
 		Vector<Long> subset;
 		Vector<Long> leftovers;
@@ -770,4 +851,19 @@ class MergeSort implements Sort
 
 		return id;
 	}
+
+	/**
+	Store an array of sorted rows in a temporary conglomerate, as a merge
+	run.  Returns the container id of the merge run.
+	**/
+	long createMergeRun(TransactionManager tran, DataValueDescriptor[][] rows)
+		throws StandardException
+	{
+		SortedRowSource rowSource = new SortedRowSource(this, rows);
+
+		Transaction rawTran = tran.getRawStoreXact();  // get raw transaction
+		int segmentId = StreamContainerHandle.TEMPORARY_SEGMENT;
+		return rawTran.addAndLoadStreamContainer(segmentId,
+			properties, rowSource);
+	}
 }
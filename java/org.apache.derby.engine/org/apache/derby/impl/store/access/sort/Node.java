@@ -37,6 +37,7 @@ final class Node
 	public Node leftLink;
 	public Node rightLink;
 	public DataValueDescriptor[] key;
+	public long normalizedKey;
 	public int id;
 	public Node dupChain;
 	public int aux;
@@ -53,6 +54,7 @@ final class Node
 		leftLink = null;
 		rightLink = null;
 		key = null;
+		normalizedKey = 0;
 		dupChain = null;
 		aux = 0;
 		// Leave id alone
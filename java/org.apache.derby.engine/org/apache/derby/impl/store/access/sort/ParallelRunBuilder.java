@@ -0,0 +1,314 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.sort.ParallelRunBuilder
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.sort;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.daemon.DaemonService;
+import org.apache.derby.iapi.services.daemon.Serviceable;
+import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.util.InterruptStatus;
+
+/**
+
+  Sorts the merge runs of an external sort in parallel.
+  <P>
+  Once a sort has gone external, and the sort factory has sort daemons,
+  the MergeInserter collects the rows inserted into batches and hands
+  each full batch to this class.  A sort daemon
+  sorts the batch while the next one fills, and the inserting thread
+  writes it out as a merge run once it is sorted.
+  <P>
+  Only the sorting is done by the daemons.  The raw store and the sort
+  observer are only used from the inserting thread, which has the contexts
+  of the transaction: the rows are given to the observer as non-duplicates
+  when they are inserted, and those which compare equal to the row before
+  them are given to it as duplicates when the run is written out, see
+  SortedRowSource.  Sorts whose compare calls back into the observer, to
+  remember the duplicates of a deferrable constraint, are not sorted here.
+  <P>
+  At most one batch per sort daemon is being sorted or waiting to be
+  written out at a time.  The batches are sized so that these and the
+  batch being filled hold no more rows than the sort buffer did.
+  <P>
+  MT - the inserting thread calls all the methods.  A batch is handed
+  between the threads under the synchronization of its SortTask.
+
+**/
+
+final class ParallelRunBuilder
+{
+	/**
+	Spreads the batches of all the sorts over the sort daemons.
+	**/
+	private static final AtomicInteger nextDaemon = new AtomicInteger();
+
+	/**
+	The sort the merge runs are for.
+	**/
+	private MergeSort sort;
+
+	/**
+	The batches being sorted, oldest first.
+	**/
+	private ArrayDeque<SortTask> sortingRuns = new ArrayDeque<SortTask>();
+
+	/**
+	The rows inserted after the last full batch.
+	**/
+	private DataValueDescriptor[][] leftovers;
+
+	ParallelRunBuilder(MergeSort sort)
+	{
+		this.sort = sort;
+	}
+
+	/**
+	Start sorting a full batch of rows into a merge run.  If there are as
+	many batches being sorted as there are sort daemons, first wait for
+	the oldest one and write it out.
+	**/
+	void addRun(
+    TransactionManager      tran,
+    Vector<Long>            mergeRuns,
+    DataValueDescriptor[][] rows)
+		throws StandardException
+	{
+		DaemonService[] daemons = sort.runSortDaemons;
+
+		if (sortingRuns.size() >= daemons.length)
+			writeRun(tran, mergeRuns, sortingRuns.removeFirst());
+
+		SortTask task = new SortTask(rows);
+		sortingRuns.addLast(task);
+
+		int daemon =
+			(nextDaemon.getAndIncrement() & Integer.MAX_VALUE) % daemons.length;
+		daemons[daemon].enqueue(task, true);
+	}
+
+	/**
+	Remember the rows inserted after the last full batch, when the
+	inserter is done.
+	**/
+	void setLeftovers(DataValueDescriptor[][] rows, int numRows)
+	{
+		leftovers = Arrays.copyOf(rows, numRows);
+	}
+
+	/**
+	Write out all the batches still being sorted, and put the leftover
+	rows into the sort buffer, which then holds the last merge run.
+	**/
+	void finish(
+    TransactionManager  tran,
+    Vector<Long>        mergeRuns,
+    SortBuffer          sortBuffer)
+		throws StandardException
+	{
+		while (!sortingRuns.isEmpty())
+			writeRun(tran, mergeRuns, sortingRuns.removeFirst());
+
+		if (leftovers != null)
+		{
+			for (int i = 0; i < leftovers.length; i++)
+			{
+				// There are fewer leftovers than fit in the sort buffer,
+				// but be safe and empty it into a merge run if it is full.
+				if (sortBuffer.insert(leftovers[i]) == SortBuffer.INSERT_FULL)
+				{
+					mergeRuns.addElement(sort.createMergeRun(tran, sortBuffer));
+					sortBuffer.insert(leftovers[i]);
+				}
+			}
+			leftovers = null;
+		}
+	}
+
+	/**
+	Give up the batches being sorted, when the sort is dropped.  A batch a
+	daemon is sorting already is dropped once it is sorted.
+	**/
+	void cancel()
+	{
+		while (!sortingRuns.isEmpty())
+			sortingRuns.removeFirst().cancel();
+		leftovers = null;
+	}
+
+	/**
+	Wait for a batch to be sorted, and write it out as a merge run.
+	**/
+	private void writeRun(
+    TransactionManager  tran,
+    Vector<Long>        mergeRuns,
+    SortTask            task)
+		throws StandardException
+	{
+		DataValueDescriptor[][] rows = task.waitForRows();
+
+		mergeRuns.addElement(sort.createMergeRun(tran, rows));
+	}
+
+	/**
+	A batch of rows for a sort daemon to sort.
+	**/
+	private final class SortTask
+		implements Serviceable, Comparator<DataValueDescriptor[]>
+	{
+		private DataValueDescriptor[][] rows;
+
+		/** Set when the rows are sorted, or failed to. Guarded by this. */
+		private boolean done;
+
+		/** Set when the batch is no longer wanted. Guarded by this. */
+		private boolean cancelled;
+
+		/** What the sort failed with, or null. Guarded by this. */
+		private Throwable error;
+
+		SortTask(DataValueDescriptor[][] rows)
+		{
+			this.rows = rows;
+		}
+
+		/**
+		Sort the rows, in the daemon's thread.
+		**/
+		public int performWork(ContextManager context)
+		{
+			DataValueDescriptor[][] sortRows;
+
+			synchronized (this)
+			{
+				if (cancelled)
+					return Serviceable.DONE;
+				sortRows = rows;
+			}
+
+			Throwable t = null;
+
+			try
+			{
+				Arrays.sort(sortRows, this);
+			}
+			catch (CompareFailure cf)
+			{
+				t = cf.getCause();
+			}
+			catch (Throwable th)
+			{
+				t = th;
+			}
+
+			synchronized (this)
+			{
+				error = t;
+				done = true;
+				notifyAll();
+			}
+
+			return Serviceable.DONE;
+		}
+
+		public boolean serviceASAP()
+		{
+			return true;
+		}
+
+		public boolean serviceImmediately()
+		{
+			return false;
+		}
+
+		/**
+		Compare two rows the way the sort does.
+		**/
+		public int compare(
+        DataValueDescriptor[] r1,
+        DataValueDescriptor[] r2)
+		{
+			try
+			{
+				return sort.compare(r1, r2);
+			}
+			catch (StandardException se)
+			{
+				throw new CompareFailure(se);
+			}
+		}
+
+		/**
+		Wait until the rows are sorted, and return them.
+		**/
+		synchronized DataValueDescriptor[][] waitForRows()
+			throws StandardException
+		{
+			while (!done)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException ie)
+				{
+					InterruptStatus.setInterrupted();
+				}
+			}
+
+			if (error instanceof StandardException)
+				throw (StandardException) error;
+			if (error instanceof RuntimeException)
+				throw (RuntimeException) error;
+			if (error instanceof Error)
+				throw (Error) error;
+			if (error != null)
+				throw StandardException.plainWrapException(error);
+
+			return rows;
+		}
+
+		synchronized void cancel()
+		{
+			cancelled = true;
+			rows = null;
+		}
+	}
+
+	/**
+	Carries an error of the sort compare out of Arrays.sort().
+	**/
+	private static final class CompareFailure extends RuntimeException
+	{
+		CompareFailure(StandardException se)
+		{
+			super(se);
+		}
+	}
+}
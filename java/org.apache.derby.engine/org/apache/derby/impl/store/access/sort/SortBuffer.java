@@ -36,6 +36,10 @@ import org.apache.derby.iapi.types.DataValueDescriptor;
   <P>
   This algorithm will insert/delete N elements
   in O(N log(N)) time using O(N) space. 
+  <P>
+  If the sort has normalized keys, each node also holds the normalized
+  key of its row, and a row is compared with a node on those primitive
+  keys, the rows themselves are only compared when the keys are equal.
 
 **/
 
@@ -210,6 +214,8 @@ class SortBuffer
 		int c;
 		Node p, q, r, s, t;
 
+		long nk = sort.useNormalizedKeys ? sort.normalizedKey(k) : 0;
+
 		if (head.rightLink == null)
 		{
 			if ((sort.sortObserver != null) && 
@@ -220,6 +226,7 @@ class SortBuffer
 
 			q = allocator.newNode();
 			q.key = k;
+			q.normalizedKey = nk;
 			q.aux = nextAux;
 			head.rightLink = q;
 			height = 1;
@@ -234,7 +241,7 @@ class SortBuffer
 		while (true)
 		{
 			// [A2. Compare]
-			c = sort.compare(k, p.key);
+			c = compare(k, nk, p);
 			if (c == 0)
 			{
 				// The new key compares equal to the
@@ -260,6 +267,7 @@ class SortBuffer
 				// is made that a newly allocated node 
 				// has null left and right links.
 				q.key = k;
+				q.normalizedKey = nk;
 				q.dupChain = p.dupChain;
 				p.dupChain = q;
 
@@ -317,13 +325,14 @@ class SortBuffer
 			return INSERT_DUPLICATE;
 		}
 		q.key = k;
+		q.normalizedKey = nk;
 
 		/*
 		 * [A6. Adjust balance factors for nodes between
 		 * s and q]
 		 */
 
-		c = sort.compare(k, s.key);
+		c = compare(k, nk, s);
 		if (c < 0)
 			r = p = s.leftLink;
 		else
@@ -331,7 +340,7 @@ class SortBuffer
 
 		while (p != q)
 		{
-			if (sort.compare(k, p.key) < 0)
+			if (compare(k, nk, p) < 0)
 			{
 				p.balance = -1;
 				p = p.leftLink;
@@ -411,6 +420,21 @@ class SortBuffer
 		return INSERT_OK;
 	}
 
+	/**
+	Compare a key, whose normalized key is given, with the key of a
+	node.  Normalized keys which differ decide, see
+	MergeSort.normalizedKey().  They are all 0 if the sort does not
+	have them.
+	**/
+	private int compare(DataValueDescriptor[] k, long nk, Node p)
+		throws StandardException
+	{
+		if (nk != p.normalizedKey)
+			return (nk < p.normalizedKey) ? -1 : 1;
+
+		return sort.compare(k, p.key);
+	}
+
 	/**
 	Return the lowest key and delete it from 
 	the tree, preserving the balance of the tree.
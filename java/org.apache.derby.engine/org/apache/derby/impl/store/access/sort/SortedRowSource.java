@@ -0,0 +1,113 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.sort.SortedRowSource
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.sort;
+
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.store.access.RowSource;
+import org.apache.derby.iapi.store.access.SortObserver;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+/**
+	Wrapping an array of sorted rows in a RowSource, to write them out as
+	a merge run, see ParallelRunBuilder.
+
+	The rows have been given to the sort observer as non-duplicates when
+	they were inserted.  Before a row is returned, the rows following it
+	which compare equal to it are given to the observer as duplicates of
+	it, and are left out unless the observer keeps them.
+*/
+final class SortedRowSource implements RowSource
+{
+	private MergeSort sort;
+	private SortObserver sortObserver;
+
+	/**
+	The sorted rows, null once the row source is closed.
+	**/
+	private DataValueDescriptor[][] rows;
+
+	/**
+	The index of the next row to return.
+	**/
+	private int next;
+
+	SortedRowSource(MergeSort sort, DataValueDescriptor[][] rows)
+	{
+		this.sort = sort;
+		this.sortObserver = sort.sortObserver;
+		this.rows = rows;
+	}
+
+	/* Public Methods of RowSource class: */
+
+	public DataValueDescriptor[] getNextRowFromRowSource()
+		throws StandardException
+	{
+		if (rows == null || next >= rows.length)
+			return null;
+
+		DataValueDescriptor[] row = rows[next];
+		rows[next++] = null;
+
+		while (next < rows.length && sort.compare(rows[next], row) == 0)
+		{
+			DataValueDescriptor[] dup =
+				sortObserver.insertDuplicateKey(rows[next], row);
+
+			if (dup != null)
+			{
+				// Keep the duplicate, it is returned next.
+				rows[next] = dup;
+				break;
+			}
+
+			rows[next++] = null;
+		}
+
+		return row;
+	}
+
+	/**
+	 * @see org.apache.derby.iapi.store.access.RowSource#needsToClone
+	 */
+	public boolean needsToClone()
+	{
+		return false;
+	}
+
+	/**
+		All columns are always set from a sorter
+	*/
+	public FormatableBitSet getValidColumns()
+	{
+		return null;
+	}
+
+	/**
+		Close the rowSource
+	 */
+	public void closeRowSource()
+	{
+		rows = null;
+	}
+}
@@ -103,4 +103,14 @@ final class UniqueWithDuplicateNullsMergeSort extends MergeSort {
         // all compared equal.  So return that the rows compare equal.
         return 0;
     }
+
+    /**
+     * The compare of this sort treats rows without nulls as duplicates
+     * once it gets to the last column, so the first column only decides
+     * if it is not the last one.
+     */
+    @Override
+    protected boolean firstColumnDecides() {
+        return columnOrdering.length > 1;
+    }
 }
@@ -42,6 +42,7 @@ import org.apache.derby.shared.common.error.StandardException;
 import org.apache.derby.shared.common.i18n.MessageService;
 
 import org.apache.derby.iapi.services.property.PersistentSet;
+import org.apache.derby.iapi.store.access.LogCompressionInfo;
 import org.apache.derby.iapi.store.access.TransactionInfo;
 import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
 import org.apache.derby.iapi.store.access.FileResource;
@@ -191,6 +192,10 @@ public final class RawStore implements RawStoreFactory, ModuleControl, ModuleSup
 					  create, this, getDataFactoryModule(), properties);
 		storageFactory = dataFactory.getStorageFactory();
 
+        // Register an MBean that allows users to monitor the lock manager
+        // and the deadlocks it detects.
+        getLockFactory().registerMBean(dataFactory.getRootDirectory());
+
         String restoreFromBackup = null;
 
 		if (properties != null)
@@ -1228,6 +1233,16 @@ public final class RawStore implements RawStoreFactory, ModuleControl, ModuleSup
 		return xactFactory.getTransactionInfo();
 	}
 
+	public void setLockEscalationThreshold(long containerId, int threshold)
+	{
+		xactFactory.setLockEscalationThreshold(containerId, threshold);
+	}
+
+	public LogCompressionInfo getLogCompressionInfo()
+	{
+		return logFactory.getLogCompressionInfo();
+	}
+
 
 	public ScanHandle openFlushedScan(DatabaseInstant start, int groupsIWant)
 		 throws StandardException
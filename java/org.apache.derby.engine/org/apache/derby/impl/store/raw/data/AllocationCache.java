@@ -437,6 +437,31 @@ class AllocationCache
 
 	}
 
+	/**
+	  Check whether a page is known to be allocated, without validating the
+	  cache. Used by the page prefetcher, which doesn't have a container
+	  handle and should not read allocation pages.
+
+	  @return true if the cache is valid and says that the page is allocated
+	*/
+	protected boolean isAllocatedPage(long pageNumber)
+	{
+		if (!isValid)
+			return false;
+
+		for (int i = 0; i < numExtents; i++)
+		{
+			if (lowRange[i] <= pageNumber && pageNumber <= hiRange[i])
+			{
+				AllocExtent extent = extents[i];
+				return extent != null &&
+					extent.getPageStatus(pageNumber) ==
+						AllocExtent.ALLOCATED_PAGE;
+			}
+		}
+		return false;
+	}
+
 	/**
 	  Get the page status of a page
 	*/
@@ -102,6 +102,13 @@ abstract class BaseContainer implements Lockable {
 	*/
 	protected boolean isReusableRecordId = false;
 
+	/**
+		Are the fields of records in this container compressed.  Set from
+		derby.storage.compressedRecords when the container is created, which
+		Access only passes for heaps.  See FieldCompression.
+	*/
+	protected boolean isCompressedRecords = false;
+
 	BaseContainer() {
 	}
 
@@ -516,6 +523,32 @@ abstract class BaseContainer implements Lockable {
 		return getNextHeadPage(handle, pageNumber, true /* wait */);
 	}
 
+	/**
+		Ask for pages to be read into the page cache in the background.
+		The default implementation doesn't prefetch any pages.
+
+		@return the number of pages accepted for reading
+		@exception StandardException Standard Derby error policy
+		@see org.apache.derby.iapi.store.raw.ContainerHandle#prefetchPages
+	*/
+	protected int prefetchPages(BaseContainerHandle handle,
+								long firstPageNumber, int count)
+		 throws StandardException
+	{
+		return 0;
+	}
+
+	/**
+		Get the maximum number of pages to prefetch ahead of a scan.
+		The default implementation doesn't prefetch any pages.
+
+		@see org.apache.derby.iapi.store.raw.ContainerHandle#getMaxPrefetchPages
+	*/
+	protected int getMaxPrefetchPages()
+	{
+		return 0;
+	}
+
 	/*
 		utility to latch a page
 	*/
@@ -599,6 +632,11 @@ abstract class BaseContainer implements Lockable {
 		return isReusableRecordId;
 	}
 
+	protected boolean isCompressedRecords()
+	{
+		return isCompressedRecords;
+	}
+
 	public int getContainerStatus()
 	{
 		if (getCommittedDropState())
@@ -914,6 +952,11 @@ abstract class BaseContainer implements Lockable {
 		this.isReusableRecordId = isReusableRecordId;
 	}
 
+	protected void setCompressedRecordsState(boolean isCompressedRecords)
+	{
+		this.isCompressedRecords = isCompressedRecords;
+	}
+
 	//protected void setPageSize(int pageSize) {
 	//	identity.setPageSize(pageSize);
 	//}
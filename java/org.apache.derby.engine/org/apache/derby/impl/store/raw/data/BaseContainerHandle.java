@@ -364,6 +364,26 @@ public class BaseContainerHandle extends DerbyObservable
 		return container.getNextPage(this, pageNumber);
 	}
 
+	/**
+		@see ContainerHandle#prefetchPages
+		@exception StandardException Standard Derby error policy
+	 */
+	public int prefetchPages(long firstPageNumber, int count)
+		 throws StandardException
+	{
+		checkOpen();
+
+		return container.prefetchPages(this, firstPageNumber, count);
+	}
+
+	/**
+		@see ContainerHandle#getMaxPrefetchPages
+	 */
+	public int getMaxPrefetchPages()
+	{
+		return (container == null) ? 0 : container.getMaxPrefetchPages();
+	}
+
 	public Page getPageForInsert(int flag) 
 		 throws StandardException
 	{
@@ -32,6 +32,7 @@ import org.apache.derby.iapi.services.cache.CacheManager;
 import org.apache.derby.iapi.services.cache.Cacheable;
 import org.apache.derby.iapi.services.cache.CacheableFactory;
 import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.daemon.DaemonFactory;
 import org.apache.derby.iapi.services.daemon.DaemonService;
 import org.apache.derby.iapi.services.daemon.Serviceable;
 import org.apache.derby.iapi.services.monitor.ModuleControl;
@@ -133,6 +134,36 @@ public class BaseDataFileFactory
 	private     CacheManager	pageCache;
 	private     CacheManager	containerCache;
 
+    /**
+     * Off-heap store for clean pages evicted from the page cache, or
+     * {@code null} if pages are not kept off-heap.
+     */
+    private     OffHeapPageStore offHeapPageStore;
+
+    /** True if pages should be read through memory-mapped files. */
+    private     boolean         memoryMappedReads;
+
+    /**
+     * The maximum number of pages a scan may prefetch, 0 if prefetching
+     * is disabled.
+     */
+    private     int             maxPrefetchPages;
+
+    /** The thread which reads prefetched pages, if prefetching is enabled. */
+    private     DaemonService   prefetchDaemon;
+
+    /** Reads pages into the page cache ahead of sequential scans. */
+    private     PagePrefetcher  pagePrefetcher;
+
+    /** The threads which write dirty pages between checkpoints, if any. */
+    private     DaemonService[] pageWriterDaemons;
+
+    /**
+     * Writes dirty pages between checkpoints, null if checkpoints are not
+     * incremental.
+     */
+    private     PageWriter      pageWriter;
+
 	private     LogFactory	    logFactory;
 
 	private     ProductVersionHolder jbmsVersion;
@@ -435,9 +466,33 @@ public class BaseDataFileFactory
                     RawStoreFactory.PAGE_CACHE_SIZE_MINIMUM,
                     RawStoreFactory.PAGE_CACHE_SIZE_MAXIMUM);
 
+        String pageCachePolicy = PropertyUtil.getSystemProperty(
+                    RawStoreFactory.PAGE_CACHE_REPLACEMENT_POLICY_PARAMETER,
+                    CacheFactory.CLOCK_POLICY);
+
+	    int pageCachePartitions = getIntParameter(
+					RawStoreFactory.PAGE_CACHE_PARTITIONS_PARAMETER,
+                    null,
+                    RawStoreFactory.PAGE_CACHE_PARTITIONS_DEFAULT,
+                    RawStoreFactory.PAGE_CACHE_PARTITIONS_MINIMUM,
+                    RawStoreFactory.PAGE_CACHE_PARTITIONS_MAXIMUM);
+
 		pageCache =
             cf.newCacheManager(
-                this, "PageCache", pageCacheSize / 2, pageCacheSize);
+                this, "PageCache", pageCacheSize / 2, pageCacheSize,
+                pageCachePolicy, pageCachePartitions);
+
+        long offHeapBytes = getLongParameter(
+                    RawStoreFactory.PAGE_CACHE_OFF_HEAP_BYTES_PARAMETER,
+                    RawStoreFactory.PAGE_CACHE_OFF_HEAP_BYTES_DEFAULT);
+        if (OffHeapPageStore.isUsable(offHeapBytes))
+        {
+            offHeapPageStore = new OffHeapPageStore(offHeapBytes);
+        }
+
+        memoryMappedReads = Boolean.valueOf(
+            PropertyUtil.getSystemProperty(
+                RawStoreFactory.MEMORY_MAPPED_READS_PARAMETER)).booleanValue();
 
         // Initialize the container cache
 	    int fileCacheSize = getIntParameter(
@@ -456,6 +511,46 @@ public class BaseDataFileFactory
         pageCache.registerMBean(dataDirectory);
         containerCache.registerMBean(dataDirectory);
 
+        // Start the page prefetcher if scans are allowed to read ahead.
+        maxPrefetchPages = getIntParameter(
+                    RawStoreFactory.PREFETCH_MAX_PAGES_PARAMETER,
+                    null,
+                    RawStoreFactory.PREFETCH_MAX_PAGES_DEFAULT,
+                    RawStoreFactory.PREFETCH_MAX_PAGES_MINIMUM,
+                    RawStoreFactory.PREFETCH_MAX_PAGES_MAXIMUM);
+
+        if (maxPrefetchPages > 0)
+        {
+            DaemonFactory daemonFactory = (DaemonFactory) startSystemModule(
+                org.apache.derby.shared.common.reference.Module.DaemonFactory);
+            prefetchDaemon =
+                daemonFactory.createNewDaemon("pagePrefetchDaemon");
+            pagePrefetcher = new PagePrefetcher(
+                containerCache, prefetchDaemon,
+                Math.max(64, 4 * maxPrefetchPages));
+        }
+
+        // Start the page writers if checkpoints should be incremental.
+        int pageWriterThreads = getIntParameter(
+                    RawStoreFactory.PAGE_WRITER_THREADS_PARAMETER,
+                    null,
+                    RawStoreFactory.PAGE_WRITER_THREADS_DEFAULT,
+                    RawStoreFactory.PAGE_WRITER_THREADS_MINIMUM,
+                    RawStoreFactory.PAGE_WRITER_THREADS_MAXIMUM);
+
+        if (pageWriterThreads > 0 && !isReadOnly())
+        {
+            DaemonFactory daemonFactory = (DaemonFactory) startSystemModule(
+                org.apache.derby.shared.common.reference.Module.DaemonFactory);
+            pageWriterDaemons = new DaemonService[pageWriterThreads];
+            for (int i = 0; i < pageWriterThreads; i++)
+            {
+                pageWriterDaemons[i] =
+                    daemonFactory.createNewDaemon("pageWriterDaemon");
+            }
+            pageWriter = new PageWriter(pageCache, pageWriterDaemons);
+        }
+
 		if (create)
 		{
 			String noLog =
@@ -518,6 +613,20 @@ public class BaseDataFileFactory
 				rawStoreDaemon.stop();
 		}
 
+        // Stop reading pages ahead before the caches are shut down.
+        if (prefetchDaemon != null)
+        {
+            pagePrefetcher.unsubscribe();
+            prefetchDaemon.stop();
+        }
+
+        if (pageWriterDaemons != null)
+        {
+            pageWriter.unsubscribe();
+            for (int i = 0; i < pageWriterDaemons.length; i++)
+                pageWriterDaemons[i].stop();
+        }
+
 		boolean logBootTrace = PropertyUtil.getSystemBoolean(Property.LOG_BOOT_TRACE);
 		logMsg(LINE);
 		logMsg(new Date() +
@@ -542,6 +651,11 @@ public class BaseDataFileFactory
 					pageCache.shutdown();
 					containerCache.shutdown();
 
+                    if (offHeapPageStore != null)
+                    {
+                        offHeapPageStore.clear();
+                    }
+
 					OK = true;
 				}
 
@@ -1264,6 +1378,89 @@ public class BaseDataFileFactory
 		containerCache.cleanAll();
 	}
 
+    /**
+     * Implement an incremental checkpoint.
+     * <p>
+     * Instead of writing out all the dirty pages, find the oldest redo low
+     * water mark of the dirty pages in the page cache. The page writers
+     * write the old pages between checkpoints, so this is usually not far
+     * behind the end of the log. Dirty pages whose redo low water mark is
+     * not known, for instance pages dirtied by recovery redo or newly
+     * created pages, are written like in a full checkpoint.
+     * <p>
+     * The redo low water marks are collected before the containers are
+     * synced. A page which is clean at that time has been written before
+     * the sync, and a page which is dirtied later can only have changes
+     * logged after the point where the log factory took the current log
+     * instant, or changes of transactions whose begin instant is included
+     * in the redo low water mark of the page.
+     *
+     * @return the oldest redo low water mark of the dirty pages, or null
+     * if there are none
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public LogInstant incrementalCheckpoint() throws StandardException
+    {
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT(pageWriter != null,
+                "incremental checkpoint without page writers");
+        }
+
+		LogInstant oldest = null;
+
+		for (Object o : pageCache.values())
+		{
+			CachedPage page = (CachedPage) o;
+			LogInstant redoLWM = page.getRedoLWM();
+
+			if (redoLWM == null)
+			{
+				if (page.isDirty())
+				{
+					// don't know which log records are needed to redo the
+					// changes, write the page now
+					Object key = page.getIdentity();
+					if (key != null)
+						pageCache.cleanCached(key);
+				}
+			}
+			else if (oldest == null || redoLWM.lessThan(oldest))
+			{
+				oldest = redoLWM;
+			}
+		}
+
+		// sync all the pages written so far
+		containerCache.cleanAll();
+
+		return oldest;
+	}
+
+    /**
+     * Tell whether page writers keep the page cache clean between
+     * checkpoints.
+     *
+     * @return true if checkpoints may be incremental
+     */
+	public boolean isIncrementalCheckpointEnabled()
+    {
+		return pageWriter != null;
+	}
+
+    /**
+     * Ask the page writers to write the pages changed before an instant.
+     *
+     * @param olderThan write pages whose redo low water mark is older
+     */
+	public void writeDirtyPages(LogInstant olderThan)
+    {
+		PageWriter writer = pageWriter;
+		if (writer != null)
+			writer.writeDirtyPages(olderThan);
+	}
+
 	public void idle() throws StandardException 
     {
 		pageCache.ageOut();
@@ -1346,6 +1543,12 @@ public class BaseDataFileFactory
 			if (pageCache != null)
 				pageCache.discard(null);
 
+            if (offHeapPageStore != null)
+            {
+                offHeapPageStore.clear();
+                offHeapPageStore = null;
+            }
+
 			if (containerCache != null)
 				containerCache.discard(null);
 
@@ -1460,6 +1663,36 @@ public class BaseDataFileFactory
 		return defaultValue;
 	}
 
+    /**
+     * Get the value of a property whose value is a {@code long}.
+     *
+     * @param parameterName the name of the property
+     * @param defaultValue the value to use if the property is not set, or
+     *   if it is not a non-negative number
+     * @return the value of the property
+     */
+    private long getLongParameter(String parameterName, long defaultValue)
+    {
+        String parameter = PropertyUtil.getSystemProperty(parameterName);
+
+        if (parameter != null)
+        {
+            try
+            {
+                long newValue = Long.parseLong(parameter.trim());
+
+                if (newValue >= 0)
+                    return newValue;
+            }
+            catch (NumberFormatException nfe)
+            {
+                // just leave the value at the default.
+            }
+        }
+
+        return defaultValue;
+    }
+
 	CacheManager getContainerCache() 
     {
 		return containerCache;
@@ -1470,6 +1703,33 @@ public class BaseDataFileFactory
 		return pageCache;
 	}
 
+    /**
+     * Get the off-heap store for pages evicted from the page cache.
+     *
+     * @return the off-heap page store, or {@code null} if pages are not
+     *   kept off-heap
+     */
+    OffHeapPageStore getOffHeapPageStore()
+    {
+        return offHeapPageStore;
+    }
+
+    /**
+     * Remove all the pages of a container from the off-heap page store.
+     * Must be called after the pages have been discarded from the page
+     * cache, when the container is dropped or truncated.
+     *
+     * @param identity the identity of the container
+     */
+    void discardOffHeapPages(ContainerKey identity)
+    {
+        OffHeapPageStore store = offHeapPageStore;
+        if (store != null)
+        {
+            store.removeContainer(identity);
+        }
+    }
+
 	/**
 		Ask the log factory to flush up to this log instant.
 
@@ -2145,6 +2405,40 @@ public class BaseDataFileFactory
 		return databaseEncrypted;
 	}
 
+    /**
+     * Get the maximum number of pages a scan may ask to have prefetched.
+     *
+     * @return the maximum number of pages, 0 if prefetching is disabled
+     */
+    final int getMaxPrefetchPages()
+    {
+        return maxPrefetchPages;
+    }
+
+    /**
+     * Ask the page prefetcher to read a page into the page cache.
+     *
+     * @param key the identity of the page
+     * @return true if the page was queued, false if prefetching is
+     *   disabled or the prefetcher's queue is full
+     */
+    boolean schedulePrefetch(PageKey key)
+    {
+        PagePrefetcher prefetcher = pagePrefetcher;
+        return prefetcher != null && prefetcher.schedulePrefetch(key);
+    }
+
+    /**
+     * Check whether containers should read pages through memory-mapped
+     * files.
+     *
+     * @return true if memory-mapped reads are enabled
+     */
+    final boolean useMemoryMappedReads()
+    {
+        return memoryMappedReads;
+    }
+
     /** {@inheritDoc} */
     public void setDatabaseEncrypted(boolean isEncrypted)
 	{
@@ -982,8 +982,10 @@ abstract class BasePage implements Page, DerbyObserver, TypedFormat
 		Loggable actions use this to make sure the page gets cleaned if a
 		checkpoint is taken after any log record is sent to the log stream but
 		before the page is actually dirtied.
+
+		@param t the transaction which is about to modify the page
 	*/
-	public abstract void preDirty();
+	public abstract void preDirty(RawTransaction t);
 
 	/**
 		Update the overflow pointer for a long row
@@ -24,6 +24,8 @@ package org.apache.derby.impl.store.raw.data;
 import org.apache.derby.shared.common.reference.SQLState;
 
 import org.apache.derby.iapi.store.raw.log.LogInstant;
+import org.apache.derby.iapi.store.raw.xact.RawTransaction;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
 import org.apache.derby.iapi.store.raw.PageKey;
 
 import org.apache.derby.iapi.services.cache.Cacheable;
@@ -78,6 +80,19 @@ public abstract class CachedPage extends BasePage implements Cacheable
                                             // to be touched directly or 
                                             // indirectly.
 
+	// The redo low water mark of a dirty page is a log instant at or before
+	// the first log record needed to redo the changes that have not been
+	// written to disk yet. It is only tracked when incremental checkpoints
+	// are enabled, and is null if it is not known, for instance if the page
+	// was dirtied by recovery redo or by an unlogged change. It is the
+	// begin instant of the oldest transaction which changed the page since
+	// it was last clean, not just the instant of the oldest change, so that
+	// recovery, which starts at the redo low water mark of an incremental
+	// checkpoint, sees the beginXact of every transaction whose changes it
+	// has to redo.
+
+	private LogInstant		redoLWM;
+
 
 	protected int		initialRowCount;    // keep a running count of rows for
 										    // estimated row count.
@@ -147,6 +162,7 @@ public abstract class CachedPage extends BasePage implements Cacheable
 		super.initialize();
 		isDirty             = false;
 		preDirty            = false;
+		redoLWM             = null;
 		initialRowCount     = 0;
 		containerRowCount   = 0;
 	}
@@ -284,6 +300,14 @@ public abstract class CachedPage extends BasePage implements Cacheable
 		initializeHeaders(5);
 		createPage(newIdentity, createArgs);
 
+        // an image of an earlier incarnation of the page must not be found
+        // in the off-heap page store if this page is evicted and read again
+        OffHeapPageStore store = dataFactory.getOffHeapPageStore();
+        if (store != null)
+        {
+            store.remove(newIdentity);
+        }
+
 		fillInIdentity(newIdentity);
 
 		initialRowCount = 0;
@@ -441,15 +465,60 @@ public abstract class CachedPage extends BasePage implements Cacheable
      * <p>
      * See comment on class header on meaning of isDirty and preDirty bits.
      **/
-	public void preDirty()
+	public void preDirty(RawTransaction t)
 	{
 		synchronized (this) 
         {
+			if (dataFactory.isIncrementalCheckpointEnabled())
+				updateRedoLWM(t);
+
 			if (!isDirty)
 				preDirty = true;
 		}
 	}
 
+    /**
+     * Lower the redo low water mark of the page to the begin instant of a
+     * transaction which is about to change the page.
+     * <p>
+     * If the page is clean, a new redo low water mark is set. If the page
+     * is dirty but its redo low water mark is not known, it stays unknown.
+     * <p>
+     * MT - caller must be synchronized on this page.
+     *
+     * @param t the transaction which is about to change the page
+     **/
+	private void updateRedoLWM(RawTransaction t)
+	{
+		LogInstant first = (t == null) ? null : t.getFirstLogInstant();
+
+		if (!isDirty && !preDirty)
+		{
+			// a transaction which hasn't logged anything yet will log its
+			// beginXact after the log records that have been flushed
+			redoLWM = (first != null) ?
+				first : dataFactory.getLogFactory().getFirstUnflushedInstant();
+		}
+		else if (redoLWM != null && first != null && first.lessThan(redoLWM))
+		{
+			redoLWM = first;
+		}
+	}
+
+    /**
+     * Get the redo low water mark of the page.
+     *
+     * @return the redo low water mark, or null if the page is clean or its
+     * redo low water mark is not known
+     **/
+	LogInstant getRedoLWM()
+	{
+		synchronized (this)
+		{
+			return (isDirty || preDirty) ? redoLWM : null;
+		}
+	}
+
     /**
      * Set state to indicate the page or its header has been modified.
      * <p>
@@ -601,6 +670,7 @@ public abstract class CachedPage extends BasePage implements Cacheable
                 // the person who latched it gives up the
                 // latch without really dirtying the page
 				preDirty = false; 
+				redoLWM  = null;
 				inClean  = false;
 				notifyAll();
 				return;
@@ -639,10 +709,38 @@ public abstract class CachedPage extends BasePage implements Cacheable
 
 	public void clearIdentity() 
     {
+        // Keep a copy of the page off-heap so that it doesn't have to be
+        // read from disk if it is needed again. Dirty pages are only
+        // cleared when their container is dropped, so don't keep them.
+        OffHeapPageStore store = dataFactory.getOffHeapPageStore();
+        if (store != null && isOffHeapCandidate(identity) && !isDirty())
+        {
+            store.put(identity, pageData, getPageVersion());
+        }
+
 		alreadyReadPage = false;
 		super.clearIdentity();
 	}
 
+    /**
+     * Check whether a page may be kept in the off-heap page store.
+     * <p>
+     * Pages in temporary containers are never kept, as those containers
+     * are removed without going through the page cache. Neither is the
+     * first allocation page, as the container header it holds may be
+     * written directly to disk by the container.
+     *
+     * @param key the identity of the page, may be null
+     * @return true if the page may be kept off-heap
+     **/
+    private boolean isOffHeapCandidate(PageKey key)
+    {
+        return key != null && pageData != null &&
+            key.getPageNumber() != FileContainer.FIRST_ALLOC_PAGE_NUMBER &&
+            key.getContainerId().getSegmentId() !=
+                ContainerHandle.TEMPORARY_SEGMENT;
+    }
+
     /**
      * read the page from disk into this CachedPage object.
      * <p>
@@ -666,6 +764,15 @@ public abstract class CachedPage extends BasePage implements Cacheable
         // cache does support caching various sized pages.
 		setPageArray(pagesize);
 
+        // The page may have been evicted from the page cache recently and
+        // still be in the off-heap page store.
+        OffHeapPageStore store = dataFactory.getOffHeapPageStore();
+        if (store != null && isOffHeapCandidate(newIdentity) &&
+            store.take(newIdentity, pageData))
+        {
+            return;
+        }
+
 		for (int io_retry_count = 0;;)
         {
 			try 
@@ -843,6 +950,7 @@ public abstract class CachedPage extends BasePage implements Cacheable
             // change page state to not dirty after the successful write
 			isDirty     = false;
 			preDirty    = false;
+			redoLWM     = null;
 		}
 	}
 
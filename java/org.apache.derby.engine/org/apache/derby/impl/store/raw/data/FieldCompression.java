@@ -0,0 +1,223 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.data.FieldCompression
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.raw.data;
+
+import java.util.Arrays;
+
+import org.apache.derby.iapi.types.BitDataValue;
+import org.apache.derby.iapi.types.StringDataValue;
+
+/**
+	Run length encoding of the data of a single field, used for the fields
+	of records in containers created with derby.storage.compressedRecords.
+
+	<P>A compressed field is a sequence of runs, each starting with a control
+	byte:
+	<PRE>
+	0x00 - 0x7f : a literal run, the next (control + 1) bytes are copied as is
+	0x80 - 0xff : a repeat run, the next byte is repeated
+	              (control - 0x80 + 3) times
+	</PRE>
+
+	<P>This handles the padding of CHAR values and the leading zeros of
+	small numbers well, and costs one byte per 128 bytes of data that do not
+	compress.  The data of a field is only stored compressed if it becomes
+	shorter, and each field is compressed on its own, so that the raw store
+	can copy, log and purge the bytes of a field without knowing about the
+	compression.
+
+	<BR> MT - Immutable
+*/
+final class FieldCompression
+{
+	/** The shortest run of equal bytes that is stored as a repeat run. */
+	private static final int MIN_REPEAT = 3;
+
+	/** The longest run of equal bytes that fits in a repeat run. */
+	private static final int MAX_REPEAT = 0x7f + MIN_REPEAT;
+
+	/** The longest literal run. */
+	private static final int MAX_LITERAL = 0x80;
+
+	private FieldCompression()
+	{
+	}
+
+	/**
+		Tell whether the data of a column may be stored compressed.
+
+		<P>Only string and binary values are compressed.  The other types
+		are short and have a fixed width, so they gain little, and a field
+		that is updated in place, like a page pointer in a control row,
+		must not change its length.
+
+		@param column the column about to be written to a record
+		@return true if the data of the column may be compressed
+	*/
+	static boolean isCompressible(Object column)
+	{
+		return (column instanceof StringDataValue) ||
+			(column instanceof BitDataValue);
+	}
+
+	/**
+		Compress the data of a field.
+
+		@param src the array holding the data to compress
+		@param offset the offset of the data in src
+		@param length the length of the data
+		@param dest the array to compress the data to, must be at least
+			length bytes long
+		@return the length of the compressed data, or -1 if compressing
+			the data does not make it shorter
+	*/
+	static int compress(byte[] src, int offset, int length, byte[] dest)
+	{
+		int end = offset + length;
+		int literalStart = offset;
+		int out = 0;
+
+		int i = offset;
+		while (i < end)
+		{
+			byte b = src[i];
+			int run = 1;
+			while (i + run < end && run < MAX_REPEAT && src[i + run] == b)
+				run++;
+
+			if (run >= MIN_REPEAT)
+			{
+				out = writeLiterals(
+						src, literalStart, i - literalStart, dest, out, length);
+				if (out < 0 || out + 2 >= length)
+					return -1;
+
+				dest[out++] = (byte) (0x80 + run - MIN_REPEAT);
+				dest[out++] = b;
+				literalStart = i + run;
+			}
+
+			i += run;
+		}
+
+		out = writeLiterals(
+				src, literalStart, end - literalStart, dest, out, length);
+
+		return (out < 0 || out >= length) ? -1 : out;
+	}
+
+	/**
+		Write bytes as literal runs.
+
+		@return the new output position, or -1 if the output would be at
+			least as long as the uncompressed data
+	*/
+	private static int writeLiterals(
+	byte[]  src,
+	int     offset,
+	int     length,
+	byte[]  dest,
+	int     out,
+	int     limit)
+	{
+		while (length > 0)
+		{
+			int n = Math.min(length, MAX_LITERAL);
+			if (out + 1 + n >= limit)
+				return -1;
+
+			dest[out++] = (byte) (n - 1);
+			System.arraycopy(src, offset, dest, out, n);
+			out += n;
+			offset += n;
+			length -= n;
+		}
+		return out;
+	}
+
+	/**
+		Get the length of compressed data once it is uncompressed.
+
+		@param src the array holding the compressed data
+		@param offset the offset of the compressed data in src
+		@param length the length of the compressed data
+		@return the length of the uncompressed data
+	*/
+	static int uncompressedLength(byte[] src, int offset, int length)
+	{
+		int end = offset + length;
+		int uncompressed = 0;
+
+		while (offset < end)
+		{
+			int control = src[offset++] & 0xff;
+			if (control < 0x80)
+			{
+				uncompressed += control + 1;
+				offset += control + 1;
+			}
+			else
+			{
+				uncompressed += control - 0x80 + MIN_REPEAT;
+				offset++;
+			}
+		}
+
+		return uncompressed;
+	}
+
+	/**
+		Uncompress the data of a field.
+
+		@param src the array holding the compressed data
+		@param offset the offset of the compressed data in src
+		@param length the length of the compressed data
+		@param dest the array to uncompress the data to, must be at least
+			{@link #uncompressedLength} bytes long
+		@return the length of the uncompressed data
+	*/
+	static int uncompress(byte[] src, int offset, int length, byte[] dest)
+	{
+		int end = offset + length;
+		int out = 0;
+
+		while (offset < end)
+		{
+			int control = src[offset++] & 0xff;
+			if (control < 0x80)
+			{
+				int n = control + 1;
+				System.arraycopy(src, offset, dest, out, n);
+				offset += n;
+				out += n;
+			}
+			else
+			{
+				int n = control - 0x80 + MIN_REPEAT;
+				Arrays.fill(dest, out, out + n, src[offset++]);
+				out += n;
+			}
+		}
+
+		return out;
+	}
+}
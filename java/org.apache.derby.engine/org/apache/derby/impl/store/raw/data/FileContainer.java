@@ -300,6 +300,9 @@ abstract class FileContainer
 	// recordId in this container can be reused when a page is reused.
 	private static final int FILE_REUSABLE_RECORDID = 0x8;
 
+	// the fields of records in this container are compressed.
+	private static final int FILE_COMPRESSED_RECORDS = 0x10;
+
 	protected static final String SPACE_TRACE = 
         (SanityManager.DEBUG ? "SpaceTrace" : null);
 
@@ -631,6 +634,7 @@ abstract class FileContainer
      *     derby.storage.minimumRecordSize
      *     derby.storage.reusableRecordId
      *     derby.storage.initialPages
+     *     derby.storage.compressedRecords
      * <p>
      * To get the value of a particular property add it to the property list,
      * and on return the value of the property will be set to it's current 
@@ -695,6 +699,13 @@ abstract class FileContainer
 					 Integer.toString(initialPages));
 		}
 
+		// derby.storage.compressedRecords
+		if (prop.getProperty(Property.COMPRESSED_RECORDS) != null)
+		{
+			prop.put(Property.COMPRESSED_RECORDS,
+					 Boolean.toString(isCompressedRecords()));
+		}
+
     }
 
 	/**
@@ -761,6 +772,7 @@ abstract class FileContainer
 		setDroppedState(false);
 		setCommittedDropState(false);
 		setReusableRecordIdState(false);
+		setCompressedRecordsState(false);
 
 		// instance variables that are not stored on disk
 		lastLogInstant = null;
@@ -849,6 +861,7 @@ abstract class FileContainer
 		setDroppedState((status & FILE_DROPPED) != 0);
 		setCommittedDropState((status & FILE_COMMITTED_DROP) != 0);
 		setReusableRecordIdState((status & FILE_REUSABLE_RECORDID) != 0);
+		setCompressedRecordsState((status & FILE_COMPRESSED_RECORDS) != 0);
 	}
 
 
@@ -1010,6 +1023,7 @@ abstract class FileContainer
 		if (getDroppedState()) status |= FILE_DROPPED;
 		if (getCommittedDropState()) status |= FILE_COMMITTED_DROP;
 		if (isReusableRecordId()) status |= FILE_REUSABLE_RECORDID;
+		if (isCompressedRecords()) status |= FILE_COMPRESSED_RECORDS;
 
 		a_out.setPosition(0);
 		a_out.setLimit(CONTAINER_INFO_SIZE);
@@ -1072,6 +1086,7 @@ abstract class FileContainer
 		spareSpace
 		minimumRecordSize
 		isReusableRecordId
+		isCompressedRecords
 		initialPages
 
 	 */
@@ -1124,6 +1139,9 @@ abstract class FileContainer
 		// set reusable record id property
 		setReusableRecordIdState((status & FILE_REUSABLE_RECORDID) != 0);
 
+		// set compressed records property
+		setCompressedRecordsState((status & FILE_COMPRESSED_RECORDS) != 0);
+
 		// sanity check to make sure we are not encoutering any
 		// dropped Container 
 		if (SanityManager.DEBUG)
@@ -1234,6 +1252,14 @@ abstract class FileContainer
 				setReusableRecordIdState(reusableRecordId.booleanValue());
 			}
 
+			String compressedRecordsParameter =
+				createArgs.getProperty(Property.COMPRESSED_RECORDS);
+			if (compressedRecordsParameter != null)
+			{
+				setCompressedRecordsState(
+					Boolean.parseBoolean(compressedRecordsParameter));
+			}
+
 			String containerInitialPageParameter =
 				createArgs.getProperty(RawStoreFactory.CONTAINER_INITIAL_PAGES);
 			if (containerInitialPageParameter != null)
@@ -1484,6 +1510,7 @@ abstract class FileContainer
             // get rid of truncated pages, iterface allows one page or
             // all pages.
             pageCache.discard(identity);
+            dataFactory.discardOffHeapPages(identity);
         }
 	}
 
@@ -1864,7 +1891,8 @@ abstract class FileContainer
                         pageSize,
                         spareSpace,
                         minimumRecordSize,
-                        0 /* containerInfoSize - unused for StoredPage */);
+                        0 /* containerInfoSize - unused for StoredPage */,
+                        isCompressedRecords());
 
 			    // RESOLVE: right now, there is no re-mapping of pages, so
 			    // pageOffset = pageNumber*pageSize
@@ -2143,6 +2171,71 @@ abstract class FileContainer
 		return retval;
 	}
 
+	/**
+		Schedule pages to be read into the page cache by the page
+		prefetcher. Stops at the end of the container, or when the
+		prefetcher's queue is full.
+
+		@return the number of pages scheduled
+		@exception StandardException Standard Derby error policy
+	*/
+	protected int prefetchPages(BaseContainerHandle handle,
+								long firstPageNumber, int count)
+		 throws StandardException
+	{
+		if (count <= 0 || getMaxPrefetchPages() == 0)
+			return 0;
+
+		long lastPage = getLastPageNumber(handle);
+		if (lastPage == ContainerHandle.INVALID_PAGE_NUMBER)
+			return 0;
+
+		int scheduled = 0;
+		for (long p = firstPageNumber;
+			 p <= lastPage && scheduled < count; p++)
+		{
+			if (!dataFactory.schedulePrefetch(new PageKey(identity, p)))
+				break;
+			scheduled++;
+		}
+		return scheduled;
+	}
+
+	/** @see BaseContainer#getMaxPrefetchPages */
+	protected int getMaxPrefetchPages()
+	{
+		return dataFactory.getMaxPrefetchPages();
+	}
+
+	/**
+		Read a page into the page cache on behalf of the page prefetcher,
+		if it is an allocated page that is not already cached. Only the
+		allocation cache is consulted, so nothing is read if the cache has
+		been invalidated.
+
+		<BR> MT - called by the prefetcher thread while it keeps the
+		container in the container cache. The page is read after the
+		allocCache monitor has been released, so that scans and allocations
+		in the container don't wait for the read. A compress which
+		invalidates the cache and truncates the file waits for the reads
+		in progress before it truncates, see RAFContainer.truncatePages().
+
+		@exception StandardException Standard Derby error policy
+	*/
+	void prefetchPage(long pageNumber) throws StandardException
+	{
+		boolean allocated;
+		synchronized (allocCache)
+		{
+			allocated = allocCache.isAllocatedPage(pageNumber);
+		}
+
+		if (allocated)
+		{
+			pageCache.prefetch(new PageKey(identity, pageNumber));
+		}
+	}
+
 	/*
 		Find or allocate an allocation page which can handle adding a new page.
 		Return a latched allocPage.
@@ -2354,7 +2447,8 @@ abstract class FileContainer
                 pageSize,
                 0,        // allocation page has no need for spare
                 minimumRecordSize,
-                containerInfoSize);
+                containerInfoSize,
+                false);
 
 		if (SanityManager.DEBUG)
         {
@@ -2688,7 +2782,8 @@ abstract class FileContainer
                     pageSize,
                     spareSpace,
                     minimumRecordSize,
-                    0 /* containerInfoSize - unused for StoredPage */);
+                    0 /* containerInfoSize - unused for StoredPage */,
+                    isCompressedRecords());
 		}
 		else if (pageFormat == AllocPage.FORMAT_NUMBER)
 		{
@@ -2710,7 +2805,8 @@ abstract class FileContainer
                     pageSize,
                     0, // allocation page has no need for spare
                     minimumRecordSize,
-                    containerInfoSize);
+                    containerInfoSize,
+                    false);
 
 		}
 		else
@@ -3383,7 +3479,8 @@ abstract class FileContainer
                 pageSize,
                 spareSpace,
                 minimumRecordSize,
-                0 /* containerInfoSize - unused for StoredPage */);
+                0 /* containerInfoSize - unused for StoredPage */,
+                isCompressedRecords());
 
 		StoredPage page = new StoredPage();
 		page.setFactory(dataFactory);
@@ -216,7 +216,7 @@ public class LoggableActions implements PageActions  {
 		// mark the page as pre-dirtied so that if a checkpoint happens after
 		// the log record is sent to the log stream, the cache cleaning will
 		// wait for this change.
-		page.preDirty();
+		page.preDirty(t);
 
 		t.logAndDo(lop);
 
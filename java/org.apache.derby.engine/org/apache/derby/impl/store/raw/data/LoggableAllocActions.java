@@ -58,7 +58,7 @@ public class LoggableAllocActions implements AllocationActions {
 		// mark the page as pre-dirtied so that if a checkpoint happens after
 		// the log record is sent to the log stream, the cache cleaning will
 		// wait for this change.
-		allocPage.preDirty();
+		allocPage.preDirty(t);
 
 		t.logAndDo(lop);
 	}
@@ -83,7 +83,7 @@ public class LoggableAllocActions implements AllocationActions {
 		// mark the page as pre-dirtied so that if a checkpoint happens after
 		// the log record is sent to the log stream, the cache cleaning will
 		// wait for this change.
-		allocPage.preDirty();
+		allocPage.preDirty(t);
 
 		t.logAndDo(lop);
 	}
@@ -143,7 +143,7 @@ public class LoggableAllocActions implements AllocationActions {
                     new_highest_page, 
                     num_pages_truncated);
         }
-        allocPage.preDirty();
+        allocPage.preDirty(t);
 
         t.logAndDo(lop);
     }
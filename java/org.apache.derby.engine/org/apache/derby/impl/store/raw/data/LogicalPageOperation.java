@@ -141,7 +141,7 @@ abstract class LogicalPageOperation
 			// any time after the CLR is sent to the log stream, it will wait
 			// for the actual undo to happen on the page.  We need this to
 			// preserve the integrity of the redoLWM.
-			undoPage.preDirty();
+			undoPage.preDirty((RawTransaction) xact);
 
 			return new LogicalUndoOperation(undoPage, recordId, this);
 		}
@@ -161,7 +161,7 @@ abstract class LogicalPageOperation
 			// any time after the CLR is sent to the log stream, it will wait
 			// for the actual undo to happen on the page.  We need this to
 			// preserve the integrity of the redoLWM.
-			logicalUndoPage.preDirty();
+			logicalUndoPage.preDirty((RawTransaction) xact);
 
 			// find logical page is going to call undo.findUndo to find the
 			// right page to apply the CLR to.  If the record has changed,
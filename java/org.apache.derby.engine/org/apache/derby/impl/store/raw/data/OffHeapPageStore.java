@@ -0,0 +1,260 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.data.OffHeapPageStore
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.raw.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import org.apache.derby.iapi.store.raw.ContainerKey;
+import org.apache.derby.iapi.store.raw.PageKey;
+
+/**
+ * A second level page cache which keeps images of clean pages in direct
+ * byte buffers outside the Java heap.
+ *
+ * <p>
+ *
+ * When a clean page is evicted from the page cache, its image is copied
+ * into this store. When the page is later needed again, the image is copied
+ * back into the page's buffer instead of being read from disk, and removed
+ * from the store. A page is therefore either in the page cache or in this
+ * store, never in both, so the store never has to be told when a page that
+ * lives in the page cache is modified.
+ *
+ * <p>
+ *
+ * The memory is allocated in slabs of {@link #SLAB_SIZE} bytes, up to the
+ * configured maximum. Each slab is divided into slots of a single page
+ * size when it is allocated. When there is no free slot for a page size,
+ * the slot holding the page that has been in the store the longest is
+ * reused. Since pages leave the store when they are used, this is the page
+ * which was least recently evicted from the page cache.
+ *
+ * <p>
+ *
+ * MT - all the public methods are synchronized. The copying done while
+ * holding the monitor is cheap compared to the disk I/O it replaces.
+ */
+final class OffHeapPageStore {
+
+    /** The size of the chunks of memory the store allocates. */
+    static final int SLAB_SIZE = 1 << 20;
+
+    /** The maximum number of slabs to allocate. */
+    private final long maxSlabs;
+
+    /** The number of slabs allocated so far. */
+    private long slabCount;
+
+    /** The slots of each page size, keyed by page size. */
+    private final HashMap<Integer, SizeClass> sizeClasses =
+            new HashMap<Integer, SizeClass>();
+
+    /**
+     * Create a new store.
+     *
+     * @param maxBytes the maximum number of bytes of off-heap memory to use
+     */
+    OffHeapPageStore(long maxBytes) {
+        maxSlabs = maxBytes / SLAB_SIZE;
+    }
+
+    /**
+     * Check whether a store of the specified size can hold any pages.
+     *
+     * @param maxBytes the maximum number of bytes of off-heap memory to use
+     * @return {@code true} if the store would have room for at least one
+     * slab
+     */
+    static boolean isUsable(long maxBytes) {
+        return maxBytes >= SLAB_SIZE;
+    }
+
+    /**
+     * Copy the image of a clean page into the store. If the store already
+     * holds a newer version of the page, the store is left unchanged.
+     *
+     * @param key the identity of the page
+     * @param pageData the page image
+     * @param version the page version of the image
+     */
+    synchronized void put(PageKey key, byte[] pageData, long version) {
+        SizeClass sc = getSizeClass(pageData.length);
+
+        Slot slot = sc.used.get(key);
+        if (slot != null) {
+            if (slot.version > version) {
+                return;
+            }
+            // Move the page to the end of the eviction order.
+            sc.used.remove(key);
+        } else {
+            slot = sc.allocate();
+            if (slot == null) {
+                return;
+            }
+        }
+
+        slot.buffer.clear();
+        slot.buffer.put(pageData);
+        slot.version = version;
+        sc.used.put(key, slot);
+    }
+
+    /**
+     * Copy the image of a page from the store into a page buffer and
+     * remove it from the store.
+     *
+     * @param key the identity of the page
+     * @param pageData the buffer to copy the page into; its length must be
+     * the page size of the page
+     * @return {@code true} if the page was found, {@code false} otherwise
+     */
+    synchronized boolean take(PageKey key, byte[] pageData) {
+        SizeClass sc = sizeClasses.get(pageData.length);
+        Slot slot = (sc == null) ? null : sc.used.remove(key);
+        if (slot == null) {
+            return false;
+        }
+
+        slot.buffer.clear();
+        slot.buffer.get(pageData);
+        sc.free.push(slot);
+        return true;
+    }
+
+    /**
+     * Remove a page from the store, if it is there.
+     *
+     * @param key the identity of the page
+     */
+    synchronized void remove(PageKey key) {
+        for (SizeClass sc : sizeClasses.values()) {
+            Slot slot = sc.used.remove(key);
+            if (slot != null) {
+                sc.free.push(slot);
+            }
+        }
+    }
+
+    /**
+     * Remove all the pages of a container from the store.
+     *
+     * @param container the identity of the container
+     */
+    synchronized void removeContainer(ContainerKey container) {
+        for (SizeClass sc : sizeClasses.values()) {
+            Iterator<PageKey> it = sc.used.keySet().iterator();
+            while (it.hasNext()) {
+                PageKey key = it.next();
+                if (key.getContainerId().equals(container)) {
+                    sc.free.push(sc.used.get(key));
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all pages from the store and release the memory.
+     */
+    synchronized void clear() {
+        // The direct buffers are freed when they are garbage collected.
+        sizeClasses.clear();
+        slabCount = 0;
+    }
+
+    /**
+     * Get the slots used for pages of the specified size, creating them if
+     * necessary.
+     */
+    private SizeClass getSizeClass(int pageSize) {
+        SizeClass sc = sizeClasses.get(pageSize);
+        if (sc == null) {
+            sc = new SizeClass(pageSize);
+            sizeClasses.put(pageSize, sc);
+        }
+        return sc;
+    }
+
+    /** The slots for pages of a given size. */
+    private final class SizeClass {
+        /** The page size. */
+        private final int pageSize;
+        /** Slots that don't hold a page. */
+        private final ArrayDeque<Slot> free = new ArrayDeque<Slot>();
+        /** Slots that hold a page, in the order they were filled. */
+        private final LinkedHashMap<PageKey, Slot> used =
+                new LinkedHashMap<PageKey, Slot>();
+
+        SizeClass(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Get a slot that a page can be copied into. Allocate a new slab
+         * if there are no free slots and the memory limit has not been
+         * reached, otherwise reuse the oldest slot.
+         *
+         * @return a slot, or {@code null} if no memory is available for
+         * this page size
+         */
+        Slot allocate() {
+            if (free.isEmpty() && slabCount < maxSlabs) {
+                ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+                slabCount++;
+                for (int offset = 0; offset + pageSize <= SLAB_SIZE;
+                         offset += pageSize) {
+                    slab.limit(offset + pageSize).position(offset);
+                    free.push(new Slot(slab.slice()));
+                }
+            }
+
+            if (!free.isEmpty()) {
+                return free.pop();
+            }
+
+            Iterator<Slot> it = used.values().iterator();
+            if (it.hasNext()) {
+                Slot oldest = it.next();
+                it.remove();
+                return oldest;
+            }
+
+            return null;
+        }
+    }
+
+    /** A piece of a slab which can hold one page. */
+    private static final class Slot {
+        /** The memory holding the page. */
+        final ByteBuffer buffer;
+        /** The page version of the page in the slot. */
+        long version;
+
+        Slot(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -52,13 +52,21 @@ class PageCreationArgs {
     /** Size of the container information stored in the {@code AllocPage}. */
     final int containerInfoSize;
 
+    /**
+     * Tells whether the fields of records written to the page should be
+     * compressed. Not used for {@code AllocPage}.
+     */
+    final boolean compressRecords;
+
     PageCreationArgs(int formatId, int syncFlag, int pageSize, int spareSpace,
-                     int minimumRecordSize, int containerInfoSize) {
+                     int minimumRecordSize, int containerInfoSize,
+                     boolean compressRecords) {
         this.formatId = formatId;
         this.syncFlag = syncFlag;
         this.pageSize = pageSize;
         this.spareSpace = spareSpace;
         this.minimumRecordSize = minimumRecordSize;
         this.containerInfoSize = containerInfoSize;
+        this.compressRecords = compressRecords;
     }
 }
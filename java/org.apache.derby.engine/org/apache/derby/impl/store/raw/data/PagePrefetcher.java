@@ -0,0 +1,181 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.data.PagePrefetcher
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.raw.data;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.derby.iapi.services.cache.CacheManager;
+import org.apache.derby.iapi.services.cache.Cacheable;
+import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.daemon.DaemonService;
+import org.apache.derby.iapi.services.daemon.Serviceable;
+import org.apache.derby.iapi.store.raw.PageKey;
+import org.apache.derby.shared.common.error.StandardException;
+
+/**
+ * A prefetcher which reads pages into the page cache in a background
+ * thread, so that a scan which reads the pages in order finds them in the
+ * cache instead of waiting for the disk. When a page is requested, its key
+ * is put in a queue and the prefetcher asks to be serviced by a
+ * <code>DaemonService</code> running in a separate thread.
+ *
+ * <p>
+ *
+ * Prefetching is only a hint. Requests are dropped when the queue is full,
+ * when the container is not open, and when the page has been freed or is
+ * already in the page cache.
+ */
+final class PagePrefetcher implements Serviceable {
+
+    /** The service thread which reads the pages. */
+    private final DaemonService daemonService;
+
+    /** Subscription number for this <code>Serviceable</code>. */
+    private final int clientNumber;
+
+    /**
+     * Flag which tells whether the prefetcher has a still unprocessed job
+     * scheduled with the daemon service.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /** A queue of pages that should be read. */
+    private final ArrayBlockingQueue<PageKey> queue;
+
+    /** The cache of open containers. */
+    private final CacheManager containerCache;
+
+    /**
+     * Create a prefetcher and subscribe it to a daemon service.
+     *
+     * @param containerCache the container cache
+     * @param daemon the daemon service which reads the pages
+     * @param queueSize the maximum number of pages to keep in the queue
+     * (must be greater than 0)
+     */
+    PagePrefetcher(CacheManager containerCache, DaemonService daemon,
+                   int queueSize) {
+        this.containerCache = containerCache;
+        queue = new ArrayBlockingQueue<PageKey>(queueSize);
+        daemonService = daemon;
+        // subscribe with the onDemandOnly flag
+        clientNumber = daemon.subscribe(this, true);
+    }
+
+    /**
+     * Try to schedule a page to be read into the page cache.
+     *
+     * @param key the identity of the page
+     * @return <code>true</code> if the page has been scheduled,
+     * <code>false</code> if the queue is full
+     */
+    boolean schedulePrefetch(PageKey key) {
+        final boolean queued = queue.offer(key);
+        if (queued) {
+            requestService();
+        }
+        return queued;
+    }
+
+    /**
+     * Notify the daemon service that the prefetcher needs to be serviced.
+     */
+    private void requestService() {
+        // Only call serviceNow() if we don't already have a request pending,
+        // see BackgroundCleaner.requestService().
+        if (scheduled.compareAndSet(false, true)) {
+            daemonService.serviceNow(clientNumber);
+        }
+    }
+
+    /**
+     * Stop subscribing to the daemon service, and forget the pages that
+     * have not been read yet.
+     */
+    void unsubscribe() {
+        daemonService.unsubscribe(clientNumber);
+        queue.clear();
+    }
+
+    /**
+     * Read the pages in the queue into the page cache.
+     *
+     * @param context ignored
+     * @return <code>Serviceable.DONE</code>
+     */
+    public int performWork(ContextManager context) {
+        // allow others to schedule more work
+        scheduled.set(false);
+
+        PageKey key;
+        while ((key = queue.poll()) != null) {
+            prefetch(key);
+        }
+        return Serviceable.DONE;
+    }
+
+    /**
+     * Read one page into the page cache, if its container is open.
+     * Failures are ignored, since the page will be read by the scan
+     * that needs it if it is not in the cache.
+     *
+     * @param key the identity of the page
+     */
+    private void prefetch(PageKey key) {
+        Cacheable c;
+        try {
+            c = containerCache.findCached(key.getContainerId());
+        } catch (StandardException se) {
+            return;
+        }
+
+        if (c == null) {
+            // Don't open the container just to prefetch a page.
+            return;
+        }
+
+        try {
+            ((FileContainer) c).prefetchPage(key.getPageNumber());
+        } catch (StandardException se) {
+            // ignore, the page will be read on demand
+        } finally {
+            containerCache.release(c);
+        }
+    }
+
+    /**
+     * Indicate that we want to be serviced ASAP.
+     * @return <code>true</code>
+     */
+    public boolean serviceASAP() {
+        return true;
+    }
+
+    /**
+     * Indicate that we don't want the work to happen immediately in the
+     * user thread.
+     * @return <code>false</code>
+     */
+    public boolean serviceImmediately() {
+        return false;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.data.PageWriter
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package org.apache.derby.impl.store.raw.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.derby.iapi.services.cache.CacheManager;
+import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.daemon.DaemonService;
+import org.apache.derby.iapi.services.daemon.Serviceable;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.raw.PageKey;
+import org.apache.derby.iapi.store.raw.log.LogInstant;
+import org.apache.derby.shared.common.error.StandardException;
+
+/**
+ * Background writers which write dirty pages in the page cache to disk
+ * between checkpoints, so that a checkpoint doesn't have to write out the
+ * whole page cache at once.
+ *
+ * <p>
+ *
+ * The log factory asks for pages to be written at regular intervals of log
+ * volume, passing a log instant. The first writer to be serviced collects
+ * the dirty pages whose redo low water mark is older than that instant, or
+ * unknown, and queues them oldest first. All the writers then take pages
+ * from the queue and clean them, each in its own <code>DaemonService</code>
+ * thread. The pages are written without being synced; the containers are
+ * synced by the next checkpoint.
+ *
+ * <p>
+ *
+ * Pages in temporary containers are never written by the page writers,
+ * since they are not needed by recovery.
+ */
+final class PageWriter {
+
+    /** The page cache. */
+    private final CacheManager pageCache;
+
+    /** The writers, one for each service thread. */
+    private final Writer[] writers;
+
+    /**
+     * The latest request which hasn't been picked up by a writer yet, or
+     * null if there is none.
+     */
+    private final AtomicReference<LogInstant> request =
+            new AtomicReference<LogInstant>();
+
+    /** The pages which should be written, oldest change first. */
+    private final ConcurrentLinkedQueue<PageKey> queue =
+            new ConcurrentLinkedQueue<PageKey>();
+
+    /**
+     * Create page writers and subscribe them to daemon services.
+     *
+     * @param pageCache the page cache
+     * @param daemons the daemon services which write the pages, one for
+     * each writer
+     */
+    PageWriter(CacheManager pageCache, DaemonService[] daemons) {
+        this.pageCache = pageCache;
+        writers = new Writer[daemons.length];
+        for (int i = 0; i < daemons.length; i++) {
+            writers[i] = new Writer(daemons[i]);
+        }
+    }
+
+    /**
+     * Ask the writers to write the dirty pages which were changed before
+     * the given log instant. Pages queued by an earlier request that have
+     * not been written yet are queued again if they are still old enough.
+     *
+     * @param olderThan write pages with changes older than this instant
+     */
+    void writeDirtyPages(LogInstant olderThan) {
+        request.set(olderThan);
+        writers[0].requestService();
+    }
+
+    /**
+     * Stop subscribing to the daemon services, and forget the pages that
+     * have not been written yet.
+     */
+    void unsubscribe() {
+        for (Writer w : writers) {
+            w.unsubscribe();
+        }
+        request.set(null);
+        queue.clear();
+    }
+
+    /**
+     * Pick up the latest request, if there is one, and queue the pages it
+     * asks for.
+     *
+     * @return true if pages were queued
+     */
+    private boolean planWrites() {
+        LogInstant olderThan = request.getAndSet(null);
+        if (olderThan == null) {
+            return false;
+        }
+
+        ArrayList<DirtyPage> pages = new ArrayList<DirtyPage>();
+        for (Object o : pageCache.values()) {
+            CachedPage page = (CachedPage) o;
+            if (!page.isDirty()) {
+                continue;
+            }
+
+            LogInstant redoLWM = page.getRedoLWM();
+            if (redoLWM != null && !redoLWM.lessThan(olderThan)) {
+                continue;
+            }
+
+            PageKey key = (PageKey) page.getIdentity();
+            if (key == null || key.getContainerId().getSegmentId() ==
+                    ContainerHandle.TEMPORARY_SEGMENT) {
+                continue;
+            }
+
+            pages.add(new DirtyPage(key, redoLWM));
+        }
+
+        Collections.sort(pages);
+
+        queue.clear();
+        for (DirtyPage p : pages) {
+            queue.add(p.key);
+        }
+        return !pages.isEmpty();
+    }
+
+    /**
+     * Write the pages in the queue until it is empty.
+     */
+    private void writeQueuedPages() {
+        PageKey key;
+        while ((key = queue.poll()) != null) {
+            try {
+                pageCache.cleanCached(key);
+            } catch (StandardException se) {
+                // A page which cannot be written marks the database as
+                // corrupt. Don't try to write any more pages.
+                queue.clear();
+                return;
+            }
+        }
+    }
+
+    /**
+     * A page to write, ordered by redo low water mark. Pages whose redo
+     * low water mark is not known come first.
+     */
+    private static final class DirtyPage implements Comparable<DirtyPage> {
+        final PageKey key;
+        final LogInstant redoLWM;
+
+        DirtyPage(PageKey key, LogInstant redoLWM) {
+            this.key = key;
+            this.redoLWM = redoLWM;
+        }
+
+        public int compareTo(DirtyPage other) {
+            if (redoLWM == null || other.redoLWM == null) {
+                return (redoLWM == null ? 0 : 1) -
+                        (other.redoLWM == null ? 0 : 1);
+            }
+            if (redoLWM.lessThan(other.redoLWM)) {
+                return -1;
+            }
+            return other.redoLWM.lessThan(redoLWM) ? 1 : 0;
+        }
+    }
+
+    /**
+     * One writer, serviced by its own daemon service.
+     */
+    private final class Writer implements Serviceable {
+
+        /** The service thread which writes the pages. */
+        private final DaemonService daemonService;
+
+        /** Subscription number for this <code>Serviceable</code>. */
+        private final int clientNumber;
+
+        /**
+         * Flag which tells whether the writer has a still unprocessed job
+         * scheduled with the daemon service.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Writer(DaemonService daemon) {
+            daemonService = daemon;
+            // subscribe with the onDemandOnly flag
+            clientNumber = daemon.subscribe(this, true);
+        }
+
+        /**
+         * Notify the daemon service that the writer needs to be serviced.
+         */
+        void requestService() {
+            // Only call serviceNow() if we don't already have a request
+            // pending, see BackgroundCleaner.requestService().
+            if (scheduled.compareAndSet(false, true)) {
+                daemonService.serviceNow(clientNumber);
+            }
+        }
+
+        void unsubscribe() {
+            daemonService.unsubscribe(clientNumber);
+        }
+
+        /**
+         * Queue the pages asked for by a new request, if any, and write
+         * queued pages.
+         *
+         * @param context ignored
+         * @return <code>Serviceable.DONE</code>
+         */
+        public int performWork(ContextManager context) {
+            // allow others to schedule more work
+            scheduled.set(false);
+
+            if (planWrites()) {
+                // let the other writers help
+                for (Writer w : writers) {
+                    if (w != this) {
+                        w.requestService();
+                    }
+                }
+            }
+
+            writeQueuedPages();
+            return Serviceable.DONE;
+        }
+
+        /**
+         * Indicate that we want to be serviced ASAP.
+         * @return <code>true</code>
+         */
+        public boolean serviceASAP() {
+            return true;
+        }
+
+        /**
+         * Indicate that we don't want the work to happen immediately in
+         * the user thread.
+         * @return <code>false</code>
+         */
+        public boolean serviceImmediately() {
+            return false;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.derby.iapi.store.raw.Compensation;
 import org.apache.derby.iapi.store.raw.log.LogInstant;
 
 import org.apache.derby.iapi.store.raw.Transaction;
+import org.apache.derby.iapi.store.raw.xact.RawTransaction;
 import org.apache.derby.iapi.store.raw.Undoable;
 
 import org.apache.derby.shared.common.error.StandardException;
@@ -113,7 +114,7 @@ abstract class PhysicalPageOperation extends PageBasicOperation
 		// time after the CLR is sent to the log stream, it will wait for the
 		// actual undo to happen on the page.  We need this to preserve the
 		// integrity of the redoLWM.
-		undoPage.preDirty();
+		undoPage.preDirty((RawTransaction) xact);
 
 		return new PhysicalUndoOperation(undoPage, this);
 	}
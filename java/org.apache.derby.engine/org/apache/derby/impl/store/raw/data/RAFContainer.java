@@ -84,6 +84,8 @@ class RAFContainer extends FileContainer implements PrivilegedExceptionAction<Ob
 
 	private boolean inBackup = false;
 	private boolean inRemove = false;
+	/** Number of pages being read by the page prefetcher. */
+	private int prefetchesInProgress = 0;
         private String fileName;
 
 
@@ -121,8 +123,10 @@ class RAFContainer extends FileContainer implements PrivilegedExceptionAction<Ob
 			{
 				inRemove = true;
 				// wait until the thread that is doing the backup stops 
-				// before proceeding with the remove.
-				while(inBackup)
+				// before proceeding with the remove. Also wait for the
+				// page prefetcher, so that it doesn't put pages back into
+				// the cache after they have been discarded.
+				while(inBackup || prefetchesInProgress > 0)
 				{
 					try	{
 						wait();
@@ -136,6 +140,7 @@ class RAFContainer extends FileContainer implements PrivilegedExceptionAction<Ob
 
 		// discard all of my pages in the cache
 		pageCache.discard(identity);
+		dataFactory.discardOffHeapPages(identity);
 		stubbify(instant);
 		}finally
 		{	
@@ -148,6 +153,31 @@ class RAFContainer extends FileContainer implements PrivilegedExceptionAction<Ob
 		// RESOLVE: leaveStub false
 	}
 
+	/**
+		Read a page into the page cache on behalf of the page prefetcher,
+		unless the container is being removed or has been dropped.
+
+		@exception StandardException Standard Derby error policy
+	*/
+	void prefetchPage(long pageNumber) throws StandardException
+	{
+		synchronized(this)
+		{
+			if (inRemove || getDroppedState() || getCommittedDropState())
+				return;
+			prefetchesInProgress++;
+		}
+
+		try {
+			super.prefetchPage(pageNumber);
+		} finally {
+			synchronized(this) {
+				prefetchesInProgress--;
+				notifyAll();
+			}
+		}
+	}
+
 	void closeContainer() {
 
 		if (fileData != null) {
@@ -629,6 +659,21 @@ class RAFContainer extends FileContainer implements PrivilegedExceptionAction<Ob
 
         synchronized(this)
         {
+            // Wait for the page prefetcher, so that it doesn't read a page
+            // that is being truncated.  New prefetches see that the
+            // allocation cache has been invalidated by the compress.
+            while (prefetchesInProgress > 0)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException ie)
+                {
+                    InterruptStatus.setInterrupted();
+                }
+            }
+
             boolean inwrite = false;
             try
             {
@@ -27,6 +27,7 @@ import org.apache.derby.shared.common.reference.SQLState;
 import org.apache.derby.shared.common.sanity.SanityManager;
 
 import org.apache.derby.iapi.store.raw.ContainerKey;
+import org.apache.derby.iapi.store.raw.log.LogInstant;
 import org.apache.derby.iapi.util.InterruptStatus;
 import org.apache.derby.iapi.util.InterruptDetectedException;
 
@@ -34,6 +35,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedByInterruptException;
@@ -115,6 +117,23 @@ class RAFContainer4 extends RAFContainer {
      */
     private int iosInProgress = 0; // protected by monitor on "this"
 
+    /**
+     * The size of the chunks in which the container file is mapped into
+     * memory when memory-mapped reads are enabled. It is a multiple of all
+     * the legal page sizes, so a page never spans two chunks.
+     */
+    private static final long MAPPED_CHUNK_SIZE = 1L << 26;
+
+    /**
+     * Memory mappings of the container file, one per chunk of
+     * {@link #MAPPED_CHUNK_SIZE} bytes, or {@code null} if nothing has been
+     * mapped. The array is never modified after it has been published, so
+     * readers may use it without synchronization. New arrays are published
+     * while holding {@code mapMonitor}.
+     */
+    private volatile MappedByteBuffer[] mappedChunks;
+    private final Object mapMonitor = new Object();
+
     public RAFContainer4(BaseDataFileFactory factory) {
         super(factory);
     }
@@ -232,6 +251,7 @@ class RAFContainer4 extends RAFContainer {
                     "Container closed while IO operations are in progress. "
                     + " This should not happen.");
         }
+        unmapChunks();
         if(ourChannel != null) {
             try {
                 ourChannel.close();
@@ -431,7 +451,9 @@ class RAFContainer4 extends RAFContainer {
                 if (offset == -1L) {
                     // Normal page read doesn't specify offset,
                     // so use one computed from page number.
-                    readFull(pageBuf, ioChannel, pageOffset);
+                    if (!readMapped(ioChannel, pageNumber, pageData)) {
+                        readFull(pageBuf, ioChannel, pageOffset);
+                    }
                 } else {
                     // getEmbryonicPage specifies it own offset, so use that
                     if (SanityManager.DEBUG) {
@@ -464,6 +486,148 @@ class RAFContainer4 extends RAFContainer {
     }
 
 
+    /**
+     * Copy a page out of a memory mapping of the container file, if
+     * memory-mapped reads are enabled. The chunk that holds the page is
+     * mapped the first time it is needed, and mapped again if the file has
+     * grown past the end of an existing mapping.
+     *
+     * @param ioChannel the channel to map the file through
+     * @param pageNumber the page to read
+     * @param pageData the buffer to copy the page into
+     * @return {@code true} if the page was copied into the buffer, or
+     * {@code false} if it must be read with a normal read because
+     * memory-mapped reads are disabled, the page is the first allocation
+     * page, or the page is beyond the end of the file
+     * @exception IOException if the file cannot be mapped
+     */
+    private boolean readMapped(FileChannel ioChannel, long pageNumber,
+                               byte[] pageData)
+            throws IOException
+    {
+        // The first allocation page holds the container header, which
+        // RAFContainer accesses under synchronization. Always read it the
+        // normal way.
+        if (!dataFactory.useMemoryMappedReads() ||
+                pageNumber == FIRST_ALLOC_PAGE_NUMBER) {
+            return false;
+        }
+
+        long pageOffset = pageNumber * pageSize;
+        int chunk = (int) (pageOffset / MAPPED_CHUNK_SIZE);
+        int chunkOffset = (int) (pageOffset % MAPPED_CHUNK_SIZE);
+
+        ByteBuffer mapping =
+                getMappedChunk(ioChannel, chunk, chunkOffset + pageSize);
+        if (mapping == null) {
+            return false;
+        }
+
+        // Use a duplicate so that concurrent readers of the same chunk
+        // don't interfere with each other's position.
+        ByteBuffer view = mapping.duplicate();
+        view.position(chunkOffset);
+        view.get(pageData, 0, pageSize);
+        return true;
+    }
+
+    /**
+     * Get the memory mapping of a chunk of the container file, mapping it
+     * if necessary.
+     *
+     * @param ioChannel the channel to map the file through
+     * @param chunk the number of the chunk
+     * @param minSize the number of bytes the mapping must cover
+     * @return the mapping, or {@code null} if the file is not large enough
+     * @exception IOException if the file cannot be mapped
+     */
+    private ByteBuffer getMappedChunk(FileChannel ioChannel, int chunk,
+                                      int minSize)
+            throws IOException
+    {
+        MappedByteBuffer mapping = findMappedChunk(chunk, minSize);
+        if (mapping != null) {
+            return mapping;
+        }
+
+        synchronized (mapMonitor) {
+            // Another thread may have mapped it while we waited.
+            mapping = findMappedChunk(chunk, minSize);
+            if (mapping != null) {
+                return mapping;
+            }
+
+            long start = chunk * MAPPED_CHUNK_SIZE;
+            long size = Math.min(MAPPED_CHUNK_SIZE, ioChannel.size() - start);
+            if (size < minSize) {
+                return null;
+            }
+
+            mapping = ioChannel.map(
+                    FileChannel.MapMode.READ_ONLY, start, size);
+
+            MappedByteBuffer[] chunks = mappedChunks;
+            MappedByteBuffer[] newChunks = new MappedByteBuffer[
+                    chunks == null ? chunk + 1 :
+                                     Math.max(chunks.length, chunk + 1)];
+            if (chunks != null) {
+                System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+            }
+            newChunks[chunk] = mapping;
+            mappedChunks = newChunks;
+            return mapping;
+        }
+    }
+
+    /**
+     * Look for an existing mapping of a chunk that covers at least the
+     * specified number of bytes.
+     *
+     * @return the mapping, or {@code null} if there is no such mapping
+     */
+    private MappedByteBuffer findMappedChunk(int chunk, int minSize) {
+        MappedByteBuffer[] chunks = mappedChunks;
+        if (chunks != null && chunk < chunks.length) {
+            MappedByteBuffer mapping = chunks[chunk];
+            if (mapping != null && mapping.capacity() >= minSize) {
+                return mapping;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forget all the memory mappings of the container file. Must be called
+     * before the file is truncated, since accessing a mapping beyond the
+     * end of the file fails. The memory is unmapped when the mappings are
+     * garbage collected.
+     */
+    private void unmapChunks() {
+        synchronized (mapMonitor) {
+            mappedChunks = null;
+        }
+    }
+
+    /**
+     * override of RAFContainer#truncatePages
+     */
+    protected void truncatePages(long lastValidPagenum)
+        throws StandardException
+    {
+        unmapChunks();
+        super.truncatePages(lastValidPagenum);
+    }
+
+    /**
+     * override of RAFContainer#removeContainer
+     */
+    protected void removeContainer(LogInstant instant, boolean leaveStub)
+        throws StandardException
+    {
+        unmapChunks();
+        super.removeContainer(instant, leaveStub);
+    }
+
     /**
      *  Write a page from the supplied array.
      *  <p/>
@@ -80,6 +80,22 @@ public class SpaceInformation implements SpaceInfo
         return pageSize;
     }
 
+    /**
+     * Get the number of levels of the tree, a container is not a tree
+     **/
+    public int getTreeHeight()
+    {
+        return -1;
+    }
+
+    /**
+     * Get the average fanout of the tree, a container is not a tree
+     **/
+    public int getAverageFanout()
+    {
+        return -1;
+    }
+
     /*
     record the page size for the conglomerate.
     */
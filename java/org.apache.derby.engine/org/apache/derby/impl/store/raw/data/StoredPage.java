@@ -542,6 +542,22 @@ public class StoredPage extends CachedPage
     protected ArrayOutputStream     rawDataOut;
     protected FormatIdOutputStream  logicalDataOut;
 
+    /**
+     * Tells whether the fields of records written to this page are
+     * compressed, see {@link FieldCompression}.  Fields read from the page
+     * are uncompressed if they are marked as compressed, regardless of this
+     * setting.
+     **/
+    private boolean compressFields;
+
+    /**
+     * Scratch buffer and stream used to compress and uncompress fields.
+     * Declared globally so that they are only allocated once per page, and
+     * only used while the page is latched.
+     **/
+    private byte[]              compressionBuffer;
+    private ArrayInputStream    uncompressedDataIn;
+
 
     /**************************************************************************
      * Constructors for This class:
@@ -735,6 +751,7 @@ public class StoredPage extends CachedPage
 
         spareSpace          = args.spareSpace;
         minimumRecordSize   = args.minimumRecordSize;
+        compressFields      = args.compressRecords;
 
         setPageArray(args.pageSize);
 
@@ -776,6 +793,7 @@ public class StoredPage extends CachedPage
 
             spareSpace          = myContainer.getSpareSpace();
             minimumRecordSize   = myContainer.getMinimumRecordSize();
+            compressFields      = myContainer.isCompressedRecords();
         }
 
         // if it is null, assume spareSpace and minimumRecordSize is the
@@ -1875,6 +1893,12 @@ public class StoredPage extends CachedPage
         return freeSpace;
     }
 
+    /** @see Page#getFillPercentage */
+    public int getFillPercentage()
+    {
+        return (int) (((long) (totalSpace - freeSpace) * 100) / totalSpace);
+    }
+
     /**************************************************************************
      * Page header routines
      **************************************************************************
@@ -4772,13 +4796,28 @@ public class StoredPage extends CachedPage
                             {
                                 // normal, non-overflow column case.
 
-                                lrdi.setLimit(fieldDataLength);
-                                inUserCode = lrdi;
-                                sColumn.readExternalFromArray(lrdi);
-                                inUserCode = null;
-                                int unread = lrdi.clearLimit();
-                                if (unread != 0)
-                                    DataInputUtil.skipFully(lrdi, unread);
+                                if (StoredFieldHeader.isCompressed(fieldStatus))
+                                {
+                                    ArrayInputStream fieldIn = 
+                                        uncompressField(
+                                            pageData, lrdi.getPosition(), 
+                                            fieldDataLength);
+                                    inUserCode = fieldIn;
+                                    sColumn.readExternalFromArray(fieldIn);
+                                    inUserCode = null;
+                                    DataInputUtil.skipFully(
+                                        lrdi, fieldDataLength);
+                                }
+                                else
+                                {
+                                    lrdi.setLimit(fieldDataLength);
+                                    inUserCode = lrdi;
+                                    sColumn.readExternalFromArray(lrdi);
+                                    inUserCode = null;
+                                    int unread = lrdi.clearLimit();
+                                    if (unread != 0)
+                                        DataInputUtil.skipFully(lrdi, unread);
+                                }
                             }
                             else
                             {
@@ -5368,13 +5407,34 @@ public class StoredPage extends CachedPage
                     {
                         // normal, non-overflow column case.
 
-                        dataIn.setLimit(fieldDataLength);
-                        inUserCode = dataIn;
-                        sColumn.readExternal(dataIn);
-                        inUserCode = null;
-                        int unread = dataIn.clearLimit();
-                        if (unread != 0)
-                            DataInputUtil.skipFully(dataIn, unread);
+                        if (StoredFieldHeader.isCompressed(fieldStatus))
+                        {
+                            // the stream may not be backed by the page, so
+                            // uncompress into a private array.
+                            byte[] compressed = new byte[fieldDataLength];
+                            dataIn.readFully(compressed);
+                            byte[] uncompressed = 
+                                new byte[FieldCompression.uncompressedLength(
+                                    compressed, 0, fieldDataLength)];
+                            FieldCompression.uncompress(
+                                compressed, 0, fieldDataLength, uncompressed);
+
+                            ArrayInputStream fieldIn = 
+                                new ArrayInputStream(uncompressed);
+                            inUserCode = fieldIn;
+                            sColumn.readExternalFromArray(fieldIn);
+                            inUserCode = null;
+                        }
+                        else
+                        {
+                            dataIn.setLimit(fieldDataLength);
+                            inUserCode = dataIn;
+                            sColumn.readExternal(dataIn);
+                            inUserCode = null;
+                            int unread = dataIn.clearLimit();
+                            if (unread != 0)
+                                DataInputUtil.skipFully(dataIn, unread);
+                        }
                     }
                     else
                     {
@@ -5671,13 +5731,31 @@ public class StoredPage extends CachedPage
                                 {
                                     // normal, non-overflow column case.
 
-                                    dataIn.setLimit(fieldDataLength);
-                                    inUserCode = dataIn;
-                                    sColumn.readExternalFromArray(dataIn);
-                                    inUserCode = null;
-                                    int unread = dataIn.clearLimit();
-                                    if (unread != 0)
-                                        DataInputUtil.skipFully(dataIn, unread);
+                                    if (StoredFieldHeader.isCompressed(
+                                            fieldStatus))
+                                    {
+                                        ArrayInputStream fieldIn = 
+                                            uncompressField(
+                                                dataIn.getData(),
+                                                dataIn.getPosition(),
+                                                fieldDataLength);
+                                        inUserCode = fieldIn;
+                                        sColumn.readExternalFromArray(fieldIn);
+                                        inUserCode = null;
+                                        DataInputUtil.skipFully(
+                                            dataIn, fieldDataLength);
+                                    }
+                                    else
+                                    {
+                                        dataIn.setLimit(fieldDataLength);
+                                        inUserCode = dataIn;
+                                        sColumn.readExternalFromArray(dataIn);
+                                        inUserCode = null;
+                                        int unread = dataIn.clearLimit();
+                                        if (unread != 0)
+                                            DataInputUtil.skipFully(
+                                                dataIn, unread);
+                                    }
                                 }
                                 else
                                 {
@@ -6396,6 +6474,39 @@ public class StoredPage extends CachedPage
 
                 fieldDataLength =
                     (out.getPosition() - beginPosition) - headerLength;
+
+                // Compress the field in place, unless it is going to be
+                // stored as a long column.  The bytes of a long column are
+                // moved to overflow pages as they are, so they are never
+                // compressed.
+                if (compressFields &&
+                    (columnFlag != COLUMN_LONG) &&
+                    FieldCompression.isCompressible(column) &&
+                    !isLong(
+                        StoredFieldHeader.size(
+                            StoredFieldHeader.setFixed(fieldStatus, false),
+                            fieldDataLength, slotFieldSize) + fieldDataLength,
+                        overflowThreshold))
+                {
+                    byte[] buffer = getCompressionBuffer(fieldDataLength);
+                    int compressedLength = 
+                        FieldCompression.compress(
+                            out.getByteArray(), columnBeginPosition, 
+                            fieldDataLength, buffer);
+
+                    if (compressedLength >= 0)
+                    {
+                        System.arraycopy(
+                            buffer, 0, out.getByteArray(), columnBeginPosition,
+                            compressedLength);
+                        out.setPosition(columnBeginPosition + compressedLength);
+                        out.discardRight();
+
+                        fieldStatus = 
+                            StoredFieldHeader.setCompressed(fieldStatus, true);
+                        fieldDataLength = compressedLength;
+                    }
+                }
             }
         }
         else if (column instanceof RecordHandle)
@@ -8633,6 +8744,52 @@ slotScan:
 
     }
 
+    /**
+     * Get the scratch buffer used to compress and uncompress fields.
+     *
+     * @param length the number of bytes the buffer must hold
+     * @return a buffer of at least length bytes
+     **/
+    private byte[] getCompressionBuffer(int length)
+    {
+        if ((compressionBuffer == null) || (compressionBuffer.length < length))
+            compressionBuffer = new byte[length];
+
+        return compressionBuffer;
+    }
+
+    /**
+     * Uncompress a compressed field into the scratch buffer.
+     *
+     * @param data      the array holding the compressed field data
+     * @param offset    the offset of the field data in the array
+     * @param length    the length of the compressed field data
+     * @return a stream positioned on the uncompressed field data and
+     *         limited to it
+     *
+     * @exception  IOException  Error setting up the stream.
+     **/
+    private ArrayInputStream uncompressField(
+    byte[]  data,
+    int     offset,
+    int     length)
+        throws IOException
+    {
+        int uncompressedLength = 
+            FieldCompression.uncompressedLength(data, offset, length);
+
+        byte[] buffer = getCompressionBuffer(uncompressedLength);
+        FieldCompression.uncompress(data, offset, length, buffer);
+
+        if (uncompressedDataIn == null)
+            uncompressedDataIn = new ArrayInputStream();
+
+        uncompressedDataIn.setData(buffer);
+        uncompressedDataIn.setLimit(0, uncompressedLength);
+
+        return uncompressedDataIn;
+    }
+
     /**
         return whether the field has exceeded the max threshold for this page
         it compares the fieldSize with the largest possible field for this page
@@ -119,6 +119,16 @@ class TempRAFContainer extends RAFContainer {
 	}
 
 
+	/**
+		Don't prefetch pages of temporary containers. They are private to
+		one transaction, and are usually still in the page cache when they
+		are read.
+	*/
+	protected int getMaxPrefetchPages()
+	{
+		return 0;
+	}
+
 	/**
 		Write the page, if it's within range of the current page range of the container.
 		If we do write it then don't request that it be synced.
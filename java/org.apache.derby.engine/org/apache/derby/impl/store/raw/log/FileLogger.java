@@ -45,6 +45,7 @@ import org.apache.derby.iapi.store.raw.ContainerHandle;
 import org.apache.derby.iapi.store.raw.LockingPolicy;
 import org.apache.derby.iapi.store.raw.Loggable;
 import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.PageLoggable;
 import org.apache.derby.iapi.store.raw.RePreparable;
 import org.apache.derby.iapi.store.raw.Undoable;
 
@@ -79,7 +80,8 @@ import org.apache.derby.impl.store.raw.data.InitPageOperation;
 		Log Record
 			(see org.apache.derby.impl.store.raw.log.LogRecord)
 		length(int)	length of optional data
-		optionalData(byte[length]) optional data written by the log record
+		optionalData(byte[length]) optional data written by the log record,
+			compressed if the log record has the COMPRESSED group bit set
 	@derby.endFormat
 	</PRE> <HR WIDTH="100%"> 
 
@@ -118,6 +120,11 @@ public class FileLogger implements Logger {
 	private LogRecord		 logRecord;
 
 	protected byte[] encryptionBuffer;
+
+	// buffer and hash table for compressing optional data, allocated when
+	// the first log record is compressed
+	private byte[] compressionBuffer;
+	private int[] compressionHashTable;
 	private DynamicByteArrayOutputStream logOutputBuffer;
 	private FormatIdOutputStream logicalOut;
 
@@ -220,6 +227,12 @@ public class FileLogger implements Logger {
 			// those are called thru the logAndUndo interface
 			logRecord.setValue(transactionId, operation);
 
+			// the compressed flag is part of the log record header, so
+			// compress the optional data before the header is written
+			int compressedLength = compressOptionalData(operation);
+			if (compressedLength >= 0)
+				logRecord.setCompressed();
+
 			inUserCode = true;
 			logicalOut.writeObject(logRecord);
 			inUserCode = false;
@@ -286,8 +299,20 @@ public class FileLogger implements Logger {
 				optionalDataLength = 0;
 			}
 
-			logicalOut.writeInt(optionalDataLength);
-			completeLength = logOutputBuffer.getPosition() + optionalDataLength;
+			// the optional data as it is written to the log, doMe still
+			// reads the uncompressed data through logIn
+			byte[] loggedData = preparedLog;
+			int loggedDataOffset = optionalDataOffset;
+			int loggedDataLength = optionalDataLength;
+			if (compressedLength >= 0)
+			{
+				loggedData = compressionBuffer;
+				loggedDataOffset = 0;
+				loggedDataLength = compressedLength;
+			}
+
+			logicalOut.writeInt(loggedDataLength);
+			completeLength = logOutputBuffer.getPosition() + loggedDataLength;
 
 
 			LogInstant logInstant = null;
@@ -308,12 +333,12 @@ public class FileLogger implements Logger {
 						encryptionBuffer = new byte[encryptedLength];
 
 					System.arraycopy(logOutputBuffer.getByteArray(), 0, 
-									 encryptionBuffer, 0, completeLength-optionalDataLength);
+									 encryptionBuffer, 0, completeLength-loggedDataLength);
 
-					if (optionalDataLength > 0)
-						System.arraycopy(preparedLog, optionalDataOffset, 
+					if (loggedDataLength > 0)
+						System.arraycopy(loggedData, loggedDataOffset, 
 									 encryptionBuffer,
-									 completeLength-optionalDataLength, optionalDataLength);
+									 completeLength-loggedDataLength, loggedDataLength);
 
 					// do not bother to clear out the padding area 
 					int len = 
@@ -344,9 +369,9 @@ public class FileLogger implements Logger {
 						{
 							instant = logFactory.
 								appendLogRecord(logOutputBuffer.getByteArray(),
-												0, completeLength, preparedLog,
-												optionalDataOffset,
-												optionalDataLength);
+												0, completeLength, loggedData,
+												loggedDataOffset,
+												loggedDataLength);
 						}
 						logInstant = new LogCounter(instant);
 
@@ -369,12 +394,13 @@ public class FileLogger implements Logger {
 					{
 						instant = logFactory.
 							appendLogRecord(logOutputBuffer.getByteArray(), 0,
-											completeLength, preparedLog,
-											optionalDataOffset,
-											optionalDataLength); 
+											completeLength, loggedData,
+											loggedDataOffset,
+											loggedDataLength); 
 					}
 
 					logInstant = new LogCounter(instant);
+					xact.addLogBytes(completeLength);
 
 					operation.doMe(xact, logInstant, logIn);
 				}
@@ -428,6 +454,58 @@ public class FileLogger implements Logger {
 
 	}
 
+	/**
+		Compress the optional data of a log operation into compressionBuffer,
+		if log compression is enabled and the data is large enough. The
+		compressed data is preceded by the length of the uncompressed data.
+
+		<P>MT - caller must synchronize on this.
+
+		@param operation the log operation
+		@return the length of the data in compressionBuffer, or -1 if the
+		optional data is to be logged uncompressed
+
+		@exception StandardException Derby Standard error policy
+	*/
+	private int compressOptionalData(Loggable operation)
+		 throws StandardException
+	{
+		ByteArray preparedLogArray = operation.getPreparedLog();
+		if (preparedLogArray == null)
+			return -1;
+
+		int threshold = logFactory.getLogCompressionThreshold();
+		int dataLength = preparedLogArray.getLength();
+		if (threshold == 0 || dataLength < threshold)
+			return -1;
+
+		int bufferLength = 4 + LogCompression.maxCompressedLength(dataLength);
+		if (compressionBuffer == null || compressionBuffer.length < bufferLength)
+			compressionBuffer = new byte[bufferLength];
+		if (compressionHashTable == null)
+			compressionHashTable = new int[LogCompression.HASH_TABLE_SIZE];
+
+		compressionBuffer[0] = (byte) (dataLength >>> 24);
+		compressionBuffer[1] = (byte) (dataLength >>> 16);
+		compressionBuffer[2] = (byte) (dataLength >>> 8);
+		compressionBuffer[3] = (byte) dataLength;
+
+		int compressedLength = 4 + 
+			LogCompression.compress(preparedLogArray.getArray(),
+									preparedLogArray.getOffset(), dataLength,
+									compressionBuffer, 4,
+									compressionHashTable);
+
+		if (compressedLength >= dataLength)
+		{
+			logFactory.countLogCompression(dataLength, -1);
+			return -1;
+		}
+
+		logFactory.countLogCompression(dataLength, compressedLength);
+		return compressedLength;
+	}
+
 	/**
 		Writes out a compensation log record to the log stream, and call its
 		doMe method to undo the change of a previous log operation.
@@ -984,9 +1062,9 @@ public class FileLogger implements Logger {
 
 				if (lop != null)
 				{
-					int optionalDataLength = rawInput.readInt();
+					int optionalDataLength =
+						record.setOptionalDataLimit(rawInput);
 					int savePosition = rawInput.getPosition();
-					rawInput.setLimit(optionalDataLength);
 	
 					compensation = lop.generateUndo(t, rawInput);
 
@@ -1107,6 +1185,13 @@ public class FileLogger implements Logger {
 		@param transFactory     - the transaction factory
 		@param redoLWM          - if checkpoint seen, starting from this point
                                   on, apply redo if necessary
+		@param ttabInstant      - the instant of the checkpoint if it has a
+                                  transaction table, otherwise invalid
+		@param checkpointInstant - the instant of the checkpoint, or invalid
+                                  if no checkpoint was seen
+		@param parallelRedo     - the workers which redo changes to pages, or
+                                  null if all the log records are redone by
+                                  the calling thread
 
 		@return the log instant of the next log record (or the instant just
 		after the last log record).  This is used to determine where the log
@@ -1123,7 +1208,9 @@ public class FileLogger implements Logger {
     TransactionFactory  transFactory,
     StreamLogScan       redoScan,
     long                redoLWM,
-    long                ttabInstant)
+    long                ttabInstant,
+    long                checkpointInstant,
+    ParallelRedo        parallelRedo)
 		 throws IOException, StandardException, ClassNotFoundException
 	{
 		// begin debug info
@@ -1283,6 +1370,25 @@ public class FileLogger implements Logger {
 						continue;
 					}
 
+					if (redoLWM != LogCounter.INVALID_LOG_INSTANT &&
+						instant < checkpointInstant &&
+						!record.isFirst())
+					{
+						// The redoLWM of an incremental checkpoint may be
+						// before the end of transactions which started
+						// before the scan and ended before the checkpoint.
+						// Every page changed by such a transaction after the
+						// redoLWM was written before the checkpoint synced
+						// the containers, otherwise the redoLWM of the page
+						// would be at or before the beginXact of the
+						// transaction. So its remaining log records need no
+						// redo, and it needs no undo. With a full
+						// checkpoint, this does not happen.
+						etranCount++;
+
+						continue;
+					}
+
 					if ((ttabInstant == LogCounter.INVALID_LOG_INSTANT) && 
                         !record.isFirst())
                     {
@@ -1392,22 +1498,73 @@ public class FileLogger implements Logger {
 					 	"recovery transaction handles post termination work");
                 }
 
+				// With parallel redo, records which begin or end a transaction
+				// are handled here without waiting for the workers, they don't
+				// change any page.
+				if (parallelRedo != null && 
+                    (record.group() & 
+                     (Loggable.FIRST | Loggable.LAST | Loggable.PREPARE)) == 0)
+				{
+					if (op instanceof PageLoggable)
+					{
+						// A change to a single page, let the worker for its
+						// container redo it.
+						LogRecord dataRecord = record;
+
+						if (record.isCLR())
+						{
+							clrCount++;
+
+							// this value may be set by sanity xxxx
+							if (undoInstant == 0) 
+								undoInstant = logIn.readLong();
+
+							if (undoScan == null)
+							{
+								undoScan = (StreamLogScan)
+									logFactory.openForwardsScan(
+                                        undoInstant,(LogInstant)null);
+							}
+							else
+							{
+								undoScan.resetPosition(new LogCounter(undoInstant));
+							}
+
+							dataRecord = setUndoOp(
+                                op, undoScan, undoInstant, tranId, instant);
+						}
+
+						// copy the optional data of the loggable that is to
+						// be redone or to be rolled back, logIn is reused for
+						// the next log record
+						byte[] data = new byte[
+                            dataRecord.setOptionalDataLimit(logIn)];
+						logIn.readFully(data);
+
+						parallelRedo.redo(
+                            ((PageLoggable) op).getPageId().getContainerId(),
+                            op, instant, data);
+
+						op = null;
+						continue;
+					}
+
+					// Any other operation may depend on the state of pages
+					// changed by earlier log records, wait until the workers
+					// have redone them.
+					parallelRedo.waitForAll();
+				}
+
 				if (op.needsRedo(recoveryTransaction))
 				{
 					redoCount++;
 
+					LogRecord dataRecord = record;
+
 					if (record.isCLR())	
 					{
 						clrCount++;
 
-						// the log operation is not complete, the operation to
-						// undo is stashed away at the undoInstant.
-						// Reconstitute that first.
-
-						if (SanityManager.DEBUG)
-							SanityManager.ASSERT(op instanceof Compensation);
-
-
                         // this value may be set by sanity xxxx
 						if (undoInstant == 0) 
 							undoInstant = logIn.readLong();
@@ -1423,35 +1580,8 @@ public class FileLogger implements Logger {
 							undoScan.resetPosition(new LogCounter(undoInstant));
 						}
 
-						// undoScan now positioned at the beginning of the log
-						// record was rolled back by this CLR.  
-						// The scan is a forward one so getNextRecord will get 
-                        // the log record that needs to be rolled back.
-
-						// reuse the buffer in logIn and logIn since CLR 
-                        // has no optional data and has no use for them anymore 
-						logIn.clearLimit();
-						LogRecord undoRecord =
-							undoScan.getNextRecord(logIn, null, 0);
-
-						Undoable undoOp = undoRecord.getUndoable();
-
-						if (SanityManager.DEBUG)
-						{
-							SanityManager.DEBUG(
-                                LogToFile.DBG_FLAG, 
-                                "Redoing CLR: undoInstant = " + 
-                                    LogCounter.toDebugString(undoInstant) +
-                                " clrinstant = " + 
-                                    LogCounter.toDebugString(instant));
-
-							SanityManager.ASSERT(
-                                undoRecord.getTransactionId().equals(tranId));
-
-							SanityManager.ASSERT(undoOp != null);
-						}
-
-						((Compensation)op).setUndoOp(undoOp);
+						dataRecord = setUndoOp(
+                            op, undoScan, undoInstant, tranId, instant);
 					}
 
 					// at this point, logIn points to the optional
@@ -1470,8 +1600,7 @@ public class FileLogger implements Logger {
                         }
                     }
 
-					int dataLength = logIn.readInt();
-					logIn.setLimit(dataLength);
+					dataRecord.setOptionalDataLimit(logIn);
 										
 					// even though the log has already been written, we need to
 					// tie the page to the log stream so that if redo failed
@@ -1511,6 +1640,10 @@ public class FileLogger implements Logger {
 				}
 			} // while redoScan.getNextRecord() != null
 
+			// wait for the workers to redo the last changes
+			if (parallelRedo != null)
+				parallelRedo.waitForAll();
+
             // If the scan ended in an empty file, update logEnd to reflect that
             // in order to avoid to continue logging to an older file
             long end = redoScan.getLogRecordEnd(); 
@@ -1522,6 +1655,10 @@ public class FileLogger implements Logger {
 		}
 		catch (StandardException se)
 		{
+			// report the operation a worker failed to redo, if any
+			if (parallelRedo != null && parallelRedo.getFailedOp() != null)
+				op = parallelRedo.getFailedOp();
+
             throw StandardException.newException(
                     SQLState.LOG_REDO_FAILED, se, op);
 		}
@@ -1585,6 +1722,70 @@ public class FileLogger implements Logger {
 	}
 
 
+	/**
+		Reconstitute the operation which a compensation log record rolls
+		back, and give it to the compensation operation.
+		<P>
+		The operation to undo is stashed away at the undoInstant. It is
+		read into logIn, which is left positioned at its optional data.
+		The log record of the operation is returned, so that the caller can
+		tell whether the optional data is compressed.
+
+		@param op           the compensation operation
+		@param undoScan     a forward scan positioned at the undoInstant
+		@param undoInstant  the instant of the operation to undo
+		@param tranId       the transaction of the compensation log record
+		@param instant      the instant of the compensation log record
+		@return the log record of the operation to undo
+
+		@exception StandardException Standard Derby error policy
+		@exception IOException error reading log file
+		@exception ClassNotFoundException log file corrupted
+	 */
+	private LogRecord setUndoOp(
+    Loggable        op,
+    StreamLogScan   undoScan,
+    long            undoInstant,
+    TransactionId   tranId,
+    long            instant)
+		 throws IOException, StandardException, ClassNotFoundException
+	{
+		if (SanityManager.DEBUG)
+			SanityManager.ASSERT(op instanceof Compensation);
+
+		// undoScan now positioned at the beginning of the log
+		// record was rolled back by this CLR.  
+		// The scan is a forward one so getNextRecord will get 
+        // the log record that needs to be rolled back.
+
+		// reuse the buffer in logIn and logIn since CLR 
+        // has no optional data and has no use for them anymore 
+		logIn.clearLimit();
+		LogRecord undoRecord =
+			undoScan.getNextRecord(logIn, null, 0);
+
+		Undoable undoOp = undoRecord.getUndoable();
+
+		if (SanityManager.DEBUG)
+		{
+			SanityManager.DEBUG(
+                LogToFile.DBG_FLAG, 
+                "Redoing CLR: undoInstant = " + 
+                    LogCounter.toDebugString(undoInstant) +
+                " clrinstant = " + 
+                    LogCounter.toDebugString(instant));
+
+			SanityManager.ASSERT(
+                undoRecord.getTransactionId().equals(tranId));
+
+			SanityManager.ASSERT(undoOp != null);
+		}
+
+		((Compensation)op).setUndoOp(undoOp);
+
+		return undoRecord;
+	}
+
 	/**
 		Read the next log record from the scan.
 
@@ -134,9 +134,8 @@ public class FlushedScanHandle implements ScanHandle
 		if (lr == null) return null;
 		try
 		{
-			int dataLength = rawInput.readInt();
+			lr.setOptionalDataLimit(rawInput);
 			readOptionalData = true;
-			rawInput.setLimit(dataLength);
 			return rawInput;
 		}
 
@@ -0,0 +1,287 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.log.LogCompression
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package org.apache.derby.impl.store.raw.log;
+
+import java.util.Arrays;
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.shared.common.reference.SQLState;
+
+/**
+ * Compression of the optional data of log records.
+ *
+ * <p>
+ *
+ * The data is compressed into the LZ4 block format: a sequence of literal
+ * runs, each followed by a back reference of at least four bytes into the
+ * data already decompressed, within 64K bytes. Matches are found through a
+ * hash table of the four byte sequences seen so far. This doesn't compress
+ * as well as the deflate format, but is fast enough to be done while
+ * holding the log factory's monitor and decompressing is a plain copy
+ * loop.
+ *
+ * <p>
+ *
+ * MT - compress() uses the hash table passed in by the caller, which must
+ * not be shared by threads. decompress() is thread safe.
+ */
+final class LogCompression {
+
+    /** Number of bits in the hash values of four byte sequences. */
+    private static final int HASH_LOG = 12;
+
+    /** Size of the hash table that compress() needs. */
+    static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+
+    /** The shortest back reference. */
+    private static final int MIN_MATCH = 4;
+
+    /** The largest distance of a back reference. */
+    private static final int MAX_OFFSET = 0xffff;
+
+    /** The data always ends with at least this many literal bytes. */
+    private static final int LAST_LITERALS = 5;
+
+    /**
+     * A back reference must start at least this many bytes before the end
+     * of the data.
+     */
+    private static final int MATCH_FIND_LIMIT = 12;
+
+    /** Run lengths of this size or larger take extra length bytes. */
+    private static final int RUN_MASK = 0xf;
+
+    private LogCompression() {
+    }
+
+    /**
+     * Get the largest number of bytes data of the given length may take
+     * when compressed.
+     *
+     * @param length the length of the data
+     * @return the size of the output buffer needed by compress()
+     */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compress data.
+     *
+     * @param src the array holding the data
+     * @param srcOff offset of the data in src
+     * @param srcLen length of the data
+     * @param dst the array to compress into, which must hold at least
+     *        <code>maxCompressedLength(srcLen)</code> bytes from dstOff
+     * @param dstOff offset in dst to compress into
+     * @param hashTable hash table of <code>HASH_TABLE_SIZE</code> entries
+     *        used to find matches, its contents are overwritten
+     * @return the length of the compressed data
+     */
+    static int compress(byte[] src, int srcOff, int srcLen,
+                        byte[] dst, int dstOff, int[] hashTable) {
+        int srcEnd = srcOff + srcLen;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int findLimit = srcEnd - MATCH_FIND_LIMIT;
+        int anchor = srcOff;
+        int dp = dstOff;
+
+        if (srcLen > MATCH_FIND_LIMIT) {
+            Arrays.fill(hashTable, -1);
+
+            int sp = srcOff;
+            while (sp < findLimit) {
+                int sequence = readInt(src, sp);
+                int h = hash(sequence);
+                int ref = hashTable[h];
+                hashTable[h] = sp;
+
+                if (ref < 0 || sp - ref > MAX_OFFSET ||
+                        readInt(src, ref) != sequence) {
+                    // skip faster through data which doesn't compress
+                    sp += 1 + ((sp - anchor) >>> 6);
+                    continue;
+                }
+
+                int length = MIN_MATCH;
+                while (sp + length < matchLimit &&
+                        src[sp + length] == src[ref + length]) {
+                    length++;
+                }
+                while (sp > anchor && ref > srcOff &&
+                        src[sp - 1] == src[ref - 1]) {
+                    sp--;
+                    ref--;
+                    length++;
+                }
+
+                dp = writeSequence(src, anchor, sp - anchor,
+                                   sp - ref, length, dst, dp);
+                sp += length;
+                anchor = sp;
+            }
+        }
+
+        dp = writeSequence(src, anchor, srcEnd - anchor, 0, 0, dst, dp);
+        return dp - dstOff;
+    }
+
+    /**
+     * Decompress data compressed by compress().
+     *
+     * @param src the array holding the compressed data
+     * @param srcOff offset of the compressed data in src
+     * @param srcLen length of the compressed data
+     * @param dst the array to decompress into
+     * @param dstOff offset in dst to decompress into
+     * @param dstLen the length of the data before it was compressed
+     *
+     * @exception StandardException the compressed data is corrupt
+     */
+    static void decompress(byte[] src, int srcOff, int srcLen,
+                           byte[] dst, int dstOff, int dstLen)
+            throws StandardException {
+        int srcEnd = srcOff + srcLen;
+        int dstEnd = dstOff + dstLen;
+        int sp = srcOff;
+        int dp = dstOff;
+
+        while (sp < srcEnd) {
+            int token = src[sp++] & 0xff;
+
+            int literals = token >>> 4;
+            if (literals == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw corrupt();
+                    }
+                    b = src[sp++] & 0xff;
+                    literals += b;
+                } while (b == 0xff);
+            }
+            if (literals > srcEnd - sp || literals > dstEnd - dp) {
+                throw corrupt();
+            }
+            System.arraycopy(src, sp, dst, dp, literals);
+            sp += literals;
+            dp += literals;
+
+            if (sp == srcEnd) {
+                // the last sequence has literals only
+                break;
+            }
+
+            if (srcEnd - sp < 2) {
+                throw corrupt();
+            }
+            int offset = (src[sp++] & 0xff) | ((src[sp++] & 0xff) << 8);
+
+            int length = token & RUN_MASK;
+            if (length == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw corrupt();
+                    }
+                    b = src[sp++] & 0xff;
+                    length += b;
+                } while (b == 0xff);
+            }
+            length += MIN_MATCH;
+
+            int ref = dp - offset;
+            if (offset == 0 || ref < dstOff || length > dstEnd - dp) {
+                throw corrupt();
+            }
+            // copy byte by byte, the match may overlap the bytes it produces
+            for (int i = 0; i < length; i++) {
+                dst[dp++] = dst[ref++];
+            }
+        }
+
+        if (dp != dstEnd) {
+            throw corrupt();
+        }
+    }
+
+    /**
+     * Write a run of literal bytes followed by a back reference.
+     *
+     * @param length the length of the back reference, or 0 for the last
+     *        sequence, which has no back reference
+     * @return the position in dst after the sequence
+     */
+    private static int writeSequence(byte[] src, int literalOff,
+                                     int literals, int offset, int length,
+                                     byte[] dst, int dp) {
+        int tokenPos = dp++;
+        int token;
+
+        if (literals >= RUN_MASK) {
+            token = RUN_MASK << 4;
+            dp = writeLength(literals - RUN_MASK, dst, dp);
+        } else {
+            token = literals << 4;
+        }
+        System.arraycopy(src, literalOff, dst, dp, literals);
+        dp += literals;
+
+        if (length > 0) {
+            dst[dp++] = (byte) offset;
+            dst[dp++] = (byte) (offset >>> 8);
+
+            int extra = length - MIN_MATCH;
+            if (extra >= RUN_MASK) {
+                token |= RUN_MASK;
+                dp = writeLength(extra - RUN_MASK, dst, dp);
+            } else {
+                token |= extra;
+            }
+        }
+
+        dst[tokenPos] = (byte) token;
+        return dp;
+    }
+
+    /** Write the extra length bytes of a run. */
+    private static int writeLength(int length, byte[] dst, int dp) {
+        while (length >= 0xff) {
+            dst[dp++] = (byte) 0xff;
+            length -= 0xff;
+        }
+        dst[dp++] = (byte) length;
+        return dp;
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return (b[pos] & 0xff) | ((b[pos + 1] & 0xff) << 8) |
+               ((b[pos + 2] & 0xff) << 16) | (b[pos + 3] << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static StandardException corrupt() {
+        return StandardException.newException(SQLState.LOG_CORRUPTED);
+    }
+}
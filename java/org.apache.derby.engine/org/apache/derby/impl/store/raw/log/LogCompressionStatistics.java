@@ -0,0 +1,85 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.log.LogCompressionStatistics
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package org.apache.derby.impl.store.raw.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.derby.iapi.store.access.LogCompressionInfo;
+
+/**
+ * Counters for the compression of log records, updated by the loggers of
+ * all the transactions.
+ *
+ * <p>
+ *
+ * MT - the counters are updated independently of each other, so a reader
+ * may see the count of a record before its bytes have been added.
+ */
+final class LogCompressionStatistics implements LogCompressionInfo {
+
+    private final int threshold;
+    private final AtomicLong compressedRecords = new AtomicLong();
+    private final AtomicLong incompressibleRecords = new AtomicLong();
+    private final AtomicLong dataBytes = new AtomicLong();
+    private final AtomicLong loggedBytes = new AtomicLong();
+
+    LogCompressionStatistics(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Count a log record whose optional data was large enough to be
+     * compressed.
+     *
+     * @param dataLength the length of the optional data
+     * @param compressedLength the length of the compressed data written to
+     *        the log, or -1 if the data was written uncompressed
+     */
+    void count(int dataLength, int compressedLength) {
+        if (compressedLength < 0) {
+            incompressibleRecords.incrementAndGet();
+        } else {
+            compressedRecords.incrementAndGet();
+            dataBytes.addAndGet(dataLength);
+            loggedBytes.addAndGet(compressedLength);
+        }
+    }
+
+    public int getCompressionThreshold() {
+        return threshold;
+    }
+
+    public long getCompressedRecords() {
+        return compressedRecords.get();
+    }
+
+    public long getIncompressibleRecords() {
+        return incompressibleRecords.get();
+    }
+
+    public long getDataBytes() {
+        return dataBytes.get();
+    }
+
+    public long getLoggedBytes() {
+        return loggedBytes.get();
+    }
+}
@@ -37,6 +37,7 @@ import org.apache.derby.iapi.store.raw.Undoable;
 
 import org.apache.derby.iapi.store.raw.xact.TransactionId;
 
+import org.apache.derby.iapi.services.io.ArrayInputStream;
 import org.apache.derby.iapi.services.io.CompressedNumber;
 
 import java.io.ObjectOutput;
@@ -64,6 +65,12 @@ import java.io.IOException;
 		op(Loggable)					the log operation
 	@derby.endFormat
 	</PRE>
+	<P>
+	The log record is followed by the length of the optional data of the
+	operation and the optional data itself. If the COMPRESSED bit is set in
+	the group value, the optional data is stored as the length of the data
+	before compression (int) followed by the data compressed with
+	LogCompression.
 
 */
 public class LogRecord implements Formatable {
@@ -131,6 +138,16 @@ public class LogRecord implements Formatable {
 		this.group = op.group();
 	}
 
+	/**
+		Mark the optional data that is written after this log record as
+		compressed. Must be called after setValue and before the log record
+		is written out.
+	*/
+	public void setCompressed()
+	{
+		group |= Loggable.COMPRESSED;
+	}
+
 	public static int formatOverhead()
 	{
 		return formatLength;
@@ -311,4 +328,44 @@ public class LogRecord implements Formatable {
 	public boolean isChecksum()	{
 		return ((group & Loggable.CHECKSUM) != 0);
 	}
+
+	public boolean isCompressed()	{
+		return ((group & Loggable.COMPRESSED) != 0);
+	}
+
+	/**
+		Set up the input stream to read the optional data of this log
+		record. The stream must be positioned at the length of the optional
+		data, which follows the loggable. On return the stream is limited to
+		the optional data. If the optional data is compressed, it is
+		decompressed into a new array which the stream is then set to read.
+
+		@param in the stream the log record was read from
+		@return the length of the optional data
+
+		@exception IOException error reading the log stream
+		@exception StandardException the compressed data is corrupt
+	*/
+	public int setOptionalDataLimit(ArrayInputStream in)
+		throws IOException, StandardException
+	{
+		int dataLength = in.readInt();
+
+		if (!isCompressed())
+		{
+			in.setLimit(dataLength);
+			return dataLength;
+		}
+
+		in.setLimit(dataLength);
+		int length = in.readInt();
+
+		byte[] data = new byte[length];
+		LogCompression.decompress(in.getData(), in.getPosition(),
+								  dataLength - 4, data, 0, length);
+
+		in.setData(data);
+		in.setLimit(0, length);
+		return length;
+	}
 }
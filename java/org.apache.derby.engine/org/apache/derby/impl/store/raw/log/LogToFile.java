@@ -29,6 +29,7 @@ import org.apache.derby.shared.common.reference.MessageId;
 import org.apache.derby.shared.common.reference.Property;
 import org.apache.derby.shared.common.reference.SQLState;
 
+import org.apache.derby.iapi.services.daemon.DaemonFactory;
 import org.apache.derby.iapi.services.daemon.DaemonService;
 import org.apache.derby.iapi.services.daemon.Serviceable;
 import org.apache.derby.iapi.services.context.ContextManager;
@@ -66,6 +67,7 @@ import org.apache.derby.iapi.store.replication.slave.SlaveFactory;
 import org.apache.derby.iapi.services.io.ArrayInputStream;
 
 import org.apache.derby.iapi.store.access.DatabaseInstant;
+import org.apache.derby.iapi.store.access.LogCompressionInfo;
 import org.apache.derby.iapi.services.property.PropertyUtil;
 import org.apache.derby.shared.common.reference.Attribute;
 import org.apache.derby.iapi.services.io.FileUtil;
@@ -93,6 +95,7 @@ import java.security.PrivilegedAction;
 import java.security.PrivilegedExceptionAction;
 import java.security.PrivilegedActionException;
 
+import java.util.ArrayDeque;
 import java.util.Properties;
 import java.util.zip.CRC32;
 
@@ -264,6 +267,21 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 	private static final int LOG_BUFFER_SIZE_MAX = LOG_SWITCH_INTERVAL_MAX;
 	private int logBufferSize = DEFAULT_LOG_BUFFER_SIZE;
 
+	//group commit delay values, in microseconds
+	private static final int GROUP_COMMIT_DELAY_MAX = 100000; //100ms
+
+	//spare log file values
+	private static final int LOG_SPARE_FILES_MAX = 16;
+	private int logSpareFiles = 0;
+
+	//recovery redo thread values
+	private static final int RECOVERY_REDO_THREADS_MAX = 16;
+	private int recoveryRedoThreads = 0;
+
+	//log compression values
+	private int logCompressionThreshold = 0;
+	private LogCompressionStatistics logCompressionStatistics;
+
 	/* Log Control file flags. */
 	private static final byte IS_BETA_FLAG = 0x1;
 	
@@ -306,6 +324,36 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 	private boolean logBeingFlushed; // is the log in the middle of a flush
 									 // (access of the variable should sync on this)
 
+	// Group commit. When groupCommitDelay is greater than 0 and the previous
+	// sync was requested by more than one thread, the thread that is about
+	// to flush the log first waits up to groupCommitDelay microseconds for
+	// other threads to ask for a flush, so that one sync covers all of them.
+	// (access of these variables should sync on this)
+	private int     groupCommitDelay;   // max time to wait, in microseconds
+	private boolean inCommitDelay;      // a flusher is waiting for a group
+	private boolean commitDelayNotified;// the waiting flusher has been told
+										// that the group is complete
+	private int     flushWaiters;       // threads waiting for another
+										// thread's flush
+	private int     lastGroupSize = 1;  // threads served by the last sync
+
+	// Spare log files. A spare file has the size of a preallocated log file
+	// and contains only zeros, so it can be renamed to the next log file at
+	// a log switch and used after writing a new header. Log files that are
+	// no longer needed are renamed to recycled files (spareN.tmp) when the
+	// log is truncated, and zeroed and renamed to spare files (spareN.dat)
+	// at the end of the checkpoint.
+	// (access of these variables should sync on spareLogFiles)
+	private final ArrayDeque<StorageFile> spareLogFiles =
+		new ArrayDeque<StorageFile>();
+	private final ArrayDeque<StorageFile> recycledLogFiles =
+		new ArrayDeque<StorageFile>();
+	private int     recyclingLogFiles;   // log files being renamed to
+										 // recycled files
+	private long    nextSpareLogFileNumber = 1;
+	private boolean spareLogFilesFound;  // spares left by an earlier boot
+										 // have been looked for
+
 	protected LogAccessFile logOut;		// an output stream to the log file
 								// (access of the variable should sync on this)
 	private   StorageRandomAccessFile firstLog = null;
@@ -399,6 +447,22 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 
 	private long logWrittenFromLastCheckPoint = 0;
 	                            // keeps track of the amout of log written between checkpoints
+
+	// Incremental checkpoints. When the data factory has page writers, the
+	// checkpoints taken by the checkpoint daemon don't clean the page cache.
+	// Instead, PAGE_WRITE_REQUESTS times per checkpoint interval, the page
+	// writers are asked to write the pages whose oldest unwritten change is
+	// older than the end of the log was PAGE_WRITE_LAG requests earlier.
+	// So the redo LWM of a checkpoint stays about PAGE_WRITE_LAG /
+	// PAGE_WRITE_REQUESTS checkpoint intervals behind the end of the log.
+	private static final int PAGE_WRITE_REQUESTS = 8;
+	private static final int PAGE_WRITE_LAG = 4;
+
+	private boolean incrementalCheckpoints;
+	private long    nextPageWriteRequest;	// log written from last checkpoint
+											// at which to request page writes
+	private final long[] pageWriteInstants = new long[PAGE_WRITE_LAG];
+	private int     pageWriteSlot;			// (sync on this)
 	private RawStoreFactory rawStoreFactory; 
 	// use this only when in slave mode or after recovery is finished
 
@@ -469,6 +533,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 	private int mon_flushCalls;
 	private int mon_syncCalls;
 	private int mon_numLogFlushWaits;
+	private int mon_numGroupCommitDelays;
 	private boolean mon_LogSyncStatistics;
 	private int mon_numBytesToLog;
 
@@ -635,6 +700,43 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			return new FileLogger(this);
 	}
 
+	/**
+		Get the size from which the optional data of log records is
+		compressed, or 0 if log records are not to be compressed. Older
+		versions can't read compressed log records, so they are only
+		written once the database has been created at or hard upgraded to
+		10.17.
+	*/
+	int getLogCompressionThreshold()
+	{
+		if (logCompressionThreshold > 0 &&
+			checkVersion(RawStoreFactory.DERBY_STORE_MAJOR_VERSION_10,
+						 RawStoreFactory.DERBY_STORE_MINOR_VERSION_17))
+			return logCompressionThreshold;
+		return 0;
+	}
+
+	/**
+		Count a log record whose optional data was large enough to be
+		compressed.
+
+		@param dataLength the length of the optional data
+		@param compressedLength the length of the compressed data written to
+		the log, or -1 if the data was written uncompressed
+	*/
+	void countLogCompression(int dataLength, int compressedLength)
+	{
+		logCompressionStatistics.count(dataLength, compressedLength);
+	}
+
+	/**
+	 * @see LogFactory#getLogCompressionInfo
+	 */
+	public LogCompressionInfo getLogCompressionInfo()
+	{
+		return logCompressionStatistics;
+	}
+
 	/**
 		Make log factory aware of which raw store factory it belongs to
 	*/
@@ -861,8 +963,11 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 					// the undoLWM.  If it does have a transaction table, we
 					// only need to scan the log from the redoLWM
 
+					// An incremental checkpoint may have a redoLWM before
+					// the undoLWM, start at the earlier of the two.
 					redoScan = (StreamLogScan) 
-                        openForwardsScan(undoLWM, (LogInstant)null);
+                        openForwardsScan(
+                            Math.min(undoLWM, redoLWM), (LogInstant)null);
 
 				}
 				else
@@ -913,10 +1018,33 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 				//
 				inRedo = true;	
 
-				long logEnd = 
-                    logger.redo(
-                        recoveryTransaction, tf, redoScan, redoLWM, 
-                        ttabInstant);
+				// let worker threads redo the changes to pages, if asked to
+				ParallelRedo parallelRedo = null;
+				if (recoveryRedoThreads > 0)
+				{
+					parallelRedo = new ParallelRedo(
+                        tf, rawStoreFactory,
+                        (DaemonFactory) startSystemModule(
+                            org.apache.derby.shared.common.reference.Module.DaemonFactory),
+                        recoveryRedoThreads);
+				}
+
+				long logEnd;
+				try
+				{
+					logEnd = 
+                        logger.redo(
+                            recoveryTransaction, tf, redoScan, redoLWM, 
+                            ttabInstant,
+                            currentCheckpoint == null ?
+                                LogCounter.INVALID_LOG_INSTANT : checkpointInstant,
+                            parallelRedo);
+				}
+				finally
+				{
+					if (parallelRedo != null)
+						parallelRedo.close();
+				}
 
 				inRedo = false;
 				
@@ -1374,6 +1502,10 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 
             // use the same daemon for the cache cleaner
             dataFactory.setupCacheCleaner(checkpointDaemon);
+
+            incrementalCheckpoints =
+                !ReadOnlyDB && dataFactory.isIncrementalCheckpointEnabled();
+            nextPageWriteRequest = checkpointInterval / PAGE_WRITE_REQUESTS;
         }
 	}
 
@@ -1504,7 +1636,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		}
 
 		// call checkpoint with no pre-started transaction
-		boolean done = checkpointWithTran(null, rsf, df, tf, wait);
+		boolean done = checkpointWithTran(null, rsf, df, tf, wait, false);
 
 		return done;
 	}
@@ -1519,6 +1651,9 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
                             wait=true then this routine will wait for the 
                             checkpoint to complete and the do another checkpoint
                             and wait for it to finish before returning.
+        @param incremental  If true, the buffer cache is not cleaned, the
+                            redoLWM is the oldest change which has not been
+                            written by the page writers yet.
 
 		@exception StandardException Derby Standard Error Policy 
 	*/
@@ -1527,7 +1662,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
     RawStoreFactory     rsf,
     DataFactory         df,
     TransactionFactory  tf,
-    boolean             wait)
+    boolean             wait,
+    boolean             incremental)
 		 throws StandardException
 	{
 		LogInstant  redoLWM;
@@ -1661,6 +1797,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 				logWrittenFromLastCheckPoint = -endPosition;
 			}
 
+			nextPageWriteRequest = checkpointInterval / PAGE_WRITE_REQUESTS;
+
 			if (SanityManager.DEBUG)
 			{
 				// if this debug flag is set on, just switch log file
@@ -1707,7 +1845,22 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			/////////////////////////////////////////////////////
 			// clean the buffer cache
 			/////////////////////////////////////////////////////
-			df.checkpoint();
+			if (incremental)
+			{
+				// The page writers have written out the pages changed long
+				// ago. Don't write the others, start redo at the oldest
+				// change which has not been written instead.
+				LogInstant oldest = df.incrementalCheckpoint();
+				if (oldest != null && oldest.lessThan(redoLWM))
+				{
+					redoLWM = oldest;
+					redoLWM_long = ((LogCounter) oldest).getValueAsLong();
+				}
+			}
+			else
+			{
+				df.checkpoint();
+			}
 
 
 			/////////////////////////////////////////////////////
@@ -1769,6 +1922,9 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			if (!logArchived())
 			{
 				truncateLog(currentCheckpoint);
+
+				// get the spare log files ready for the next log switches
+				prepareSpareLogFiles();
 			}
 
 			// delete the committted container drop stubs 
@@ -1959,7 +2115,25 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 								long prevLogRecordEndInstant)
 		 throws IOException, StandardException
 	{
-		if (newlog.length() != 0)
+		return initLogFile(newlog, number, prevLogRecordEndInstant, false);
+	}
+
+	/**
+		Initialize the log to the correct format with the given version and
+		log file number, optionally reusing a spare log file.
+
+		@param recycled true if newlog is a spare log file, which is not
+		empty but contains only zeros
+
+		@return true if the log file was initialized, else false.
+
+		@exception IOException if new log file cannot be accessed or initialized
+	*/
+	private boolean initLogFile(StorageRandomAccessFile newlog, long number,
+								long prevLogRecordEndInstant, boolean recycled)
+		 throws IOException, StandardException
+	{
+		if (!recycled && newlog.length() != 0)
 			return false;
 
 		if (SanityManager.DEBUG)
@@ -2050,6 +2224,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
             }
 
 			StorageRandomAccessFile newLog = null;	// the new log file
+			boolean recycled = false;	// the new log file was a spare
 			try 
 			{
 				// if the log file exist and cannot be deleted, cannot
@@ -2062,6 +2237,16 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 					return;
 				}
 
+				// use a spare log file if there is one, it doesn't have to
+				// be created and extended.
+				StorageFile spare = takeSpareLogFile();
+				if (spare != null)
+				{
+					recycled = privRenameTo(spare, newLogFile);
+					if (!recycled)
+						privDelete(spare);
+				}
+
 				try
 				{
                     newLog =   privRandomAccessFile(newLogFile, "rw");
@@ -2081,7 +2266,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 				}
 
 				if (initLogFile(newLog, logFileNumber+1,
-								LogCounter.makeLogInstantAsLong(logFileNumber, endPosition)))
+								LogCounter.makeLogInstantAsLong(logFileNumber, endPosition),
+								recycled))
 				{
 
 					// New log file init ok, close the old one and
@@ -2119,8 +2305,10 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 					
 					if(isWriteSynced)
 					{
-						//extend the file by wring zeros to it
-						preAllocateNewLogFile(newLog);
+						//extend the file by wring zeros to it, unless it is
+						//a spare file which already has been extended
+						if (!recycled)
+							preAllocateNewLogFile(newLog);
 						newLog.close();
 						newLog = openLogFileInWriteMode(newLogFile);
 						newLog.seek(endPosition);
@@ -2297,7 +2485,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			try
 			{
 				uselessLogFile = getLogFileName(oldFirstLog);
-                if (privDelete(uselessLogFile))
+                if (recycleLogFile(uselessLogFile))
 				{
 					if (SanityManager.DEBUG)
 					{
@@ -2327,6 +2515,249 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		}
 	}
 
+	/**
+		Get the name of a spare log file.
+
+		@param number the number of the spare file
+		@param ready true for a file that has been zeroed, false for a
+		recycled log file that still has to be zeroed
+
+		<P> MT- read only
+	*/
+	private StorageFile getSpareLogFileName(long number, boolean ready)
+		throws StandardException
+	{
+		return logStorageFactory.newStorageFile(
+			getLogDirectory(), "spare" + number + (ready ? ".dat" : ".tmp"));
+	}
+
+	/**
+		Get rid of a log file which is not needed anymore. If more spare log
+		files are wanted, the file is renamed to a recycled file which will
+		be turned into a spare at the end of the checkpoint, otherwise it is
+		deleted.
+
+		@return true if the log file was recycled or deleted
+
+		@exception StandardException Standard Derby error policy
+	*/
+	private boolean recycleLogFile(StorageFile logFile)
+		throws StandardException
+	{
+		// make sure the number of the new file isn't used by a spare
+		// file left by an earlier boot
+		if (logSpareFiles > 0)
+			findSpareLogFiles();
+
+		// Reserve a place for the recycled file, but rename it outside of
+		// the monitor. privRenameTo() synchronizes on this object, and a
+		// log switch takes spare files while it holds that monitor.
+		StorageFile recycled = null;
+		synchronized (spareLogFiles)
+		{
+			if (spareLogFiles.size() + recycledLogFiles.size() +
+					recyclingLogFiles < logSpareFiles)
+			{
+				recycled =
+					getSpareLogFileName(nextSpareLogFileNumber++, false);
+				recyclingLogFiles++;
+			}
+		}
+
+		if (recycled != null)
+		{
+			boolean renamed = privRenameTo(logFile, recycled);
+
+			synchronized (spareLogFiles)
+			{
+				recyclingLogFiles--;
+				if (renamed)
+					recycledLogFiles.add(recycled);
+			}
+
+			if (renamed)
+				return true;
+		}
+
+		return privDelete(logFile);
+	}
+
+	/**
+		Take a spare log file from the pool.
+
+		@return a spare log file, or null if there is none
+	*/
+	private StorageFile takeSpareLogFile()
+	{
+		synchronized (spareLogFiles)
+		{
+			return spareLogFiles.poll();
+		}
+	}
+
+	/**
+		Turn recycled log files into spare log files by zeroing them, and
+		create new spare files until there are as many as wanted. Called at
+		the end of a checkpoint, outside of the log monitor, so that log
+		switches don't have to do this work.
+
+		<P> MT- only called by the thread doing the checkpoint
+	*/
+	private void prepareSpareLogFiles()
+	{
+		if (ReadOnlyDB)
+			return;
+
+		try
+		{
+			findSpareLogFiles();
+
+			while (true)
+			{
+				StorageFile recycled;
+				long number;
+				synchronized (spareLogFiles)
+				{
+					recycled = recycledLogFiles.poll();
+					if (recycled == null)
+					{
+						if (spareLogFiles.size() >= logSpareFiles)
+							break;
+						// create a new spare file
+						recycled = getSpareLogFileName(
+							nextSpareLogFileNumber, false);
+					}
+					number = nextSpareLogFileNumber++;
+				}
+
+				StorageFile spare = getSpareLogFileName(number, true);
+				if (!zeroLogFile(recycled) ||
+					!privRenameTo(recycled, spare))
+				{
+					privDelete(recycled);
+					break;
+				}
+
+				synchronized (spareLogFiles)
+				{
+					spareLogFiles.add(spare);
+				}
+			}
+		}
+		catch (StandardException se)
+		{
+			// spare files are only an optimization, log switches will
+			// create new log files
+			if (SanityManager.DEBUG)
+			{
+				if (SanityManager.DEBUG_ON(LogToFile.DBG_FLAG))
+					SanityManager.DEBUG(DBG_FLAG,
+						"error preparing spare log files " + se);
+			}
+		}
+	}
+
+	/**
+		Look for spare log files left by an earlier boot of the database.
+		Spare files which are not wanted anymore, and recycled files which
+		may not have been zeroed completely, are deleted.
+
+		<P> MT- only called by the thread doing the checkpoint
+	*/
+	private void findSpareLogFiles() throws StandardException
+	{
+		if (spareLogFilesFound)
+			return;
+		spareLogFilesFound = true;
+
+		String[] files = privList(getLogDirectory());
+		if (files == null)
+			return;
+
+		for (int i = 0; i < files.length; i++)
+		{
+			String name = files[i];
+			if (!name.startsWith("spare") ||
+				!(name.endsWith(".dat") || name.endsWith(".tmp")))
+				continue;
+
+			long number;
+			try
+			{
+				number = Long.parseLong(name.substring(5, name.length() - 4));
+			}
+			catch (NumberFormatException nfe)
+			{
+				continue;
+			}
+
+			StorageFile file =
+				logStorageFactory.newStorageFile(getLogDirectory(), name);
+
+			synchronized (spareLogFiles)
+			{
+				if (number >= nextSpareLogFileNumber)
+					nextSpareLogFileNumber = number + 1;
+
+				if (name.endsWith(".dat") &&
+					spareLogFiles.size() < logSpareFiles)
+				{
+					spareLogFiles.add(file);
+					continue;
+				}
+			}
+
+			privDelete(file);
+		}
+	}
+
+	/**
+		Overwrite a file with zeros and make its length the size of a
+		preallocated log file.
+
+		@return true if the file was zeroed and synced
+	*/
+	private boolean zeroLogFile(StorageFile file)
+	{
+		StorageRandomAccessFile raf = null;
+		try
+		{
+			raf = privRandomAccessFile(file, "rw");
+			raf.setLength(logSwitchInterval);
+			raf.seek(0);
+
+			byte[] zeros = new byte[logBufferSize * 2];
+			for (long left = logSwitchInterval; left > 0; )
+			{
+				int n = (int) Math.min(left, zeros.length);
+				raf.write(zeros, 0, n);
+				left -= n;
+			}
+
+			syncFile(raf);
+			return true;
+		}
+		catch (IOException ioe)
+		{
+			return false;
+		}
+		catch (StandardException se)
+		{
+			return false;
+		}
+		finally
+		{
+			if (raf != null)
+			{
+				try
+				{
+					raf.close();
+				}
+				catch (IOException ioe) {}
+			}
+		}
+	}
+
    
 
     /**
@@ -2346,9 +2777,13 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		// one truncation at a time
 		synchronized (this)
 		{
+			// the redoLWM of an incremental checkpoint may be before the
+			// undoLWM
 			firstLogNeeded = 
                 (checkpoint != null ? 
-                     LogCounter.getLogFileNumber(checkpoint.undoLWM()) : -1);
+                     LogCounter.getLogFileNumber(
+                         Math.min(checkpoint.undoLWM(),
+                                  checkpoint.redoLWM())) : -1);
 
 			if (SanityManager.DEBUG)
 			{
@@ -3213,6 +3648,18 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 												   LOG_BUFFER_SIZE_MIN, 
 												   LOG_BUFFER_SIZE_MAX, 
 												   DEFAULT_LOG_BUFFER_SIZE);
+
+		logSpareFiles = PropertyUtil.getSystemInt(
+			org.apache.derby.shared.common.reference.Property.LOG_SPARE_FILES,
+			0, LOG_SPARE_FILES_MAX, 0);
+		recoveryRedoThreads = PropertyUtil.getSystemInt(
+			org.apache.derby.shared.common.reference.Property.RECOVERY_REDO_THREADS,
+			0, RECOVERY_REDO_THREADS_MAX, 0);
+		logCompressionThreshold = PropertyUtil.getSystemInt(
+			org.apache.derby.shared.common.reference.Property.LOG_COMPRESSION_THRESHOLD,
+			0, Integer.MAX_VALUE, 0);
+		logCompressionStatistics =
+			new LogCompressionStatistics(logCompressionThreshold);
 		jbmsVersion = getMonitor().getEngineVersion();
 
 		
@@ -3552,6 +3999,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 						   mon_flushCalls +
 						   "\nnumber of sync is called = " +
 						   mon_syncCalls +
+						   "\nnumber of group commit delays = " +
+						   mon_numGroupCommitDelays +
 						   "\ntotal number of bytes written to log = " +
 						   LogAccessFile.mon_numBytesToLog +
 						   "\ntotal number of writes to log file = " +
@@ -3663,14 +4112,17 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 	{
 		String lsInterval;
 		String cpInterval;
+		String gcDelay;
 		if(set == null)
 		{
 			lsInterval=PropertyUtil.getSystemProperty(org.apache.derby.shared.common.reference.Property.LOG_SWITCH_INTERVAL);
 			cpInterval=PropertyUtil.getSystemProperty(org.apache.derby.shared.common.reference.Property.CHECKPOINT_INTERVAL);
+			gcDelay=PropertyUtil.getSystemProperty(org.apache.derby.shared.common.reference.Property.LOG_GROUP_COMMIT_DELAY);
 		}else
 		{
 			lsInterval = PropertyUtil.getServiceProperty(set, org.apache.derby.shared.common.reference.Property.LOG_SWITCH_INTERVAL);
 			cpInterval = PropertyUtil.getServiceProperty(set, org.apache.derby.shared.common.reference.Property.CHECKPOINT_INTERVAL);
+			gcDelay = PropertyUtil.getServiceProperty(set, org.apache.derby.shared.common.reference.Property.LOG_GROUP_COMMIT_DELAY);
 		}
 
 		/* log switch interval */
@@ -3693,6 +4145,30 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			else if(checkpointInterval  > CHECKPOINT_INTERVAL_MAX)
 				checkpointInterval = CHECKPOINT_INTERVAL_MAX;
 		}
+
+		/* group commit delay */
+		if (gcDelay != null)
+		{
+			int delay = 0;
+			try
+			{
+				delay = Integer.parseInt(gcDelay.trim());
+			}
+			catch (NumberFormatException nfe)
+			{
+				// ignore the value and don't delay commits
+			}
+
+			if (delay < 0)
+				delay = 0;
+			else if (delay > GROUP_COMMIT_DELAY_MAX)
+				delay = GROUP_COMMIT_DELAY_MAX;
+
+			synchronized (this)
+			{
+				groupCommitDelay = delay;
+			}
+		}
 	}
 
 	public int performWork(ContextManager context)
@@ -3728,7 +4204,16 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 
 			// checkpoint will start its own internal transaction on the current
 			// context.
-			rawStoreFactory.checkpoint();
+			if (incrementalCheckpoints && !inReplicationSlavePreMode)
+			{
+				checkpointWithTran(
+                    null, rawStoreFactory, dataFactory,
+                    rawStoreFactory.getXactFactory(), true, true);
+			}
+			else
+			{
+				rawStoreFactory.checkpoint();
+			}
 		}
 		catch (StandardException se)
 		{
@@ -3974,6 +4459,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			try
 			{
 				boolean waited;
+				boolean delayed = false;
 				do
 				{
 					// THIS CORRUPT CHECK MUST BE FIRST, before any check that
@@ -4043,13 +4529,25 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 
 					// There could be multiple threads who wants to flush the 
                     // log file, see if I can be the one.
-					if (logBeingFlushed)
+					if (logBeingFlushed || inCommitDelay)
 					{
 						waited = true;
+						flushWaiters++;
 						try
 						{
 							if (Performance.MEASURE)
 								mon_numLogFlushWaits++;
+
+							// if a flusher is waiting for a group of
+							// committers to form and this thread completes
+							// the group, don't make it wait any longer.
+							if (inCommitDelay && !commitDelayNotified &&
+								flushWaiters + 1 >= lastGroupSize)
+							{
+								commitDelayNotified = true;
+								notifyAll();
+							}
+
 							wait();	// release log semaphore to let non-flushing
 							// threads log stuff while all the flushing 
 							// threads wait.
@@ -4062,6 +4560,21 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 						{
                             InterruptStatus.setInterrupted();
 						}
+						finally
+						{
+							flushWaiters--;
+						}
+					}
+					else if (!delayed && groupCommitDelay > 0 &&
+							 lastGroupSize > 1)
+					{
+						// The last sync was shared by several threads, so
+						// there are probably more commits on their way. Give
+						// them a chance to join this sync, then go back and
+						// recheck everything since the monitor was released.
+						delayed = true;
+						waited = true;
+						waitForCommitGroup();
 					}
 					else
 					{
@@ -4192,6 +4705,11 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 					lastFlush = potentialLastFlush;
 				}
 
+				// the threads waiting now will be served by this sync or
+				// by the next one, use their number to decide whether the
+				// next flusher should wait for a group to form.
+				lastGroupSize = flushWaiters + 1;
+
 
 				// We may actually have flushed more than that because someone
 				// may have done a logOut.flushBuffer right before the sync
@@ -4243,6 +4761,88 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 				}
 			}
 		}
+
+		// keep the page writers going between incremental checkpoints
+		if (incrementalCheckpoints &&
+			(logWrittenFromLastCheckPoint + potentialLastFlush) >
+				nextPageWriteRequest)
+		{
+			synchronized(this)
+			{
+				// recheck, another thread may have made the request
+				if ((logWrittenFromLastCheckPoint + potentialLastFlush) >
+						nextPageWriteRequest)
+				{
+					requestPageWrites(
+						logWrittenFromLastCheckPoint + potentialLastFlush);
+				}
+			}
+		}
+	}
+
+	/**
+		Ask the page writers to write the pages with changes older than the
+		end of the log at the time of the request PAGE_WRITE_LAG requests
+		ago.
+
+		@param logWritten the amount of log written from the last checkpoint
+
+		<P>MT - caller must be synchronized on this
+	*/
+	private void requestPageWrites(long logWritten)
+	{
+		nextPageWriteRequest =
+			logWritten + checkpointInterval / PAGE_WRITE_REQUESTS;
+
+		long olderThan = pageWriteInstants[pageWriteSlot];
+		pageWriteInstants[pageWriteSlot] = currentInstant();
+		pageWriteSlot = (pageWriteSlot + 1) % PAGE_WRITE_LAG;
+
+		if (olderThan != LogCounter.INVALID_LOG_INSTANT)
+			dataFactory.writeDirtyPages(new LogCounter(olderThan));
+	}
+
+	/**
+		Wait up to groupCommitDelay microseconds for other threads to request
+		a log flush, or until as many threads as were served by the previous
+		sync are waiting. Other threads that want to flush the log wait for
+		this thread while the delay is in progress.
+
+		<P>MT - caller must be synchronized on this
+	*/
+	private void waitForCommitGroup()
+	{
+		if (Performance.MEASURE)
+			mon_numGroupCommitDelays++;
+
+		inCommitDelay = true;
+		commitDelayNotified = false;
+		try
+		{
+			long remaining = groupCommitDelay * 1000L;
+			long deadline = System.nanoTime() + remaining;
+
+			while (remaining > 0 && flushWaiters + 1 < lastGroupSize &&
+				   corrupt == null)
+			{
+				try
+				{
+					wait(remaining / 1000000L, (int) (remaining % 1000000L));
+				}
+				catch (InterruptedException ie)
+				{
+					InterruptStatus.setInterrupted();
+				}
+				remaining = deadline - System.nanoTime();
+			}
+		}
+		finally
+		{
+			inCommitDelay = false;
+			// wake up the threads that are waiting for the delay to end,
+			// so that they check again whether they need to flush
+			notifyAll();
+		}
 	}
 
     /**
@@ -5674,6 +6274,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
     */
 	private int action;
 	private StorageFile activeFile;
+	private StorageFile renameToFile;
 	private File toFile;
 	private String activePerms;
 
@@ -5805,6 +6406,21 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		return runBooleanAction(7, file);
 	}
 
+	private synchronized boolean privRenameTo(StorageFile from, StorageFile to)
+	{
+		action = 11;
+		activeFile = from;
+		renameToFile = to;
+		try
+		{
+			return ((Boolean) java.security.AccessController.doPrivileged(this)).booleanValue();
+		}
+		catch (java.security.PrivilegedActionException pae)
+		{
+			return false;
+		}
+	}
+
 
 	private synchronized boolean runBooleanAction(int action, StorageFile file) {
 		this.action = action;
@@ -5877,6 +6493,9 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
             return FileUtil.copyFile(logStorageFactory, toFile, activeFile);
         case 10:
         	return(new OutputStreamWriter(activeFile.getOutputStream(),"UTF8"));
+        case 11:
+			// SECURITY PERMISSION - OP4
+            return activeFile.renameTo(renameToFile);
 
 		default:
 			return null;
@@ -5938,6 +6557,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
             sb.append("  mon_flushCalls=" + mon_flushCalls + "\n");
             sb.append("  mon_syncCalls=" + mon_syncCalls + "\n");
             sb.append("  mon_numLogFlushWaits=" + mon_numLogFlushWaits + "\n");
+            sb.append("  mon_numGroupCommitDelays=" + mon_numGroupCommitDelays + "\n");
+            sb.append("  groupCommitDelay=" + groupCommitDelay + "\n");
             sb.append("  mon_LogSyncStatistics=" + mon_LogSyncStatistics + "\n");
             sb.append("  corrupt=" + corrupt + "\n");
             sb.append("  isFrozen=" + isFrozen + "\n");
@@ -5992,6 +6613,31 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
              );
     }
 
+    /**
+     * Privileged startup. Must be private so that user code
+     * can't call this entry point.
+     */
+    private  static  Object  startSystemModule( final String factoryInterface )
+        throws StandardException
+    {
+        try {
+            return AccessController.doPrivileged
+                (
+                 new PrivilegedExceptionAction<Object>()
+                 {
+                     public Object run()
+                         throws StandardException
+                     {
+                         return Monitor.startSystemModule( factoryInterface );
+                     }
+                 }
+                 );
+        } catch (PrivilegedActionException pae)
+        {
+            throw StandardException.plainWrapException( pae );
+        }
+    }
+
     /**
      * Privileged startup. Must be private so that user code
      * can't call this entry point.
@@ -0,0 +1,420 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.log.ParallelRedo
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package org.apache.derby.impl.store.raw.log;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.daemon.DaemonFactory;
+import org.apache.derby.iapi.services.daemon.DaemonService;
+import org.apache.derby.iapi.services.daemon.Serviceable;
+import org.apache.derby.iapi.services.io.ArrayInputStream;
+import org.apache.derby.iapi.store.raw.ContainerKey;
+import org.apache.derby.iapi.store.raw.Loggable;
+import org.apache.derby.iapi.store.raw.RawStoreFactory;
+import org.apache.derby.iapi.store.raw.xact.RawTransaction;
+import org.apache.derby.iapi.store.raw.xact.TransactionFactory;
+import org.apache.derby.iapi.util.InterruptStatus;
+import org.apache.derby.shared.common.error.StandardException;
+
+/**
+ * Worker threads which help recovery redo the log.
+ *
+ * <p>
+ *
+ * The redo loop in <code>FileLogger</code> reads the log and hands the log
+ * records which change a single page (see <code>PageLoggable</code>) to
+ * the workers. The records are partitioned by container, so the records of
+ * a container are all applied by the same worker, in log order. Each worker
+ * applies its records in its own <code>DaemonService</code> thread, with a
+ * transaction of its own that is started with
+ * <code>TransactionFactory.startRedoTransaction()</code>.
+ *
+ * <p>
+ *
+ * Any other log record that needs redo, such as the creation or removal of
+ * a container, is applied by the redo loop itself after waiting for all
+ * the queued records to be applied. Records which begin or end
+ * transactions are handled by the redo loop without waiting, since they
+ * don't change any page.
+ *
+ * <p>
+ *
+ * MT - the redo loop calls <code>redo()</code>, <code>waitForAll()</code>
+ * and <code>close()</code> from a single thread.
+ */
+final class ParallelRedo {
+
+    /**
+     * The largest number of log records which may be queued and not yet
+     * applied, so that the redo loop doesn't read far ahead of the workers.
+     */
+    private static final int MAX_PENDING = 4096;
+
+    private final TransactionFactory transFactory;
+    private final RawStoreFactory rawStoreFactory;
+
+    /** The service threads of the workers. */
+    private final DaemonService[] daemons;
+
+    /** The workers, one for each service thread. */
+    private final Worker[] workers;
+
+    /** Number of queued log records not yet applied. Guarded by this. */
+    private int pending;
+
+    /**
+     * The first error a worker ran into, or null. Once set, the workers
+     * skip the records that are still queued. Guarded by this.
+     */
+    private Throwable error;
+
+    /** The log operation which failed with the error. Guarded by this. */
+    private Loggable failedOp;
+
+    /**
+     * Set when redo has been given up, the workers then skip the records
+     * that are still queued.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Create workers for recovery redo.
+     *
+     * @param tf the transaction factory
+     * @param rsf the raw store factory
+     * @param daemonFactory factory for the service threads
+     * @param threads the number of workers
+     *
+     * @exception StandardException a service thread could not be created
+     */
+    ParallelRedo(TransactionFactory tf, RawStoreFactory rsf,
+                 DaemonFactory daemonFactory, int threads)
+            throws StandardException {
+        transFactory = tf;
+        rawStoreFactory = rsf;
+        daemons = new DaemonService[threads];
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            daemons[i] = daemonFactory.createNewDaemon("redoDaemon");
+            workers[i] = new Worker(daemons[i]);
+        }
+    }
+
+    /**
+     * Queue a log record to be applied by the worker for its container.
+     * Wait if too many records are queued already.
+     *
+     * @param containerId the container the log record changes
+     * @param op the log operation
+     * @param instant the instant of the log record
+     * @param data the optional data of the log record
+     *
+     * @exception StandardException a worker failed to apply a record
+     * @exception IOException a worker failed to apply a record
+     */
+    void redo(ContainerKey containerId, Loggable op, long instant,
+              byte[] data) throws StandardException, IOException {
+        synchronized (this) {
+            while (pending >= MAX_PENDING && error == null) {
+                waitForWorkers();
+            }
+            checkError();
+            pending++;
+        }
+
+        Worker w = workers[(containerId.hashCode() & 0x7fffffff) %
+                           workers.length];
+        w.queue.add(new RedoRecord(op, instant, data));
+        w.requestService();
+    }
+
+    /**
+     * Wait until all the queued log records have been applied.
+     *
+     * @exception StandardException a worker failed to apply a record
+     * @exception IOException a worker failed to apply a record
+     */
+    synchronized void waitForAll() throws StandardException, IOException {
+        while (pending > 0 && error == null) {
+            waitForWorkers();
+        }
+        checkError();
+    }
+
+    /**
+     * Get the log operation a worker failed to apply.
+     *
+     * @return the failed log operation, or null if no worker has failed
+     */
+    synchronized Loggable getFailedOp() {
+        return failedOp;
+    }
+
+    /**
+     * Stop the workers. Records which are still queued are not applied.
+     * Wait until no worker is applying a record any more, so that the
+     * caller may go on or give up recovery without the workers changing
+     * any page behind its back.
+     */
+    void close() {
+        stopped = true;
+        synchronized (this) {
+            while (pending > 0) {
+                waitForWorkers();
+            }
+        }
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].unsubscribe();
+            daemons[i].stop();
+        }
+    }
+
+    /**
+     * Wait for a worker to finish some work. Caller must synchronize on
+     * this.
+     */
+    private void waitForWorkers() {
+        try {
+            wait();
+        } catch (InterruptedException ie) {
+            InterruptStatus.setInterrupted();
+        }
+    }
+
+    /**
+     * Throw the error a worker ran into, if any. Caller must synchronize
+     * on this.
+     */
+    private void checkError() throws StandardException, IOException {
+        if (error == null) {
+            return;
+        }
+        if (error instanceof StandardException) {
+            throw (StandardException) error;
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw StandardException.plainWrapException(error);
+    }
+
+    /**
+     * Called by a worker when it has applied or skipped a number of
+     * records.
+     */
+    private synchronized void applied(int count) {
+        pending -= count;
+        notifyAll();
+    }
+
+    /**
+     * Called by a worker when it failed to apply a log record.
+     */
+    private synchronized void failed(Loggable op, Throwable t) {
+        if (error == null) {
+            error = t;
+            failedOp = op;
+        }
+        notifyAll();
+    }
+
+    /** Check if the workers should skip the queued records. */
+    private synchronized boolean skipping() {
+        return stopped || error != null;
+    }
+
+    /**
+     * A log record which is queued for a worker.
+     */
+    private static final class RedoRecord {
+        final Loggable op;
+        final long instant;
+        final byte[] data;
+
+        RedoRecord(Loggable op, long instant, byte[] data) {
+            this.op = op;
+            this.instant = instant;
+            this.data = data;
+        }
+    }
+
+    /**
+     * One worker, serviced by its own daemon service.
+     */
+    private final class Worker implements Serviceable {
+
+        /** The service thread which applies the records. */
+        private final DaemonService daemonService;
+
+        /** Subscription number for this <code>Serviceable</code>. */
+        private final int clientNumber;
+
+        /** The records to apply, in log order. */
+        final ConcurrentLinkedQueue<RedoRecord> queue =
+                new ConcurrentLinkedQueue<RedoRecord>();
+
+        /**
+         * Flag which tells whether the worker has a still unprocessed job
+         * scheduled with the daemon service.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Worker(DaemonService daemon) {
+            daemonService = daemon;
+            // subscribe with the onDemandOnly flag
+            clientNumber = daemon.subscribe(this, true);
+        }
+
+        /**
+         * Notify the daemon service that the worker needs to be serviced.
+         */
+        void requestService() {
+            // Only call serviceNow() if we don't already have a request
+            // pending, see BackgroundCleaner.requestService().
+            if (scheduled.compareAndSet(false, true)) {
+                daemonService.serviceNow(clientNumber);
+            }
+        }
+
+        void unsubscribe() {
+            daemonService.unsubscribe(clientNumber);
+        }
+
+        /**
+         * Apply the queued records until the queue is empty.
+         *
+         * @param context the context manager of the service thread
+         * @return <code>Serviceable.DONE</code>
+         */
+        public int performWork(ContextManager context) {
+            // allow others to schedule more work
+            scheduled.set(false);
+
+            RedoRecord record = queue.poll();
+            if (record == null) {
+                return Serviceable.DONE;
+            }
+
+            RawTransaction t = null;
+            try {
+                for (; record != null; record = queue.poll()) {
+                    if (!skipping()) {
+                        if (t == null) {
+                            t = transFactory.startRedoTransaction(
+                                    rawStoreFactory, context);
+                        }
+                        apply(t, record);
+                    }
+                    applied(1);
+                }
+                if (t != null) {
+                    // nothing has been logged, so this only releases the
+                    // resources of the transaction
+                    t.commit();
+                    t.close();
+                    t = null;
+                }
+            } catch (Throwable th) {
+                if (record == null) {
+                    failed(null, th);
+                    applied(skipQueued());
+                } else {
+                    failed(record.op, th);
+                    applied(1 + skipQueued());
+                }
+            } finally {
+                if (t != null) {
+                    abortTransaction(t);
+                }
+            }
+
+            return Serviceable.DONE;
+        }
+
+        /**
+         * Redo one log record with the worker's transaction.
+         */
+        private void apply(RawTransaction t, RedoRecord record)
+                throws StandardException, IOException {
+            Loggable op = record.op;
+            try {
+                if (op.needsRedo(t)) {
+                    ArrayInputStream in = new ArrayInputStream(record.data);
+                    op.doMe(t, new LogCounter(record.instant), in);
+                }
+            } finally {
+                op.releaseResource(t);
+            }
+        }
+
+        /**
+         * Remove all the records from the queue without applying them.
+         *
+         * @return the number of records removed
+         */
+        private int skipQueued() {
+            int count = 0;
+            while (queue.poll() != null) {
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Abort and close the worker's transaction after an error.
+         */
+        private void abortTransaction(RawTransaction t) {
+            try {
+                t.abort();
+                t.close();
+            } catch (StandardException se) {
+                // the error which made us abort has been saved already
+            }
+        }
+
+        /**
+         * Indicate that we want to be serviced ASAP.
+         * @return <code>true</code>
+         */
+        public boolean serviceASAP() {
+            return true;
+        }
+
+        /**
+         * Indicate that we don't want the work to happen immediately in
+         * the user thread.
+         * @return <code>false</code>
+         */
+        public boolean serviceImmediately() {
+            return false;
+        }
+    }
+}
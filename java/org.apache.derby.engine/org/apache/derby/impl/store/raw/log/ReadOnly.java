@@ -48,6 +48,7 @@ import org.apache.derby.shared.common.error.StandardException;
 
 import org.apache.derby.io.StorageFile;
 import org.apache.derby.iapi.store.access.DatabaseInstant;
+import org.apache.derby.iapi.store.access.LogCompressionInfo;
 import org.apache.derby.catalog.UUID;
 
 import java.util.Properties;
@@ -488,4 +489,13 @@ public class ReadOnly implements LogFactory, ModuleSupportable {
     public void stopReplicationMasterRole() {
     }
 
+    /**
+     * No log records are written to a read only database.
+     *
+     * @return null
+     */
+    public LogCompressionInfo getLogCompressionInfo() {
+        return null;
+    }
+
 }
@@ -39,6 +39,8 @@ import org.apache.derby.iapi.store.raw.xact.TransactionId;
 import org.apache.derby.iapi.services.io.CompressedNumber;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 import java.io.ObjectOutput;
@@ -83,6 +85,14 @@ import java.io.IOException;
     recovery don't need to take MT considerations, and can safely use iterators
     with no additional synchronization.
 
+	<P>The update transactions are kept in a number of partitions, chosen by
+	the transaction id. A transaction that starts or stops updating only
+	synchronizes on its own partition, so that transactions in different
+	partitions don't serialize on a single monitor. Writing out the table in
+	a checkpoint synchronizes on all the partitions. Each partition keeps its
+	update transactions ordered by their first log instant, so that finding
+	the oldest one does not require a scan of all the transactions.
+
 */
 
 public class TransactionTable implements Formatable
@@ -93,7 +103,45 @@ public class TransactionTable implements Formatable
 
     private final ConcurrentHashMap<TransactionId, TransactionTableEntry> trans;
 
-	private TransactionId largestUpdateXactId;
+    /** The maximum number of partitions of the update transactions. */
+    private static final int MAX_PARTITIONS = 64;
+
+    /**
+     * The partitions of the update transactions. The number of partitions
+     * is a power of two.
+     */
+    private final Partition[] partitions;
+
+    /**
+     * Order update transaction table entries by their first log instant,
+     * and entries with the same first log instant by transaction id.
+     */
+    private static final Comparator<TransactionTableEntry> FIRST_LOG_ORDER =
+        new Comparator<TransactionTableEntry>() {
+            public int compare(TransactionTableEntry a, TransactionTableEntry b)
+            {
+                if (a.updateFirstLog.lessThan(b.updateFirstLog))
+                    return -1;
+                if (b.updateFirstLog.lessThan(a.updateFirstLog))
+                    return 1;
+                return Long.signum(XactId.compare(a.getXid(), b.getXid()));
+            }
+        };
+
+    /**
+     * A partition of the update transactions in the table.
+     *
+     * <BR> MT - java synchronized(this)
+     */
+    private static final class Partition
+    {
+        /** The update transactions, ordered by their first log instant. */
+        final TreeSet<TransactionTableEntry> updates =
+            new TreeSet<TransactionTableEntry>(FIRST_LOG_ORDER);
+
+        /** The largest id of an update transaction in this partition. */
+        TransactionId largestUpdateXactId;
+    }
 
 	/**
 		MT - not needed for constructor
@@ -101,8 +149,81 @@ public class TransactionTable implements Formatable
 	public TransactionTable()
 	{
         trans = new ConcurrentHashMap<TransactionId, TransactionTableEntry>();
+
+        // a few partitions per processor, so that there is little contention
+        // between the transactions updating the table
+        int count = 1;
+        int processors = Runtime.getRuntime().availableProcessors();
+        while (count < 4 * processors && count < MAX_PARTITIONS)
+            count <<= 1;
+
+        partitions = new Partition[count];
+        for (int i = 0; i < count; i++)
+            partitions[i] = new Partition();
 	}
 
+    /**
+     * Get the partition of the update transactions that a transaction
+     * belongs to.
+     *
+     * @param id the transaction id
+     * @return the partition of the transaction
+     */
+    private Partition getPartition(TransactionId id)
+    {
+        int h = id.hashCode();
+        return partitions[(h ^ (h >>> 16)) & (partitions.length - 1)];
+    }
+
+    /**
+     * Make an entry an update transaction in its partition. The first log
+     * instant of the entry is remembered, so that the entry can be found in
+     * the partition's ordered set again when it stops updating.
+     *
+     * <P>MT - caller must synchronize on the partition.
+     */
+    private static void addUpdateEntry(
+    Partition               partition,
+    TransactionTableEntry   ent)
+    {
+        if (ent.updateFirstLog != null)
+        {
+            // already in the set, which happens if a transaction status
+            // is updated more than once
+            return;
+        }
+
+        ent.updateFirstLog = ent.getFirstLog();
+
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT(
+                ent.updateFirstLog != null,
+                "update transaction has firstLog = null");
+        }
+
+        partition.updates.add(ent);
+
+        if (XactId.compare(ent.getXid(), partition.largestUpdateXactId) > 0)
+            partition.largestUpdateXactId = ent.getXid();
+    }
+
+    /**
+     * Remove an entry from the update transactions of its partition.
+     *
+     * <P>MT - caller must synchronize on the partition.
+     */
+    private static void removeUpdateEntry(
+    Partition               partition,
+    TransactionTableEntry   ent)
+    {
+        if (ent.updateFirstLog != null)
+        {
+            partition.updates.remove(ent);
+            ent.updateFirstLog = null;
+        }
+    }
+
 	/*************************************************************
 	 * generic methods called by all clients of transaction table
 	 * Must be MT -safe
@@ -160,9 +281,9 @@ public class TransactionTable implements Formatable
      * {@code TransactionTableEntry} is not accessed concurrently by multiple
      * threads. If the visitor accesses some of the entry's mutable state, the
      * caller must ensure that appropriate synchronization protection is in
-     * place. For example, if accessing the update state of the entry, the
-     * caller must synchronize on "this" (the {@code TransactionTable}
-     * instance).
+     * place. Note in particular that the update state of an entry may change
+     * while it is being visited, since that is protected by the partition of
+     * the entry rather than by the {@code TransactionTable} instance.
      * </p>
      *
      * @param visitor the visitor to apply on each transaction table entry
@@ -185,25 +306,24 @@ public class TransactionTable implements Formatable
         TransactionTableEntry newEntry = new TransactionTableEntry(
                 xact, id, 0, exclude ? TransactionTableEntry.EXCLUDE : 0);
 
-		synchronized(this)
-		{
-            Object oldEntry = trans.put(id, newEntry);
+        // The new entry is not an update transaction, so there is no need
+        // to synchronize with checkpoint.
+        Object oldEntry = trans.put(id, newEntry);
 
-            if (SanityManager.DEBUG)
-            {
-                SanityManager.ASSERT(
-                        oldEntry == null,
-                        "Trying to add a transaction that's already " +
-                        "in the transaction table");
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT(
+                    oldEntry == null,
+                    "Trying to add a transaction that's already " +
+                    "in the transaction table");
 
-                if (SanityManager.DEBUG_ON("TranTrace"))
-                {
-                    SanityManager.DEBUG(
-                        "TranTrace", "adding transaction " + id);
-                    SanityManager.showTrace(new Throwable("TranTrace"));
-                }
+            if (SanityManager.DEBUG_ON("TranTrace"))
+            {
+                SanityManager.DEBUG(
+                    "TranTrace", "adding transaction " + id);
+                SanityManager.showTrace(new Throwable("TranTrace"));
             }
-		}
+        }
 
 		if (SanityManager.DEBUG) {
 
@@ -238,6 +358,19 @@ public class TransactionTable implements Formatable
 
 		// Hashtable is synchronized
 		 TransactionTableEntry ent = trans.remove(id);
+
+		 // An entry is normally not an update transaction when it is
+		 // removed, and only the transaction itself changes its update
+		 // state, so the partition only needs to be locked if it is.
+		 if (ent != null && ent.updateFirstLog != null)
+		 {
+			 Partition partition = getPartition(id);
+			 synchronized (partition)
+			 {
+				 removeUpdateEntry(partition, ent);
+			 }
+		 }
+
 		 return (ent == null || ent.needExclusion());
 	}
 
@@ -254,12 +387,13 @@ public class TransactionTable implements Formatable
 									 int transactionStatus)
 	{
 
-		// we need to synchronize on the transaction table because we have to
-		// prevent this state change from happening when the transaction table
-		// itself is written out to the checkpoint.  This is the only
-		// protection the TransactionTableEntry has to prevent fields in myxact
-		// from changing underneath it while it is being written out.
-		synchronized(this)
+		// we need to synchronize on the partition of the transaction because
+		// we have to prevent this state change from happening when the
+		// transaction table itself is written out to the checkpoint.  This is
+		// the only protection the TransactionTableEntry has to prevent fields
+		// in myxact from changing underneath it while it is being written out.
+		Partition partition = getPartition(tid);
+		synchronized(partition)
 		{
 			TransactionTableEntry ent = findTransactionEntry(tid);
 
@@ -287,8 +421,7 @@ public class TransactionTable implements Formatable
 
 			}
 
-			if (XactId.compare(ent.getXid(), largestUpdateXactId) > 0)
-				largestUpdateXactId = ent.getXid();
+			addUpdateEntry(partition, ent);
 		}
 	}
 
@@ -301,13 +434,14 @@ public class TransactionTable implements Formatable
 	  */
 	void removeUpdateTransaction(TransactionId id)
 	{
-		// we need to synchronize on the transaction table because we have to
-		// prevent this state change from happening when the transaction table
-		// itself is written out to the checkpoint.  This is the only
-		// protection the TransactionTableEntry has to prevent fields in myxact
-		// from changing underneath it while it is being written out.
-
-		synchronized (this)
+		// we need to synchronize on the partition of the transaction because
+		// we have to prevent this state change from happening when the
+		// transaction table itself is written out to the checkpoint.  This is
+		// the only protection the TransactionTableEntry has to prevent fields
+		// in myxact from changing underneath it while it is being written out.
+
+		Partition partition = getPartition(id);
+		synchronized (partition)
 		{
 			TransactionTableEntry ent = findTransactionEntry(id);
 
@@ -318,6 +452,7 @@ public class TransactionTable implements Formatable
 			}
 
 			ent.removeUpdateTransaction();
+			removeUpdateEntry(partition, ent);
 
 			// If we are committing a recovery transaction, remove it from the
 			// transaction table.  The xact object which is doing the work is
@@ -401,10 +536,9 @@ public class TransactionTable implements Formatable
 	*/
 	boolean hasActiveUpdateTransaction()
 	{
-		synchronized (this)
-		{
-            for (TransactionTableEntry entry : trans.values()) {
-                if (entry.isUpdate()) {
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                if (!partition.updates.isEmpty()) {
                     return true;
                 }
             }
@@ -435,43 +569,61 @@ public class TransactionTable implements Formatable
 		//don't let the transactions status change while writing out(beetle:5533)
         // We don't care if transactions are added or removed from the table
         // while we're writing it out, as long as the number of update
-        // transactions is constant. Synchronizing on "this" prevents other
-        // threads from adding or removing update transactions.
+        // transactions is constant. Synchronizing on all the partitions
+        // prevents other threads from adding or removing update transactions.
+        writeExternal(out, 0);
+	}
 
-		synchronized(this)
+    /**
+     * Synchronize on the partitions from the given one and up, and write out
+     * the update transactions once all the partitions are locked.
+     *
+     * @param out where to write the transaction table
+     * @param partition the first partition to synchronize on
+     * @exception IOException problem writing the transaction table
+     */
+    private void writeExternal(ObjectOutput out, int partition)
+        throws IOException
+    {
+        if (partition < partitions.length)
         {
-            int count = 0;
-            for (TransactionTableEntry entry : trans.values()) {
-                if (entry.isUpdate()) {
-                    count++;
-                }
+            synchronized (partitions[partition])
+            {
+                writeExternal(out, partition + 1);
             }
+            return;
+        }
 
-            CompressedNumber.writeInt(out, count);
+        int count = 0;
+        for (Partition p : partitions) {
+            count += p.updates.size();
+        }
 
-            // now write them out
-            if (count > 0)
-            {
-                // Count the number of writes in debug builds.
-                int writeCount = 0;
+        CompressedNumber.writeInt(out, count);
 
-                for (TransactionTableEntry entry : trans.values()) {
-                    if (entry.isUpdate()) {
-                        // only write out update transactions
-                        out.writeObject(entry);
-                        if (SanityManager.DEBUG) {
-                            writeCount++;
-                        }
+        // now write them out
+        if (count > 0)
+        {
+            // Count the number of writes in debug builds.
+            int writeCount = 0;
+
+            for (Partition p : partitions) {
+                for (TransactionTableEntry entry : p.updates) {
+                    // only update transactions are in the partitions
+                    if (SanityManager.DEBUG) {
+                        SanityManager.ASSERT(entry.isUpdate());
+                        writeCount++;
                     }
+                    out.writeObject(entry);
                 }
+            }
 
-                // Verify that we wrote the expected number of transactions.
-                if (SanityManager.DEBUG) {
-                    SanityManager.ASSERT(count == writeCount);
-                }
-			}
-		}
-	}
+            // Verify that we wrote the expected number of transactions.
+            if (SanityManager.DEBUG) {
+                SanityManager.ASSERT(count == writeCount);
+            }
+        }
+    }
 
 	/************************************************************
 	 * methods called only by recovery
@@ -505,10 +657,13 @@ public class TransactionTable implements Formatable
 
 			trans.put(ent.getXid(), ent);
 
-			if (ent.isUpdate() && 
-                XactId.compare(ent.getXid(), largestUpdateXactId) > 0)
+			if (ent.isUpdate())
             {
-				largestUpdateXactId = ent.getXid();
+				Partition partition = getPartition(ent.getXid());
+				synchronized (partition)
+				{
+					addUpdateEntry(partition, ent);
+				}
             }
 		}
 
@@ -522,6 +677,18 @@ public class TransactionTable implements Formatable
 	*/
 	public TransactionId largestUpdateXactId()
 	{
+		TransactionId largestUpdateXactId = null;
+		for (Partition partition : partitions)
+		{
+			synchronized (partition)
+			{
+				if (XactId.compare(partition.largestUpdateXactId,
+								   largestUpdateXactId) > 0)
+				{
+					largestUpdateXactId = partition.largestUpdateXactId;
+				}
+			}
+		}
 		return largestUpdateXactId;
 	}
 
@@ -842,12 +1009,16 @@ public class TransactionTable implements Formatable
 		// assume for now that it is acceptable to return null if a transaction
 		// starts right in the middle of this call.
 
+        // The partitions are ordered by first log instant, so only the first
+        // entry of each partition needs to be looked at.
         LogInstant logInstant = null;
-        for (TransactionTableEntry entry : trans.values()) {
-            if (entry.isUpdate()) {
-                if (logInstant == null ||
-                        entry.getFirstLog().lessThan(logInstant)) {
-                    logInstant = entry.getFirstLog();
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                if (!partition.updates.isEmpty()) {
+                    LogInstant first = partition.updates.first().updateFirstLog;
+                    if (logInstant == null || first.lessThan(logInstant)) {
+                        logInstant = first;
+                    }
                 }
             }
         }
@@ -928,7 +1099,7 @@ public class TransactionTable implements Formatable
 				append("\n**************************\n").
 				append(super.toString()).
 				append("\nTransaction Table: size = ").append(trans.size()).
-				append(" largestUpdateXactId = ").append(largestUpdateXactId).
+				append(" largestUpdateXactId = ").append(largestUpdateXactId()).
 				append("\n");
 
             boolean hasReadOnlyTransaction = false;
@@ -80,6 +80,11 @@ public class TransactionTableEntry implements Formatable, TransactionInfo, Clone
 	private boolean isClone;		            // am I a clone made for the 
                                                 // TransactionVTI?
 
+	// the first log instant of an update transaction, under which it is
+	// ordered in its partition of the transaction table, or null if it is
+	// not in a partition.  MT - synchronized on the partition.
+	transient LogInstant            updateFirstLog;
+
 	private transient LanguageConnectionContext lcc;
 
 
@@ -219,6 +219,10 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 	private LogInstant		logLast;  // the last log record written by this
 									  // transaction 
 
+	private volatile long	logBytes; // the number of bytes of log written
+									  // by this transaction.  Read by the
+									  // deadlock detector to pick a victim.
+
 	private Stack<SavePoint>			savePoints;	// stack of SavePoint objects.
 
 	protected List<Serviceable> postCommitWorks; // a list of post commit work
@@ -267,6 +271,18 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 	// backup copy.
 	private boolean backupBlocked;
 
+    /**
+     * The lock escalation threshold (derby.locks.escalationThreshold), 0 if
+     * {@link #setup} has not been called.
+     */
+    private int escalationThreshold;
+
+    /**
+     * The number of locks in the transaction at which the lock factory
+     * calls {@link #reached}, 0 if no limit has been set.
+     */
+    private int lockLimit;
+
     /**
      * Tells if lock requests should time out immediately if they cannot be
      * granted without waiting.
@@ -486,6 +502,14 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 		return logLast;
 	}
 
+	/**
+		Account for a log record written by this transaction.
+	*/
+	public void addLogBytes(int length)
+	{
+		logBytes += length;
+	}
+
 	/**
 		Set my transaction identifier.
 	*/
@@ -543,16 +567,29 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 	public void setup(PersistentSet set)
 		throws StandardException {
 
-		int escalationThreshold = PropertyUtil.getServiceInt(set,
+		escalationThreshold = PropertyUtil.getServiceInt(set,
 			Property.LOCKS_ESCALATION_THRESHOLD,
 			Property.MIN_LOCKS_ESCALATION_THRESHOLD,
 			Integer.MAX_VALUE,
 			Property.DEFAULT_LOCKS_ESCALATION_THRESHOLD);
 
+		setLockLimit();
+	}
 
-		getLockFactory().setLimit(
-			compatibilitySpace, this, escalationThreshold, this);
+	/**
+		Set the number of locks at which the lock factory calls reached() to
+		the lower of the escalation threshold and the thresholds set for
+		single containers, so that the containers with a lower threshold
+		are escalated in time.
+	 */
+	private void setLockLimit() {
+		int limit = Math.min(escalationThreshold,
+							 xactFactory.getMinLockEscalationThreshold());
 
+		if (limit != lockLimit) {
+			lockLimit = limit;
+			getLockFactory().setLimit(compatibilitySpace, this, limit, this);
+		}
 	}
 
 	/**
@@ -1195,6 +1232,7 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 		myId = null;
 		logStart = null;
 		logLast = null;
+		logBytes = 0;
 
 
 
@@ -1681,6 +1719,7 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 			myId = null;
 			logStart = null;
 			logLast = null;
+			logBytes = 0;
 			state = IDLE;
 		}
 	}
@@ -1835,6 +1874,7 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 
 		logStart = null;
 		logLast = null;
+		logBytes = 0;
 
 		if (SanityManager.DEBUG)
 		{
@@ -1879,6 +1919,10 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 
 			justCreated = false;
 
+			// pick up changes to the escalation thresholds of containers
+			if (escalationThreshold != 0)
+				setLockLimit();
+
 			if (SanityManager.DEBUG)
             {
 				if (SanityManager.DEBUG_ON("TranTrace"))
@@ -2487,6 +2531,7 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 
 		// Count row locks by table
 		Dictionary<ContainerKey,LockCount> containers = new java.util.Hashtable<ContainerKey,LockCount>();
+		int rowLocks = 0;
 
 		for (; lockList.hasMoreElements(); ) {
 
@@ -2504,13 +2549,26 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 				containers.put(ckey, lc);
 			}
 			lc.count++;
+			rowLocks++;
 		}
 
 		// Determine the threshold for lock escalation
-		// based upon our own limit, not the current count
-		int threshold = limit / (containers.size() + 1);
-		if (threshold < (limit / 4))
-			threshold = limit / 4;
+		// based upon our own threshold, not the current count.
+		// The limit may be lower if some tables have their own
+		// threshold.
+		int threshold = escalationThreshold / (containers.size() + 1);
+		if (threshold < (escalationThreshold / 4))
+			threshold = escalationThreshold / 4;
+
+		// If the locks of all the transactions use too much memory, also
+		// escalate the tables holding a large share of our row locks, even
+		// if they are below the threshold, rather than wait for us to
+		// reach it while other transactions are starved.
+		if (getLockFactory().isLockMemoryExhausted()) {
+			int share = Math.max(rowLocks / (containers.size() + 1),
+								 Property.MIN_LOCKS_ESCALATION_THRESHOLD);
+			threshold = Math.min(threshold, share);
+		}
 
 		// try to table lock all tables that are above
 		// this threshold
@@ -2521,7 +2579,9 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 
 			LockCount lc = containers.get(ckey);
 
-			if (lc.count < threshold) {
+			if (lc.count <
+					xactFactory.getLockEscalationThreshold(
+						ckey.getContainerId(), threshold)) {
 				continue;
 			}
 
@@ -2900,6 +2960,15 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
             return parentTransactionId.equals( ((Xact) other).getId() );
         }
     }
+
+    /**
+     * Return the number of bytes of log written by the transaction, which
+     * would have to be undone if it was aborted to break a deadlock.
+     */
+    public long getAbortCost()
+    {
+        return logBytes;
+    }
 }
 
 class LockCount {
@@ -43,6 +43,7 @@ import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
 import org.apache.derby.iapi.store.access.TransactionController;
 import org.apache.derby.iapi.store.access.TransactionInfo;
 
+import org.apache.derby.iapi.store.raw.GlobalTransactionId;
 import org.apache.derby.iapi.store.raw.LockingPolicy;
 import org.apache.derby.iapi.store.raw.RawStoreFactory;
 
@@ -66,6 +67,7 @@ import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.AccessController;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class XactFactory implements TransactionFactory, ModuleControl, ModuleSupportable
@@ -95,6 +97,11 @@ public class XactFactory implements TransactionFactory, ModuleControl, ModuleSup
 	public TransactionTable ttab;
     /** The id of the next transaction to be started. */
     private final AtomicLong tranId = new AtomicLong();
+    /**
+     * Used to give each transaction started by startRedoTransaction a
+     * negative id, which no transaction in the log can have.
+     */
+    private final AtomicLong redoTranId = new AtomicLong();
 	private LockingPolicy[][] lockingPolicies = new LockingPolicy[3][6];
 
 	private boolean inCreateNoLog = false;	// creating database, no logging
@@ -105,6 +112,15 @@ public class XactFactory implements TransactionFactory, ModuleControl, ModuleSup
 	private long     backupBlockingOperations = 0;
 	private boolean  inBackup = false;
 
+    /**
+     * Per container overrides of the lock escalation threshold, by container
+     * id, set with {@link #setLockEscalationThreshold}.
+     */
+    private final ConcurrentHashMap<Long, Integer>
+        escalationThresholds = new ConcurrentHashMap<Long, Integer>();
+    /** The lowest of the overrides, Integer.MAX_VALUE if there are none. */
+    private volatile int minEscalationThreshold = Integer.MAX_VALUE;
+
 	/*
 	** Constructor
 	*/
@@ -451,6 +467,45 @@ public class XactFactory implements TransactionFactory, ModuleControl, ModuleSup
 		return xact;
 	}
 
+	public RawTransaction startRedoTransaction(RawStoreFactory rsf, ContextManager cm)
+        throws StandardException
+    {
+		if (SanityManager.DEBUG)
+		{
+			if (rawStoreFactory != null)
+				SanityManager.ASSERT(
+                    rawStoreFactory == rsf, "raw store factory different");
+
+			SanityManager.ASSERT(
+                cm == contextFactory.getCurrentContextManager());
+		}
+
+		if (cm.getContext(INTERNAL_CONTEXT_ID) != null)
+        {
+            throw StandardException.newException(
+                    SQLState.XACT_TRANSACTION_ACTIVE);
+        }
+
+		Xact xact = 
+            new Xact(
+                this, null, logFactory, dataFactory, dataValueFactory, 
+                false, null, false);
+
+		// Don't add the transaction to the transaction table, and give it
+		// an id which no transaction in the log can have. Otherwise redo
+		// may find it when looking for a transaction in the log, and closing
+		// it may remove such a transaction from the transaction table.
+		xact.setTransactionId(
+            (GlobalTransactionId) null,
+            new XactId(-redoTranId.incrementAndGet()));
+
+		new XactContext(cm, INTERNAL_CONTEXT_ID, xact, true /* abortAll */, rsf);
+
+		xact.recoveryTransaction();
+
+		return xact;
+	}
+
 	public RawTransaction startInternalTransaction(RawStoreFactory rsf, ContextManager cm) 
         throws StandardException 
     {
@@ -705,6 +760,56 @@ public class XactFactory implements TransactionFactory, ModuleControl, ModuleSup
 	**		Implementation specific methods.
 	*/
 
+    /**
+     * Set or remove the lock escalation threshold of a container.
+     *
+     * @param containerId the id of the container
+     * @param threshold the new threshold, or 0 to remove the override
+     *
+     * @see RawStoreFactory#setLockEscalationThreshold
+     */
+    public synchronized void setLockEscalationThreshold(
+    long            containerId,
+    int             threshold)
+    {
+        if (threshold == 0)
+            escalationThresholds.remove(containerId);
+        else
+            escalationThresholds.put(containerId, threshold);
+
+        int min = Integer.MAX_VALUE;
+        for (int t : escalationThresholds.values())
+            min = Math.min(min, t);
+        minEscalationThreshold = min;
+    }
+
+    /**
+     * Get the lock escalation threshold of a container.
+     *
+     * @param containerId the id of the container
+     * @param defaultThreshold the threshold to use if the container has no
+     *                         override
+     * @return the threshold of the container
+     */
+    int getLockEscalationThreshold(
+    long            containerId,
+    int             defaultThreshold)
+    {
+        Integer threshold = escalationThresholds.get(containerId);
+        return (threshold == null) ? defaultThreshold : threshold;
+    }
+
+    /**
+     * Get the lowest lock escalation threshold set for a container.
+     *
+     * @return the lowest threshold, or Integer.MAX_VALUE if no container
+     *         has an override
+     */
+    int getMinLockEscalationThreshold()
+    {
+        return minEscalationThreshold;
+    }
+
 	public void setNewTransactionId(TransactionId oldxid, Xact t)
 	{
 		boolean excludeMe = true; // by default
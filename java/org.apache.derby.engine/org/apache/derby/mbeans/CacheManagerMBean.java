@@ -38,6 +38,7 @@ public interface CacheManagerMBean {
      * @see #getHitCount()
      * @see #getMissCount()
      * @see #getEvictionCount()
+     * @see #getPrefetchCount()
      */
     void setCollectAccessCounts(boolean collect);
 
@@ -74,6 +75,32 @@ public interface CacheManagerMBean {
      */
     long getEvictionCount();
 
+    /**
+     * Get the number of objects that have been read into the cache ahead
+     * of use, for instance by a sequential scan reading pages ahead.
+     *
+     * @return the number of prefetched objects
+     * @see #getPrefetchHitCount()
+     * @see #getPrefetchWasteCount()
+     */
+    long getPrefetchCount();
+
+    /**
+     * Get the number of prefetched objects that were accessed after they
+     * had been read into the cache.
+     *
+     * @return the number of prefetched objects that were used
+     */
+    long getPrefetchHitCount();
+
+    /**
+     * Get the number of prefetched objects that were evicted or removed
+     * from the cache before they were accessed.
+     *
+     * @return the number of prefetched objects that were never used
+     */
+    long getPrefetchWasteCount();
+
     /**
      * Get the maximum number of entries that could be held by this cache.
      *
@@ -96,4 +123,41 @@ public interface CacheManagerMBean {
      * @return the number of objects in the cache
      */
     long getUsedEntries();
+
+    /**
+     * Get the name of the replacement policy used to decide which objects
+     * to evict when the cache is full. {@code CLOCK} is the default clock
+     * algorithm, and {@code 2Q} is a scan-resistant variant which keeps
+     * new objects in a probation segment until they have proven to be
+     * frequently used.
+     *
+     * @return the name of the replacement policy
+     */
+    String getReplacementPolicy();
+
+    /**
+     * Get the number of partitions the replacement policy is divided into.
+     * Each partition has its own share of the cache and makes its own
+     * eviction decisions, which reduces contention between threads that
+     * insert objects into the cache concurrently.
+     *
+     * @return the number of partitions
+     */
+    long getPartitionCount();
+
+    /**
+     * Get the hit ratio of each segment of the cache. Each element is the
+     * number of cache hits in a segment divided by the total number of
+     * cache accesses, so the sum of the elements is the hit ratio of the
+     * whole cache. The {@code CLOCK} policy has a single segment, whereas
+     * the {@code 2Q} policy has a probation segment followed by a
+     * protected segment. If the cache has more than one partition, the
+     * array holds the segments of the first partition, followed by the
+     * segments of the second partition, and so on. Hits are only counted
+     * while access counts are being collected.
+     *
+     * @return the hit ratio of each segment
+     * @see #setCollectAccessCounts(boolean)
+     */
+    double[] getSegmentHitRatios();
 }
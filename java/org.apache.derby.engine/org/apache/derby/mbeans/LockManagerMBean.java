@@ -0,0 +1,72 @@
+/*
+
+   Derby - Class org.apache.derby.mbeans.LockManagerMBean
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.mbeans;
+
+/**
+ * This is an MBean that provides information about the lock manager of a
+ * database, and the deadlocks it has detected.
+ */
+public interface LockManagerMBean {
+    /**
+     * Get the number of deadlocks that have been broken by aborting one of
+     * the transactions involved, whether they were found by the background
+     * deadlock detector or by a waiter whose deadlock timeout expired.
+     *
+     * @return the number of deadlocks
+     */
+    long getDeadlockCount();
+
+    /**
+     * Get the number of deadlocks found by the background deadlock
+     * detector.
+     *
+     * @return the number of deadlocks found by the detector
+     * @see #getDeadlockDetectionInterval()
+     */
+    long getDetectedDeadlockCount();
+
+    /**
+     * Get the number of times the background deadlock detector has
+     * searched the lock table for deadlocks.
+     *
+     * @return the number of searches
+     */
+    long getDeadlockDetectionCount();
+
+    /**
+     * Get the total time the background deadlock detector has spent
+     * searching the lock table for deadlocks, in milliseconds.
+     *
+     * @return the time spent looking for deadlocks
+     */
+    long getDeadlockDetectionTime();
+
+    /**
+     * Get how long, in milliseconds, a lock request must wait before the
+     * background deadlock detector looks for a deadlock involving it. This
+     * is the value of the {@code derby.locks.deadlockDetectionInterval}
+     * property, and 0 means that the detector is disabled.
+     *
+     * @return the deadlock detection interval
+     */
+    int getDeadlockDetectionInterval();
+}
@@ -0,0 +1,182 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.BatchExecutionTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test aggregates over scans and restrictions which hand their rows to
+ * the aggregate a batch at a time. The restrictions cannot be pushed
+ * into the store, so that they are evaluated on the batches, and some of
+ * them filter out all the rows of a bulk fetch.
+ */
+public class BatchExecutionTest extends BaseJDBCTestCase {
+
+    /** Number of rows in the table. */
+    private static final int ROWS = 1000;
+
+    public BatchExecutionTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new CleanDatabaseTestSetup(
+                TestConfiguration.embeddedSuite(BatchExecutionTest.class)) {
+            protected void decorateSQL(Statement s) throws SQLException {
+                Connection conn = s.getConnection();
+                s.executeUpdate("create table t(a int, b int, c varchar(10))");
+                PreparedStatement ps = conn.prepareStatement(
+                        "insert into t values (?, ?, ?)");
+                for (int i = 0; i < ROWS; i++) {
+                    ps.setInt(1, i);
+                    if (b(i) == null) {
+                        ps.setNull(2, Types.INTEGER);
+                    } else {
+                        ps.setInt(2, b(i));
+                    }
+                    ps.setString(3, "c" + (i % 10));
+                    ps.executeUpdate();
+                }
+                ps.close();
+            }
+        };
+    }
+
+    /** The value of column b in row i, null for every 13th row. */
+    private static Integer b(int i) {
+        return (i % 13 == 0) ? null : i % 7;
+    }
+
+    public void testScalarAggregates() throws SQLException {
+        int count = 0;
+        long sum = 0;
+        int countB = 0;
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 3 == 1) {
+                count++;
+                sum += i;
+                if (b(i) != null) {
+                    countB++;
+                }
+            }
+        }
+
+        Statement s = createStatement();
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select count(*), sum(a), count(b), max(a), min(a) " +
+                "from t where mod(a, 3) = 1"),
+                new String[][] {{
+                    Integer.toString(count), Long.toString(sum),
+                    Integer.toString(countB), "997", "1",
+                }});
+
+        // The rows which qualify are far apart, and whole bulk fetches
+        // have none.
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select count(*), sum(a) from t where mod(a, 400) = 399"),
+                new String[][] {{ "2", "1198" }});
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select count(*), max(a) from t where a + 1 < 0"),
+                new String[][] {{ "0", null }});
+
+        // Restrictions on top of each other, and one with a subquery.
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(*) from (select a, b from t " +
+                "where mod(a, 2) = 0) x where b + 0 = 3"),
+                Integer.toString(countOf(0, 3)));
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(*) from t where b + 0 = " +
+                "(select max(b) from t where a < 10)"),
+                Integer.toString(countOf(-1, 6)));
+        s.close();
+    }
+
+    /**
+     * The number of rows with b equal to a value, and a even if parity
+     * is 0.
+     */
+    private static int countOf(int parity, int value) {
+        int count = 0;
+        for (int i = 0; i < ROWS; i++) {
+            if ((parity < 0 || i % 2 == parity) &&
+                    b(i) != null && b(i) == value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void testGroupedAndDistinctAggregates() throws SQLException {
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery(
+                "select c, count(*), count(distinct b) from t " +
+                "where mod(a, 5) <> 0 group by c order by c");
+        for (int c = 0; c < 10; c++) {
+            if (c % 5 == 0) {
+                continue;
+            }
+            assertTrue(rs.next());
+            assertEquals("c" + c, rs.getString(1));
+            assertEquals(ROWS / 10, rs.getInt(2));
+            assertEquals(7, rs.getInt(3));
+        }
+        assertFalse(rs.next());
+        rs.close();
+
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(distinct b) from t where mod(a, 2) = 1"), "7");
+        s.close();
+    }
+
+    /**
+     * Check that a prepared aggregate gives the same results when it is
+     * executed again with other parameters.
+     */
+    public void testReexecute() throws SQLException {
+        PreparedStatement ps = prepareStatement(
+                "select count(*), sum(a) from t where mod(a, ?) = 0");
+        for (int m = 1; m <= 600; m += 199) {
+            int count = 0;
+            long sum = 0;
+            for (int i = 0; i < ROWS; i += m) {
+                count++;
+                sum += i;
+            }
+            ps.setInt(1, m);
+            JDBC.assertFullResultSet(ps.executeQuery(),
+                    new String[][] {{
+                        Integer.toString(count), Long.toString(sum),
+                    }});
+        }
+        ps.close();
+    }
+}
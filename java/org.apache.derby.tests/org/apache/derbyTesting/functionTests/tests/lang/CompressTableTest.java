@@ -23,6 +23,7 @@ package org.apache.derbyTesting.functionTests.tests.lang;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -170,4 +171,72 @@ public class CompressTableTest extends BaseJDBCTestCase {
         ps.close();
         c2.close();
     }
+
+    /**
+     * Test that compressing a table builds its indexes bottom up with the
+     * leaves filled to derby.storage.indexFillFactor, and that the indexes
+     * hold all the rows in order whatever the fill factor.
+     */
+    public void testIndexFillFactor() throws SQLException {
+        Statement s = createStatement();
+        s.execute("create table fillfactor_t(x int, y varchar(100))");
+        s.execute("create index fillfactor_ix on fillfactor_t(y, x)");
+
+        PreparedStatement ins = prepareStatement(
+                "insert into fillfactor_t values (?, ?)");
+        for (int i = 0; i < 5000; i++) {
+            ins.setInt(1, i);
+            ins.setString(2, "row " + (i % 1000) + " of fillfactor_t");
+            ins.executeUpdate();
+        }
+        ins.close();
+
+        s.execute("call syscs_util.syscs_compress_table" +
+                  "('APP', 'FILLFACTOR_T', 1)");
+        long full = getIndexPages("FILLFACTOR_IX");
+        checkIndex(s);
+
+        s.execute("call syscs_util.syscs_set_database_property" +
+                  "('derby.storage.indexFillFactor', '50')");
+        try {
+            s.execute("call syscs_util.syscs_compress_table" +
+                      "('APP', 'FILLFACTOR_T', 1)");
+        } finally {
+            s.execute("call syscs_util.syscs_set_database_property" +
+                      "('derby.storage.indexFillFactor', null)");
+        }
+        long half = getIndexPages("FILLFACTOR_IX");
+        checkIndex(s);
+        assertTrue("full: " + full + ", half: " + half,
+                   half > full * 3 / 2);
+
+        s.execute("drop table fillfactor_t");
+    }
+
+    /** Check the index of FILLFACTOR_T against the table. */
+    private void checkIndex(Statement s) throws SQLException {
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "values syscs_util.syscs_check_table('APP', 'FILLFACTOR_T')"),
+                "1");
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(*) from fillfactor_t " +
+                "--derby-properties index=fillfactor_ix\n " +
+                "where y >= 'row 5'"),
+                "2775");
+    }
+
+    /** Get the number of allocated pages of an index. */
+    private long getIndexPages(String index) throws SQLException {
+        PreparedStatement ps = prepareStatement(
+                "select numallocatedpages from " +
+                "table(syscs_diag.space_table('APP', 'FILLFACTOR_T')) t " +
+                "where conglomeratename = ?");
+        ps.setString(1, index);
+        ResultSet rs = ps.executeQuery();
+        assertTrue(rs.next());
+        long pages = rs.getLong(1);
+        rs.close();
+        ps.close();
+        return pages;
+    }
 }
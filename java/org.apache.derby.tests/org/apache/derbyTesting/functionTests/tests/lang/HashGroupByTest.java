@@ -0,0 +1,255 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.HashGroupByTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test GROUP BY queries which collect their groups in a hash table before
+ * sorting them. The tests run once with the default memory for a table,
+ * and once with so little that the hash table spills its groups into the
+ * sorter many times.
+ */
+public class HashGroupByTest extends BaseJDBCTestCase {
+
+    /** Number of rows in the table. */
+    private static final int ROWS = 10000;
+
+    public HashGroupByTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        BaseTestSuite suite = new BaseTestSuite("HashGroupByTest");
+        suite.addTest(decorate(
+                TestConfiguration.embeddedSuite(HashGroupByTest.class)));
+
+        Properties props = new Properties();
+        props.setProperty("derby.language.maxMemoryPerTable", "8");
+        suite.addTest(new SystemPropertyTestSetup(
+                decorate(TestConfiguration.embeddedSuite(
+                        HashGroupByTest.class)),
+                props, true));
+        return suite;
+    }
+
+    private static Test decorate(Test test) {
+        return new CleanDatabaseTestSetup(test) {
+            protected void decorateSQL(Statement s) throws SQLException {
+                Connection conn = s.getConnection();
+                conn.setAutoCommit(false);
+                s.executeUpdate(
+                        "create table t(a int, b varchar(10), c int)");
+                PreparedStatement ps =
+                        conn.prepareStatement("insert into t values (?,?,?)");
+                for (int i = 0; i < ROWS; i++) {
+                    ps.setInt(1, a(i));
+                    ps.setString(2, b(i));
+                    ps.setInt(3, i);
+                    ps.executeUpdate();
+                }
+                ps.close();
+                conn.commit();
+            }
+        };
+    }
+
+    /** The value of column a in row i. */
+    private static int a(int i) {
+        return i % 7;
+    }
+
+    /** The value of column b in row i, null for every 9th row. */
+    private static String b(int i) {
+        return (i % 9 == 0) ? null : "v" + (i % 5);
+    }
+
+    public void testOneColumn() throws SQLException {
+        Map<Integer, long[]> groups = new TreeMap<Integer, long[]>();
+        for (int i = 0; i < ROWS; i++) {
+            long[] group = groups.get(a(i));
+            if (group == null) {
+                group = new long[] { 0, 0, i };
+                groups.put(a(i), group);
+            }
+            group[0]++;
+            group[1] += i;
+        }
+
+        List<String[]> expected = new ArrayList<String[]>();
+        for (Map.Entry<Integer, long[]> e : groups.entrySet()) {
+            long[] group = e.getValue();
+            expected.add(new String[] {
+                e.getKey().toString(), Long.toString(group[0]),
+                Long.toString(group[1]), Long.toString(group[2]),
+                "v4",
+            });
+        }
+
+        Statement s = createStatement();
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select a, count(*), sum(c), min(c), max(b) from t " +
+                "group by a"),
+                expected.toArray(new String[0][]));
+        s.close();
+    }
+
+    public void testNullGroup() throws SQLException {
+        int[] counts = new int[6];
+        int[] maxes = new int[6];
+        for (int i = 0; i < ROWS; i++) {
+            // the null group sorts last
+            int group = (b(i) == null) ? 5 : i % 5;
+            counts[group]++;
+            maxes[group] = i;
+        }
+
+        String[][] expected = new String[6][];
+        for (int g = 0; g < 6; g++) {
+            expected[g] = new String[] {
+                (g == 5) ? null : "v" + g,
+                Integer.toString(counts[g]), Integer.toString(maxes[g]),
+            };
+        }
+
+        Statement s = createStatement();
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select b, count(*), max(c) from t group by b"),
+                expected);
+        s.close();
+    }
+
+    public void testTwoColumns() throws SQLException {
+        Map<String, Integer> groups = new TreeMap<String, Integer>();
+        for (int i = 0; i < ROWS; i++) {
+            if (b(i) != null) {
+                String key = a(i) + " " + b(i);
+                Integer count = groups.get(key);
+                groups.put(key, (count == null) ? 1 : count + 1);
+            }
+        }
+
+        List<String[]> expected = new ArrayList<String[]>();
+        for (Map.Entry<String, Integer> e : groups.entrySet()) {
+            String[] key = e.getKey().split(" ");
+            expected.add(new String[] {
+                key[0], key[1], e.getValue().toString() });
+        }
+
+        Statement s = createStatement();
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select a, b, count(*) from t where b is not null " +
+                "group by b, a order by a, b"),
+                expected.toArray(new String[0][]));
+        s.close();
+    }
+
+    /**
+     * Check a grouping with more groups than the optimizer expects, and
+     * a HAVING clause and descending ORDER BY over it.
+     */
+    public void testManyGroups() throws SQLException {
+        Statement s = createStatement();
+        String[][] expected = new String[1000][];
+        for (int g = 0; g < 1000; g++) {
+            expected[999 - g] = new String[] {
+                Integer.toString(g), Integer.toString(ROWS / 1000),
+                Integer.toString(g + ROWS - 1000),
+            };
+        }
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select mod(c, 1000), count(*), max(c) from t " +
+                "group by mod(c, 1000) order by 1 desc"),
+                expected);
+
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select mod(c, 1000), sum(a) from t " +
+                "group by mod(c, 1000) having max(c) = 9999"),
+                new String[][] {{ "999", Integer.toString(sumA(999)) }});
+        s.close();
+    }
+
+    /** The sum of column a over the rows whose c has a remainder mod 1000. */
+    private static int sumA(int remainder) {
+        int sum = 0;
+        for (int i = remainder; i < ROWS; i += 1000) {
+            sum += a(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Check a grouping whose hash table spills while most of its rows
+     * fall into groups already in the table.
+     */
+    public void testRunsOfGroups() throws SQLException {
+        String[][] expected = new String[ROWS / 20][];
+        for (int g = 0; g < expected.length; g++) {
+            expected[g] = new String[] {
+                Integer.toString(g), "20", Integer.toString(20 * g),
+            };
+        }
+
+        Statement s = createStatement();
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select c / 20, count(*), min(c) from t group by c / 20"),
+                expected);
+        s.close();
+    }
+
+    /**
+     * Check that only the groups are sorted.
+     */
+    public void testOnlyGroupsSorted() throws SQLException {
+        Statement s = createStatement();
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        s.execute("call syscs_util.syscs_set_xplain_schema('XPLTEST')");
+        JDBC.assertDrainResults(s.executeQuery(
+                "select a, count(*) from t group by a"), 7);
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+        s.execute("call syscs_util.syscs_set_xplain_schema('')");
+
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select srt.no_input_rows, srt.no_output_rows " +
+                "from xpltest.sysxplain_sort_props srt " +
+                "join xpltest.sysxplain_resultsets rs " +
+                "on srt.sort_rs_id = rs.sort_rs_id " +
+                "where rs.op_identifier = 'GROUPBY'"),
+                new String[][] {{ "7", "7" }});
+        s.close();
+    }
+}
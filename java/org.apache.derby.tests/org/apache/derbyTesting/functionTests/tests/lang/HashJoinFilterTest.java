@@ -0,0 +1,331 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.HashJoinFilterTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test that a hash join filters the scan on its outer side on the keys of
+ * its hash table, so that the outer rows which cannot join are dropped in
+ * the scan.  Each hash join is checked against the same query as a nested
+ * loop join.
+ */
+public class HashJoinFilterTest extends BaseJDBCTestCase {
+
+    /** Number of rows in the fact table. */
+    private static final int FACT_ROWS = 2000;
+
+    /** Number of rows in each dimension table. */
+    private static final int DIM_ROWS = 100;
+
+    public HashJoinFilterTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new CleanDatabaseTestSetup(
+                TestConfiguration.embeddedSuite(HashJoinFilterTest.class)) {
+            protected void decorateSQL(Statement s) throws SQLException {
+                Connection conn = s.getConnection();
+                conn.setAutoCommit(false);
+                s.executeUpdate("create table fact(id int primary key, " +
+                        "d1 int, d2 int, v int)");
+                s.executeUpdate("create index fact_d1 on fact(d1)");
+                s.executeUpdate("create table dim1(k int primary key, " +
+                        "name varchar(10))");
+                s.executeUpdate("create table dim2(k int primary key, " +
+                        "grp int)");
+
+                PreparedStatement ps = conn.prepareStatement(
+                        "insert into fact values (?,?,?,?)");
+                for (int i = 0; i < FACT_ROWS; i++) {
+                    ps.setInt(1, i);
+                    // every 17th key is null
+                    if (i % 17 == 0) {
+                        ps.setNull(2, java.sql.Types.INTEGER);
+                    } else {
+                        ps.setInt(2, (i * 7) % DIM_ROWS);
+                    }
+                    ps.setInt(3, i % DIM_ROWS);
+                    ps.setInt(4, i);
+                    ps.executeUpdate();
+                }
+                ps.close();
+
+                ps = conn.prepareStatement("insert into dim1 values (?,?)");
+                for (int i = 0; i < DIM_ROWS; i++) {
+                    ps.setInt(1, i);
+                    ps.setString(2, "n" + (i % 25));
+                    ps.executeUpdate();
+                }
+                ps.close();
+
+                ps = conn.prepareStatement("insert into dim2 values (?,?)");
+                for (int i = 0; i < DIM_ROWS; i++) {
+                    ps.setInt(1, i);
+                    ps.setInt(2, i % 10);
+                    ps.executeUpdate();
+                }
+                ps.close();
+                conn.commit();
+            }
+        };
+    }
+
+    /**
+     * Check that a query gives the same rows with hash joins as with
+     * nested loop joins, and return the rows.
+     *
+     * @param sql the query, with {0} where the join strategy goes
+     */
+    private List<List<String>> assertSameAsNestedLoop(String sql)
+            throws SQLException {
+        List<List<String>> hash = getRows(sql.replace("{0}", "HASH"));
+        List<List<String>> nestedLoop =
+                getRows(sql.replace("{0}", "NESTEDLOOP"));
+
+        assertEquals(nestedLoop, hash);
+        return hash;
+    }
+
+    private List<List<String>> getRows(String sql) throws SQLException {
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery(sql);
+        ResultSetMetaData md = rs.getMetaData();
+        List<List<String>> rows = new ArrayList<List<String>>();
+        while (rs.next()) {
+            List<String> row = new ArrayList<String>();
+            for (int i = 1; i <= md.getColumnCount(); i++) {
+                row.add(rs.getString(i));
+            }
+            rows.add(row);
+        }
+        rs.close();
+        s.close();
+        return rows;
+    }
+
+    /**
+     * Run a query with run time statistics collected in the XPLTEST
+     * schema, and return a number from the statistics.
+     *
+     * @param sql the query
+     * @param statistic a query on the statistics which returns one number
+     */
+    private int getStatistic(String sql, String statistic)
+            throws SQLException {
+        Statement s = createStatement();
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        s.execute("call syscs_util.syscs_set_xplain_schema('XPLTEST')");
+        JDBC.assertDrainResults(s.executeQuery(sql));
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+        s.execute("call syscs_util.syscs_set_xplain_schema('')");
+
+        ResultSet rs = s.executeQuery(statistic);
+        assertTrue(rs.next());
+        int value = rs.getInt(1);
+        assertFalse(rs.next());
+        rs.close();
+
+        s.execute("delete from xpltest.sysxplain_scan_props");
+        s.execute("delete from xpltest.sysxplain_resultsets");
+        s.close();
+        return value;
+    }
+
+    /**
+     * Return the number of rows the scan of the fact table, or of its
+     * index, returned for a query.
+     */
+    private int factRowsReturned(String sql) throws SQLException {
+        return getStatistic(sql,
+                "select rs.returned_rows " +
+                "from xpltest.sysxplain_resultsets rs " +
+                "join xpltest.sysxplain_scan_props sp " +
+                "on rs.scan_rs_id = sp.scan_rs_id " +
+                "where sp.scan_object_name in ('FACT', 'FACT_D1') " +
+                "and rs.op_identifier in ('TABLESCAN', 'INDEXSCAN')");
+    }
+
+    /**
+     * Return the number of base rows of the fact table fetched for the
+     * rows of its index for a query.
+     */
+    private int factRowsFetched(String sql) throws SQLException {
+        return getStatistic(sql,
+                "select seen_rows from xpltest.sysxplain_resultsets " +
+                "where op_identifier = 'ROWIDSCAN' " +
+                "and op_details like '%,FACT'");
+    }
+
+    /**
+     * A selective join of the fact table to a dimension table reads all
+     * the fact rows, but only returns those which join from the scan.
+     */
+    public void testSelectiveJoin() throws SQLException {
+        String sql = "select f.id, d.name from " +
+                "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "fact f --DERBY-PROPERTIES index=null\n" +
+                ", dim1 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where f.d1 = d.k and d.name = 'n3' order by f.id";
+        List<List<String>> rows = assertSameAsNestedLoop(sql);
+        assertFalse(rows.isEmpty());
+
+        int returned = factRowsReturned(sql.replace("{0}", "HASH"));
+        assertTrue(returned + " rows", returned < FACT_ROWS / 10);
+        assertTrue(returned + " rows", returned >= rows.size());
+    }
+
+    /**
+     * A scan of an index on the join column drops the rows before the
+     * base rows are fetched.
+     */
+    public void testIndexScan() throws SQLException {
+        String sql = "select f.id, f.v, d.name from " +
+                "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "fact f --DERBY-PROPERTIES index=fact_d1\n" +
+                ", dim1 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where f.d1 = d.k and d.name = 'n3' and f.d1 > 0 " +
+                "order by f.id";
+        List<List<String>> rows = assertSameAsNestedLoop(sql);
+        assertFalse(rows.isEmpty());
+
+        int nestedLoop = factRowsFetched(sql.replace("{0}", "NESTEDLOOP"));
+        int hash = factRowsFetched(sql.replace("{0}", "HASH"));
+        assertTrue(hash + " rows", hash < nestedLoop / 10);
+        assertTrue(hash + " rows", hash >= rows.size());
+
+        // the key is not in the index, so the rows are dropped after the
+        // base rows are fetched
+        sql = "select f.id, f.v, d.grp from " +
+                "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "fact f --DERBY-PROPERTIES index=fact_d1\n" +
+                ", dim2 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where f.d2 = d.k and d.grp = 4 and f.d1 > 50 " +
+                "order by f.id";
+        assertFalse(assertSameAsNestedLoop(sql).isEmpty());
+        assertEquals(factRowsFetched(sql.replace("{0}", "NESTEDLOOP")),
+                factRowsFetched(sql.replace("{0}", "HASH")));
+    }
+
+    public void testTwoColumnKey() throws SQLException {
+        assertFalse(assertSameAsNestedLoop(
+                "select f.id, d.grp from " +
+                "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "fact f --DERBY-PROPERTIES index=null\n" +
+                ", dim2 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where f.d2 = d.k and f.d1 = d.grp order by f.id").isEmpty());
+    }
+
+    /**
+     * Two hash joins on keys of the same scan.
+     */
+    public void testTwoJoins() throws SQLException {
+        assertFalse(assertSameAsNestedLoop(
+                "select f.id, d1.name, d2.grp from " +
+                "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "fact f --DERBY-PROPERTIES index=null\n" +
+                ", dim1 d1 --DERBY-PROPERTIES joinStrategy={0}\n" +
+                ", dim2 d2 --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where f.d1 = d1.k and f.d2 = d2.k " +
+                "and d1.name = 'n3' and d2.grp < 5 order by f.id").isEmpty());
+    }
+
+    /**
+     * No rows join when the hash table is empty.
+     */
+    public void testEmptyHashTable() throws SQLException {
+        String sql = "select f.id from " +
+                "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "fact f --DERBY-PROPERTIES index=null\n" +
+                ", dim1 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where f.d1 = d.k and d.name = 'none'";
+        assertTrue(assertSameAsNestedLoop(sql).isEmpty());
+
+        // the hash table is built on the first fact row, and the
+        // rest are dropped
+        assertEquals(1, factRowsReturned(sql.replace("{0}", "HASH")));
+    }
+
+    /**
+     * The hash table is not built when the outer side has no rows.
+     */
+    public void testEmptyOuterSide() throws SQLException {
+        String sql = "select f.id, d.name from " +
+                "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "fact f --DERBY-PROPERTIES index=null\n" +
+                ", dim1 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where f.d1 = d.k and f.v < 0";
+        assertTrue(assertSameAsNestedLoop(sql).isEmpty());
+        assertEquals(0, getStatistic(sql.replace("{0}", "HASH"),
+                "select no_opens from xpltest.sysxplain_resultsets " +
+                "where op_identifier = 'HASHSCAN' " +
+                "and op_details = 'T: DIM1'"));
+    }
+
+    /**
+     * The outer rows without a match are not dropped by a NOT EXISTS join
+     * or an outer join.
+     */
+    public void testNotExistsAndOuterJoin() throws SQLException {
+        assertFalse(assertSameAsNestedLoop(
+                "select f.id from fact f --DERBY-PROPERTIES index=null\n" +
+                "where not exists (select * from " +
+                "dim1 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where d.k = f.d1 and d.name = 'n3') order by f.id")
+                .isEmpty());
+
+        List<List<String>> rows = assertSameAsNestedLoop(
+                "select f.id, d.name from fact f " +
+                "--DERBY-PROPERTIES index=null\n" +
+                "left outer join dim1 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "on f.d1 = d.k and d.name = 'n3' order by f.id");
+        assertEquals(FACT_ROWS, rows.size());
+    }
+
+    /**
+     * A hash join in a subquery is opened again for each outer row, and
+     * builds its hash table again.
+     */
+    public void testReopen() throws SQLException {
+        assertFalse(assertSameAsNestedLoop(
+                "select o.k, (select count(*) from " +
+                "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "fact f --DERBY-PROPERTIES index=null, " +
+                "joinStrategy=NESTEDLOOP\n" +
+                ", dim1 d --DERBY-PROPERTIES joinStrategy={0}\n" +
+                "where f.d1 = d.k and f.d2 = o.k and d.name = 'n3') " +
+                "from dim2 o where o.grp = 3 order by o.k").isEmpty());
+    }
+}
@@ -0,0 +1,228 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.HashJoinSpillTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test hash joins whose hash table does not fit in memory. The tests run
+ * once with the default memory for a table, and once with so little that
+ * most partitions of the hash table are moved to disk. Each hash join is
+ * checked against the same query as a nested loop join.
+ */
+public class HashJoinSpillTest extends BaseJDBCTestCase {
+
+    /** Number of rows in the outer table. */
+    private static final int OUTER_ROWS = 3000;
+
+    /** Number of rows in the inner table. */
+    private static final int INNER_ROWS = 2000;
+
+    public HashJoinSpillTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        BaseTestSuite suite = new BaseTestSuite("HashJoinSpillTest");
+        suite.addTest(decorate(
+                TestConfiguration.embeddedSuite(HashJoinSpillTest.class)));
+
+        Properties props = new Properties();
+        props.setProperty("derby.language.maxMemoryPerTable", "1");
+        suite.addTest(new SystemPropertyTestSetup(
+                decorate(TestConfiguration.embeddedSuite(
+                        HashJoinSpillTest.class)),
+                props, true));
+        return suite;
+    }
+
+    private static Test decorate(Test test) {
+        return new CleanDatabaseTestSetup(test) {
+            protected void decorateSQL(Statement s) throws SQLException {
+                Connection conn = s.getConnection();
+                conn.setAutoCommit(false);
+                s.executeUpdate("create table outer_t(" +
+                        "id int constraint outer_pk primary key, " +
+                        "k int, k2 varchar(10))");
+                s.executeUpdate("create table inner_t(k int, k2 varchar(10), " +
+                        "v int, filler varchar(100))");
+
+                PreparedStatement ps = conn.prepareStatement(
+                        "insert into outer_t values (?,?,?)");
+                for (int i = 0; i < OUTER_ROWS; i++) {
+                    ps.setInt(1, i);
+                    // every 11th key is null
+                    if (i % 11 == 0) {
+                        ps.setNull(2, java.sql.Types.INTEGER);
+                    } else {
+                        ps.setInt(2, (i * 7) % OUTER_ROWS);
+                    }
+                    ps.setString(3, "x" + (i % 3));
+                    ps.executeUpdate();
+                }
+                ps.close();
+
+                ps = conn.prepareStatement(
+                        "insert into inner_t values (?,?,?,?)");
+                for (int i = 0; i < INNER_ROWS; i++) {
+                    // half of the outer keys match, some of them twice,
+                    // and every 13th inner key is null
+                    if (i % 13 == 0) {
+                        ps.setNull(1, java.sql.Types.INTEGER);
+                    } else {
+                        ps.setInt(1, (i * 2) % OUTER_ROWS);
+                    }
+                    ps.setString(2, "x" + (i % 2));
+                    ps.setInt(3, i);
+                    ps.setString(4, "filler " + i);
+                    ps.executeUpdate();
+                }
+                ps.close();
+                conn.commit();
+            }
+        };
+    }
+
+    /**
+     * Check that a query gives the same rows as a hash join and as a nested
+     * loop join of its two tables.
+     *
+     * @param select the select list
+     * @param rest the rest of the query after the tables
+     */
+    private void assertSameAsNestedLoop(String select, String rest)
+            throws SQLException {
+        List<List<String>> hash = getRows(join(select, "HASH", rest));
+        List<List<String>> nestedLoop =
+                getRows(join(select, "NESTEDLOOP", rest));
+
+        assertFalse(hash.isEmpty());
+        assertEquals(nestedLoop, hash);
+    }
+
+    /**
+     * Make a query which joins outer_t o to inner_t i in that order, with
+     * the given join strategy.
+     */
+    private static String join(String select, String strategy, String rest) {
+        return select + " from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "outer_t o, inner_t i --DERBY-PROPERTIES joinStrategy=" +
+                strategy + "\n" + rest;
+    }
+
+    private List<List<String>> getRows(String sql) throws SQLException {
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery(sql);
+        ResultSetMetaData md = rs.getMetaData();
+        List<List<String>> rows = new ArrayList<List<String>>();
+        while (rs.next()) {
+            List<String> row = new ArrayList<String>();
+            for (int i = 1; i <= md.getColumnCount(); i++) {
+                row.add(rs.getString(i));
+            }
+            rows.add(row);
+        }
+        rs.close();
+        s.close();
+        return rows;
+    }
+
+    public void testOneColumnKey() throws SQLException {
+        assertSameAsNestedLoop(
+                "select o.id, o.k, i.v",
+                "where o.k = i.k order by o.id, i.v");
+    }
+
+    public void testTwoColumnKey() throws SQLException {
+        assertSameAsNestedLoop(
+                "select o.id, o.k, o.k2, i.v",
+                "where o.k = i.k and o.k2 = i.k2 order by o.id, i.v");
+    }
+
+    public void testOtherPredicates() throws SQLException {
+        assertSameAsNestedLoop(
+                "select o.id, i.v, i.filler",
+                "where o.k = i.k and (i.v > o.id or i.k2 = 'x0') " +
+                "order by o.id, i.v");
+    }
+
+    public void testCount() throws SQLException {
+        assertSameAsNestedLoop(
+                "select count(*), sum(i.v)",
+                "where o.k = i.k");
+    }
+
+    /**
+     * Rows whose keys are not in the hash table, and rows with null keys,
+     * must still come out of an outer join.
+     */
+    public void testLeftOuterJoin() throws SQLException {
+        List<List<String>> hash = getRows(
+                "select o.id, i.v from outer_t o " +
+                "left outer join inner_t i " +
+                "--DERBY-PROPERTIES joinStrategy=HASH\n" +
+                "on o.k = i.k order by o.id, i.v");
+        List<List<String>> nestedLoop = getRows(
+                "select o.id, i.v from outer_t o " +
+                "left outer join inner_t i " +
+                "--DERBY-PROPERTIES joinStrategy=NESTEDLOOP\n" +
+                "on o.k = i.k order by o.id, i.v");
+
+        assertTrue(hash.size() > OUTER_ROWS);
+        assertEquals(nestedLoop, hash);
+    }
+
+    /**
+     * A hash join returns its rows in the order of the outer table, even
+     * when the hash table spills, so that sorts on the outer table can
+     * still be avoided.
+     */
+    public void testOuterOrderKept() throws SQLException {
+        List<List<String>> rows = getRows(
+                "select o.id, i.v from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                "outer_t o --DERBY-PROPERTIES constraint=outer_pk\n" +
+                ", inner_t i --DERBY-PROPERTIES joinStrategy=HASH\n" +
+                "where o.k = i.k and o.id >= 0");
+
+        assertFalse(rows.isEmpty());
+        int last = -1;
+        for (List<String> row : rows) {
+            int id = Integer.parseInt(row.get(0));
+            assertTrue(id + " after " + last, id >= last);
+            last = id;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.NormalizedSortKeyTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test the order of sorts whose first column has a normalized key, that
+ * the sorter compares before it compares the values. The values are
+ * chosen so that the keys of different values are equal (long strings,
+ * timestamps differing in their nanoseconds), or order differently from
+ * a naive encoding (characters below the blank, characters with the
+ * high bit set, negative numbers, nulls).
+ */
+public class NormalizedSortKeyTest extends BaseJDBCTestCase {
+
+    /** The string values of the rows, with ids 1 to 9. */
+    private static final String[] STRINGS = {
+        "a", "a ", "a\t", "abcde", "abcdd", "\u8000", "\u7fff", null, "",
+    };
+
+    /** The integer values of the rows. */
+    private static final Integer[] INTS = {
+        5, null, -7, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, 5, -1, null,
+    };
+
+    /** The timestamp values of the rows. */
+    private static final String[] TIMESTAMPS = {
+        "2020-01-01 10:00:00.000000002",
+        "2020-01-01 10:00:00.000000001",
+        "1900-06-30 23:59:59.0",
+        "2020-01-01 09:59:59.999999999",
+        null,
+        "9999-12-31 23:59:59.0",
+        "2020-01-01 10:00:00.000000001",
+        "0001-01-01 00:00:00.0",
+        "2020-01-01 10:00:00.0",
+    };
+
+    public NormalizedSortKeyTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new CleanDatabaseTestSetup(
+                TestConfiguration.embeddedSuite(NormalizedSortKeyTest.class)) {
+            protected void decorateSQL(Statement s) throws SQLException {
+                Connection conn = s.getConnection();
+                s.executeUpdate("create table s(id int, i int, b bigint, " +
+                        "ch char(5), v varchar(8), ts timestamp)");
+                PreparedStatement ps = conn.prepareStatement(
+                        "insert into s values (?, ?, ?, ?, ?, ?)");
+                for (int i = 0; i < STRINGS.length; i++) {
+                    ps.setInt(1, i + 1);
+                    if (INTS[i] == null) {
+                        ps.setNull(2, Types.INTEGER);
+                        ps.setNull(3, Types.BIGINT);
+                    } else {
+                        ps.setInt(2, INTS[i]);
+                        ps.setLong(3, INTS[i] * 3000000000L);
+                    }
+                    ps.setString(4, STRINGS[i]);
+                    ps.setString(5, STRINGS[i]);
+                    ps.setTimestamp(6, TIMESTAMPS[i] == null ?
+                            null : Timestamp.valueOf(TIMESTAMPS[i]));
+                    ps.executeUpdate();
+                }
+                ps.close();
+            }
+        };
+    }
+
+    /**
+     * Check the ids of the rows in the order of a query.
+     */
+    private void assertOrder(String orderBy, int[] ids) throws SQLException {
+        Statement s = createStatement();
+        String[][] expected = new String[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            expected[i] = new String[] { Integer.toString(ids[i]) };
+        }
+        JDBC.assertFullResultSet(
+                s.executeQuery("select id from s order by " + orderBy),
+                expected);
+        s.close();
+    }
+
+    public void testIntegers() throws SQLException {
+        assertOrder("i, id", new int[] { 5, 3, 8, 6, 1, 7, 4, 2, 9 });
+        assertOrder("i desc, id", new int[] { 2, 9, 4, 1, 7, 6, 8, 3, 5 });
+        assertOrder("i nulls first, id desc",
+                new int[] { 9, 2, 5, 3, 8, 6, 7, 1, 4 });
+        assertOrder("b, id", new int[] { 5, 3, 8, 6, 1, 7, 4, 2, 9 });
+        assertOrder("b desc nulls last, id",
+                new int[] { 4, 1, 7, 6, 8, 3, 5, 2, 9 });
+    }
+
+    /**
+     * Strings compare as if the shorter one were padded with blanks, so
+     * "a" and "a " are equal and "a\t" is less than both.
+     */
+    public void testStrings() throws SQLException {
+        int[] asc = { 9, 3, 1, 2, 5, 4, 7, 6, 8 };
+        assertOrder("v, id", asc);
+        assertOrder("ch, id", asc);
+        assertOrder("v desc, id", new int[] { 8, 6, 7, 4, 5, 1, 2, 3, 9 });
+        assertOrder("ch nulls first, id",
+                new int[] { 8, 9, 3, 1, 2, 5, 4, 7, 6 });
+
+        Statement s = createStatement();
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select v, count(*) from s group by v"),
+                new String[][] {
+                    { "", "1" }, { "a\t", "1" }, { "a", "2" },
+                    { "abcdd", "1" }, { "abcde", "1" }, { "\u7fff", "1" },
+                    { "\u8000", "1" }, { null, "1" },
+                });
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(distinct ch) from s"), "7");
+        s.close();
+    }
+
+    /**
+     * Timestamps which differ only in their nanoseconds have the same
+     * normalized key.
+     */
+    public void testTimestamps() throws SQLException {
+        assertOrder("ts, id", new int[] { 8, 3, 4, 9, 2, 7, 1, 6, 5 });
+        assertOrder("ts desc, id desc",
+                new int[] { 5, 6, 1, 7, 2, 9, 4, 3, 8 });
+    }
+}
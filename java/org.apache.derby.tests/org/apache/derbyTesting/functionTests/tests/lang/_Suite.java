@@ -119,6 +119,9 @@ public class _Suite extends BaseTestCase  {
         suite.addTest(ForBitDataTest.suite());
         suite.addTest(DistinctTest.suite());
         suite.addTest(GroupByTest.suite());
+        suite.addTest(HashGroupByTest.suite());
+        suite.addTest(HashJoinSpillTest.suite());
+        suite.addTest(HashJoinFilterTest.suite());
         suite.addTest(UpdateCursorTest.suite());
         suite.addTest(CoalesceTest.suite());
         suite.addTest(ProcedureInTriggerTest.suite());
@@ -263,6 +266,8 @@ public class _Suite extends BaseTestCase  {
         suite.addTest(Derby5866TriggerOrderTest.suite());
         suite.addTest(NoDBInternalsPermissionTest.suite());
         suite.addTest(ClassLoadingTest.suite());
+        suite.addTest(NormalizedSortKeyTest.suite());
+        suite.addTest(BatchExecutionTest.suite());
         if (TestConfiguration.loadingFromJars()) { suite.addTest(VetJigsawTest.suite()); }
         return suite;
 	}
@@ -25,6 +25,7 @@ import java.security.Permission;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.util.Hashtable;
+import java.util.Properties;
 import java.util.Set;
 import javax.management.ObjectName;
 import javax.management.RuntimeMBeanException;
@@ -33,6 +34,7 @@ import org.apache.derby.shared.common.security.SystemPermission;
 import org.apache.derbyTesting.junit.BaseTestSuite;
 import org.apache.derbyTesting.junit.JDBC;
 import org.apache.derbyTesting.junit.SecurityManagerSetup;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
 import org.apache.derbyTesting.junit.TestConfiguration;
 
 /**
@@ -46,7 +48,9 @@ public class CacheManagerMBeanTest extends MBeanTest {
 
     private static String[] ALL_ATTRIBUTES = {
         "CollectAccessCounts", "HitCount", "MissCount", "EvictionCount",
-        "MaxEntries", "AllocatedEntries", "UsedEntries"
+        "MaxEntries", "AllocatedEntries", "UsedEntries",
+        "ReplacementPolicy", "PartitionCount", "SegmentHitRatios",
+        "PrefetchCount", "PrefetchHitCount", "PrefetchWasteCount"
     };
 
     public CacheManagerMBeanTest(String name) {
@@ -77,6 +81,17 @@ public class CacheManagerMBeanTest extends MBeanTest {
             suite.addTest(positive);
         }
 
+        // Test the page cache with the scan-resistant replacement policy.
+        // The policy is picked up when the database boots, so this only
+        // works with the platform MBean server in the same JVM.
+        Properties props = new Properties();
+        props.setProperty("derby.storage.pageCacheReplacementPolicy", "2Q");
+        Test scanResistant =
+                new CacheManagerMBeanTest("scanResistantPageCacheTest");
+        scanResistant = JMXConnectionDecorator.platformMBeanServer(
+                scanResistant);
+        suite.addTest(new SystemPropertyTestSetup(scanResistant, props));
+
         return suite;
     }
 
@@ -167,6 +182,7 @@ public class CacheManagerMBeanTest extends MBeanTest {
         assertLongAttribute(0, name, "HitCount");
         assertLongAttribute(0, name, "MissCount");
         assertLongAttribute(0, name, "EvictionCount");
+        assertLongAttribute(0, name, "PrefetchCount");
         assertLongAttribute(DEFAULT_PAGE_CACHE_SIZE, name, "MaxEntries");
         // Cannot reliably tell how many entries to expect.
         // More than 0 for sure.
@@ -174,6 +190,8 @@ public class CacheManagerMBeanTest extends MBeanTest {
         assertTrue("Allocated entries: " + allocated, allocated > 0);
         Long used = (Long) getAttribute(name, "UsedEntries");
         assertTrue("Used entries: " + used, used > 0);
+        assertStringAttribute("CLOCK", name, "ReplacementPolicy");
+        assertLongAttribute(1, name, "PartitionCount");
 
         // Execute a statement against a table, so that the cache will be
         // accessed.
@@ -195,11 +213,56 @@ public class CacheManagerMBeanTest extends MBeanTest {
         assertLongAttribute(1, name, "HitCount");
         assertLongAttribute(0, name, "MissCount");
 
+        // The clock policy has a single segment, which got all the hits.
+        double[] ratios = (double[]) getAttribute(name, "SegmentHitRatios");
+        assertEquals(1, ratios.length);
+        assertEquals(1.0, ratios[0], 0.0);
+
         // Disable the access counts.
         setAttribute(name, "CollectAccessCounts", Boolean.FALSE);
         assertBooleanAttribute(false, name, "CollectAccessCounts");
     }
 
+    /**
+     * Test the {@code CacheManagerMBean} for the page cache when the
+     * scan-resistant replacement policy has been selected.
+     */
+    public void scanResistantPageCacheTest() throws Exception {
+        getConnection(); // boot the database
+        Set<ObjectName> names =
+                queryMBeans(createObjectName("PageCache", null));
+
+        assertEquals("Should have a single page cache", 1, names.size());
+
+        ObjectName name = names.iterator().next();
+
+        assertStringAttribute("2Q", name, "ReplacementPolicy");
+        assertLongAttribute(DEFAULT_PAGE_CACHE_SIZE, name, "MaxEntries");
+
+        // There are two segments, probation and protected. No hits are
+        // counted until collection of access counts is enabled.
+        double[] ratios = (double[]) getAttribute(name, "SegmentHitRatios");
+        assertEquals(2, ratios.length);
+        assertEquals(0.0, ratios[0], 0.0);
+        assertEquals(0.0, ratios[1], 0.0);
+
+        setAttribute(name, "CollectAccessCounts", Boolean.TRUE);
+        PreparedStatement ps = prepareStatement(
+                                    "select * from sysibm.sysdummy1");
+        JDBC.assertDrainResults(ps.executeQuery());
+        JDBC.assertDrainResults(ps.executeQuery());
+
+        // The sum of the segment hit ratios is the hit ratio of the cache.
+        long hits = (Long) getAttribute(name, "HitCount");
+        long misses = (Long) getAttribute(name, "MissCount");
+        assertTrue("Hit count: " + hits, hits > 0);
+        ratios = (double[]) getAttribute(name, "SegmentHitRatios");
+        assertEquals((double) hits / (hits + misses),
+                     ratios[0] + ratios[1], 1e-9);
+
+        setAttribute(name, "CollectAccessCounts", Boolean.FALSE);
+    }
+
     /**
      * Test the {@code CacheManagerMBean} for the page cache.
      */
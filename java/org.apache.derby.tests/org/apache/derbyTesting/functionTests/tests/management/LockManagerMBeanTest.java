@@ -0,0 +1,192 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.management.LockManagerMBeanTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.management;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Hashtable;
+import java.util.Set;
+import javax.management.ObjectName;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test cases for {@code LockManagerMBean} and the background deadlock
+ * detector it monitors.
+ */
+public class LockManagerMBeanTest extends MBeanTest {
+
+    /** The default deadlock timeout, in milliseconds. */
+    private final static long DEFAULT_DEADLOCK_TIMEOUT = 20000;
+
+    public LockManagerMBeanTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        // The deadlock tests need two connections to the database in the
+        // same JVM, so only test with the platform MBean server.
+        Test test = new BaseTestSuite(
+                LockManagerMBeanTest.class, "LockManagerMBeanTest");
+        test = JMXConnectionDecorator.platformMBeanServer(test);
+        return new CleanDatabaseTestSetup(test) {
+            protected void decorateSQL(Statement s) throws SQLException {
+                s.executeUpdate(
+                    "create table deadlock_t(id int primary key, v int)");
+                s.executeUpdate(
+                    "insert into deadlock_t values (1, 0), (2, 0)");
+                s.executeUpdate("create table deadlock_log(v varchar(100))");
+            }
+        };
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        // Set up management.
+        super.setUp();
+
+        // Shut down the database before running the test case, so that
+        // the counters of the lock manager start from zero.
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+    }
+
+    /**
+     * Create an {@code ObjectName} that identifies the
+     * {@code LockManager} management bean of a database, or a pattern
+     * that matches the beans of all databases.
+     *
+     * @param dbName the name of the database, or {@code null} to create
+     *   a pattern that matches all database names
+     * @return an {@code ObjectName} suitable for looking up beans
+     */
+    private ObjectName createObjectName(String dbName) throws Exception {
+        Hashtable<String, String> props = new Hashtable<String, String>();
+        props.put("type", "LockManager");
+        props.put("db", dbName == null ? "*" : ObjectName.quote(dbName));
+        return getDerbyMBeanName(props);
+    }
+
+    /** Get the single {@code LockManager} bean, booting the database. */
+    private ObjectName getLockManagerMBean() throws Exception {
+        getConnection();
+        Set<ObjectName> names = queryMBeans(createObjectName(null));
+        assertEquals("Should have a single lock manager", 1, names.size());
+        return names.iterator().next();
+    }
+
+    /**
+     * Test that the {@code LockManagerMBean} starts when the database is
+     * started, and stops when the database is shut down.
+     */
+    public void testMBeanStartedAndStopped() throws Exception {
+        ObjectName pattern = createObjectName(null);
+
+        Set<ObjectName> names = queryMBeans(pattern);
+        if (!names.isEmpty()) {
+            fail("Should not find MBeans before boot, found: " + names);
+        }
+
+        ObjectName name = getLockManagerMBean();
+        assertLongAttribute(0, name, "DeadlockCount");
+        assertLongAttribute(0, name, "DetectedDeadlockCount");
+        assertLongAttribute(0, name, "DeadlockDetectionCount");
+        assertIntAttribute(50, name, "DeadlockDetectionInterval");
+
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        names = queryMBeans(pattern);
+        if (!names.isEmpty()) {
+            fail("Should not find MBeans after shutdown, found: " + names);
+        }
+    }
+
+    /**
+     * Test that the background deadlock detector breaks a deadlock long
+     * before the deadlock timeout expires, that it picks the transaction
+     * which has written the least log as the victim, and that the deadlock
+     * is counted.
+     */
+    public void testDeadlockDetected() throws Exception {
+        ObjectName name = getLockManagerMBean();
+
+        Connection c1 = getConnection();
+        c1.setAutoCommit(false);
+        final Statement s1 = c1.createStatement();
+
+        Connection c2 = openDefaultConnection();
+        c2.setAutoCommit(false);
+        Statement s2 = c2.createStatement();
+
+        // Let the first transaction write much more log than the second,
+        // so that the second one is picked as the victim.
+        for (int i = 0; i < 50; i++) {
+            s1.executeUpdate("insert into deadlock_log values " +
+                    "('a row which makes the transaction costly to abort')");
+        }
+        s1.executeUpdate("update deadlock_t set v = 1 where id = 1");
+        s2.executeUpdate("update deadlock_t set v = 2 where id = 2");
+
+        final SQLException[] error = new SQLException[1];
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    s1.executeUpdate("update deadlock_t set v = 1 where id = 2");
+                } catch (SQLException sqle) {
+                    error[0] = sqle;
+                }
+            }
+        };
+        t.start();
+
+        long start = System.currentTimeMillis();
+        try {
+            s2.executeUpdate("update deadlock_t set v = 2 where id = 1");
+            fail("Expected a deadlock");
+        } catch (SQLException sqle) {
+            assertSQLState("40001", sqle);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        c2.rollback();
+
+        t.join();
+        if (error[0] != null) {
+            throw error[0];
+        }
+        c1.rollback();
+
+        assertTrue("Deadlock was broken after " + elapsed + " ms",
+                   elapsed < DEFAULT_DEADLOCK_TIMEOUT / 2);
+
+        assertLongAttribute(1, name, "DeadlockCount");
+        assertLongAttribute(1, name, "DetectedDeadlockCount");
+        Long detections = (Long) getAttribute(name, "DeadlockDetectionCount");
+        assertTrue("Detections: " + detections, detections > 0);
+
+        s1.close();
+        s2.close();
+        c2.close();
+    }
+}
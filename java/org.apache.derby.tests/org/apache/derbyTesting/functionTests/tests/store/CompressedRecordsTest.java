@@ -0,0 +1,376 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.CompressedRecordsTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test tables and indexes created with derby.storage.compressedRecords,
+ * whose fields are stored compressed on the data pages.
+ */
+public class CompressedRecordsTest extends BaseJDBCTestCase {
+
+    /** Number of rows inserted into each table. */
+    private static final int ROWS = 500;
+
+    public CompressedRecordsTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new CleanDatabaseTestSetup(
+                TestConfiguration.embeddedSuite(CompressedRecordsTest.class));
+    }
+
+    protected void tearDown() throws Exception {
+        setAutoCommit(true);
+        setCompressedRecords(null);
+        super.tearDown();
+    }
+
+    /** Set or clear the derby.storage.compressedRecords database property. */
+    private void setCompressedRecords(String value) throws SQLException {
+        CallableStatement cs = prepareCall(
+                "call syscs_util.syscs_set_database_property(" +
+                "'derby.storage.compressedRecords', ?)");
+        cs.setString(1, value);
+        cs.execute();
+        cs.close();
+    }
+
+    /** Create a table and fill it with rows which compress well. */
+    private void createAndFill(String table) throws SQLException {
+        Statement s = createStatement();
+        s.executeUpdate("create table " + table + "(id int primary key, " +
+                "c char(200), v varchar(500), b bigint, n varchar(10))");
+        s.close();
+
+        PreparedStatement ps = prepareStatement(
+                "insert into " + table + " values (?, ?, ?, ?, ?)");
+        for (int i = 0; i < ROWS; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, "c" + i);
+            ps.setString(3, value(i));
+            ps.setLong(4, i);
+            ps.setString(5, null);
+            ps.executeUpdate();
+        }
+        ps.close();
+    }
+
+    /** Make a varchar value with runs of equal characters. */
+    private static String value(int i) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(i);
+        for (int k = 0; k < 100; k++) {
+            sb.append('-');
+        }
+        return sb.append(i).toString();
+    }
+
+    /** Check that a table holds the rows written by createAndFill. */
+    private void checkContents(String table) throws SQLException {
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery(
+                "select id, c, v, b, n from " + table + " order by id");
+        for (int i = 0; i < ROWS; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals("c" + i, rs.getString(2).trim());
+            assertEquals(200, rs.getString(2).length());
+            assertEquals(value(i), rs.getString(3));
+            assertEquals(i, rs.getLong(4));
+            assertNull(rs.getString(5));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        s.close();
+    }
+
+    /** Make an index key, the keys differ in their first characters. */
+    private static String key(int i) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(1000000 + (i * 7919) % ROWS);
+        for (int k = 0; k < 150; k++) {
+            sb.append('-');
+        }
+        return sb.append(i).toString();
+    }
+
+    /** Create a table with indexes on keys which compress well. */
+    private void createIndexed(String table) throws SQLException {
+        Statement s = createStatement();
+        s.executeUpdate("create table " + table +
+                "(id int not null, k varchar(300), p varchar(20))");
+        PreparedStatement ps = prepareStatement(
+                "insert into " + table + " values (?, ?, ?)");
+        for (int i = 0; i < ROWS * 4; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, key(i));
+            ps.setString(3, "p" + (i % 4));
+            ps.executeUpdate();
+        }
+        ps.close();
+        s.executeUpdate("create index " + table + "_K on " + table + "(k)");
+        s.executeUpdate("create index " + table + "_PK on " + table +
+                "(p, k desc)");
+        s.executeUpdate("create unique index " + table + "_KI on " + table +
+                "(k, id)");
+        s.close();
+    }
+
+    /** Check the contents of the indexes of a table made by createIndexed. */
+    private void checkIndexes(String table, int rows) throws SQLException {
+        Statement s = createStatement();
+        String[] indexes = { "_K", "_KI" };
+        for (int i = 0; i < indexes.length; i++) {
+            ResultSet rs = s.executeQuery(
+                    "select k from " + table + " --DERBY-PROPERTIES index=" +
+                    table + indexes[i] + "\n order by k");
+            String last = null;
+            int count = 0;
+            while (rs.next()) {
+                String k = rs.getString(1);
+                assertTrue(last == null || last.compareTo(k) <= 0);
+                last = k;
+                count++;
+            }
+            assertEquals(rows, count);
+            rs.close();
+        }
+
+        ResultSet rs = s.executeQuery(
+                "select p, k from " + table + " --DERBY-PROPERTIES index=" +
+                table + "_PK\n where p = 'p1' order by p, k desc");
+        String last = null;
+        while (rs.next()) {
+            assertEquals("p1", rs.getString(1));
+            String k = rs.getString(2);
+            assertTrue(last == null || last.compareTo(k) > 0);
+            last = k;
+        }
+        rs.close();
+        s.close();
+
+        // lookups and range scans of every index find the same rows
+        PreparedStatement ps = prepareStatement(
+                "select count(*) from " + table + " --DERBY-PROPERTIES index=" +
+                table + "_K\n where k >= ? and k < ?");
+        PreparedStatement psDesc = prepareStatement(
+                "select count(*) from " + table + " --DERBY-PROPERTIES index=" +
+                table + "_PK\n where p = 'p2' and k >= ? and k < ?");
+        PreparedStatement psPlain = prepareStatement(
+                "select count(*) from " + table + " --DERBY-PROPERTIES index=" +
+                "null\n where k >= ? and k < ?");
+        PreparedStatement psPlainDesc = prepareStatement(
+                "select count(*) from " + table + " --DERBY-PROPERTIES index=" +
+                "null\n where p = 'p2' and k >= ? and k < ?");
+        for (int i = 0; i < ROWS; i += 37) {
+            String from = key(i);
+            String to = Integer.toString(1000020 + (i * 7919) % ROWS);
+            PreparedStatement[] stmts = { ps, psDesc, psPlain, psPlainDesc };
+            String[] counts = new String[stmts.length];
+            for (int j = 0; j < stmts.length; j++) {
+                stmts[j].setString(1, from);
+                stmts[j].setString(2, to);
+                ResultSet crs = stmts[j].executeQuery();
+                assertTrue(crs.next());
+                counts[j] = crs.getString(1);
+                crs.close();
+            }
+            assertEquals(counts[2], counts[0]);
+            assertEquals(counts[3], counts[1]);
+        }
+        ps.close();
+        psDesc.close();
+        psPlain.close();
+        psPlainDesc.close();
+    }
+
+    /** Get the height and the fanout of an index. */
+    private int[] getTreeShape(String index) throws SQLException {
+        PreparedStatement ps = prepareStatement(
+                "select treeheight, avgfanout, numallocatedpages from " +
+                "table(syscs_diag.space_table('APP', ?)) t " +
+                "where conglomeratename = ?");
+        ps.setString(1, index.substring(0, index.indexOf('_')));
+        ps.setString(2, index);
+        ResultSet rs = ps.executeQuery();
+        assertTrue(rs.next());
+        int[] shape = { rs.getInt(1), rs.getInt(2), rs.getInt(3) };
+        rs.close();
+        ps.close();
+        return shape;
+    }
+
+    /** Get the number of allocated pages of the heap of a table. */
+    private long getHeapPages(String table) throws SQLException {
+        PreparedStatement ps = prepareStatement(
+                "select numallocatedpages from " +
+                "table(syscs_diag.space_table('APP', ?)) t " +
+                "where isindex = 0");
+        ps.setString(1, table);
+        ResultSet rs = ps.executeQuery();
+        assertTrue(rs.next());
+        long pages = rs.getLong(1);
+        rs.close();
+        ps.close();
+        return pages;
+    }
+
+    /**
+     * Check that the rows of a compressed table read back unchanged, and
+     * that the table needs fewer pages than an uncompressed one.
+     */
+    public void testRoundTrip() throws SQLException {
+        createAndFill("PLAIN_T");
+
+        setCompressedRecords("true");
+        createAndFill("COMPRESSED_T");
+
+        checkContents("PLAIN_T");
+        checkContents("COMPRESSED_T");
+
+        long plain = getHeapPages("PLAIN_T");
+        long compressed = getHeapPages("COMPRESSED_T");
+        assertTrue("plain: " + plain + ", compressed: " + compressed,
+                   compressed * 2 < plain);
+
+        // qualified scans and index lookups read single columns
+        JDBC.assertSingleValueResultSet(createStatement().executeQuery(
+                "select v from compressed_t where id = 42"), value(42));
+        JDBC.assertSingleValueResultSet(createStatement().executeQuery(
+                "select count(*) from compressed_t where c = 'c7'"), "1");
+    }
+
+    /**
+     * Check updates of compressed rows, including updates which change the
+     * length of the row, and their rollback.
+     */
+    public void testUpdateAndRollback() throws SQLException {
+        setCompressedRecords("true");
+        createAndFill("UPD_T");
+
+        setAutoCommit(false);
+        Statement s = createStatement();
+        s.executeUpdate("update upd_t set v = v || v, c = 'x', b = -b");
+        s.executeUpdate("update upd_t set n = 'n' where mod(id, 3) = 0");
+        s.executeUpdate("delete from upd_t where mod(id, 5) = 0");
+        rollback();
+        checkContents("UPD_T");
+
+        s.executeUpdate("update upd_t set v = v || v where id = 10");
+        commit();
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select v from upd_t where id = 10"), value(10) + value(10));
+        s.close();
+    }
+
+    /**
+     * Check that compressing a table keeps its rows compressed, and that
+     * long columns, which are never compressed, are stored correctly.
+     */
+    public void testCompressTableAndLongColumns() throws SQLException {
+        setCompressedRecords("true");
+        createAndFill("CT");
+        setCompressedRecords(null);
+
+        // half of the rows stored uncompressed would need more pages than
+        // all of them compressed
+        Statement s = createStatement();
+        long full = getHeapPages("CT");
+        s.executeUpdate("delete from ct where id >= " + (ROWS / 2));
+        s.execute("call syscs_util.syscs_compress_table('APP', 'CT', 1)");
+        long after = getHeapPages("CT");
+        assertTrue("full: " + full + ", after: " + after, after <= full);
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(*) from ct"), Integer.toString(ROWS / 2));
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select v from ct where id = 7"), value(7));
+
+        setCompressedRecords("true");
+        s.executeUpdate("create table long_t(id int, l long varchar)");
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < 30000; i++) {
+            sb.append((char) ('a' + i % 2));
+        }
+        PreparedStatement ps = prepareStatement(
+                "insert into long_t values (?, ?)");
+        ps.setInt(1, 1);
+        ps.setString(2, sb.toString());
+        ps.executeUpdate();
+        ps.close();
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select l from long_t"), sb.toString());
+        s.close();
+    }
+
+    /**
+     * Check that indexes with compressed keys return the right rows after
+     * splits, deletes and rollback, and that they are smaller and flatter
+     * than indexes with uncompressed keys.
+     */
+    public void testIndexKeys() throws SQLException {
+        createIndexed("PLAINIX");
+        setCompressedRecords("true");
+        createIndexed("COMPIX");
+
+        checkIndexes("PLAINIX", ROWS * 4);
+        checkIndexes("COMPIX", ROWS * 4);
+
+        setAutoCommit(false);
+        Statement s = createStatement();
+        s.executeUpdate("delete from compix where mod(id, 3) = 0");
+        s.executeUpdate("insert into compix select id + " + (ROWS * 4) +
+                ", k || 'x', p from compix");
+        rollback();
+        checkIndexes("COMPIX", ROWS * 4);
+
+        s.executeUpdate("delete from compix where mod(id, 2) = 0");
+        commit();
+        checkIndexes("COMPIX", ROWS * 2);
+        s.close();
+
+        int[] plain = getTreeShape("PLAINIX_K");
+        int[] compressed = getTreeShape("COMPIX_K");
+        assertTrue("plain: " + plain[2] + ", compressed: " + compressed[2],
+                   compressed[2] < plain[2]);
+        assertTrue(compressed[0] >= 1 && compressed[0] <= plain[0]);
+        assertTrue("plain: " + plain[1] + ", compressed: " + compressed[1],
+                   compressed[1] > plain[1]);
+
+        // the heap is not a tree
+        JDBC.assertFullResultSet(createStatement().executeQuery(
+                "select treeheight, avgfanout from " +
+                "table(syscs_diag.space_table('APP', 'PLAINIX')) t " +
+                "where isindex = 0"), new String[][] {{ null, null }});
+    }
+}
@@ -0,0 +1,127 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.GroupCommitTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test that transactions committed concurrently are all durable when the
+ * log is synced for groups of commits (derby.storage.logGroupCommitDelay).
+ */
+public class GroupCommitTest extends BaseJDBCTestCase {
+
+    /** Number of threads committing concurrently. */
+    private static final int THREADS = 8;
+
+    /** Number of transactions committed by each thread. */
+    private static final int COMMITS = 200;
+
+    public GroupCommitTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties sysProps = new Properties();
+        sysProps.setProperty("derby.storage.logGroupCommitDelay", "2000");
+
+        return new SystemPropertyTestSetup(
+                TestConfiguration.singleUseDatabaseDecorator(
+                    TestConfiguration.embeddedSuite(GroupCommitTest.class)),
+                sysProps, true);
+    }
+
+    /**
+     * Commit many small transactions from several threads at the same
+     * time, and check that all of them are there after the database has
+     * been restarted.
+     */
+    public void testConcurrentCommits() throws Exception {
+        Statement s = createStatement();
+        s.execute("create table t(thread int, n int)");
+
+        final Exception[] errors = new Exception[THREADS];
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int id = i;
+            final Connection c = openDefaultConnection();
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        PreparedStatement ps = c.prepareStatement(
+                                "insert into t values (?, ?)");
+                        for (int n = 0; n < COMMITS; n++) {
+                            ps.setInt(1, id);
+                            ps.setInt(2, n);
+                            ps.executeUpdate();
+                        }
+                        ps.close();
+                        c.close();
+                    } catch (SQLException e) {
+                        errors[id] = e;
+                    }
+                }
+            };
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (Exception e : errors) {
+            if (e != null) {
+                throw e;
+            }
+        }
+
+        getTestConfiguration().shutdownDatabase();
+
+        JDBC.assertSingleValueResultSet(
+                createStatement().executeQuery("select count(*) from t"),
+                String.valueOf(THREADS * COMMITS));
+        JDBC.assertFullResultSet(
+                createStatement().executeQuery(
+                    "select thread, count(distinct n) from t " +
+                    "group by thread order by thread"),
+                expectedCounts());
+    }
+
+    /** Get the expected number of rows inserted by each thread. */
+    private static String[][] expectedCounts() {
+        String[][] rows = new String[THREADS][];
+        for (int i = 0; i < THREADS; i++) {
+            rows[i] = new String[] {
+                String.valueOf(i), String.valueOf(COMMITS) };
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.IncrementalCheckpointTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test restart recovery from incremental checkpoints, which are taken when
+ * background page writers are enabled (derby.storage.pageWriterThreads).
+ * The redo low water mark of such a checkpoint is the oldest change that
+ * had not been written to disk, and may be before the begin of transactions
+ * that ended before the checkpoint.
+ */
+public class IncrementalCheckpointTest extends BaseJDBCTestCase {
+
+    /** Number of transactions committed before the crash. */
+    private static final int TRANSACTIONS = 4000;
+
+    /**
+     * Number of transactions after which the long running transaction
+     * commits.
+     */
+    private static final int LONG_COMMIT_INTERVAL = 1000;
+
+    /**
+     * Number of transactions after which the long running transaction
+     * inserts a row.
+     */
+    private static final int LONG_INSERT_INTERVAL = 100;
+
+    public IncrementalCheckpointTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new CleanDatabaseTestSetup(
+                TestConfiguration.embeddedSuite(
+                    IncrementalCheckpointTest.class));
+    }
+
+    /**
+     * Run a workload in a separate JVM with small checkpoint and log switch
+     * intervals, so that many incremental checkpoints are taken, and let it
+     * exit without shutting down the database. Check that recovery brings
+     * back exactly the committed transactions.
+     */
+    public void testRecovery() throws Exception {
+        Statement s = createStatement();
+        s.executeUpdate("create table t(id int primary key, v int, " +
+                        "p varchar(200))");
+        s.executeUpdate("create table cnt(n int)");
+        s.executeUpdate("insert into cnt values 0");
+        s.executeUpdate("create table lt(x int)");
+        s.close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod("org.apache.derbyTesting." +
+                "functionTests.tests.store.IncrementalCheckpointTest." +
+                "launchWorkload");
+
+        s = createStatement();
+        JDBC.assertFullResultSet(
+                s.executeQuery("select count(*), sum(v) from t"),
+                new String[][] {{
+                    String.valueOf(TRANSACTIONS),
+                    String.valueOf(3 * TRANSACTIONS) }});
+        JDBC.assertSingleValueResultSet(
+                s.executeQuery("select n from cnt"),
+                String.valueOf(TRANSACTIONS));
+        // the rows inserted by the long running transaction after its last
+        // commit must be gone
+        JDBC.assertSingleValueResultSet(
+                s.executeQuery("select count(*) from lt"),
+                String.valueOf(TRANSACTIONS / LONG_INSERT_INTERVAL));
+
+        s.executeUpdate("drop table t");
+        s.executeUpdate("drop table cnt");
+        s.executeUpdate("drop table lt");
+    }
+
+    /**
+     * Run by the forked JVM. Commit many small transactions while another
+     * transaction stays open for a long time, then return without shutting
+     * down the database.
+     */
+    public void launchWorkload() throws SQLException {
+        setSystemProperty("derby.storage.pageWriterThreads", "2");
+        setSystemProperty("derby.storage.checkpointInterval", "100000");
+        setSystemProperty("derby.storage.logSwitchInterval", "100000");
+        setSystemProperty("derby.storage.pageCacheSize", "100");
+
+        Connection c = getConnection();
+        c.setAutoCommit(false);
+        Connection longRunning = openDefaultConnection();
+        longRunning.setAutoCommit(false);
+        Statement ls = longRunning.createStatement();
+
+        PreparedStatement ins = c.prepareStatement(
+                "insert into t values (?, 0, ?)");
+        PreparedStatement upd = c.prepareStatement(
+                "update t set v = v + 1 where id = ?");
+        PreparedStatement cnt = c.prepareStatement(
+                "update cnt set n = n + 1");
+
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            ins.setInt(1, i);
+            ins.setString(2, "row " + i +
+                    " ----------------------------------------------------");
+            ins.executeUpdate();
+            // update old and new rows, so that pages are dirtied both by
+            // transactions which began long ago and by new ones
+            for (int k = 0; k < 3; k++) {
+                upd.setInt(1, (i * 7 + k * 1013) % (i + 1));
+                upd.executeUpdate();
+            }
+            cnt.executeUpdate();
+            c.commit();
+
+            if (i % LONG_INSERT_INTERVAL == 0) {
+                ls.executeUpdate("insert into lt values " + i);
+            }
+            if ((i + 1) % LONG_COMMIT_INTERVAL == 0) {
+                longRunning.commit();
+            }
+        }
+
+        // leave an uncommitted row in lt
+        ls.executeUpdate("insert into lt values -1");
+    }
+}
@@ -0,0 +1,217 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.LogCompressionTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.Random;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test compression of the optional data of log records
+ * (derby.storage.logCompressionThreshold), and the SYSCS_DIAG.LOG_COMPRESSION
+ * virtual table. Compressed log records must be read back correctly by
+ * rollback and by recovery.
+ */
+public class LogCompressionTest extends BaseJDBCTestCase {
+
+    /** Size from which the optional data of log records is compressed. */
+    private static final String THRESHOLD = "100";
+
+    /** Number of rows inserted by the recovery workload. */
+    private static final int ROWS = 1000;
+
+    public LogCompressionTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties props = new Properties();
+        props.setProperty("derby.storage.logCompressionThreshold", THRESHOLD);
+        return new SystemPropertyTestSetup(
+                new CleanDatabaseTestSetup(
+                    TestConfiguration.embeddedSuite(LogCompressionTest.class)),
+                props, true);
+    }
+
+    /**
+     * Get the values of the single row of the LOG_COMPRESSION table, in
+     * column order.
+     */
+    private long[] getStatistics() throws SQLException {
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery(
+                "select * from syscs_diag.log_compression");
+        assertTrue(rs.next());
+        long[] values = new long[6];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rs.getLong(i + 1);
+        }
+        assertFalse(rs.next());
+        rs.close();
+        s.close();
+        return values;
+    }
+
+    /** Make a row value which compresses well. */
+    private static String repetitive(int i) {
+        StringBuffer sb = new StringBuffer();
+        for (int k = 0; k < 20; k++) {
+            sb.append("value ").append(i).append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Check that inserts and updates of wide rows write compressed log
+     * records, and that rolling them back reads the compressed data.
+     */
+    public void testCompressAndRollback() throws SQLException {
+        long[] before = getStatistics();
+        assertEquals(Long.parseLong(THRESHOLD), before[0]);
+
+        setAutoCommit(false);
+        Statement s = createStatement();
+        s.executeUpdate("create table t(id int primary key, v varchar(2000))");
+        commit();
+
+        PreparedStatement ins = prepareStatement(
+                "insert into t values (?, ?)");
+        for (int i = 0; i < 100; i++) {
+            ins.setInt(1, i);
+            ins.setString(2, repetitive(i));
+            ins.executeUpdate();
+        }
+        commit();
+
+        long[] after = getStatistics();
+        assertTrue(after[1] >= before[1] + 100);
+        assertTrue(after[5] > before[5]);
+        assertEquals(after[3] - after[4], after[5]);
+
+        // roll back updates and deletes of the wide rows, the undo reads
+        // the before images from the compressed log records
+        s.executeUpdate("update t set v = v || 'x'");
+        s.executeUpdate("delete from t where mod(id, 2) = 0");
+        rollback();
+
+        PreparedStatement sel = prepareStatement(
+                "select v from t where id = ?");
+        for (int i = 0; i < 100; i++) {
+            sel.setInt(1, i);
+            JDBC.assertSingleValueResultSet(sel.executeQuery(), repetitive(i));
+        }
+
+        s.executeUpdate("drop table t");
+        commit();
+    }
+
+    /**
+     * Check that rows which don't compress are logged uncompressed.
+     */
+    public void testIncompressible() throws SQLException {
+        long[] before = getStatistics();
+
+        Statement s = createStatement();
+        s.executeUpdate("create table t(b varchar(1000) for bit data)");
+
+        Random r = new Random(42);
+        byte[] b = new byte[500];
+        PreparedStatement ins = prepareStatement("insert into t values ?");
+        for (int i = 0; i < 10; i++) {
+            r.nextBytes(b);
+            ins.setBytes(1, b);
+            ins.executeUpdate();
+        }
+
+        long[] after = getStatistics();
+        assertTrue(after[2] >= before[2] + 10);
+
+        s.executeUpdate("drop table t");
+    }
+
+    /**
+     * Run a workload in a separate JVM which writes compressed log records,
+     * and let it exit without shutting down the database. Check that
+     * recovery redoes the committed changes and undoes the rest.
+     */
+    public void testRecovery() throws Exception {
+        Statement s = createStatement();
+        s.executeUpdate("create table t2(id int primary key, v varchar(2000))");
+        s.close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod("org.apache.derbyTesting." +
+                "functionTests.tests.store.LogCompressionTest." +
+                "launchWorkload");
+
+        s = createStatement();
+        JDBC.assertSingleValueResultSet(
+                s.executeQuery("select count(*) from t2"),
+                String.valueOf(ROWS));
+        PreparedStatement sel = prepareStatement(
+                "select v from t2 where id = ?");
+        for (int i = 0; i < ROWS; i += 7) {
+            sel.setInt(1, i);
+            JDBC.assertSingleValueResultSet(
+                    sel.executeQuery(), repetitive(i) + "updated");
+        }
+
+        s.executeUpdate("drop table t2");
+    }
+
+    /**
+     * Run by the forked JVM. Insert and update wide rows, then leave an
+     * uncommitted transaction which changes all of them.
+     */
+    public void launchWorkload() throws SQLException {
+        setSystemProperty("derby.storage.logCompressionThreshold", THRESHOLD);
+
+        Connection c = getConnection();
+        c.setAutoCommit(false);
+        PreparedStatement ins = c.prepareStatement(
+                "insert into t2 values (?, ?)");
+        for (int i = 0; i < ROWS; i++) {
+            ins.setInt(1, i);
+            ins.setString(2, repetitive(i));
+            ins.executeUpdate();
+        }
+        c.commit();
+
+        Statement s = c.createStatement();
+        s.executeUpdate("update t2 set v = v || 'updated'");
+        c.commit();
+
+        // leave an uncommitted transaction
+        s.executeUpdate("update t2 set v = 'gone'");
+        s.executeUpdate("delete from t2 where mod(id, 3) = 0");
+    }
+}
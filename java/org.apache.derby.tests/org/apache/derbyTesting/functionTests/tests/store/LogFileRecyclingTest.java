@@ -0,0 +1,134 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.LogFileRecyclingTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.functionTests.util.PrivilegedFileOpsForTests;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test that the database keeps working when log files which are no longer
+ * needed are recycled as spare log files (derby.storage.logSpareFiles), and
+ * that the spare files are used again after a restart.
+ */
+public class LogFileRecyclingTest extends BaseJDBCTestCase {
+
+    /** Number of spare log files to keep. */
+    private static final int SPARES = 2;
+
+    /** Number of rows inserted in each round. */
+    private static final int ROWS = 500;
+
+    public LogFileRecyclingTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties sysProps = new Properties();
+        sysProps.setProperty("derby.storage.logSpareFiles",
+                             String.valueOf(SPARES));
+        // use the smallest log files allowed, so that many are needed
+        sysProps.setProperty("derby.storage.logSwitchInterval", "100000");
+        sysProps.setProperty("derby.storage.checkpointInterval", "100000");
+
+        return new SystemPropertyTestSetup(
+                TestConfiguration.singleUseDatabaseDecorator(
+                    TestConfiguration.embeddedSuite(
+                        LogFileRecyclingTest.class)),
+                sysProps, true);
+    }
+
+    /**
+     * Write enough log to switch log files many times, with checkpoints in
+     * between, and restart the database to check that recovery doesn't
+     * get confused by the recycled files.
+     */
+    public void testRecycleLogFiles() throws Exception {
+        Statement s = createStatement();
+        s.execute("create table t(id int, b varchar(200))");
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 5; i++) {
+                insertRows(round * 5 + i);
+                s.execute("call syscs_util.syscs_checkpoint_database()");
+            }
+
+            File[] spares = getSpareFiles();
+            assertTrue("expected spare log files, found " + spares.length,
+                       spares.length > 0 && spares.length <= SPARES);
+
+            getTestConfiguration().shutdownDatabase();
+            s = createStatement();
+            JDBC.assertSingleValueResultSet(
+                    s.executeQuery("select count(*) from t"),
+                    String.valueOf((round + 1) * 5 * ROWS));
+        }
+
+        // insert rows without a checkpoint, so that the log files are
+        // needed by recovery after the restart.
+        insertRows(10);
+        getTestConfiguration().shutdownDatabase();
+        JDBC.assertSingleValueResultSet(
+                createStatement().executeQuery(
+                    "select count(distinct id) from t"),
+                String.valueOf(11 * ROWS));
+    }
+
+    private void insertRows(int batch) throws SQLException {
+        PreparedStatement ps = prepareStatement(
+                "insert into t values (?, ?)");
+        for (int i = 0; i < ROWS; i++) {
+            ps.setInt(1, batch * ROWS + i);
+            ps.setString(2, "batch " + batch +
+                    " ----------------------------------------------------");
+            ps.executeUpdate();
+        }
+        ps.close();
+    }
+
+    /** Get the spare log files in the log directory of the database. */
+    private File[] getSpareFiles() {
+        TestConfiguration config = getTestConfiguration();
+        File logDir = new File(
+                config.getDatabasePath(config.getPhysicalDatabaseName(
+                    config.getDefaultDatabaseName())),
+                "log");
+        File[] files = PrivilegedFileOpsForTests.listFiles(logDir);
+        int n = 0;
+        for (File f : files) {
+            if (f.getName().startsWith("spare")) {
+                files[n++] = f;
+            }
+        }
+        File[] spares = new File[n];
+        System.arraycopy(files, 0, spares, 0, n);
+        return spares;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.MemoryMappedReadsTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.SecurityManagerSetup;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test that pages are read correctly when the container files are read
+ * through memory mappings (derby.storage.memoryMappedReads), also when
+ * the files grow and are truncated while they are mapped. The mapped
+ * buffer pool of the JVM shows that the files were actually mapped.
+ */
+public class MemoryMappedReadsTest extends PagedTableTestCase {
+
+    /** Number of rows in the test table, enough to fill many pages. */
+    private static final int ROWS = 4000;
+
+    public MemoryMappedReadsTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties sysProps = new Properties();
+        sysProps.setProperty("derby.storage.pageCacheSize", "40");
+        sysProps.setProperty("derby.storage.memoryMappedReads", "true");
+
+        // The test reads the buffer pool MXBeans of the JVM, which needs
+        // permissions the engine's policy doesn't have.
+        return SecurityManagerSetup.noSecurityManager(
+                new SystemPropertyTestSetup(
+                    TestConfiguration.singleUseDatabaseDecorator(
+                        TestConfiguration.embeddedSuite(
+                            MemoryMappedReadsTest.class)),
+                    sysProps, true));
+    }
+
+    protected void setUp() throws SQLException {
+        setAutoCommit(false);
+    }
+
+    /**
+     * Scan a table while it grows, truncate it with an in-place compress,
+     * and grow it again, checking the contents after each step.
+     */
+    public void testGrowAndTruncate() throws SQLException {
+        Statement s = createStatement();
+        s.execute("create table t(a int primary key, b varchar(100))");
+
+        long mappings = getMappedBufferCount();
+        insertRows("t", 0, ROWS / 2);
+        checkHeapScan("t", ROWS / 2);
+        insertRows("t", ROWS / 2, ROWS);
+        checkHeapScan("t", ROWS);
+
+        // The table is larger than the page cache, so the scan has read
+        // pages from the file.
+        assertTrue("The container was not mapped",
+                   getMappedBufferCount() > mappings);
+
+        s.executeUpdate("delete from t where a >= " + (ROWS / 4));
+        commit();
+        s.execute("call syscs_util.syscs_inplace_compress_table" +
+                  "('APP', 'T', 1, 1, 1)");
+        commit();
+        checkHeapScan("t", ROWS / 4);
+
+        insertRows("t", ROWS / 4, ROWS);
+        checkHeapScan("t", ROWS);
+
+        // Look up the rows through the index as well.
+        PreparedStatement ps = prepareStatement(
+                "select b from t where a = ?");
+        for (int i = ROWS - 1; i >= 0; i -= 7) {
+            ps.setInt(1, i);
+            ResultSet rs = ps.executeQuery();
+            assertTrue(rs.next());
+            assertEquals(expected(i), rs.getString(1));
+            rs.close();
+        }
+        commit();
+
+        s.execute("drop table t");
+        commit();
+    }
+
+    /**
+     * Get the number of memory mappings of files the JVM holds, as
+     * reported by its buffer pool for mapped buffers.
+     */
+    private static long getMappedBufferCount() {
+        for (BufferPoolMXBean pool :
+                 ManagementFactory.getPlatformMXBeans(
+                     BufferPoolMXBean.class)) {
+            if (pool.getName().equals("mapped")) {
+                return pool.getCount();
+            }
+        }
+        fail("No buffer pool for mapped buffers");
+        return 0;
+    }
+}
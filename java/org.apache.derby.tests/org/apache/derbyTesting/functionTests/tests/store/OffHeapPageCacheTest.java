@@ -0,0 +1,179 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.OffHeapPageCacheTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test that pages which are evicted from a small page cache and kept in
+ * the off-heap page store (derby.storage.pageCacheOffHeapBytes) are read
+ * back correctly, and that pages of dropped or truncated tables are not.
+ */
+public class OffHeapPageCacheTest extends BaseJDBCTestCase {
+
+    /** Number of rows in the test tables, enough to fill many pages. */
+    private static final int ROWS = 3000;
+
+    public OffHeapPageCacheTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties sysProps = new Properties();
+        sysProps.setProperty("derby.storage.pageCacheSize", "40");
+        sysProps.setProperty("derby.storage.pageCacheOffHeapBytes",
+                             String.valueOf(4 * 1024 * 1024));
+
+        return new SystemPropertyTestSetup(
+                TestConfiguration.singleUseDatabaseDecorator(
+                    TestConfiguration.embeddedSuite(
+                        OffHeapPageCacheTest.class)),
+                sysProps, true);
+    }
+
+    protected void setUp() throws SQLException {
+        setAutoCommit(false);
+    }
+
+    /**
+     * Insert rows into a table, update some of them, and verify that all
+     * the rows have the expected values each time the table is scanned.
+     */
+    public void testReadEvictedPages() throws SQLException {
+        Statement s = createStatement();
+        s.execute("create table t1(a int primary key, b varchar(100))");
+        insertRows("t1", "first");
+        s.executeUpdate("update t1 set b = 'updated' || b " +
+                        "where mod(a, 7) = 0");
+        commit();
+
+        for (int i = 0; i < 3; i++) {
+            checkRows("t1", "first", true);
+        }
+
+        // Look up the rows through the index in a different order.
+        PreparedStatement ps = prepareStatement(
+                "select b from t1 where a = ?");
+        for (int i = ROWS - 1; i >= 0; i -= 3) {
+            ps.setInt(1, i);
+            ResultSet rs = ps.executeQuery();
+            assertTrue(rs.next());
+            assertEquals(expected(i, "first", true), rs.getString(1));
+            rs.close();
+        }
+        commit();
+    }
+
+    /**
+     * Verify that a table which is dropped and recreated doesn't see the
+     * pages of the old table.
+     */
+    public void testDropAndRecreate() throws SQLException {
+        Statement s = createStatement();
+        s.execute("create table t2(a int, b varchar(100))");
+        insertRows("t2", "old");
+        commit();
+        checkRows("t2", "old", false);
+
+        s.execute("drop table t2");
+        s.execute("create table t2(a int, b varchar(100))");
+        insertRows("t2", "new");
+        commit();
+
+        for (int i = 0; i < 3; i++) {
+            checkRows("t2", "new", false);
+        }
+    }
+
+    /**
+     * Verify that the rows of a table are still correct after the table
+     * has been compressed, which truncates its container.
+     */
+    public void testCompressTable() throws SQLException {
+        Statement s = createStatement();
+        s.execute("create table t3(a int, b varchar(100))");
+        insertRows("t3", "compress");
+        s.executeUpdate("delete from t3 where a >= " + (ROWS / 2));
+        commit();
+        checkRows("t3", "compress", false, ROWS / 2);
+
+        s.execute("call syscs_util.syscs_inplace_compress_table" +
+                  "('APP', 'T3', 1, 1, 1)");
+        commit();
+        checkRows("t3", "compress", false, ROWS / 2);
+
+        insertRows("t3", "compress", ROWS / 2, ROWS);
+        commit();
+        checkRows("t3", "compress", false);
+    }
+
+    private void insertRows(String table, String tag) throws SQLException {
+        insertRows(table, tag, 0, ROWS);
+    }
+
+    private void insertRows(String table, String tag, int from, int to)
+            throws SQLException {
+        PreparedStatement ps = prepareStatement(
+                "insert into " + table + " values (?, ?)");
+        for (int i = from; i < to; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, expected(i, tag, false));
+            ps.executeUpdate();
+        }
+        ps.close();
+    }
+
+    private void checkRows(String table, String tag, boolean updated)
+            throws SQLException {
+        checkRows(table, tag, updated, ROWS);
+    }
+
+    private void checkRows(String table, String tag, boolean updated,
+                           int rows)
+            throws SQLException {
+        ResultSet rs = createStatement().executeQuery(
+                "select a, b from " + table + " order by a");
+        for (int i = 0; i < rows; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(expected(i, tag, updated), rs.getString(2));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        commit();
+    }
+
+    /** Get the expected value of column b in a row. */
+    private static String expected(int a, String tag, boolean updated) {
+        String b = tag + " row " + a +
+                " ----------------------------------------------------";
+        return (updated && a % 7 == 0) ? "updated" + b : b;
+    }
+}
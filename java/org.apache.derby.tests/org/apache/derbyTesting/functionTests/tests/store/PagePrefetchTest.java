@@ -0,0 +1,178 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.PagePrefetchTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.lang.management.ManagementFactory;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.SecurityManagerSetup;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test that heap and index scans return the right rows when pages are read
+ * ahead of them by the page prefetcher (derby.storage.prefetchMaxPages),
+ * also when the tables are compressed and dropped between the scans. The
+ * PrefetchCount attribute of the page cache MBean shows that the pages
+ * were actually read ahead.
+ */
+public class PagePrefetchTest extends PagedTableTestCase {
+
+    /** Number of rows in the test tables, enough to fill many pages. */
+    private static final int ROWS = 5000;
+
+    public PagePrefetchTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties sysProps = new Properties();
+        sysProps.setProperty("derby.storage.pageCacheSize", "40");
+        sysProps.setProperty("derby.storage.prefetchMaxPages", "16");
+        sysProps.setProperty("derby.system.jmx", "true");
+
+        // The test reads the page cache MBean from the platform MBean
+        // server, which needs permissions the engine's policy doesn't have.
+        return SecurityManagerSetup.noSecurityManager(
+                new SystemPropertyTestSetup(
+                    TestConfiguration.singleUseDatabaseDecorator(
+                        TestConfiguration.embeddedSuite(
+                            PagePrefetchTest.class)),
+                    sysProps, true));
+    }
+
+    protected void setUp() throws Exception {
+        setAutoCommit(false);
+        setCollectAccessCounts(true);
+    }
+
+    protected void tearDown() throws Exception {
+        setCollectAccessCounts(false);
+        super.tearDown();
+    }
+
+    /**
+     * Scan a table through the heap and through its index, both of which
+     * are larger than the page cache.
+     */
+    public void testHeapAndIndexScans() throws Exception {
+        Statement s = createStatement();
+        s.execute("create table t1(a int constraint t1_pk primary key, " +
+                  "b varchar(100))");
+        insertRows("t1", 0, ROWS);
+
+        long prefetches = getPrefetchCount();
+        for (int i = 0; i < 3; i++) {
+            checkHeapScan("t1", ROWS);
+            checkIndexScan("t1", ROWS);
+        }
+        assertTrue("No pages were prefetched",
+                   getPrefetchCount() > prefetches);
+
+        s.execute("drop table t1");
+        commit();
+    }
+
+    /**
+     * Compress and drop a table right after scanning it, while the
+     * prefetcher may still be reading its pages.
+     */
+    public void testCompressAndDrop() throws SQLException {
+        Statement s = createStatement();
+        for (int i = 0; i < 3; i++) {
+            s.execute("create table t2(a int constraint t2_pk primary key, " +
+                      "b varchar(100))");
+            insertRows("t2", 0, ROWS);
+            checkHeapScan("t2", ROWS);
+
+            s.executeUpdate("delete from t2 where a >= " + (ROWS / 3));
+            commit();
+            s.execute("call syscs_util.syscs_inplace_compress_table" +
+                      "('APP', 'T2', 1, 1, 1)");
+            commit();
+            checkHeapScan("t2", ROWS / 3);
+            checkIndexScan("t2", ROWS / 3);
+
+            insertRows("t2", ROWS / 3, ROWS);
+            checkIndexScan("t2", ROWS);
+
+            s.execute("drop table t2");
+            commit();
+        }
+    }
+
+    private void checkIndexScan(String table, int rows) throws SQLException {
+        ResultSet rs = createStatement().executeQuery(
+                "select a from " + table +
+                " --DERBY-PROPERTIES constraint=" + table + "_pk\n" +
+                " where a >= 0 order by a");
+        for (int i = 0; i < rows; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        commit();
+    }
+
+    /**
+     * Get the page cache MBeans. Each database booted in the system has
+     * its own page cache.
+     */
+    private static Iterable<ObjectName> getPageCacheMBeans()
+            throws JMException {
+        return ManagementFactory.getPlatformMBeanServer().queryNames(
+                new ObjectName(
+                    "org.apache.derby:type=CacheManager,name=PageCache,*"),
+                null);
+    }
+
+    /** Turn the access counts of the page caches on or off. */
+    private static void setCollectAccessCounts(boolean collect)
+            throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        int caches = 0;
+        for (ObjectName name : getPageCacheMBeans()) {
+            server.setAttribute(
+                    name, new Attribute("CollectAccessCounts", collect));
+            caches++;
+        }
+        assertTrue("No page cache MBean", caches > 0);
+    }
+
+    /** Get the number of pages read by the prefetchers of the systems. */
+    private static long getPrefetchCount() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        long count = 0;
+        for (ObjectName name : getPageCacheMBeans()) {
+            count += (Long) server.getAttribute(name, "PrefetchCount");
+        }
+        return count;
+    }
+}
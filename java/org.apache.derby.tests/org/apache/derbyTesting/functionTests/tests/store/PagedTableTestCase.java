@@ -0,0 +1,80 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.PagedTableTestCase
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+
+/**
+ * Base class for tests that read tables larger than the page cache and
+ * check the rows they get back. The tables have an int column a, which is
+ * the row number, and a varchar column b, which is long enough to fill a
+ * page with few rows.
+ */
+abstract class PagedTableTestCase extends BaseJDBCTestCase {
+
+    PagedTableTestCase(String name) {
+        super(name);
+    }
+
+    /**
+     * Insert the rows numbered from {@code from} up to {@code to} into a
+     * table, and commit.
+     */
+    void insertRows(String table, int from, int to) throws SQLException {
+        PreparedStatement ps = prepareStatement(
+                "insert into " + table + " values (?, ?)");
+        for (int i = from; i < to; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, expected(i));
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+    }
+
+    /**
+     * Scan a table through its heap, check that it holds the rows
+     * numbered from 0 up to {@code rows}, and commit.
+     */
+    void checkHeapScan(String table, int rows) throws SQLException {
+        ResultSet rs = createStatement().executeQuery(
+                "select a, b from " + table +
+                " --DERBY-PROPERTIES index=null\n order by a");
+        for (int i = 0; i < rows; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(expected(i), rs.getString(2));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        commit();
+    }
+
+    /** Get the expected value of column b in a row. */
+    static String expected(int a) {
+        return "row " + a +
+                " ------------------------------------------------------";
+    }
+}
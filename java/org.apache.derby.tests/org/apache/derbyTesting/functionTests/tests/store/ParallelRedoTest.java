@@ -0,0 +1,183 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.ParallelRedoTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test restart recovery when the log is redone by several worker threads
+ * (derby.storage.recoveryRedoThreads). The log records of different
+ * containers are then applied concurrently, while the records of each
+ * container must still be applied in log order.
+ */
+public class ParallelRedoTest extends BaseJDBCTestCase {
+
+    /** Number of tables changed by the workload. */
+    private static final int TABLES = 5;
+
+    /** Number of transactions committed before the crash. */
+    private static final int TRANSACTIONS = 2000;
+
+    /** Number of transactions after which one is rolled back. */
+    private static final int ROLLBACK_INTERVAL = 10;
+
+    public ParallelRedoTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties props = new Properties();
+        props.setProperty("derby.storage.recoveryRedoThreads", "4");
+        return new SystemPropertyTestSetup(
+                new CleanDatabaseTestSetup(
+                    TestConfiguration.embeddedSuite(ParallelRedoTest.class)),
+                props);
+    }
+
+    /**
+     * Run a workload in a separate JVM which changes several tables and
+     * indexes, and let it exit without shutting down the database. Check
+     * that parallel redo brings back exactly the committed transactions.
+     */
+    public void testRecovery() throws Exception {
+        Statement s = createStatement();
+        for (int t = 0; t < TABLES; t++) {
+            s.executeUpdate("create table t" + t + "(id int primary key, " +
+                            "v int, p varchar(200))");
+            s.executeUpdate("create index t" + t + "_v on t" + t + "(v)");
+        }
+        s.close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod("org.apache.derbyTesting." +
+                "functionTests.tests.store.ParallelRedoTest." +
+                "launchWorkload");
+
+        s = createStatement();
+        int rows = TRANSACTIONS / TABLES;
+        int committed = rows - rows / ROLLBACK_INTERVAL;
+        for (int t = 0; t < TABLES; t++) {
+            // every committed row was updated once, and every fourth
+            // committed row was deleted again
+            JDBC.assertFullResultSet(
+                    s.executeQuery("select count(*), sum(v) from t" + t),
+                    new String[][] {{
+                        String.valueOf(committed - committed / 4),
+                        String.valueOf(committed - committed / 4) }});
+            // the index must agree with the heap
+            JDBC.assertSingleValueResultSet(
+                    s.executeQuery("select count(*) from t" + t +
+                            " --DERBY-PROPERTIES index=t" + t + "_v\n" +
+                            " where v > 0"),
+                    String.valueOf(committed - committed / 4));
+        }
+        // the table created and dropped by the workload must be gone, and
+        // the one created by the uncommitted transaction must not exist
+        JDBC.assertEmpty(s.executeQuery(
+                "select * from sys.systables where tablename like 'TMP%'"));
+
+        for (int t = 0; t < TABLES; t++) {
+            s.executeUpdate("drop table t" + t);
+        }
+    }
+
+    /**
+     * Run by the forked JVM. Spread inserts, updates and deletes over the
+     * tables, roll back some of the transactions, create and drop a table
+     * in the middle of it, and return without shutting down the database
+     * while a transaction is still open.
+     */
+    public void launchWorkload() throws SQLException {
+        // avoid checkpoints, so that recovery redoes the whole workload
+        setSystemProperty("derby.storage.checkpointInterval", "128000000");
+        setSystemProperty("derby.storage.logSwitchInterval", "128000000");
+        setSystemProperty("derby.storage.pageCacheSize", "100");
+
+        Connection c = getConnection();
+        c.setAutoCommit(false);
+        Statement s = c.createStatement();
+
+        PreparedStatement[] ins = new PreparedStatement[TABLES];
+        PreparedStatement[] upd = new PreparedStatement[TABLES];
+        PreparedStatement[] del = new PreparedStatement[TABLES];
+        for (int t = 0; t < TABLES; t++) {
+            ins[t] = c.prepareStatement(
+                    "insert into t" + t + " values (?, 0, ?)");
+            upd[t] = c.prepareStatement(
+                    "update t" + t + " set v = v + 1 where id = ?");
+            del[t] = c.prepareStatement(
+                    "delete from t" + t + " where id = ?");
+        }
+
+        int[] committed = new int[TABLES];
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            int t = i % TABLES;
+            int id = i / TABLES;
+            ins[t].setInt(1, id);
+            ins[t].setString(2, "row " + id +
+                    " ----------------------------------------------------");
+            ins[t].executeUpdate();
+            upd[t].setInt(1, id);
+            upd[t].executeUpdate();
+
+            if (id % ROLLBACK_INTERVAL == ROLLBACK_INTERVAL - 1) {
+                // the rollback writes compensation records which must be
+                // redone too
+                c.rollback();
+                continue;
+            }
+            c.commit();
+
+            if (committed[t]++ % 4 == 3) {
+                del[t].setInt(1, id);
+                del[t].executeUpdate();
+                c.commit();
+            }
+
+            if (i == TRANSACTIONS / 2) {
+                // container operations make the workers catch up
+                s.executeUpdate("create table tmp1(x int)");
+                s.executeUpdate("insert into tmp1 values 1");
+                c.commit();
+                s.executeUpdate("drop table tmp1");
+                c.commit();
+            }
+        }
+
+        // leave an uncommitted transaction which changes every table and
+        // creates a new one
+        for (int t = 0; t < TABLES; t++) {
+            s.executeUpdate("update t" + t + " set v = v + 100");
+        }
+        s.executeUpdate("create table tmp2(x int)");
+    }
+}
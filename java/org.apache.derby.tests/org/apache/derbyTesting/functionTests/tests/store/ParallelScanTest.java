@@ -0,0 +1,242 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.ParallelScanTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test scalar aggregates over tables which are scanned by several scan
+ * daemons (derby.storage.scanThreads). The rows are padded so that the
+ * table spans many pages, which the daemons share out between them.
+ */
+public class ParallelScanTest extends BaseJDBCTestCase {
+
+    /** Number of rows in the table. */
+    private static final int ROWS = 5000;
+
+    public ParallelScanTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties props = new Properties();
+        props.setProperty("derby.storage.scanThreads", "4");
+
+        Test suite = TestConfiguration.embeddedSuite(ParallelScanTest.class);
+        return new SystemPropertyTestSetup(
+                new CleanDatabaseTestSetup(suite) {
+                    protected void decorateSQL(Statement s)
+                            throws SQLException {
+                        Connection conn = s.getConnection();
+                        s.executeUpdate("create table t(a int, b int, " +
+                                "c varchar(10), d decimal(10, 2), " +
+                                "filler varchar(200))");
+                        s.executeUpdate("create table empty_t(a int)");
+                        PreparedStatement ps = conn.prepareStatement(
+                                "insert into t values (?, ?, ?, ?, ?)");
+                        for (int i = 0; i < ROWS; i++) {
+                            ps.setInt(1, i);
+                            if (b(i) == null) {
+                                ps.setNull(2, Types.INTEGER);
+                            } else {
+                                ps.setInt(2, b(i));
+                            }
+                            ps.setString(3, "c" + (i % 100));
+                            ps.setString(4, i + ".25");
+                            ps.setString(5, "x" + i + "................" +
+                                    "..................................");
+                            ps.executeUpdate();
+                        }
+                        ps.close();
+                    }
+                },
+                props, true);
+    }
+
+    /** The value of column b in row i, null for every 11th row. */
+    private static Integer b(int i) {
+        return (i % 11 == 0) ? null : i % 13;
+    }
+
+    public void testAggregates() throws SQLException {
+        long sumA = 0;
+        long sumB = 0;
+        for (int i = 0; i < ROWS; i++) {
+            sumA += i;
+            if (b(i) != null) {
+                sumB += b(i);
+            }
+        }
+
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery(
+                "select count(*), count(b), sum(a), sum(b), max(a), " +
+                "min(a), max(c), min(c), avg(a), max(d) from t");
+        JDBC.assertFullResultSet(rs,
+                new String[][] {{
+                    Integer.toString(ROWS), Integer.toString(countB(0)),
+                    Long.toString(sumA), Long.toString(sumB),
+                    Integer.toString(ROWS - 1), "0", "c99", "c0",
+                    Long.toString(sumA / ROWS), (ROWS - 1) + ".25",
+                }});
+
+        // The nulls of b were eliminated by some of the daemons.
+        rs = s.executeQuery("select count(b), max(b) from t");
+        assertTrue(rs.next());
+        assertSQLState("01003", rs.getWarnings());
+        rs.close();
+
+        // No nulls were eliminated.
+        rs = s.executeQuery("select count(a), sum(a) from t");
+        assertTrue(rs.next());
+        assertNull(rs.getWarnings());
+        assertEquals(ROWS, rs.getInt(1));
+        assertEquals(sumA, rs.getLong(2));
+        rs.close();
+
+        s.close();
+    }
+
+    public void testEmptyTable() throws SQLException {
+        Statement s = createStatement();
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select count(*), count(a), sum(a), max(a), avg(a) " +
+                "from empty_t"),
+                new String[][] {{ "0", "0", null, null, null }});
+        s.close();
+    }
+
+    /**
+     * Check that deleted rows are not seen, and that the transaction's
+     * own uncommitted changes are.
+     */
+    public void testChanges() throws SQLException {
+        setAutoCommit(false);
+        Statement s = createStatement();
+        assertUpdateCount(s, 500, "delete from t where a < 500");
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select count(*), min(a) from t"),
+                new String[][] {{ Integer.toString(ROWS - 500), "500" }});
+        s.executeUpdate("insert into t(a) values -1");
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select count(*), min(a), count(b) from t where 1 = 1"),
+                new String[][] {{ Integer.toString(ROWS - 499), "-1",
+                                  Integer.toString(countB(500)) }});
+        rollback();
+
+        JDBC.assertFullResultSet(s.executeQuery(
+                "select count(*), min(a) from t"),
+                new String[][] {{ Integer.toString(ROWS), "0" }});
+        s.close();
+        commit();
+    }
+
+    /** The number of rows from row start on with a non-null b. */
+    private static int countB(int start) {
+        int count = 0;
+        for (int i = start; i < ROWS; i++) {
+            if (b(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check that the table is scanned in the usual way when another
+     * transaction is changing it.
+     */
+    public void testConcurrentWriter() throws SQLException {
+        Connection other = openDefaultConnection();
+        other.setAutoCommit(false);
+        Statement os = other.createStatement();
+        os.executeUpdate("insert into t(a) values " + ROWS);
+
+        Statement s = createStatement();
+        s.executeUpdate("call syscs_util.syscs_set_database_property(" +
+                "'derby.locks.waitTimeout', '2')");
+        // The row the other transaction inserted is locked.
+        assertStatementError("40XL1", s, "select count(*) from t");
+        other.rollback();
+        os.close();
+        other.close();
+
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(*) from t"), Integer.toString(ROWS));
+        s.executeUpdate("call syscs_util.syscs_set_database_property(" +
+                "'derby.locks.waitTimeout', null)");
+        s.close();
+    }
+
+    /**
+     * Check that an aggregate does not keep writers out of the table for
+     * the rest of the transaction, whatever the isolation level.  The
+     * table is empty, so that the locks of a serial scan are not escalated
+     * to a table lock at repeatable read.
+     */
+    public void testWritersNotBlocked() throws SQLException {
+        Statement s = createStatement();
+        s.executeUpdate("call syscs_util.syscs_set_database_property(" +
+                "'derby.locks.waitTimeout', '2')");
+        setAutoCommit(false);
+
+        Connection other = openDefaultConnection();
+        other.setAutoCommit(false);
+        Statement os = other.createStatement();
+
+        int[] levels = {
+            Connection.TRANSACTION_READ_UNCOMMITTED,
+            Connection.TRANSACTION_READ_COMMITTED,
+            Connection.TRANSACTION_REPEATABLE_READ,
+        };
+        for (int i = 0; i < levels.length; i++) {
+            getConnection().setTransactionIsolation(levels[i]);
+            JDBC.assertSingleValueResultSet(s.executeQuery(
+                    "select count(*) from empty_t"), "0");
+            assertEquals(1, os.executeUpdate(
+                    "insert into empty_t(a) values 1"));
+            other.rollback();
+            commit();
+        }
+        os.close();
+        other.close();
+
+        getConnection().setTransactionIsolation(
+                Connection.TRANSACTION_READ_COMMITTED);
+        s.executeUpdate("call syscs_util.syscs_set_database_property(" +
+                "'derby.locks.waitTimeout', null)");
+        commit();
+        s.close();
+    }
+}
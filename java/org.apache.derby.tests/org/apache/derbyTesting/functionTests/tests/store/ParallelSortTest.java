@@ -0,0 +1,165 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.ParallelSortTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test external sorts whose merge runs are sorted by several sort daemons
+ * (derby.storage.sortThreads). The sort buffer is kept small so that the
+ * sorts make many merge runs, which are then merged in one or more passes.
+ */
+public class ParallelSortTest extends BaseJDBCTestCase {
+
+    /** Number of rows in the table. */
+    private static final int ROWS = 3000;
+
+    /** Number of distinct values of column a. */
+    private static final int A_VALUES = 500;
+
+    /** Number of distinct values of column b. */
+    private static final int B_VALUES = 37;
+
+    public ParallelSortTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties props = new Properties();
+        props.setProperty("derby.storage.sortThreads", "4");
+        props.setProperty("derby.storage.sortBufferMax", "16");
+        props.setProperty("derby.debug.true", "testSort");
+
+        Test suite = TestConfiguration.embeddedSuite(ParallelSortTest.class);
+        return new SystemPropertyTestSetup(
+                new CleanDatabaseTestSetup(suite) {
+                    protected void decorateSQL(Statement s)
+                            throws SQLException {
+                        Connection conn = s.getConnection();
+                        s.executeUpdate("create table t(a int, " +
+                                "b varchar(20), c int)");
+                        PreparedStatement ps = conn.prepareStatement(
+                                "insert into t values (?, ?, ?)");
+                        for (int i = 0; i < ROWS; i++) {
+                            ps.setInt(1, a(i));
+                            ps.setString(2, "b" + (i % B_VALUES));
+                            ps.setInt(3, i);
+                            ps.executeUpdate();
+                        }
+                        ps.close();
+                    }
+                },
+                props, true);
+    }
+
+    /** The value of column a in row i, the rows are not in a order. */
+    private static int a(int i) {
+        return (i * 7919) % A_VALUES;
+    }
+
+    /**
+     * Check that all the rows come back in order, and that duplicate
+     * keys are not lost.
+     */
+    public void testOrderBy() throws SQLException {
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery("select a, c from t order by a, c desc");
+        int rows = 0;
+        int lastA = -1;
+        int lastC = Integer.MAX_VALUE;
+        while (rs.next()) {
+            int a = rs.getInt(1);
+            int c = rs.getInt(2);
+            assertTrue(a >= lastA);
+            if (a == lastA) {
+                assertTrue(c < lastC);
+            }
+            assertEquals(a(c), a);
+            lastA = a;
+            lastC = c;
+            rows++;
+        }
+        rs.close();
+        assertEquals(ROWS, rows);
+        s.close();
+    }
+
+    /**
+     * Check that the sort observers of GROUP BY and DISTINCT see all the
+     * duplicates, also those which end up in different merge runs.
+     */
+    public void testGroupByAndDistinct() throws SQLException {
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery(
+                "select a, count(*), min(c) from t group by a order by a");
+        for (int a = 0; a < A_VALUES; a++) {
+            assertTrue(rs.next());
+            assertEquals(a, rs.getInt(1));
+            assertEquals(ROWS / A_VALUES, rs.getInt(2));
+            assertEquals(a, a(rs.getInt(3)));
+        }
+        assertFalse(rs.next());
+        rs.close();
+
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(*) from (select distinct b from t) d"),
+                Integer.toString(B_VALUES));
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(distinct a) from t"),
+                Integer.toString(A_VALUES));
+        s.close();
+    }
+
+    /**
+     * Check that indexes built from a parallel sort are consistent, and
+     * that duplicates are found when a unique index is created.
+     */
+    public void testCreateIndex() throws SQLException {
+        Statement s = createStatement();
+        s.executeUpdate("create index t_ab on t(a, b)");
+        s.executeUpdate("create unique index t_c on t(c desc)");
+        assertStatementError("23505", s,
+                "create unique index t_a on t(a)");
+
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "values syscs_util.syscs_check_table('APP', 'T')"), "1");
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+                "select count(*) from t --derby-properties index=t_ab\n" +
+                "where a = 7"),
+                Integer.toString(ROWS / A_VALUES));
+
+        s.executeUpdate("drop index t_ab");
+        s.executeUpdate("drop index t_c");
+        s.close();
+    }
+}
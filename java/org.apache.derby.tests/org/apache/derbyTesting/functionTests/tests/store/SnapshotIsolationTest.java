@@ -0,0 +1,325 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.SnapshotIsolationTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test snapshot reads of heaps (derby.storage.snapshotIsolation). Read only
+ * scans of heaps at read committed must see the last committed version of
+ * the rows, without waiting for the locks of uncommitted writers which
+ * started while a transaction reading snapshots was active.
+ */
+public class SnapshotIsolationTest extends BaseJDBCTestCase {
+
+    public SnapshotIsolationTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        Properties props = new Properties();
+        props.setProperty("derby.storage.snapshotIsolation", "true");
+        // room for the versions of a few rows only
+        props.setProperty("derby.storage.snapshotMaxMemory", "8");
+        // a scan blocked by a writer would time out quickly
+        props.setProperty("derby.locks.waitTimeout", "2");
+        return new SystemPropertyTestSetup(
+                new CleanDatabaseTestSetup(
+                    TestConfiguration.embeddedSuite(
+                        SnapshotIsolationTest.class)) {
+                    protected void decorateSQL(Statement s)
+                            throws SQLException {
+                        s.executeUpdate("create table t(id int, v int)");
+                        s.executeUpdate("create table big(id int, v int)");
+                        s.executeUpdate(
+                            "insert into big select id, id from " +
+                            "(values 1, 2, 3, 4, 5, 6, 7, 8, 9, 10) a(id)");
+                        for (int i = 0; i < 4; i++) {
+                            s.executeUpdate("insert into big " +
+                                "select id + (select count(*) from big), v " +
+                                "from big");
+                        }
+                        s.executeUpdate(
+                            "create table lobs(id int, b blob(1M))");
+                    }
+                },
+                props, true);
+    }
+
+    protected void setUp() throws SQLException {
+        Statement s = createStatement();
+        s.executeUpdate("delete from t");
+        s.executeUpdate("insert into t values (1, 10), (2, 20), (3, 30)");
+        s.close();
+        setAutoCommit(false);
+    }
+
+    /**
+     * Open a second connection reading at read committed, and start a
+     * transaction which reads snapshots, so that writers keep versions.
+     */
+    private Connection openReader() throws SQLException {
+        Connection reader = openDefaultConnection();
+        reader.setAutoCommit(false);
+        reader.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        Statement s = reader.createStatement();
+        JDBC.assertDrainResults(s.executeQuery("select * from t"));
+        s.close();
+        return reader;
+    }
+
+    /** Check that a scan of a table by a connection waits for a lock. */
+    private static void assertScanWaits(Connection c, String table)
+            throws SQLException {
+        Statement s = c.createStatement();
+        try {
+            JDBC.assertDrainResults(s.executeQuery("select * from " + table));
+            fail("scan of " + table + " should wait for the writer");
+        } catch (SQLException se) {
+            assertSQLState("40XL1", se);
+        }
+        s.close();
+    }
+
+    /** Check the rows a connection sees in the table, ordered by id. */
+    private static void assertTable(Connection c, String[][] expected)
+            throws SQLException {
+        Statement s = c.createStatement();
+        JDBC.assertFullResultSet(
+                s.executeQuery("select id, v from t order by id"), expected);
+        s.close();
+    }
+
+    /**
+     * Uncommitted updates, deletes and inserts must not block a reader,
+     * which sees the committed rows until the writer commits.
+     */
+    public void testReadersDoNotBlock() throws SQLException {
+        Connection reader = openReader();
+        String[][] committed = {{"1", "10"}, {"2", "20"}, {"3", "30"}};
+
+        Statement s = createStatement();
+        s.executeUpdate("update t set v = 21 where id = 2");
+        s.executeUpdate("delete from t where id = 3");
+        s.executeUpdate("insert into t values (4, 40)");
+
+        // the writer sees its own changes, the reader the committed rows
+        assertTable(getConnection(), new String[][] {
+            {"1", "10"}, {"2", "21"}, {"4", "40"}});
+        s.executeUpdate("update t set v = 22 where id = 2");
+        assertTable(reader, committed);
+
+        commit();
+        assertTable(reader, new String[][] {
+            {"1", "10"}, {"2", "22"}, {"4", "40"}});
+
+        s.close();
+        reader.commit();
+        reader.close();
+    }
+
+    /** The changes of a rolled back writer are never seen by a reader. */
+    public void testRollback() throws SQLException {
+        Connection reader = openReader();
+        String[][] committed = {{"1", "10"}, {"2", "20"}, {"3", "30"}};
+
+        Statement s = createStatement();
+        s.executeUpdate("update t set v = v + 1");
+        s.executeUpdate("delete from t where id = 1");
+        s.executeUpdate("insert into t values (5, 50)");
+        assertTable(reader, committed);
+
+        rollback();
+        assertTable(reader, committed);
+        assertTable(getConnection(), committed);
+
+        s.close();
+        reader.commit();
+        reader.close();
+    }
+
+    /**
+     * A scan keeps reading the snapshot it started with when a writer
+     * commits while it is open.
+     */
+    public void testConsistentScan() throws SQLException {
+        Connection reader = openReader();
+        Statement rs_s = reader.createStatement();
+        ResultSet rs = rs_s.executeQuery("select v from t");
+        assertTrue(rs.next());
+        int sum = rs.getInt(1);
+
+        // move 5 from every row to the first one, and commit.
+        Statement s = createStatement();
+        s.executeUpdate(
+            "update t set v = case when id = 1 then v + 10 else v - 5 end");
+        commit();
+
+        while (rs.next()) {
+            sum += rs.getInt(1);
+        }
+        rs.close();
+        rs_s.close();
+        reader.commit();
+
+        assertEquals(60, sum);
+        assertTable(reader, new String[][] {
+            {"1", "20"}, {"2", "15"}, {"3", "25"}});
+
+        s.close();
+        reader.commit();
+        reader.close();
+    }
+
+    /** Updatable cursors still lock the rows they read. */
+    public void testUpdatableScanLocks() throws SQLException {
+        Connection reader = openReader();
+
+        Statement s = createStatement();
+        s.executeUpdate("update t set v = 0 where id = 1");
+
+        Statement us = reader.createStatement(
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_UPDATABLE);
+        try {
+            ResultSet rs = us.executeQuery("select id, v from t for update");
+            while (rs.next()) {
+                rs.updateInt(2, 1);
+                rs.updateRow();
+            }
+            fail("updatable scan should wait for the writer");
+        } catch (SQLException se) {
+            assertSQLState("40XL1", se);
+        }
+        reader.rollback();
+        us.close();
+        reader.close();
+
+        rollback();
+        s.close();
+    }
+
+    /**
+     * A writer which starts while no transaction reads snapshots does not
+     * keep versions, so a reader locks the rows it reads until the writer
+     * is done.
+     */
+    public void testNoVersionsWithoutReaders() throws SQLException {
+        Statement s = createStatement();
+        s.executeUpdate("update t set v = 0 where id = 1");
+
+        Connection reader = openDefaultConnection();
+        reader.setAutoCommit(false);
+        reader.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        assertScanWaits(reader, "t");
+        reader.rollback();
+
+        // once the reader's transaction reads snapshots, the next writer
+        // keeps versions
+        commit();
+        JDBC.assertDrainResults(reader.createStatement().executeQuery(
+                "select * from t"));
+        s.executeUpdate("update t set v = 1 where id = 1");
+        assertTable(reader, new String[][] {
+            {"1", "0"}, {"2", "20"}, {"3", "30"}});
+
+        commit();
+        s.close();
+        reader.commit();
+        reader.close();
+    }
+
+    /**
+     * A writer whose versions don't fit in memory stops keeping them. A
+     * scan which was reading a snapshot then locks the rows it reads, and
+     * no new snapshot is taken until the writer is done.
+     */
+    public void testMemoryLimit() throws SQLException {
+        Connection reader = openReader();
+        Statement rs_s = reader.createStatement();
+        ResultSet rs = rs_s.executeQuery("select id, v from big");
+        assertTrue(rs.next());
+
+        Statement s = createStatement();
+        assertEquals(160, s.executeUpdate("update big set v = -v"));
+
+        try {
+            while (rs.next()) {
+            }
+            fail("scan should wait for the writer");
+        } catch (SQLException se) {
+            assertSQLState("40XL1", se);
+        }
+        rs_s.close();
+        reader.rollback();
+
+        // no new snapshot while the writer is active
+        assertScanWaits(reader, "big");
+        reader.rollback();
+
+        commit();
+        Statement rs2 = reader.createStatement();
+        JDBC.assertSingleValueResultSet(rs2.executeQuery(
+                "select count(*) from big where v < 0"), "160");
+        rs2.close();
+
+        s.close();
+        reader.commit();
+        reader.close();
+    }
+
+    /**
+     * The versions of rows with long columns are not kept, so a writer
+     * changing such a row stops keeping versions.
+     */
+    public void testLongColumn() throws SQLException {
+        PreparedStatement ps = prepareStatement(
+                "insert into lobs values (?, ?)");
+        ps.setInt(1, 1);
+        ps.setBytes(2, new byte[100000]);
+        ps.executeUpdate();
+        ps.close();
+        commit();
+
+        Connection reader = openReader();
+        Statement s = createStatement();
+        s.executeUpdate("update lobs set id = 2");
+        assertScanWaits(reader, "lobs");
+        reader.rollback();
+
+        rollback();
+        s.executeUpdate("delete from lobs");
+        commit();
+        s.close();
+        reader.close();
+    }
+}
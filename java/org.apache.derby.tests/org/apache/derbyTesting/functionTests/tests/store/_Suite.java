@@ -86,6 +86,18 @@ public class _Suite extends BaseTestCase  {
         suite.addTest(StoreScriptsTest.suite());
         suite.addTest(Derby4923Test.suite());
         suite.addTest(SpaceTableTest.suite());
+        suite.addTest(OffHeapPageCacheTest.suite());
+        suite.addTest(MemoryMappedReadsTest.suite());
+        suite.addTest(PagePrefetchTest.suite());
+        suite.addTest(GroupCommitTest.suite());
+        suite.addTest(LogFileRecyclingTest.suite());
+        suite.addTest(IncrementalCheckpointTest.suite());
+        suite.addTest(ParallelRedoTest.suite());
+        suite.addTest(LogCompressionTest.suite());
+        suite.addTest(CompressedRecordsTest.suite());
+        suite.addTest(SnapshotIsolationTest.suite());
+        suite.addTest(ParallelSortTest.suite());
+        suite.addTest(ParallelScanTest.suite());
         
         /* Tests that only run in sane builds */
         if (SanityManager.DEBUG) {
@@ -0,0 +1,246 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.storetests.LockEscalationThresholdTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.storetests;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test the per table lock escalation thresholds set with
+ * SYSCS_UTIL.SYSCS_SET_LOCK_ESCALATION_THRESHOLD.
+ */
+public class LockEscalationThresholdTest extends BaseJDBCTestCase {
+
+    public LockEscalationThresholdTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new CleanDatabaseTestSetup(
+                TestConfiguration.embeddedSuite(
+                    LockEscalationThresholdTest.class)) {
+            protected void decorateSQL(Statement s) throws SQLException {
+                s.executeUpdate("create table t1(c int)");
+                s.executeUpdate("create table t2(c int)");
+                s.executeUpdate("create table t3(c int)");
+            }
+        };
+    }
+
+    protected void tearDown() throws Exception {
+        rollback();
+        setAutoCommit(true);
+        setThreshold("T1", 0);
+        setThreshold("T2", 0);
+        setThreshold("T3", 0);
+        super.tearDown();
+    }
+
+    private void setThreshold(String table, int threshold)
+            throws SQLException {
+        CallableStatement cs = prepareCall(
+            "call syscs_util.syscs_set_lock_escalation_threshold(?, ?, ?)");
+        cs.setString(1, "APP");
+        cs.setString(2, table);
+        cs.setInt(3, threshold);
+        cs.execute();
+        cs.close();
+    }
+
+    /** Insert rows into a table in the current transaction. */
+    private void insertRows(String table, int rows) throws SQLException {
+        insertRows(getConnection(), table, rows);
+    }
+
+    /** Insert rows into a table in the current transaction of a connection. */
+    private static void insertRows(Connection c, String table, int rows)
+            throws SQLException {
+        PreparedStatement ps =
+            c.prepareStatement("insert into " + table + " values ?");
+        for (int i = 0; i < rows; i++) {
+            ps.setInt(1, i);
+            ps.executeUpdate();
+        }
+        ps.close();
+    }
+
+    /** Check the distinct types and modes of the locks held on a table. */
+    private void assertLocks(String table, String[][] expected)
+            throws SQLException {
+        PreparedStatement ps = prepareStatement(
+            "select distinct type, mode from syscs_diag.lock_table " +
+            "where tablename = ? order by type, mode");
+        ps.setString(1, table);
+        JDBC.assertFullResultSet(ps.executeQuery(), expected);
+        ps.close();
+    }
+
+    /**
+     * A table with a threshold below derby.locks.escalationThreshold has its
+     * row locks escalated once the threshold is reached, other tables don't.
+     */
+    public void testTableThreshold() throws SQLException {
+        setThreshold("T1", 150);
+        setAutoCommit(false);
+
+        insertRows("T1", 200);
+        insertRows("T2", 200);
+        assertLocks("T1", new String[][] {
+            { "TABLE", "IX" }, { "TABLE", "X" } });
+        assertLocks("T2", new String[][] {
+            { "ROW", "X" }, { "TABLE", "IX" } });
+        rollback();
+
+        // without the override, both tables keep their row locks
+        setThreshold("T1", 0);
+        commit();
+        insertRows("T1", 200);
+        insertRows("T2", 200);
+        assertLocks("T1", new String[][] {
+            { "ROW", "X" }, { "TABLE", "IX" } });
+        assertLocks("T2", new String[][] {
+            { "ROW", "X" }, { "TABLE", "IX" } });
+        rollback();
+    }
+
+    /**
+     * A threshold set while other connections are open applies to their
+     * next transaction. Uses its own table, since escalation doesn't wait
+     * for the post abort work of the other tests.
+     */
+    public void testThresholdSetByOtherConnection() throws SQLException {
+        Connection other = openDefaultConnection();
+        other.setAutoCommit(false);
+        insertRows(other, "T3", 1);
+        other.commit();
+
+        setThreshold("T3", 150);
+        // the other connection also locks the changed properties when it
+        // reads them, so the row locks may fall just short of the
+        // threshold the first time the limit is reached
+        insertRows(other, "T3", 400);
+        assertLocks("T3", new String[][] {
+            { "TABLE", "IX" }, { "TABLE", "X" } });
+        other.rollback();
+        other.close();
+    }
+
+    /** Get the conglomerate number of the heap of a table. */
+    private long getHeapNumber(String table) throws SQLException {
+        PreparedStatement ps = prepareStatement(
+            "select c.conglomeratenumber from sys.sysconglomerates c, " +
+            "sys.systables t where c.tableid = t.tableid and " +
+            "t.tablename = ? and not c.isindex");
+        ps.setString(1, table);
+        ResultSet rs = ps.executeQuery();
+        assertTrue(rs.next());
+        long number = rs.getLong(1);
+        rs.close();
+        ps.close();
+        return number;
+    }
+
+    /** Check the threshold stored for a conglomerate. */
+    private void assertStoredThreshold(long conglomerate, String expected)
+            throws SQLException {
+        PreparedStatement ps = prepareStatement(
+            "values syscs_util.syscs_get_database_property(?)");
+        ps.setString(1, "derby.locks.escalationThreshold." + conglomerate);
+        JDBC.assertSingleValueResultSet(ps.executeQuery(), expected);
+        ps.close();
+    }
+
+    /**
+     * A threshold is only applied once the transaction setting it commits,
+     * and is still set after the database is rebooted.
+     */
+    public void testThresholdKeptOnReboot() throws SQLException {
+        setAutoCommit(false);
+        setThreshold("T1", 150);
+        rollback();
+        assertStoredThreshold(getHeapNumber("T1"), null);
+
+        setThreshold("T1", 150);
+        commit();
+        assertStoredThreshold(getHeapNumber("T1"), "150");
+
+        getTestConfiguration().shutdownDatabase();
+
+        setAutoCommit(false);
+        insertRows("T1", 200);
+        assertLocks("T1", new String[][] {
+            { "TABLE", "IX" }, { "TABLE", "X" } });
+        rollback();
+    }
+
+    /**
+     * The threshold of a table is dropped with its heap, when the table is
+     * compressed, truncated or dropped.
+     */
+    public void testThresholdDroppedWithTable() throws SQLException {
+        Statement s = createStatement();
+        s.executeUpdate("create table t4(c int)");
+
+        long heap = getHeapNumber("T4");
+        setThreshold("T4", 150);
+        assertStoredThreshold(heap, "150");
+        s.execute("call syscs_util.syscs_compress_table('APP', 'T4', 1)");
+        assertStoredThreshold(heap, null);
+        assertStoredThreshold(getHeapNumber("T4"), null);
+
+        heap = getHeapNumber("T4");
+        setThreshold("T4", 150);
+        s.executeUpdate("truncate table t4");
+        assertStoredThreshold(heap, null);
+
+        heap = getHeapNumber("T4");
+        setThreshold("T4", 150);
+        s.executeUpdate("drop table t4");
+        assertStoredThreshold(heap, null);
+        s.close();
+    }
+
+    /** Invalid thresholds and unknown tables are rejected. */
+    public void testInvalidArguments() throws SQLException {
+        assertStatementError("22008", createStatement(),
+            "call syscs_util.syscs_set_lock_escalation_threshold" +
+            "('APP', 'T1', 99)");
+        assertStatementError("22008", createStatement(),
+            "call syscs_util.syscs_set_lock_escalation_threshold" +
+            "('APP', 'T1', -1)");
+        assertStatementError("42X05", createStatement(),
+            "call syscs_util.syscs_set_lock_escalation_threshold" +
+            "('APP', 'NOSUCHTABLE', 1000)");
+        assertStatementError("42X05", createStatement(),
+            "call syscs_util.syscs_set_lock_escalation_threshold" +
+            "('APP', null, 1000)");
+    }
+}
@@ -38,6 +38,7 @@ public class _Suite extends BaseTestCase {
         suite.addTest(st_reclaim_longcol.suite());
         suite.addTest(st_derby715.suite());
         suite.addTest(Derby94Test.suite());
+        suite.addTest(LockEscalationThresholdTest.suite());
 
         return suite;
     }
@@ -0,0 +1,308 @@
+/*
+
+Derby - Class org.apache.derbyTesting.perf.clients.CacheManagerBenchmark
+
+Licensed to the Apache Software Foundation (ASF) under one or more
+contributor license agreements.  See the NOTICE file distributed with
+this work for additional information regarding copyright ownership.
+The ASF licenses this file to You under the Apache License, Version 2.0
+(the "License"); you may not use this file except in compliance with
+the License.  You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+*/
+
+package org.apache.derbyTesting.perf.clients;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import org.apache.derby.iapi.services.cache.CacheFactory;
+import org.apache.derby.iapi.services.cache.CacheManager;
+import org.apache.derby.iapi.services.cache.Cacheable;
+import org.apache.derby.iapi.services.cache.CacheableFactory;
+import org.apache.derby.iapi.services.monitor.Monitor;
+import org.apache.derby.shared.common.error.StandardException;
+import org.apache.derby.shared.common.reference.Module;
+
+/**
+ * Micro-benchmark which measures the throughput of {@code find()} and
+ * {@code release()} calls on a {@code CacheManager} when it is accessed by
+ * many threads concurrently. Unlike the other performance tests in this
+ * package, it does not go through JDBC, so it isolates the cost of the
+ * cache manager and its replacement policy.
+ *
+ * <p>
+ *
+ * The benchmark runs a number of warmup iterations whose results are
+ * discarded, followed by a number of measurement iterations. For each
+ * measurement iteration it reports the number of operations (one
+ * find/release pair) per second, and at the end it reports the mean and
+ * the standard deviation. To learn how to run it, invoke this command:
+ * <pre>
+ * java org.apache.derbyTesting.perf.clients.CacheManagerBenchmark -help
+ * </pre>
+ */
+public class CacheManagerBenchmark {
+
+    /** The number of threads accessing the cache. */
+    private static int threads = Runtime.getRuntime().availableProcessors();
+    /** The maximum number of objects in the cache. */
+    private static int cacheSize = 1000;
+    /** The number of distinct keys to look up. */
+    private static int keys = 2000;
+    /** The replacement policy to use. */
+    private static String policy = CacheFactory.CLOCK_POLICY;
+    /** The number of partitions in the replacement policy. */
+    private static int partitions = 1;
+    /** The number of warmup iterations. */
+    private static int warmupIterations = 3;
+    /** The number of measurement iterations. */
+    private static int iterations = 5;
+    /** The length of each iteration in seconds. */
+    private static int iterationSec = 5;
+
+    /**
+     * Main method which starts the benchmark.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        if (!parseArgs(args)) {
+            printUsage(System.err);
+            System.exit(1);
+        }
+
+        Monitor.startMonitor(new Properties(),
+                             new PrintWriter(System.err, true));
+        CacheFactory cf =
+                (CacheFactory) Monitor.startSystemModule(Module.CacheFactory);
+        CacheManager cm = cf.newCacheManager(
+                new BenchmarkCacheableFactory(), "BenchmarkCache",
+                cacheSize / 2, cacheSize, policy, partitions);
+
+        out.println("threads=" + threads + " size=" + cacheSize +
+                    " keys=" + keys + " policy=" + policy +
+                    " partitions=" + partitions);
+
+        for (int i = 1; i <= warmupIterations; i++) {
+            double opsPerSec = runIteration(cm);
+            out.println("Warmup iteration " + i + ": " +
+                        Math.round(opsPerSec) + " ops/s");
+        }
+
+        double[] results = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            results[i] = runIteration(cm);
+            out.println("Iteration " + (i + 1) + ": " +
+                        Math.round(results[i]) + " ops/s");
+        }
+
+        double sum = 0;
+        for (double r : results) {
+            sum += r;
+        }
+        double mean = sum / results.length;
+        double squares = 0;
+        for (double r : results) {
+            squares += (r - mean) * (r - mean);
+        }
+        double stddev = results.length > 1 ?
+                Math.sqrt(squares / (results.length - 1)) : 0;
+
+        out.println("Result: " + Math.round(mean) + " ops/s (stddev " +
+                    Math.round(stddev) + ", " +
+                    Math.round(mean / threads) + " ops/s per thread)");
+
+        cm.shutdown();
+    }
+
+    /**
+     * Run one iteration of the benchmark with all the threads.
+     *
+     * @param cm the cache manager to test
+     * @return the number of operations per second
+     */
+    private static double runIteration(final CacheManager cm)
+            throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        final Worker[] workers = new Worker[threads];
+        Thread[] ts = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(cm, barrier, i);
+            ts[i] = new Thread(workers[i], "CacheManagerBenchmark-" + i);
+            ts[i].start();
+        }
+
+        barrier.await(); // start the workers
+        long start = System.nanoTime();
+        Thread.sleep(iterationSec * 1000L);
+        for (Worker w : workers) {
+            w.stop = true;
+        }
+        for (Thread t : ts) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long ops = 0;
+        for (Worker w : workers) {
+            if (w.error != null) {
+                throw w.error;
+            }
+            ops += w.operations;
+        }
+        return ops * 1e9 / elapsed;
+    }
+
+    /**
+     * A thread which repeatedly looks up random keys in the cache and
+     * releases them again.
+     */
+    private static class Worker implements Runnable {
+        private final CacheManager cm;
+        private final CyclicBarrier barrier;
+        private final Random random;
+        /** Set to tell the worker to stop. */
+        volatile boolean stop;
+        /** The number of completed operations. */
+        long operations;
+        /** Exception thrown by the worker, if any. */
+        Exception error;
+
+        Worker(CacheManager cm, CyclicBarrier barrier, int seed) {
+            this.cm = cm;
+            this.barrier = barrier;
+            this.random = new Random(seed);
+        }
+
+        public void run() {
+            try {
+                barrier.await();
+                long ops = 0;
+                while (!stop) {
+                    Integer key = random.nextInt(keys);
+                    Cacheable c = cm.find(key);
+                    cm.release(c);
+                    ops++;
+                }
+                operations = ops;
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+    }
+
+    /** Factory which creates the objects stored in the cache. */
+    private static class BenchmarkCacheableFactory
+            implements CacheableFactory {
+        public Cacheable newCacheable(CacheManager cm) {
+            return new BenchmarkCacheable();
+        }
+    }
+
+    /** A cached object which is never dirty and costs nothing to load. */
+    private static class BenchmarkCacheable implements Cacheable {
+        private Object identity;
+
+        public Cacheable setIdentity(Object key) {
+            identity = key;
+            return this;
+        }
+
+        public Cacheable createIdentity(Object key, Object createParameter) {
+            identity = key;
+            return this;
+        }
+
+        public void clearIdentity() {
+            identity = null;
+        }
+
+        public Object getIdentity() {
+            return identity;
+        }
+
+        public boolean isDirty() {
+            return false;
+        }
+
+        public void clean(boolean forRemove) throws StandardException {
+        }
+    }
+
+    /**
+     * Parse the command line arguments.
+     *
+     * @param args the arguments
+     * @return {@code true} if the arguments were valid
+     */
+    private static boolean parseArgs(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-size")) {
+                    cacheSize = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-keys")) {
+                    keys = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-policy")) {
+                    policy = args[++i];
+                } else if (arg.equals("-partitions")) {
+                    partitions = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-wi")) {
+                    warmupIterations = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-i")) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-time")) {
+                    iterationSec = Integer.parseInt(args[++i]);
+                } else {
+                    return false;
+                }
+            }
+        } catch (RuntimeException e) {
+            // NumberFormatException or ArrayIndexOutOfBoundsException
+            return false;
+        }
+        return threads > 0 && cacheSize > 0 && keys > 0 && iterations > 0;
+    }
+
+    /**
+     * Print a usage message.
+     *
+     * @param out the stream to print the message to
+     */
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java " + CacheManagerBenchmark.class.getName() +
+                    " [options]");
+        out.println();
+        out.println("Options:");
+        out.println("  -threads NUM     number of threads (default: number " +
+                    "of processors)");
+        out.println("  -size NUM        maximum number of cached objects " +
+                    "(default: 1000)");
+        out.println("  -keys NUM        number of distinct keys to look up " +
+                    "(default: 2000)");
+        out.println("  -policy NAME     replacement policy, CLOCK or 2Q " +
+                    "(default: CLOCK)");
+        out.println("  -partitions NUM  number of partitions in the " +
+                    "replacement policy (default: 1)");
+        out.println("  -wi NUM          number of warmup iterations " +
+                    "(default: 3)");
+        out.println("  -i NUM           number of measurement iterations " +
+                    "(default: 5)");
+        out.println("  -time SEC        length of each iteration in " +
+                    "seconds (default: 5)");
+    }
+}
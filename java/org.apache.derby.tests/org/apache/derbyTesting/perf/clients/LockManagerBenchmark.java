@@ -0,0 +1,325 @@
+/*
+
+Derby - Class org.apache.derbyTesting.perf.clients.LockManagerBenchmark
+
+Licensed to the Apache Software Foundation (ASF) under one or more
+contributor license agreements.  See the NOTICE file distributed with
+this work for additional information regarding copyright ownership.
+The ASF licenses this file to You under the Apache License, Version 2.0
+(the "License"); you may not use this file except in compliance with
+the License.  You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+*/
+
+package org.apache.derbyTesting.perf.clients;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import org.apache.derby.iapi.services.locks.C_LockFactory;
+import org.apache.derby.iapi.services.locks.CompatibilitySpace;
+import org.apache.derby.iapi.services.locks.Latch;
+import org.apache.derby.iapi.services.locks.LockFactory;
+import org.apache.derby.iapi.services.locks.Lockable;
+import org.apache.derby.iapi.services.monitor.Monitor;
+import org.apache.derby.shared.common.reference.Module;
+
+/**
+ * Micro-benchmark which measures the throughput of {@code lockObject()}
+ * and {@code unlock()} calls on the {@code LockFactory} when it is used by
+ * many threads concurrently. Like {@link CacheManagerBenchmark}, it does
+ * not go through JDBC, so it isolates the cost of the lock manager.
+ *
+ * <p>
+ *
+ * By default every thread locks its own set of objects, so that the locks
+ * are never contended, which is the common case for row locks. With the
+ * {@code -shared} option all the threads lock objects from the same set,
+ * and with {@code -exclusive} they lock them exclusively, so that they
+ * conflict with each other.
+ *
+ * <p>
+ *
+ * For each measurement iteration the benchmark reports the number of
+ * operations (one lock/unlock pair) per second, and at the end it reports
+ * the mean, the standard deviation and the throughput per thread. To learn
+ * how to run it, invoke this command:
+ * <pre>
+ * java org.apache.derbyTesting.perf.clients.LockManagerBenchmark -help
+ * </pre>
+ */
+public class LockManagerBenchmark {
+
+    /** Qualifier for shared locks. */
+    private static final String SHARED = "S";
+    /** Qualifier for exclusive locks. */
+    private static final String EXCLUSIVE = "X";
+
+    /** The number of threads locking objects. */
+    private static int threads = Runtime.getRuntime().availableProcessors();
+    /** The number of distinct objects locked by each thread. */
+    private static int keys = 1000;
+    /** Whether all the threads lock objects from the same set. */
+    private static boolean shared;
+    /** Whether the objects are locked exclusively. */
+    private static boolean exclusive;
+    /** The number of warmup iterations. */
+    private static int warmupIterations = 3;
+    /** The number of measurement iterations. */
+    private static int iterations = 5;
+    /** The length of each iteration in seconds. */
+    private static int iterationSec = 5;
+
+    /**
+     * Main method which starts the benchmark.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        if (!parseArgs(args)) {
+            printUsage(System.err);
+            System.exit(1);
+        }
+
+        Monitor.startMonitor(new Properties(),
+                             new PrintWriter(System.err, true));
+        LockFactory lf =
+                (LockFactory) Monitor.startSystemModule(Module.LockFactory);
+
+        out.println("threads=" + threads + " keys=" + keys +
+                    " shared=" + shared + " exclusive=" + exclusive);
+
+        for (int i = 1; i <= warmupIterations; i++) {
+            double opsPerSec = runIteration(lf);
+            out.println("Warmup iteration " + i + ": " +
+                        Math.round(opsPerSec) + " ops/s");
+        }
+
+        double[] results = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            results[i] = runIteration(lf);
+            out.println("Iteration " + (i + 1) + ": " +
+                        Math.round(results[i]) + " ops/s");
+        }
+
+        double sum = 0;
+        for (double r : results) {
+            sum += r;
+        }
+        double mean = sum / results.length;
+        double squares = 0;
+        for (double r : results) {
+            squares += (r - mean) * (r - mean);
+        }
+        double stddev = results.length > 1 ?
+                Math.sqrt(squares / (results.length - 1)) : 0;
+
+        out.println("Result: " + Math.round(mean) + " ops/s (stddev " +
+                    Math.round(stddev) + ", " +
+                    Math.round(mean / threads) + " ops/s per thread)");
+    }
+
+    /**
+     * Run one iteration of the benchmark with all the threads.
+     *
+     * @param lf the lock factory to test
+     * @return the number of operations per second
+     */
+    private static double runIteration(final LockFactory lf)
+            throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        final Worker[] workers = new Worker[threads];
+        Thread[] ts = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(lf, barrier, i);
+            ts[i] = new Thread(workers[i], "LockManagerBenchmark-" + i);
+            ts[i].start();
+        }
+
+        barrier.await(); // start the workers
+        long start = System.nanoTime();
+        Thread.sleep(iterationSec * 1000L);
+        for (Worker w : workers) {
+            w.stop = true;
+        }
+        for (Thread t : ts) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long ops = 0;
+        for (Worker w : workers) {
+            if (w.error != null) {
+                throw w.error;
+            }
+            ops += w.operations;
+        }
+        return ops * 1e9 / elapsed;
+    }
+
+    /**
+     * A thread which repeatedly locks random objects in its own
+     * compatibility space and unlocks them again.
+     */
+    private static class Worker implements Runnable {
+        private final LockFactory lf;
+        private final CyclicBarrier barrier;
+        private final Random random;
+        private final CompatibilitySpace space;
+        private final Object group = new Object();
+        private final BenchmarkLockable[] objects;
+        /** Set to tell the worker to stop. */
+        volatile boolean stop;
+        /** The number of completed operations. */
+        long operations;
+        /** Exception thrown by the worker, if any. */
+        Exception error;
+
+        Worker(LockFactory lf, CyclicBarrier barrier, int id) {
+            this.lf = lf;
+            this.barrier = barrier;
+            this.random = new Random(id);
+            this.space = lf.createCompatibilitySpace(null);
+            // objects are equal if their keys are, so threads lock the same
+            // objects if they use the same keys
+            int first = shared ? 0 : id * keys;
+            objects = new BenchmarkLockable[keys];
+            for (int i = 0; i < keys; i++) {
+                objects[i] = new BenchmarkLockable(first + i);
+            }
+        }
+
+        public void run() {
+            try {
+                barrier.await();
+                String qualifier = exclusive ? EXCLUSIVE : SHARED;
+                long ops = 0;
+                while (!stop) {
+                    BenchmarkLockable ref = objects[random.nextInt(keys)];
+                    lf.lockObject(space, group, ref, qualifier,
+                                  C_LockFactory.WAIT_FOREVER);
+                    lf.unlock(space, group, ref, qualifier);
+                    ops++;
+                }
+                operations = ops;
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * An object which can be locked in shared or exclusive mode, and which
+     * is identified by an integer key.
+     */
+    private static class BenchmarkLockable implements Lockable {
+        private final int key;
+
+        BenchmarkLockable(int key) {
+            this.key = key;
+        }
+
+        public void lockEvent(Latch lockInfo) {
+        }
+
+        public boolean requestCompatible(Object requestedQualifier,
+                                         Object grantedQualifier) {
+            return requestedQualifier == SHARED &&
+                   grantedQualifier == SHARED;
+        }
+
+        public boolean lockerAlwaysCompatible() {
+            return true;
+        }
+
+        public void unlockEvent(Latch lockInfo) {
+        }
+
+        public boolean lockAttributes(int flag,
+                                      Hashtable<String, Object> attributes) {
+            return false;
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof BenchmarkLockable &&
+                   ((BenchmarkLockable) other).key == key;
+        }
+
+        public int hashCode() {
+            return key;
+        }
+    }
+
+    /**
+     * Parse the command line arguments.
+     *
+     * @param args the arguments
+     * @return {@code true} if the arguments were valid
+     */
+    private static boolean parseArgs(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-keys")) {
+                    keys = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-shared")) {
+                    shared = true;
+                } else if (arg.equals("-exclusive")) {
+                    exclusive = true;
+                } else if (arg.equals("-wi")) {
+                    warmupIterations = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-i")) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-time")) {
+                    iterationSec = Integer.parseInt(args[++i]);
+                } else {
+                    return false;
+                }
+            }
+        } catch (RuntimeException e) {
+            // NumberFormatException or ArrayIndexOutOfBoundsException
+            return false;
+        }
+        return threads > 0 && keys > 0 && iterations > 0;
+    }
+
+    /**
+     * Print a usage message.
+     *
+     * @param out the stream to print the message to
+     */
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java " + LockManagerBenchmark.class.getName() +
+                    " [options]");
+        out.println();
+        out.println("Options:");
+        out.println("  -threads NUM  number of threads (default: number " +
+                    "of processors)");
+        out.println("  -keys NUM     number of distinct objects locked by " +
+                    "each thread (default: 1000)");
+        out.println("  -shared       let all the threads lock objects from " +
+                    "the same set");
+        out.println("  -exclusive    lock the objects exclusively instead " +
+                    "of shared");
+        out.println("  -wi NUM       number of warmup iterations " +
+                    "(default: 3)");
+        out.println("  -i NUM        number of measurement iterations " +
+                    "(default: 5)");
+        out.println("  -time SEC     length of each iteration in " +
+                    "seconds (default: 5)");
+    }
+}
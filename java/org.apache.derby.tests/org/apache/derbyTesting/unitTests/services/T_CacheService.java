@@ -113,6 +113,27 @@ public class T_CacheService extends T_Generic implements CacheableFactory {
 			cm5.shutdown();
 			cm5 = null;
 
+			// a cache whose replacement policy is split into partitions
+			CacheManager cm6 = cf.newCacheManager(this, "testCache6", 0, 400,
+					CacheFactory.CLOCK_POLICY, 4);
+			if (cm6 == null)
+				throw T_Fail.testFailMsg("unable to create cache manager");
+			T001(cm6, 400);
+			cm6.useDaemonService(ds);
+			thrashCache(cm6, 10, 1000);
+			cm6.shutdown();
+			cm6 = null;
+
+			// a partitioned cache with the scan-resistant policy
+			CacheManager cm7 = cf.newCacheManager(this, "testCache7", 0, 400,
+					CacheFactory.SCAN_RESISTANT_POLICY, 4);
+			if (cm7 == null)
+				throw T_Fail.testFailMsg("unable to create cache manager");
+			T001(cm7, 400);
+			thrashCache(cm7, 10, 1000);
+			cm7.shutdown();
+			cm7 = null;
+
 		} catch (StandardException se) {
 			throw T_Fail.exceptionFail(se);
 		} catch (Throwable t) {
@@ -37,6 +37,7 @@ import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
 import org.apache.derby.iapi.store.access.FileResource;
 import org.apache.derby.iapi.store.access.GroupFetchScanController;
 import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowConsumer;
 import org.apache.derby.iapi.store.access.RowLocationRetRowSource;
 import org.apache.derby.iapi.store.access.ScanController;
 import org.apache.derby.iapi.store.access.SortController;
@@ -211,6 +212,12 @@ class NoOpTransaction implements TransactionController {
 
     }
 
+    public void setLockEscalationThreshold(long conglomId, int threshold)
+            throws StandardException {
+        // Auto-generated method stub
+
+    }
+
     public boolean fetchMaxOnBtree(long conglomId, int open_mode,
             int lock_level, int isolation_level,
             FormatableBitSet scanColumnList, DataValueDescriptor[] fetchRow)
@@ -219,6 +226,16 @@ class NoOpTransaction implements TransactionController {
         return false;
     }
 
+    public int getParallelScanThreads() {
+        return 1;
+    }
+
+    public boolean scanHeapInParallel(long conglomId, int isolation_level,
+            FormatableBitSet scanColumnList, DataValueDescriptor[] template,
+            RowConsumer[] consumers) throws StandardException {
+        return false;
+    }
+
     public StoreCostController openStoreCost(long conglomId)
             throws StandardException {
         // Auto-generated method stub